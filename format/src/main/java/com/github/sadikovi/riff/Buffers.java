@@ -23,6 +23,8 @@
 package com.github.sadikovi.riff;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -31,9 +33,13 @@ import org.apache.spark.sql.catalyst.InternalRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.sadikovi.riff.io.BufferPool;
+import com.github.sadikovi.riff.io.ChunkIndex;
 import com.github.sadikovi.riff.io.CompressionCodec;
 import com.github.sadikovi.riff.io.InStream;
+import com.github.sadikovi.riff.io.MappedInputStream;
 import com.github.sadikovi.riff.io.StripeInputBuffer;
+import com.github.sadikovi.riff.stats.Statistics;
 import com.github.sadikovi.riff.tree.State;
 
 /**
@@ -62,17 +68,152 @@ public class Buffers {
       CompressionCodec codec,
       int bufferSize,
       PredicateState state) throws IOException {
+    return prepareRowBuffer(in, stripes, td, codec, bufferSize, state, new ReadOptions());
+  }
+
+  /**
+   * Select row buffer based on provided options.
+   * @param in raw input stream
+   * @param stripes stripe information, should be sorted by offsets in ascending order
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param state predicate state to use, null - no predicate, direct scan
+   * @param options read options, e.g. read-ahead and coalescing of stripes
+   * @return row buffer based on input parameters
+   */
+  public static RowBuffer prepareRowBuffer(
+      FSDataInputStream in,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      PredicateState state,
+      ReadOptions options) throws IOException {
+    return prepareRowBuffer(in, stripes, td, codec, bufferSize, state, options,
+      IndexedRowReader.ALL_FIELDS);
+  }
+
+  /**
+   * Select row buffer based on provided options.
+   * In index-only mode only index region of each row is read, data fields of returned rows are
+   * null; predicate state, if set, must only reference index fields.
+   * @param in raw input stream
+   * @param stripes stripe information, should be sorted by offsets in ascending order
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param state predicate state to use, null - no predicate, direct scan
+   * @param options read options, e.g. read-ahead and coalescing of stripes
+   * @param indexOnly whether or not to skip data region of rows
+   * @return row buffer based on input parameters
+   */
+  public static RowBuffer prepareRowBuffer(
+      FSDataInputStream in,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      PredicateState state,
+      ReadOptions options,
+      boolean indexOnly) throws IOException {
+    return prepareRowBuffer(in, stripes, td, codec, bufferSize, state, options,
+      indexOnly ? 0L : IndexedRowReader.ALL_FIELDS);
+  }
+
+  /**
+   * Select row buffer that only reads required fields, see `IndexedRowReader` for details.
+   * Index fields are always read; if no data fields are required, only index region of each row
+   * is read, otherwise regions of column groups without required fields are skipped. Data fields
+   * that are not read are null; predicate state, if set, must only reference required fields.
+   * @param in raw input stream
+   * @param stripes stripe information, should be sorted by offsets in ascending order
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param state predicate state to use, null - no predicate, direct scan
+   * @param options read options, e.g. read-ahead and coalescing of stripes
+   * @param requiredFields bit set of required fields, `IndexedRowReader.ALL_FIELDS` to read all
+   * @return row buffer based on input parameters
+   */
+  public static RowBuffer prepareRowBuffer(
+      FSDataInputStream in,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      PredicateState state,
+      ReadOptions options,
+      long requiredFields) throws IOException {
+    return prepareRowBuffer(in, stripes, td, codec, bufferSize, state, options, requiredFields,
+      Long.MAX_VALUE);
+  }
+
+  /**
+   * Select row buffer that returns at most `limit` rows, see
+   * `prepareRowBuffer(in, stripes, td, codec, bufferSize, state, options, requiredFields)`.
+   * Once limit is reached, buffer does not read any more stripes and cancels pending stripe
+   * reads. If rows are not filtered, stripes after the first stripes that contain `limit` rows
+   * are not read at all, including read-ahead.
+   * @param in raw input stream
+   * @param stripes stripe information, should be sorted by offsets in ascending order
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param state predicate state to use, null - no predicate, direct scan
+   * @param options read options, e.g. read-ahead and coalescing of stripes
+   * @param requiredFields bit set of required fields, `IndexedRowReader.ALL_FIELDS` to read all
+   * @param limit maximum number of rows to return, `Long.MAX_VALUE` if there is no limit
+   * @return row buffer based on input parameters
+   */
+  public static RowBuffer prepareRowBuffer(
+      FSDataInputStream in,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      PredicateState state,
+      ReadOptions options,
+      long requiredFields,
+      long limit) throws IOException {
+    if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
+    if (state != null && state.result() == State.Unknown) {
+      long dataFields = 0L;
+      for (TypeSpec spec : td.dataFields()) {
+        dataFields |= 1L << spec.position();
+      }
+      for (int field : state.referencedFields()) {
+        if ((dataFields & ~requiredFields & 1L << field) == 0) continue;
+        if ((dataFields & requiredFields) == 0) {
+          throw new IllegalArgumentException("Index-only scan requires predicate state that " +
+            "only references index fields, found " + state);
+        }
+        throw new IllegalArgumentException("Scan requires predicate state that only " +
+          "references required fields, found " + state);
+      }
+    }
     RowBuffer rowbuf = null;
-    if (stripes == null || stripes.length == 0) {
+    if (stripes == null || stripes.length == 0 || limit == 0) {
       rowbuf = new EmptyRowBuffer(in);
     } else {
       // resolve state: if state is negative trivial return empty buffer, otherwise choose
       // depending on availability of state
       LOG.debug("Analyze state {}", state);
       if (state == null || state.result() == State.True) {
-        rowbuf = new DirectScanRowBuffer(in, stripes, td, codec, bufferSize);
+        // every row is returned, stripes after limit are never read
+        stripes = limitStripes(stripes, limit);
+      }
+      if (options.parallelStripes() > 0 && (state == null || state.result() != State.False)) {
+        // trivial state does not filter rows
+        PredicateState rowState = (state == null || state.result() == State.True) ? null : state;
+        rowbuf = new ParallelScanRowBuffer(in, stripes, td, codec, bufferSize, options, rowState,
+          requiredFields, limit);
+      } else if (state == null || state.result() == State.True) {
+        rowbuf = new DirectScanRowBuffer(in, stripes, td, codec, bufferSize, options,
+          requiredFields, limit);
       } else if (state.result() == State.Unknown) {
-        rowbuf = new PredicateScanRowBuffer(in, stripes, td, codec, bufferSize, state);
+        rowbuf = new PredicateScanRowBuffer(in, stripes, td, codec, bufferSize, options, state,
+          requiredFields, limit);
       } else {
         rowbuf = new EmptyRowBuffer(in);
       }
@@ -81,6 +222,62 @@ public class Buffers {
     return rowbuf;
   }
 
+  /**
+   * Prepare row buffer that returns range of rows without filter. The first row is located in the
+   * first stripe by skipping bytes of uncompressed stripe stream up to the closest indexed row
+   * and then skipping remaining rows.
+   * @param in raw input stream
+   * @param stripes stripes that contain range of rows, sorted by offsets in ascending order
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param options read options
+   * @param skipBytes number of uncompressed bytes to skip in the first stripe
+   * @param skipRows number of rows to skip after skipping bytes in the first stripe
+   * @param numRows maximum number of rows to return
+   * @return row buffer
+   */
+  static RowBuffer prepareRowRangeBuffer(
+      FSDataInputStream in,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      ReadOptions options,
+      long skipBytes,
+      int skipRows,
+      long numRows) throws IOException {
+    RowBuffer rowbuf = null;
+    if (stripes == null || stripes.length == 0 || numRows == 0) {
+      rowbuf = new EmptyRowBuffer(in);
+    } else {
+      rowbuf = new RowRangeRowBuffer(in, stripes, td, codec, bufferSize, options, skipBytes,
+        skipRows, numRows);
+    }
+    LOG.debug("Select row buffer {}", rowbuf);
+    return rowbuf;
+  }
+
+  /**
+   * Select leading stripes that contain at least `limit` rows, when rows are not filtered other
+   * stripes are never read. If number of rows of any of the leading stripes is unknown, all
+   * stripes are returned.
+   * @param stripes stripes sorted by offsets in ascending order
+   * @param limit maximum number of rows to return
+   * @return leading stripes or all stripes
+   */
+  static StripeInformation[] limitStripes(StripeInformation[] stripes, long limit) {
+    long rows = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      if (stripes[i].numRows() < 0) return stripes;
+      rows += stripes[i].numRows();
+      if (rows >= limit) {
+        return (i == stripes.length - 1) ? stripes : Arrays.copyOf(stripes, i + 1);
+      }
+    }
+    return stripes;
+  }
+
   /**
    * Return empty row buffer directly, buffer will close stream.
    * @param in input stream, can be null
@@ -90,6 +287,71 @@ public class Buffers {
     return new EmptyRowBuffer(in);
   }
 
+  /**
+   * Evaluate key statistics of stripe, if stripe is sorted by field referenced in predicate.
+   * Each row index entry is evaluated with stripe statistics, where statistics of sort field are
+   * replaced with key statistics of entry.
+   * @param info stripe information
+   * @param state predicate state
+   * @param fields fields referenced by predicate state
+   * @return flags of row index entries that can match predicate, or null if all rows should be read
+   */
+  static boolean[] keyCandidates(StripeInformation info, PredicateState state, int[] fields) {
+    if (!info.isSorted() || !info.hasStatistics() ||
+        Arrays.binarySearch(fields, info.sortOrdinal()) < 0) {
+      return null;
+    }
+    Statistics[] stats = info.getStatistics(fields).clone();
+    Statistics[] keyStats = info.getKeyStatistics();
+    boolean[] candidates = new boolean[keyStats.length];
+    for (int i = 0; i < keyStats.length; i++) {
+      stats[info.sortOrdinal()] = keyStats[i];
+      if (state.hasIndexedTreeOnly()) {
+        candidates[i] = state.indexTree().evaluateState(stats);
+      } else {
+        candidates[i] = state.tree().evaluateState(stats);
+      }
+    }
+    LOG.debug("Evaluated key statistics {} for stripe {}", Arrays.toString(candidates), info);
+    return candidates;
+  }
+
+  /**
+   * Position stream at the first row of the next candidate row index entry, if current row
+   * starts an entry that cannot match predicate.
+   * @param info stripe information
+   * @param in instream of the stripe, positioned at current row
+   * @param candidates flags of candidate row index entries, see `keyCandidates()`
+   * @param stripeRow current row within stripe
+   * @return row within stripe the stream is positioned at, or -1 if there are no candidate
+   *   entries left
+   * @throws IOException
+   */
+  static int positionCandidate(
+      StripeInformation info,
+      InStream in,
+      boolean[] candidates,
+      int stripeRow) throws IOException {
+    int interval = info.rowIndexInterval();
+    if (stripeRow % interval != 0) return stripeRow;
+    int entry = stripeRow / interval;
+    int next = entry;
+    while (next < candidates.length && !candidates[next]) {
+      next++;
+    }
+    if (next >= candidates.length) return -1;
+    if (next > entry) {
+      long bytes = info.getRowIndex()[next] - info.getRowIndex()[entry];
+      long skipped = in.skip(bytes);
+      if (skipped != bytes) {
+        throw new IOException("Failed to skip " + bytes + " bytes, skipped " + skipped +
+          " bytes in " + info);
+      }
+      return next * interval;
+    }
+    return stripeRow;
+  }
+
   /**
    * Empty row buffer.
    * This row buffer represents empty iterator and is created when no stripes are available for
@@ -166,6 +428,38 @@ public class Buffers {
     protected StripeInputBuffer currentStripe;
     // current buffered instream
     protected InStream currentStream;
+    // data stream of the current stripe, null if stripe has single stream, see
+    // `StripeInformation.hasSplitStreams()`
+    private StripeInputBuffer currentDataStripe;
+    protected InStream currentDataStream;
+    // column streams of the current stripe, null if stripe does not have columnar layout, see
+    // `StripeInformation.hasColumnStreams()`
+    protected ColumnStreams currentColumns;
+    // array that backs current stripe with separate streams, if stripe is buffered from raw stream
+    private byte[] stripeData;
+    // optional stripe prefetcher, null if read-ahead is disabled
+    private StripePrefetcher prefetcher;
+    // ranges of stripes to read with single request, null if stripes are streamed
+    private StripeRange[] ranges;
+    // memory-mapped file that backs raw input stream, null if stream is not mapped
+    private MappedInputStream mapped;
+    // index of the next range to read synchronously
+    private int currentRangeIndex;
+    // stripes of the current range and index of the next stripe in that range
+    private StripeInputBuffer[] rangeStripes;
+    private int rangeStripeIndex;
+    // array that backs stripes of the current range
+    private byte[] rangeData;
+    // optional buffer pool for instream and range buffers, null if buffers are allocated
+    private final BufferPool pool;
+    // whether or not instream uses direct buffers
+    private final boolean direct;
+    // instream with direct buffers that is reused for all stripes, null if direct mode is off
+    private InStream directStream;
+    // instream with direct buffers that is reused for data streams of stripes
+    private InStream directDataStream;
+    // number of rows left to return before limit is reached
+    private long rowsLeft;
 
     /**
      * Create new row buffer.
@@ -176,15 +470,38 @@ public class Buffers {
      * @param stripes sorted array of stripes to read
      * @param codec compression codec (null - no compression)
      * @param bufferSize buffer size for instream
+     * @param options read options, default options stream stripes one by one
+     */
+    protected InternalRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options) throws IOException {
+      this(in, stripes, codec, bufferSize, options, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create new row buffer that returns at most `limit` rows, see `limitReached()`.
+     * @param in raw input stream
+     * @param stripes sorted array of stripes to read
+     * @param codec compression codec (null - no compression)
+     * @param bufferSize buffer size for instream
+     * @param options read options, default options stream stripes one by one
+     * @param limit maximum number of rows to return
      */
     protected InternalRowBuffer(
         FSDataInputStream in,
         StripeInformation[] stripes,
         CompressionCodec codec,
-        int bufferSize) throws IOException {
+        int bufferSize,
+        ReadOptions options,
+        long limit) throws IOException {
       if (in == null) throw new IllegalArgumentException("Null input stream");
       if (stripes == null) throw new IllegalArgumentException("Null stripes list");
       if (bufferSize <= 0) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+      if (options == null) throw new IllegalArgumentException("Null read options");
+      if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
       this.in = in;
       // offset in the current stream, marks the beginning of the first stripe
       this.offset = in.getPos();
@@ -198,31 +515,297 @@ public class Buffers {
       this.currentStripeIndex = 0;
       this.currentStripe = null;
       this.currentStream = null;
+      this.currentDataStripe = null;
+      this.currentDataStream = null;
+      this.currentColumns = null;
+      this.stripeData = null;
+      this.prefetcher = null;
+      this.mapped = null;
+      this.ranges = null;
+      this.currentRangeIndex = 0;
+      this.rangeStripes = null;
+      this.rangeStripeIndex = 0;
+      this.rangeData = null;
+      this.rowsLeft = limit;
+      this.pool = options.bufferPool();
+      // plan ranges for read, if coalescing is disabled each range contains a single stripe
+      StripeRange[] plan = StripeRange.plan(stripes, options.coalesceGap(),
+        options.coalesceMaxSize());
+      LOG.debug("Planned {} ranges for {} stripes", plan.length, stripes.length);
+      // read-ahead is enabled for positive number of stripes, otherwise ranges are either read
+      // synchronously or stripes are streamed
+      if (options.prefetchStripes() > 0) {
+        // stripes with separate streams are decompressed per stream, stripe bytes must be kept
+        boolean decompress = options.prefetchDecompress() && !hasSeparateStreams(stripes);
+        this.prefetcher = new StripePrefetcher(in, offset, plan, options.prefetchStripes(), codec,
+          bufferSize, decompress, pool);
+        LOG.debug("Created prefetcher {}", prefetcher);
+      } else if (in.getWrappedStream() instanceof MappedInputStream) {
+        // stripes are sliced from mapping, there is no need to coalesce reads
+        this.mapped = (MappedInputStream) in.getWrappedStream();
+      } else if (options.coalesceEnabled()) {
+        this.ranges = plan;
+      }
+      // direct buffers are only used when instream codec can decompress them
+      CompressionCodec streamCodec = streamCodec();
+      this.direct = options.directBuffers() &&
+        (streamCodec == null || streamCodec.supportsDirectBuffers());
+      this.directStream = null;
+      this.directDataStream = null;
+      if (options.directBuffers() && !direct) {
+        LOG.debug("Codec {} does not support direct buffers, use heap buffers", streamCodec);
+      }
+    }
+
+    /** Codec to decompress stripes with, null if stripes are uncompressed */
+    private CompressionCodec streamCodec() {
+      // stripe can be already decompressed by prefetcher
+      return (prefetcher != null && prefetcher.isDecompressed()) ? null : codec;
+    }
+
+    /** Whether or not any of the stripes has separate data stream or column streams */
+    private static boolean hasSeparateStreams(StripeInformation[] stripes) {
+      for (StripeInformation info : stripes) {
+        if (info.hasSplitStreams() || info.hasColumnStreams()) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Whether or not stripes have columnar layout, stripes of the same file share layout, so rows
+     * of all stripes can be read with the same reader.
+     * @param stripes stripes to read
+     * @return true if any of the stripes has column streams
+     */
+    protected static boolean hasColumnStreams(StripeInformation[] stripes) {
+      for (StripeInformation info : stripes) {
+        if (info.hasColumnStreams()) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Open instream for stripe or stream of stripe. If direct buffers are enabled, single instream
+     * is reused for all stripes, because direct buffers are expensive to allocate; data streams
+     * reuse separate instream. Chunk index is set for compressed stream, so skips do not
+     * decompress skipped chunks.
+     * @param stripe stripe input buffer to read
+     * @param chunkIndex chunk index of the stream, can be null
+     * @param data whether or not stream is data stream of stripe
+     * @return instream for stripe
+     * @throws IOException
+     */
+    private InStream openStream(
+        StripeInputBuffer stripe,
+        ChunkIndex chunkIndex,
+        boolean data) throws IOException {
+      InStream reused = data ? directDataStream : directStream;
+      InStream stream;
+      if (!direct) {
+        stream = new InStream(bufferSize, streamCodec(), stripe, pool);
+      } else if (reused == null) {
+        stream = new InStream(bufferSize, streamCodec(), stripe, null, true);
+        if (data) {
+          directDataStream = stream;
+        } else {
+          directStream = stream;
+        }
+      } else {
+        reused.reset(stripe);
+        stream = reused;
+      }
+      // chunk index references compressed bytes, it is not used for decompressed stripes
+      if (streamCodec() != null) {
+        stream.setChunkIndex(chunkIndex);
+      }
+      return stream;
+    }
+
+    /**
+     * Open instreams for current stripe. If stripe has separate index and data streams, stripe is
+     * sliced into streams, each stream is read independently. If stripe has column streams, only
+     * streams of columns that are accessed by reader are opened, see `ColumnStreams`; column
+     * streams always use heap buffers.
+     * @throws IOException
+     */
+    private void openStreams() throws IOException {
+      if (info.hasColumnStreams()) {
+        StripeInputBuffer stripe = currentStripe;
+        currentStripe = stripe.slice(0, info.indexStreamLength());
+        currentColumns = new ColumnStreams(stripe, info, streamCodec(), bufferSize, pool);
+        // slices keep references to stripe bytes
+        stripe.close();
+      } else if (info.hasSplitStreams()) {
+        StripeInputBuffer stripe = currentStripe;
+        currentStripe = stripe.slice(0, info.dataOffset());
+        currentDataStripe = stripe.slice(info.dataOffset(), info.length() - info.dataOffset());
+        // slices keep references to stripe bytes
+        stripe.close();
+        currentDataStream = openStream(currentDataStripe, info.getDataChunkIndex(), true);
+      }
+      currentStream = openStream(currentStripe, info.getChunkIndex(), false);
     }
 
     /**
      * Method resets current stripe and instream to read the next batch of data.
+     * Stripe is streamed from raw input stream, only bytes requested by instream are read, so
+     * memory is bounded by buffer size rather than stripe length. If read-ahead is enabled, stripe
+     * is returned by prefetcher, which reads next stripes in background. If coalescing is enabled,
+     * stripes that are close to each other are read with a single request and sliced afterwards.
+     * If raw stream is backed by memory-mapped file, stripe is a slice of mapping.
+     * Stripe with separate index and data streams or column streams is never streamed, since
+     * streams are read independently, it is buffered entirely instead.
      * If there are no stripes left, this method is no-op.
      * @throws IOException
      */
     protected void bufferStripe() throws IOException {
       if (currentStripeIndex >= stripes.length) return;
+      releaseStripe();
       info = stripes[currentStripeIndex++];
-      // reset state
+      LOG.debug("Read stripe {}", info);
+      if (prefetcher != null) {
+        currentStripe = prefetcher.next();
+      } else if (mapped != null && mapped.canSlice(info.offset() + offset, info.length())) {
+        // stripe shares bytes with mapping, no copy is made
+        currentStripe = new StripeInputBuffer(info.id(),
+          mapped.slice(info.offset() + offset, info.length()));
+      } else if (ranges != null) {
+        if (rangeStripes == null || rangeStripeIndex >= rangeStripes.length) {
+          // read all stripes of the next range, ranges cover stripes in the same order; stripes of
+          // the previous range are closed at this point, so array can be reused
+          StripeRange range = ranges[currentRangeIndex++];
+          releaseRangeData();
+          rangeData = (pool == null) ? new byte[range.length()] : pool.acquire(range.length());
+          rangeStripes = range.read(in, offset, rangeData);
+          rangeStripeIndex = 0;
+        }
+        currentStripe = rangeStripes[rangeStripeIndex];
+        rangeStripes[rangeStripeIndex++] = null;
+      } else if (info.hasSplitStreams() || info.hasColumnStreams()) {
+        stripeData = (pool == null) ? new byte[info.length()] : pool.acquire(info.length());
+        in.readFully(info.offset() + offset, stripeData, 0, info.length());
+        currentStripe = new StripeInputBuffer(info.id(), stripeData, 0, info.length());
+      } else {
+        // seek to a position in raw stream, stripe reads chunks directly from stream
+        in.seek(info.offset() + offset);
+        currentStripe = new StripeInputBuffer(info.id(), in, info.length());
+      }
+      openStreams();
+      LOG.debug("Buffer new stream {}", currentStream);
+    }
+
+    /**
+     * Release current stripe and instream, e.g. when remaining rows of stripe should not be read.
+     * Direct stream is reused for the next stripe. If there is no current stripe, this method is
+     * no-op.
+     * @throws IOException
+     */
+    protected void releaseStripe() throws IOException {
+      if (currentDataStream != null) {
+        // last returned row can reference data stream lazily, read it before stream is released
+        retainRow();
+      }
       if (currentStream != null) {
-        currentStream.close();
+        if (currentStream != directStream) {
+          currentStream.close();
+        }
         currentStripe.close();
         currentStream = null;
         currentStripe = null;
       }
-      LOG.debug("Read stripe {}", info);
-      // seek to a position in raw stream
-      in.seek(info.offset() + offset);
-      byte[] bytes = new byte[info.length()];
-      in.readFully(bytes);
-      currentStripe = new StripeInputBuffer(info.id(), bytes);
-      currentStream = new InStream(bufferSize, codec, currentStripe);
-      LOG.debug("Buffer new stream {}", currentStream);
+      if (currentDataStream != null) {
+        if (currentDataStream != directDataStream) {
+          currentDataStream.close();
+        }
+        currentDataStripe.close();
+        currentDataStream = null;
+        currentDataStripe = null;
+      }
+      if (currentColumns != null) {
+        currentColumns.close();
+        currentColumns = null;
+      }
+      releaseStripeData();
+      info = null;
+    }
+
+    /**
+     * Read remaining regions of the last returned row that reference current stripe lazily, so
+     * row remains valid after stripe is released. No-op by default.
+     */
+    protected void retainRow() {
+      // no-op
+    }
+
+    /**
+     * Read next row of the current stripe with reader, either from single stream, separate index
+     * and data streams, or index and column streams, depending on stripe layout.
+     * @param reader row reader
+     * @param state predicate state to evaluate, null if all rows are returned
+     * @return row or null if row is rejected by predicate state
+     * @throws IOException
+     */
+    protected InternalRow readRow(
+        IndexedRowReader reader,
+        PredicateState state) throws IOException {
+      if (currentColumns != null) {
+        return (state == null) ? reader.readRow(currentStream, currentColumns) :
+          reader.readRow(currentStream, currentColumns, state);
+      }
+      return (state == null) ? reader.readRow(currentStream, currentDataStream) :
+        reader.readRow(currentStream, currentDataStream, state);
+    }
+
+    /**
+     * Whether or not row limit is reached, subclasses check limit before buffering next stripe,
+     * and call `consumeRow()` for every returned row. When limit is reached, current stripe is
+     * released and pending reads of the next stripes are cancelled; raw stream is closed with
+     * buffer.
+     * @return true if no more rows should be returned
+     * @throws IOException
+     */
+    protected boolean limitReached() throws IOException {
+      if (rowsLeft > 0) return false;
+      if (currentStream != null) {
+        releaseStripe();
+      }
+      rangeStripes = null;
+      releaseRangeData();
+      if (prefetcher != null) {
+        LOG.debug("Limit is reached, close prefetcher {}", prefetcher);
+        prefetcher.close();
+        prefetcher = null;
+      }
+      return true;
+    }
+
+    /** Count row that is returned towards limit */
+    protected void consumeRow() {
+      rowsLeft--;
+    }
+
+    /** Return array of the current stripe with separate streams into pool */
+    private void releaseStripeData() {
+      if (pool != null && stripeData != null) {
+        pool.release(stripeData);
+      }
+      stripeData = null;
+    }
+
+    /**
+     * Stripe information of the current stripe.
+     * @return stripe information or null if there is no current stripe
+     */
+    protected StripeInformation currentStripeInfo() {
+      return info;
+    }
+
+    /** Return array of the current range into pool */
+    private void releaseRangeData() {
+      if (pool != null && rangeData != null) {
+        pool.release(rangeData);
+      }
+      rangeData = null;
     }
 
     /**
@@ -255,13 +838,47 @@ public class Buffers {
       try {
         // release current stripe data
         if (currentStream != null) {
-          currentStream.close();
+          if (currentStream != directStream) {
+            currentStream.close();
+          }
           currentStripe.close();
           currentStream = null;
           currentStripe = null;
         }
+        if (currentDataStream != null) {
+          if (currentDataStream != directDataStream) {
+            currentDataStream.close();
+          }
+          currentDataStripe.close();
+          currentDataStream = null;
+          currentDataStripe = null;
+        }
+        if (currentColumns != null) {
+          currentColumns.close();
+          currentColumns = null;
+        }
+        releaseStripeData();
+        // direct streams are reused across stripes and are not closed when stripe is released,
+        // they are closed here regardless of whether or not they back current stripe
+        if (directStream != null) {
+          directStream.close();
+          directStream = null;
+        }
+        if (directDataStream != null) {
+          directDataStream.close();
+          directDataStream = null;
+        }
         info = null;
         stripes = null;
+        ranges = null;
+        rangeStripes = null;
+        releaseRangeData();
+        mapped = null;
+        // cancel pending reads before closing raw stream
+        if (prefetcher != null) {
+          prefetcher.close();
+          prefetcher = null;
+        }
         // release raw stream
         if (in != null) {
           in.close();
@@ -297,15 +914,47 @@ public class Buffers {
         StripeInformation[] stripes,
         TypeDescription td,
         CompressionCodec codec,
-        int bufferSize) throws IOException {
-      super(in, stripes, codec, bufferSize);
-      this.reader = new IndexedRowReader(td);
+        int bufferSize,
+        ReadOptions options) throws IOException {
+      this(in, stripes, td, codec, bufferSize, options, IndexedRowReader.ALL_FIELDS);
+    }
+
+    protected DirectScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        long requiredFields) throws IOException {
+      this(in, stripes, td, codec, bufferSize, options, requiredFields, Long.MAX_VALUE);
+    }
+
+    protected DirectScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        long requiredFields,
+        long limit) throws IOException {
+      super(in, stripes, codec, bufferSize, options, limit);
+      // row is only valid until next call, consumers copy rows to retain them
+      this.reader = new IndexedRowReader(td, true, requiredFields, options.lazyData(),
+        hasColumnStreams(stripes));
       LOG.debug("Created reader {}", reader);
     }
 
+    @Override
+    protected void retainRow() {
+      reader.loadDataRegion();
+    }
+
     @Override
     public boolean hasNext() {
       try {
+        if (limitReached()) return false;
         // check if there are bytes in the stream or buffer next stripe
         if (currentStream != null && currentStream.available() != 0) {
           return true;
@@ -323,7 +972,94 @@ public class Buffers {
     public InternalRow next() {
       if (!hasNext()) throw new NoSuchElementException("Empty iterator");
       try {
-        return reader.readRow(currentStream);
+        consumeRow();
+        return readRow(reader, null);
+      } catch (IOException ioe) {
+        LOG.error("Failed to read stream={}, stripe input={}", currentStream, currentStripe);
+        throw new RuntimeException(ioe.getMessage(), ioe);
+      }
+    }
+  }
+
+  /**
+   * Row range buffer.
+   * Returns at most `numRows` records starting with the record at provided position of the first
+   * stripe, does not filter records.
+   */
+  static class RowRangeRowBuffer extends InternalRowBuffer {
+    // indexed row reader
+    private final IndexedRowReader reader;
+    // number of uncompressed bytes to skip in the first stripe
+    private final long skipBytes;
+    // number of rows to skip in the first stripe after skipping bytes
+    private final int skipRows;
+    // whether or not the first stripe has been positioned at the first row
+    private boolean positioned;
+
+    protected RowRangeRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        long skipBytes,
+        int skipRows,
+        long numRows) throws IOException {
+      super(in, stripes, codec, bufferSize, options, numRows);
+      // row is only valid until next call, consumers copy rows to retain them
+      this.reader = new IndexedRowReader(td, true, IndexedRowReader.ALL_FIELDS, options.lazyData(),
+        hasColumnStreams(stripes));
+      this.skipBytes = skipBytes;
+      this.skipRows = skipRows;
+      this.positioned = false;
+      LOG.debug("Created reader {}", reader);
+    }
+
+    @Override
+    protected void retainRow() {
+      reader.loadDataRegion();
+    }
+
+    /** Position stream of the first stripe at the first row of the range */
+    private void positionFirstRow() throws IOException {
+      positioned = true;
+      long skipped = currentStream.skip(skipBytes);
+      if (skipped != skipBytes) {
+        throw new IOException("Failed to skip " + skipBytes + " bytes, skipped " + skipped +
+          " bytes in " + currentStripe);
+      }
+      for (int i = 0; i < skipRows; i++) {
+        readRow(reader, null);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        if (limitReached()) return false;
+        // check if there are bytes in the stream or buffer next stripe
+        if (currentStream != null && currentStream.available() != 0) {
+          return true;
+        }
+        bufferStripe();
+        if (!positioned && currentStream != null) {
+          positionFirstRow();
+        }
+        return currentStream != null && currentStream.available() != 0;
+      } catch (IOException ioe) {
+        LOG.error("Failed to read stream={}, stripe input={}", currentStream, currentStripe);
+        close();
+        throw new RuntimeException(ioe.getMessage(), ioe);
+      }
+    }
+
+    @Override
+    public InternalRow next() {
+      if (!hasNext()) throw new NoSuchElementException("Empty iterator");
+      try {
+        consumeRow();
+        return readRow(reader, null);
       } catch (IOException ioe) {
         LOG.error("Failed to read stream={}, stripe input={}", currentStream, currentStripe);
         throw new RuntimeException(ioe.getMessage(), ioe);
@@ -341,6 +1077,15 @@ public class Buffers {
     private InternalRow currentRow;
     private final IndexedRowReader reader;
     private final PredicateState state;
+    // fields referenced by predicate state
+    private final int[] fields;
+    // row index entries of the current sorted stripe that can match predicate, null if all rows
+    // of the current stripe are read
+    private boolean[] candidates;
+    // current row within stripe, maintained only for sorted stripes
+    private int stripeRow;
+    // whether or not remaining rows of the current stripe cannot match predicate
+    private boolean stripeDone;
 
     protected PredicateScanRowBuffer(
         FSDataInputStream in,
@@ -348,30 +1093,94 @@ public class Buffers {
         TypeDescription td,
         CompressionCodec codec,
         int bufferSize,
+        ReadOptions options,
         PredicateState state) throws IOException {
-      super(in, stripes, codec, bufferSize);
-      this.reader = new IndexedRowReader(td);
+      this(in, stripes, td, codec, bufferSize, options, state, IndexedRowReader.ALL_FIELDS);
+    }
+
+    protected PredicateScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        PredicateState state,
+        long requiredFields) throws IOException {
+      this(in, stripes, td, codec, bufferSize, options, state, requiredFields, Long.MAX_VALUE);
+    }
+
+    protected PredicateScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        PredicateState state,
+        long requiredFields,
+        long limit) throws IOException {
+      super(in, stripes, codec, bufferSize, options, limit);
+      // row is only valid until next call, consumers copy rows to retain them
+      this.reader = new IndexedRowReader(td, true, requiredFields, options.lazyData(),
+        hasColumnStreams(stripes));
       LOG.debug("Created reader {}", reader);
       this.state = state;
+      this.fields = state.referencedFields();
       this.found = false;
       this.currentRow = null;
+      this.candidates = null;
+      this.stripeRow = 0;
+      this.stripeDone = false;
+    }
+
+    @Override
+    protected void retainRow() {
+      // rejected rows are never returned, there is no need to read them
+      if (currentRow != null) reader.loadDataRegion();
+    }
+
+    /** Evaluate key statistics of the current stripe, see `keyCandidates()` */
+    private void evaluateKeyStatistics() {
+      candidates = null;
+      stripeRow = 0;
+      stripeDone = false;
+      StripeInformation info = currentStripeInfo();
+      if (info != null) {
+        candidates = keyCandidates(info, state, fields);
+      }
     }
 
     @Override
     public boolean hasNext() {
       try {
+        // row that is found is already counted towards limit
+        if (!found && limitReached()) return false;
         while (!found) {
           // check if there are bytes in the stream or buffer next stripe
-          if (currentStream == null || currentStream.available() <= 0) {
+          if (currentStream == null || currentStream.available() <= 0 || stripeDone) {
+            // stripe is released explicitly, since there might be no stripes left to buffer
+            releaseStripe();
             bufferStripe();
+            evaluateKeyStatistics();
           }
           // if stream is still empty after buffering we break loop
           if (currentStream == null || currentStream.available() <= 0) {
             break;
           }
-          currentRow = reader.readRow(currentStream, state);
+          if (candidates != null) {
+            stripeRow =
+              positionCandidate(currentStripeInfo(), currentStream, candidates, stripeRow);
+            if (stripeRow < 0) {
+              stripeDone = true;
+              continue;
+            }
+          }
+          currentRow = readRow(reader, state);
+          stripeRow++;
           if (currentRow != null) {
             found = true;
+            consumeRow();
           }
         }
         return found;
@@ -391,4 +1200,131 @@ public class Buffers {
       return currentRow;
     }
   }
+
+  /**
+   * Parallel scan row buffer.
+   * Stripes are decoded concurrently by stripe decoder (see `StripeDecoder`), rows are returned in
+   * the same order as stripes. Optional predicate state is evaluated for each record as part of
+   * decoding, rows of each stripe are kept in memory until they are consumed.
+   */
+  static class ParallelScanRowBuffer implements RowBuffer {
+    private static final Logger LOG = LoggerFactory.getLogger(RowBuffer.class);
+
+    // raw input stream
+    private FSDataInputStream in;
+    // compression codec, decoder creates codec instance per stripe
+    private final CompressionCodec codec;
+    // stripe decoder
+    private StripeDecoder decoder;
+    // rows of the current stripe and index of the next row to return
+    private List<InternalRow> rows;
+    private int rowIndex;
+    // number of rows left to return before limit is reached
+    private long rowsLeft;
+
+    protected ParallelScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        PredicateState state,
+        long requiredFields) throws IOException {
+      this(in, stripes, td, codec, bufferSize, options, state, requiredFields, Long.MAX_VALUE);
+    }
+
+    protected ParallelScanRowBuffer(
+        FSDataInputStream in,
+        StripeInformation[] stripes,
+        TypeDescription td,
+        CompressionCodec codec,
+        int bufferSize,
+        ReadOptions options,
+        PredicateState state,
+        long requiredFields,
+        long limit) throws IOException {
+      if (in == null) throw new IllegalArgumentException("Null input stream");
+      if (stripes == null) throw new IllegalArgumentException("Null stripes list");
+      if (bufferSize <= 0) {
+        throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+      }
+      if (options == null) throw new IllegalArgumentException("Null read options");
+      if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
+      this.in = in;
+      this.codec = codec;
+      this.decoder = new StripeDecoder(in, in.getPos(), stripes, td, codec, bufferSize, state,
+        requiredFields, options.parallelStripes(), options.parallelMaxBytes(),
+        options.bufferPool());
+      LOG.debug("Created decoder {}", decoder);
+      this.rows = null;
+      this.rowIndex = 0;
+      this.rowsLeft = limit;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (rowsLeft <= 0) {
+        // decoded rows are not shared with stripes, pending stripes can be cancelled
+        rows = null;
+        if (decoder != null) {
+          decoder.close();
+          decoder = null;
+        }
+        return false;
+      }
+      try {
+        // skip stripes without rows that match predicate
+        while ((rows == null || rowIndex >= rows.size()) && decoder != null && decoder.hasNext()) {
+          rows = decoder.next();
+          rowIndex = 0;
+        }
+        return rows != null && rowIndex < rows.size();
+      } catch (IOException ioe) {
+        LOG.error("Failed to decode stripe with decoder={}", decoder);
+        close();
+        throw new RuntimeException(ioe.getMessage(), ioe);
+      }
+    }
+
+    @Override
+    public InternalRow next() {
+      if (!hasNext()) throw new NoSuchElementException("Empty iterator");
+      rowsLeft--;
+      // release reference to the row, so consumed rows can be collected
+      return rows.set(rowIndex++, null);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      try {
+        rows = null;
+        // cancel pending tasks and wait for running ones before closing raw stream
+        if (decoder != null) {
+          decoder.close();
+          decoder = null;
+        }
+        if (in != null) {
+          in.close();
+        }
+        if (codec != null) {
+          codec.close();
+        }
+      } catch (IOException ioe) {
+        LOG.warn("Exception occuried during release of resources: {}", ioe.getMessage());
+      } finally {
+        in = null;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return this.getClass().getSimpleName();
+    }
+  }
 }
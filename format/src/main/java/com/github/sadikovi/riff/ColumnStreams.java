@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+
+import com.github.sadikovi.riff.io.BufferPool;
+import com.github.sadikovi.riff.io.CompressionCodec;
+import com.github.sadikovi.riff.io.InStream;
+import com.github.sadikovi.riff.io.StripeInputBuffer;
+
+/**
+ * Column streams of stripe with columnar layout, see `StripeInformation.hasColumnStreams()`.
+ * Each column stream contains offsets of column values for all rows of the stripe as
+ * `numRows + 1` ints, where the last offset is total length of values, followed by values back to
+ * back, see `IndexedRowWriter.writeRow(row, out, ordinal, columns)`.
+ *
+ * Streams are opened on the first access to the column, so streams of columns that are not
+ * required are never read or decompressed. Values of each column must be read in the order of
+ * rows, since streams can only be advanced forward.
+ */
+public class ColumnStreams {
+  // stripe information for column streams
+  private final StripeInformation info;
+  // number of rows in stripe
+  private final int numRows;
+  // compression codec, null if streams are uncompressed
+  private final CompressionCodec codec;
+  // buffer size for instream
+  private final int bufferSize;
+  // optional buffer pool for instream buffers, null if buffers are allocated
+  private final BufferPool pool;
+  // slice of stripe for each column, null once stream of column is opened
+  private final StripeInputBuffer[] slices;
+  // instream for each column, null if column has not been accessed yet
+  private final InStream[] streams;
+  // offsets of values relative to the start of values for each opened column
+  private final int[][] offsets;
+
+  /**
+   * Create column streams for stripe.
+   * Stripe is sliced into column streams, slices keep reference to stripe bytes, so stripe can be
+   * closed after this call.
+   * @param stripe stripe input buffer, must not be streamed
+   * @param info stripe information with column streams
+   * @param codec compression codec, null if stripe is uncompressed
+   * @param bufferSize buffer size for instream
+   * @param pool buffer pool for instream buffers, can be null
+   */
+  public ColumnStreams(
+      StripeInputBuffer stripe,
+      StripeInformation info,
+      CompressionCodec codec,
+      int bufferSize,
+      BufferPool pool) {
+    if (!info.hasColumnStreams()) {
+      throw new IllegalArgumentException("Stripe " + info + " does not have column streams");
+    }
+    if (info.numRows() < 0) {
+      throw new IllegalArgumentException("Unknown number of rows for " + info);
+    }
+    this.info = info;
+    this.numRows = info.numRows();
+    this.codec = codec;
+    this.bufferSize = bufferSize;
+    this.pool = pool;
+    this.slices = new StripeInputBuffer[info.numColumnStreams()];
+    for (int i = 0; i < slices.length; i++) {
+      slices[i] = stripe.slice(info.columnOffset(i), info.columnLength(i));
+    }
+    this.streams = new InStream[slices.length];
+    this.offsets = new int[slices.length][];
+  }
+
+  /**
+   * Number of column streams.
+   * @return number of columns
+   */
+  public int numColumns() {
+    return streams.length;
+  }
+
+  /** Open stream of column and read offsets of values */
+  private void openColumn(int column) throws IOException {
+    if (slices[column] == null) {
+      throw new IOException("Column " + column + " of " + info + " is closed");
+    }
+    InStream stream = new InStream(bufferSize, codec, slices[column], pool);
+    // chunk index references compressed bytes, it is not used for uncompressed streams
+    if (codec != null) {
+      stream.setChunkIndex(info.getColumnChunkIndex(column));
+    }
+    streams[column] = stream;
+    slices[column] = null;
+    int[] arr = new int[numRows + 1];
+    for (int i = 0; i < arr.length; i++) {
+      arr[i] = stream.readInt();
+    }
+    offsets[column] = arr;
+  }
+
+  /**
+   * Length of the value of row in column, 0 if value is null.
+   * @param column column number
+   * @param row row within stripe
+   * @return length in bytes
+   * @throws IOException if row is out of bounds or offsets cannot be read
+   */
+  public int valueLength(int column, int row) throws IOException {
+    if (row < 0 || row >= numRows) {
+      throw new IOException("Row " + row + " is out of bounds for " + numRows + " rows of " +
+        info);
+    }
+    if (streams[column] == null) {
+      openColumn(column);
+    }
+    return offsets[column][row + 1] - offsets[column][row];
+  }
+
+  /**
+   * Read value of row in column into provided array, see `valueLength()` for number of bytes
+   * copied. Values of rows between the previous read and the row are skipped without being read.
+   * @param column column number
+   * @param row row within stripe, must not be less than previously read row of the column
+   * @param buffer array to copy value into
+   * @param offset start in array
+   * @throws IOException
+   */
+  public void readValue(int column, int row, byte[] buffer, int offset) throws IOException {
+    int length = valueLength(column, row);
+    InStream stream = streams[column];
+    // values follow offsets of all rows
+    long position = 4L * (numRows + 1) + offsets[column][row];
+    long bytes = position - stream.position();
+    if (bytes < 0) {
+      throw new IOException("Value of row " + row + " in column " + column +
+        " is before position " + stream.position() + " of column stream");
+    }
+    if (bytes > 0 && stream.skip(bytes) != bytes) {
+      throw new IOException("EOF, failed to seek column " + column + " to offset " + position);
+    }
+    if (length > 0 && stream.read(buffer, offset, length) != length) {
+      throw new IOException("EOF, failed to read " + length + " bytes of column " + column);
+    }
+  }
+
+  /**
+   * Close opened streams and release slices of stripe.
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    for (int i = 0; i < streams.length; i++) {
+      if (streams[i] != null) {
+        streams[i].close();
+        streams[i] = null;
+      }
+      if (slices[i] != null) {
+        slices[i].close();
+        slices[i] = null;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnStreams[columns=" + streams.length + ", rows=" + numRows + "]";
+  }
+}
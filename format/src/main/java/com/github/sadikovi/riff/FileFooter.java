@@ -25,6 +25,9 @@ package com.github.sadikovi.riff;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -32,14 +35,24 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.sadikovi.riff.io.MappedInputStream;
 import com.github.sadikovi.riff.io.OutputBuffer;
 import com.github.sadikovi.riff.stats.Statistics;
 
 /**
  * Footer for Riff file, stores dynamic information and written at the end of the file.
+ * Stripe information is written as footer directory (see `FooterDirectory`) that is optionally
+ * compressed, so statistics and column filters are decoded per column when requested. Footers
+ * without directory are still supported for reads, they are marked by unset directory bit in
+ * footer length.
  */
 public class FileFooter {
   private static final Logger LOG = LoggerFactory.getLogger(FileFooter.class);
+  // bit of footer length that indicates footer directory
+  private static final long DIRECTORY_BIT = 1L << 31;
+  // footer directory compression flags
+  private static final byte DIRECTORY_UNCOMPRESSED = 0;
+  private static final byte DIRECTORY_DEFLATE = 1;
 
   // file statistics
   private final Statistics[] fileStats;
@@ -49,6 +62,12 @@ public class FileFooter {
   private ByteBuffer buffer;
   // stripe information is dynamically loaded as required
   private StripeInformation[] stripes;
+  // number of bytes footer occupies in file, 0 if footer was not read from file
+  private int serializedSize;
+  // footer directory that stripes reference, null if footer does not have directory
+  private FooterDirectory directory;
+  // number of the first row of each stripe, lazily computed
+  private long[] firstRows;
 
   /**
    * Initialize file footer with file statisitcs, number of records and stripe information.
@@ -104,8 +123,11 @@ public class FileFooter {
     return fileStats;
   }
 
-  /** Prepare stripes from byte buffer, if applicable */
-  private void prepareStripeInformation() {
+  /**
+   * Prepare stripes from byte buffer, if applicable.
+   * Footer can be shared between readers, see `FileInfoCache`, therefore method is synchronized.
+   */
+  private synchronized void prepareStripeInformation() {
     if (stripes != null) return;
     if (buffer == null) {
       throw new IllegalArgumentException(
@@ -133,6 +155,43 @@ public class FileFooter {
     return stripes;
   }
 
+  /**
+   * Return number of the first row of each stripe, stripes are in file order, so row numbers are
+   * ascending. Array is computed once and should be considered read-only.
+   * @return array of row numbers, or null if any stripe does not have row count
+   */
+  synchronized long[] stripeFirstRows() {
+    if (firstRows != null) return firstRows;
+    prepareStripeInformation();
+    long[] rows = new long[stripes.length];
+    long numRows = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      if (stripes[i].numRows() < 0) return null;
+      rows[i] = numRows;
+      numRows += stripes[i].numRows();
+    }
+    firstRows = rows;
+    return firstRows;
+  }
+
+  /**
+   * Number of bytes footer occupies in file, including magic and length.
+   * @return size in bytes, 0 if footer was not read from file
+   */
+  int serializedSize() {
+    return serializedSize;
+  }
+
+  /**
+   * Estimated number of bytes footer occupies in memory. Directory is compressed in file, so
+   * estimate includes uncompressed directory bytes and bytes of statistics and column filters
+   * decoded so far, see `FooterDirectory.decodedBytes()`; estimate grows as footer is read.
+   * @return size in bytes, 0 if footer was not read from file
+   */
+  long memorySize() {
+    return serializedSize + ((directory == null) ? 0 : directory.decodedBytes());
+  }
+
   /**
    * Get number of records recorded in file footer.
    * @return number of records in file
@@ -161,15 +220,27 @@ public class FileFooter {
     // stripe, we would correct on current stream position.
     prepareStripeInformation();
     LOG.debug("Write {} stripes", stripes.length);
-    buffer.writeInt(stripes.length);
-    i = 0;
-    while (i < stripes.length) {
-      stripes[i++].writeExternal(buffer);
+    OutputBuffer directory = new OutputBuffer();
+    FooterDirectory.writeTo(stripes, directory);
+    byte[] bytes = directory.array();
+    byte[] compressed = deflate(bytes);
+    // directory is only compressed when it saves space
+    if (compressed.length < bytes.length) {
+      buffer.writeByte(DIRECTORY_DEFLATE);
+      buffer.writeInt(bytes.length);
+      buffer.writeInt(compressed.length);
+      buffer.writeBytes(compressed);
+    } else {
+      buffer.writeByte(DIRECTORY_UNCOMPRESSED);
+      buffer.writeInt(bytes.length);
+      buffer.writeBytes(bytes);
     }
+    LOG.debug("Write footer directory of {} bytes ({} compressed)", bytes.length,
+      compressed.length);
     // align first
     buffer.align();
     // magic and number of bytes to read should be written the last in the stream
-    buffer.writeLong(((long) Riff.MAGIC << 32) + buffer.bytesWritten());
+    buffer.writeLong(((long) Riff.MAGIC << 32) + (buffer.bytesWritten() | DIRECTORY_BIT));
     LOG.debug("Write footer content of {} bytes", buffer.bytesWritten());
     // write buffer data
     buffer.writeExternal(out);
@@ -184,25 +255,40 @@ public class FileFooter {
    * @throws IOException
    */
   public static FileFooter readFrom(FSDataInputStream in, long maxSize) throws IOException {
+    return readFrom(in, maxSize, null);
+  }
+
+  /**
+   * Read footer from input stream, using bytes of the tail region if available, e.g. bytes of
+   * speculative read; bytes that are not in region are read with positional read.
+   * Stream is not closed after operation is complete.
+   * @param in input stream
+   * @param maxSize maximum stream size
+   * @param tail region at the end of the stream, can be null
+   * @throws IOException
+   */
+  static FileFooter readFrom(
+      FSDataInputStream in,
+      long maxSize,
+      FileRegion tail) throws IOException {
     int tailOffset = 8;
     // stream size must be larger than magic + length
     if (maxSize < tailOffset) {
       throw new IOException("Invalid stream, cannot read footer: " + maxSize + " < " + tailOffset);
     }
     // Read 8 bytes: magic 4 bytes and length of the header 4 bytes
-    ByteBuffer buffer = ByteBuffer.allocate(tailOffset);
-    in.readFully(maxSize - tailOffset, buffer.array(), buffer.arrayOffset(), tailOffset);
+    ByteBuffer buffer = FileRegion.readBuffer(in, tail, maxSize - tailOffset, tailOffset);
 
     // reconstruct magic and written bytes
     long meta = buffer.getLong();
     int magic = (int) (meta >>> 32);
     if (magic != Riff.MAGIC) throw new IOException("Wrong magic: " + magic + " != " + Riff.MAGIC);
     int len = (int) (meta & 0x7fffffff);
-    LOG.debug("Read footer content of {} bytes", len);
+    boolean hasDirectory = (meta & DIRECTORY_BIT) != 0;
+    LOG.debug("Read footer content of {} bytes, directory: {}", len, hasDirectory);
 
-    // read full footer bytes
-    buffer = ByteBuffer.allocate(len);
-    in.readFully(maxSize - tailOffset - len, buffer.array(), buffer.arrayOffset(), len);
+    // read full footer bytes, for memory-mapped file bytes are not copied
+    buffer = FileRegion.readBuffer(in, tail, maxSize - tailOffset - len, len);
     // no flip - we have not reset position
     long numRecords = buffer.getLong();
     // read file statistics
@@ -213,6 +299,75 @@ public class FileFooter {
       LOG.debug("Read file statistics {}", fileStats[i]);
       ++i;
     }
-    return new FileFooter(fileStats, numRecords, buffer);
+    FileFooter footer = null;
+    if (hasDirectory) {
+      FooterDirectory directory = FooterDirectory.readFrom(readDirectory(buffer));
+      LOG.debug("Read {}", directory);
+      footer = new FileFooter(fileStats, numRecords, directory.stripes());
+      footer.directory = directory;
+    } else {
+      footer = new FileFooter(fileStats, numRecords, buffer);
+    }
+    footer.serializedSize = len + tailOffset;
+    return footer;
+  }
+
+  /** Compress bytes with deflate */
+  private static byte[] deflate(byte[] bytes) throws IOException {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      OutputBuffer out = new OutputBuffer();
+      byte[] chunk = new byte[4096];
+      while (!deflater.finished()) {
+        int len = deflater.deflate(chunk);
+        out.writeBytes(chunk, 0, len);
+      }
+      return out.array();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Read footer directory bytes, decompress if necessary.
+   * @param buffer footer buffer positioned at the directory
+   * @return buffer with directory bytes
+   * @throws IOException
+   */
+  private static ByteBuffer readDirectory(ByteBuffer buffer) throws IOException {
+    byte compression = buffer.get();
+    int len = buffer.getInt();
+    if (compression == DIRECTORY_UNCOMPRESSED) {
+      ByteBuffer directory = buffer.slice();
+      directory.limit(len);
+      return directory;
+    }
+    if (compression != DIRECTORY_DEFLATE) {
+      throw new IOException("Unknown footer directory compression " + compression);
+    }
+    int compressedLen = buffer.getInt();
+    byte[] input = new byte[compressedLen];
+    buffer.get(input);
+    byte[] bytes = new byte[len];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      int offset = 0;
+      while (offset < len) {
+        int read = inflater.inflate(bytes, offset, len - offset);
+        if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+          throw new IOException("Corrupt footer directory, expected " + len + " bytes, found " +
+            offset);
+        }
+        offset += read;
+      }
+    } catch (DataFormatException err) {
+      throw new IOException("Corrupt footer directory", err);
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(bytes);
   }
 }
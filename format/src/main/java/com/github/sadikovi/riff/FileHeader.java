@@ -167,14 +167,39 @@ public class FileHeader {
    */
   public static FileHeader readFrom(FSDataInputStream in) throws IOException {
     // Read first 8 bytes: magic 4 bytes and length of the header 4 bytes
-    long meta = in.readLong();
+    int len = headerLength(in.readLong());
+    // read full header bytes
+    ByteBuffer buffer = ByteBuffer.allocate(len);
+    in.readFully(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    return readFrom(buffer);
+  }
+
+  /**
+   * Read header from input stream, using bytes of the head region if available, e.g. bytes of
+   * speculative read; bytes that are not in region are read with positional read. Stream is
+   * positioned at the end of the header after this operation, and is not closed.
+   * @param in input stream
+   * @param head region at the beginning of the stream, can be null
+   * @throws IOException
+   */
+  static FileHeader readFrom(FSDataInputStream in, FileRegion head) throws IOException {
+    int len = headerLength(FileRegion.readBuffer(in, head, 0L, 8).getLong());
+    ByteBuffer buffer = FileRegion.readBuffer(in, head, 8L, len);
+    in.seek(8L + len);
+    return readFrom(buffer);
+  }
+
+  /** Validate magic and return length of the header content */
+  private static int headerLength(long meta) throws IOException {
     int magic = (int) (meta >>> 32);
     if (magic != Riff.MAGIC) throw new IOException("Wrong magic: " + magic + " != " + Riff.MAGIC);
     int len = (int) (meta & 0x7fffffff);
     LOG.debug("Read header content of {} bytes", len);
-    // read full header bytes
-    ByteBuffer buffer = ByteBuffer.allocate(len);
-    in.readFully(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    return len;
+  }
+
+  /** Read header from buffer with header content */
+  private static FileHeader readFrom(ByteBuffer buffer) throws IOException {
     // no flip - we have not reset position
     // read byte state
     byte[] state = new byte[STATE_LENGTH];
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * LRU cache of parsed file headers and footers.
+ * Entries are keyed by file path, length and modification time, so a rewritten file does not hit
+ * stale entry, unless it has the same length and modification time is unknown, e.g. reader was
+ * created with known file length. Total size of entries is capped, size of entry is estimated as
+ * size of header and in-memory size of footer, see `FileFooter.memorySize()`. Footer grows as
+ * readers decode statistics and column filters, so size of entry is updated on every lookup.
+ * When entry does not fit, least recently used entries are evicted.
+ *
+ * Cache is thread-safe, and a single instance is shared by all readers in JVM, see `shared()`
+ * method. Cached header and footer are shared between readers and must not be modified.
+ */
+public class FileInfoCache {
+  // default maximum number of bytes kept in shared cache, 32MB
+  public static final long MAX_BYTES_DEFAULT = 32 * 1024 * 1024L;
+
+  private static final FileInfoCache SHARED = new FileInfoCache(MAX_BYTES_DEFAULT);
+
+  /** Cache key for file, modification time is 0 if unknown */
+  static class Key {
+    final String path;
+    final long length;
+    final long modificationTime;
+
+    Key(FileStatus status) {
+      this.path = status.getPath().toString();
+      this.length = status.getLen();
+      this.modificationTime = status.getModificationTime();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || !(obj instanceof Key)) return false;
+      Key that = (Key) obj;
+      return this.path.equals(that.path) && this.length == that.length &&
+        this.modificationTime == that.modificationTime;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = path.hashCode();
+      result = 31 * result + (int) (length ^ (length >>> 32));
+      result = 31 * result + (int) (modificationTime ^ (modificationTime >>> 32));
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Key[path=" + path + ", length=" + length + ", mtime=" + modificationTime + "]";
+    }
+  }
+
+  /** Cached header and optional footer of the file */
+  static class Entry {
+    // file header
+    final FileHeader header;
+    // file footer, null if only header has been read
+    final FileFooter footer;
+    // stream offset of the first stripe, i.e. end of the header
+    final long dataOffset;
+    // estimated size of entry in bytes
+    long size;
+    // in-memory size of footer when size of entry was last updated
+    long footerSize;
+
+    Entry(FileHeader header, FileFooter footer, long dataOffset, long size) {
+      this.header = header;
+      this.footer = footer;
+      this.dataOffset = dataOffset;
+      this.size = size;
+      this.footerSize = (footer == null) ? 0 : footer.memorySize();
+    }
+
+    /**
+     * Update size of entry with bytes footer has grown by since the last update.
+     * @return number of bytes entry has grown by
+     */
+    long updateSize() {
+      if (footer == null) return 0;
+      long current = footer.memorySize();
+      long delta = current - footerSize;
+      footerSize = current;
+      size += delta;
+      return delta;
+    }
+  }
+
+  // entries in access order, the first entry is least recently used
+  private final LinkedHashMap<Key, Entry> entries;
+  // the most recently added key per file path, see `status()`
+  private final HashMap<String, Key> paths;
+  // maximum number of bytes kept in cache
+  private long maxBytes;
+  // current estimated number of bytes in cache
+  private long sizeInBytes;
+  // counters
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public FileInfoCache(long maxBytes) {
+    if (maxBytes < 0) throw new IllegalArgumentException("Negative max bytes: " + maxBytes);
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    this.paths = new HashMap<String, Key>();
+    this.maxBytes = maxBytes;
+    this.sizeInBytes = 0;
+    this.hits = 0;
+    this.misses = 0;
+    this.evictions = 0;
+  }
+
+  /**
+   * Return cache shared by all readers in JVM.
+   * @return shared cache
+   */
+  public static FileInfoCache shared() {
+    return SHARED;
+  }
+
+  /**
+   * Return shared cache and update its maximum number of bytes.
+   * Cache is shared, so the last provided value is used.
+   * @param maxBytes maximum number of bytes kept in cache, 0 disables caching
+   * @return shared cache
+   */
+  public static FileInfoCache shared(long maxBytes) {
+    SHARED.setMaxBytes(maxBytes);
+    return SHARED;
+  }
+
+  /**
+   * Look up entry for file. Entry is counted as hit only if it contains footer or footer is not
+   * required.
+   * @param status file status
+   * @param requireFooter whether or not entry must have footer
+   * @return entry or null if there is no matching entry
+   */
+  synchronized Entry get(FileStatus status, boolean requireFooter) {
+    if (maxBytes == 0) return null;
+    Entry entry = entries.get(new Key(status));
+    if (entry == null || (requireFooter && entry.footer == null)) {
+      misses++;
+      return null;
+    }
+    hits++;
+    // account statistics and column filters decoded since the last lookup
+    long delta = entry.updateSize();
+    if (delta != 0) {
+      sizeInBytes += delta;
+      evict();
+    }
+    return entry;
+  }
+
+  /**
+   * Look up file status of the most recently added entry for path, so length of the file that
+   * has already been read can be resolved without requesting file status from file system.
+   * Returned status is only valid if file has not been modified since it was cached.
+   * @param path file path
+   * @return status with length and modification time of cached file, or null if not found
+   */
+  synchronized FileStatus status(Path path) {
+    if (maxBytes == 0) return null;
+    Key key = paths.get(path.toString());
+    if (key == null) return null;
+    return new FileStatus(key.length, false, 0, 0L, key.modificationTime, path);
+  }
+
+  /**
+   * Add entry for file, replacing existing entry for the same key. Entry that is larger than
+   * cache capacity is not added.
+   * @param status file status
+   * @param header file header
+   * @param footer file footer, can be null
+   * @param dataOffset stream offset of the first stripe
+   * @param size estimated size of entry in bytes
+   */
+  synchronized void put(
+      FileStatus status,
+      FileHeader header,
+      FileFooter footer,
+      long dataOffset,
+      long size) {
+    if (size > maxBytes) return;
+    Key key = new Key(status);
+    Entry old = entries.remove(key);
+    if (old != null) {
+      sizeInBytes -= old.size;
+    }
+    entries.put(key, new Entry(header, footer, dataOffset, size));
+    paths.put(key.path, key);
+    sizeInBytes += size;
+    evict();
+  }
+
+  /** Evict least recently used entries until cache fits into max bytes */
+  private void evict() {
+    Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+    while (sizeInBytes > maxBytes && iter.hasNext()) {
+      Map.Entry<Key, Entry> entry = iter.next();
+      sizeInBytes -= entry.getValue().size;
+      iter.remove();
+      if (entry.getKey().equals(paths.get(entry.getKey().path))) {
+        paths.remove(entry.getKey().path);
+      }
+      evictions++;
+    }
+  }
+
+  /**
+   * Update maximum number of bytes, entries are evicted if cache does not fit into new value.
+   * @param maxBytes maximum number of bytes, 0 disables caching
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    if (maxBytes < 0) throw new IllegalArgumentException("Negative max bytes: " + maxBytes);
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * Remove all entries, counters are not reset.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    paths.clear();
+    sizeInBytes = 0;
+  }
+
+  /**
+   * Maximum number of bytes kept in cache.
+   * @return number of bytes
+   */
+  public synchronized long maxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Current estimated number of bytes kept in cache.
+   * @return number of bytes
+   */
+  public synchronized long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * Number of entries in cache.
+   * @return number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Number of lookups that returned entry.
+   * @return number of hits
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * Number of lookups that did not return entry.
+   * @return number of misses
+   */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * Number of entries evicted because cache exceeded max bytes.
+   * @return number of evictions
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "FileInfoCache[max_bytes=" + maxBytes + ", size_in_bytes=" + sizeInBytes +
+      ", entries=" + entries.size() + ", hits=" + hits + ", misses=" + misses +
+      ", evictions=" + evictions + "]";
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.spark.sql.catalyst.InternalRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sadikovi.riff.tree.Tree;
+
+/**
+ * File pipeline returns rows of several files in file order, and opens next N files in background
+ * while current file is iterated. For each file in flight header and footer are read, stripes are
+ * evaluated with filter, and the first stripe that can match filter is buffered, so latency of
+ * opening many small files is hidden behind the scan of the current file.
+ *
+ * Each file is read with its own file reader and row buffer, row buffer of the current file is
+ * only used by the caller thread. Rows are only valid until the next call, same as for row
+ * buffers of a single file.
+ */
+public class FilePipeline implements RowBuffer {
+  private static final Logger LOG = LoggerFactory.getLogger(FilePipeline.class);
+
+  // shared pool of daemon threads to open files for all pipelines within JVM
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "riff-file-prefetch-" + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  // file system to use
+  private final FileSystem fs;
+  // configuration with Riff options, used for each file reader
+  private final Configuration conf;
+  // files to read in order
+  private final FileStatus[] files;
+  // optional filter, null if all rows are returned
+  private final Tree filter;
+  // maximum number of files to open ahead, 0 if files are opened when requested
+  private final int numFiles;
+  // pending opened files in file order
+  private final ArrayDeque<Future<RowBuffer>> pending;
+  // index of the next file to open or schedule
+  private int nextFileIndex;
+  // row buffer of the current file
+  private RowBuffer current;
+
+  /**
+   * Create pipeline and schedule the first files.
+   * @param fs file system
+   * @param conf configuration with Riff options
+   * @param files files to read in order
+   * @param filter optional filter, null if all rows are returned
+   * @param numFiles number of files to open ahead, 0 disables background opening
+   */
+  FilePipeline(
+      FileSystem fs,
+      Configuration conf,
+      FileStatus[] files,
+      Tree filter,
+      int numFiles) {
+    if (files == null) throw new IllegalArgumentException("Null files");
+    if (numFiles < 0) {
+      throw new IllegalArgumentException("Expected non-negative number of files, found " +
+        numFiles);
+    }
+    this.fs = fs;
+    this.conf = conf;
+    this.files = files;
+    this.filter = filter;
+    this.numFiles = numFiles;
+    this.pending = new ArrayDeque<Future<RowBuffer>>();
+    this.nextFileIndex = 0;
+    this.current = null;
+    schedule();
+  }
+
+  /** Schedule files until read-ahead limit is reached or no files are left */
+  private void schedule() {
+    while (pending.size() < numFiles && nextFileIndex < files.length) {
+      final FileStatus file = files[nextFileIndex++];
+      LOG.debug("Schedule open of file {}", file.getPath());
+      pending.add(EXECUTOR.submit(new Callable<RowBuffer>() {
+        @Override
+        public RowBuffer call() throws IOException {
+          return openFile(file);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Open file and buffer the first stripe that can match filter.
+   * Row buffer closes itself if it fails to buffer stripe.
+   */
+  private RowBuffer openFile(FileStatus file) throws IOException {
+    RowBuffer rowbuf = new FileReader(fs, conf, file).prepareRead(filter);
+    rowbuf.hasNext();
+    return rowbuf;
+  }
+
+  /** Return row buffer of the next file, blocks until file is opened */
+  private RowBuffer nextFile() throws IOException {
+    if (numFiles == 0) {
+      return openFile(files[nextFileIndex++]);
+    }
+    Future<RowBuffer> future = pending.poll();
+    // keep opening next files while this file is scanned
+    schedule();
+    try {
+      return future.get();
+    } catch (InterruptedException err) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for file", err);
+    } catch (ExecutionException err) {
+      if (err.getCause() instanceof IOException) {
+        throw (IOException) err.getCause();
+      }
+      if (err.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) err.getCause();
+      }
+      throw new IOException("Failed to open file", err.getCause());
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (true) {
+        if (current != null) {
+          if (current.hasNext()) return true;
+          current.close();
+          current = null;
+        }
+        if (pending.isEmpty() && nextFileIndex >= files.length) return false;
+        current = nextFile();
+      }
+    } catch (IOException ioe) {
+      LOG.error("Failed to open file in {}", this);
+      close();
+      throw new RuntimeException(ioe.getMessage(), ioe);
+    }
+  }
+
+  @Override
+  public InternalRow next() {
+    if (!hasNext()) throw new NoSuchElementException("Empty iterator");
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Close current file and files that have been opened in background. Files that are being opened
+   * are waited for and closed, so no stream is left open.
+   */
+  @Override
+  public void close() {
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+    for (Future<RowBuffer> future : pending) {
+      if (!future.cancel(false)) {
+        try {
+          future.get().close();
+        } catch (InterruptedException err) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException err) {
+          LOG.warn("Exception occuried during release of resources: {}", err.getMessage());
+        }
+      }
+    }
+    pending.clear();
+    nextFileIndex = files.length;
+  }
+
+  @Override
+  public String toString() {
+    return "FilePipeline[files=" + files.length + ", prefetch_files=" + numFiles + "]";
+  }
+}
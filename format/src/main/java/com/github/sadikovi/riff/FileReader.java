@@ -22,6 +22,7 @@
 
 package com.github.sadikovi.riff;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -31,12 +32,15 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sadikovi.riff.io.CompressionCodec;
+import com.github.sadikovi.riff.io.MappedInputStream;
 import com.github.sadikovi.riff.tree.Tree;
 
 /**
@@ -57,7 +61,8 @@ import com.github.sadikovi.riff.tree.Tree;
  * rowbuf.close();
  * }}}
  *
- * Reader should be created only one per file, no reuse is allowed.
+ * Reader should be created only one per file, no reuse is allowed. Use `share()` to read the same
+ * file from several threads.
  */
 public class FileReader {
   private static final Logger LOG = LoggerFactory.getLogger(FileReader.class);
@@ -70,10 +75,18 @@ public class FileReader {
   private final int bufferSize;
   // HDFS buffer size for opening stream
   private final int hdfsBufferSize;
+  // number of bytes to read speculatively at each end of the file, 0 if disabled
+  private final int speculativeReadSize;
+  // options for reading stripes, e.g. read-ahead and coalescing
+  private final ReadOptions readOptions;
+  // cache of parsed headers and footers shared by readers
+  private final FileInfoCache cache;
   // file header
   private FileHeader fileHeader;
   // file footer
   private FileFooter fileFooter;
+  // offset of the first stripe in file, stripe offsets are relative to this offset
+  private long dataOffset;
   // whether or not read has been prepared, this flag is also set when reading type description
   private boolean readPrepared;
 
@@ -81,15 +94,40 @@ public class FileReader {
     this(fs, conf, fs.getFileStatus(path));
   }
 
+  /**
+   * Create reader for file whose status is resolved from shared cache of file info if file has
+   * been read before, file status is requested from file system otherwise.
+   */
+  static FileReader cached(FileSystem fs, Configuration conf, Path path) throws IOException {
+    // cache keys of files with requested status are fully qualified paths
+    FileStatus status = FileInfoCache.shared().status(fs.makeQualified(path));
+    if (status == null) {
+      status = fs.getFileStatus(path);
+    }
+    return new FileReader(fs, conf, status);
+  }
+
+  /**
+   * Create reader for file of known length, file status is not requested from file system.
+   * Modification time of the file is unknown and set to 0.
+   */
+  FileReader(FileSystem fs, Configuration conf, Path path, long length) {
+    this(fs, conf, new FileStatus(length, false, 0, 0L, 0L, path));
+  }
+
   FileReader(FileSystem fs, Configuration conf, FileStatus status) {
     this.fs = fs;
     this.fileStatus = status;
     this.bufferSize = Riff.Options.power2BufferSize(conf);
     this.hdfsBufferSize = Riff.Options.hdfsBufferSize(conf);
+    this.speculativeReadSize = Riff.Options.speculativeReadSize(conf);
+    this.readOptions = new ReadOptions(conf);
+    this.cache = FileInfoCache.shared();
     // file header is only available after preparing read
     this.fileHeader = null;
     // file footer is only available after preparing read
     this.fileFooter = null;
+    this.dataOffset = -1L;
     this.readPrepared = false;
   }
 
@@ -111,15 +149,103 @@ public class FileReader {
    * @throws IOException
    */
   public RowBuffer prepareRead(Tree filter) throws FileNotFoundException, IOException {
+    return prepareRead(filter, 0L, Long.MAX_VALUE);
+  }
+
+  /**
+   * Prepare row buffer that returns at most `limit` rows that match filter. Once limit is
+   * reached, no more stripes are read; if filter is not set, only leading stripes that contain
+   * `limit` rows are read, see `Buffers.prepareRowBuffer()` for details.
+   * Method 'close()' should be called on row buffer after reading all data to close stream.
+   * @param filter optional filter, if null then no filter applied
+   * @param limit maximum number of rows to return
+   * @return row buffer
+   * @throws FileNotFoundException if either data or header file is not found
+   * @throws IOException
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long limit) throws FileNotFoundException, IOException {
+    return prepareRead(filter, 0L, Long.MAX_VALUE, null, limit);
+  }
+
+  /**
+   * Prepare row buffer for split of the file, only stripes that start within byte range
+   * [start, start + length) are read. Splits that cover the file without overlap read each stripe
+   * exactly once, split can contain no stripes, in which case row buffer is empty.
+   * Method 'close()' should be called on row buffer after reading all data to close stream.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @return row buffer
+   * @throws FileNotFoundException if either data or header file is not found
+   * @throws IOException
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long start,
+      long length) throws FileNotFoundException, IOException {
+    return prepareRead(filter, start, length, null);
+  }
+
+  /**
+   * Prepare row buffer for split of the file when only some fields are required, see
+   * `prepareRead(filter, start, length)`. If all required fields and all fields referenced by
+   * filter are index fields, index-only scan is selected: only index region of each row is read,
+   * data region is skipped, and data fields of returned rows are null. If data fields are split
+   * into column groups, regions of groups without required fields are skipped.
+   * Method 'close()' should be called on row buffer after reading all data to close stream.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @param fields names of required fields, null if all fields are required
+   * @return row buffer
+   * @throws FileNotFoundException if either data or header file is not found
+   * @throws IOException
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long start,
+      long length,
+      String[] fields) throws FileNotFoundException, IOException {
+    return prepareRead(filter, start, length, fields, Long.MAX_VALUE);
+  }
+
+  /**
+   * Prepare row buffer for split of the file that returns at most `limit` rows, see
+   * `prepareRead(filter, start, length, fields)` and `prepareRead(filter, limit)`.
+   * Method 'close()' should be called on row buffer after reading all data to close stream.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @param fields names of required fields, null if all fields are required
+   * @param limit maximum number of rows to return, `Long.MAX_VALUE` if there is no limit
+   * @return row buffer
+   * @throws FileNotFoundException if either data or header file is not found
+   * @throws IOException
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long start,
+      long length,
+      String[] fields,
+      long limit) throws FileNotFoundException, IOException {
+    if (start < 0 || length < 0) {
+      throw new IllegalArgumentException("Invalid split [" + start + ", " + length + "]");
+    }
+    if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
     if (readPrepared) throw new IOException("Reader reuse");
     // we start with reading file header and extracting all information that is required to
     // validate file and/or resolve statistics
     FSDataInputStream in = null;
     try {
-      in = fs.open(fileStatus.getPath(), hdfsBufferSize);
-      // read input stream and return file state
-      fileHeader = FileHeader.readFrom(in);
-      fileFooter = FileFooter.readFrom(in, fileStatus.getLen());
+      // stream is not opened for cached file, until there are stripes to read, so files pruned by
+      // statistics do not require any requests
+      if (!readCachedFileInfo(true)) {
+        in = openStream();
+        // read input stream and return file state
+        readFileInfo(in, true);
+      }
       LOG.debug("Found type description {}", fileHeader.getTypeDescription());
       CompressionCodec codec = Riff.decodeCompressionCodec(fileHeader.state(0));
       if (codec == null) {
@@ -132,27 +258,98 @@ public class FileReader {
       if (filter != null) {
         state = new PredicateState(filter, fileHeader.getTypeDescription());
       }
-      // if predicate state is available - evaluate tree and decide on whether or not to read the
-      // file any further.
-      boolean skipFile = false;
-      if (state != null) {
-        if (state.hasIndexedTreeOnly()) {
-          skipFile = !state.indexTree().evaluateState(fileFooter.getFileStatistics());
-        } else {
-          skipFile = !state.tree().evaluateState(fileFooter.getFileStatistics());
-        }
-      }
-      if (skipFile) {
+      StripeInformation[] stripes = selectStripes(fileFooter, dataOffset, state, start, length);
+      if (stripes == null) {
         LOG.debug("Skip file {}", fileStatus.getPath());
         return Buffers.emptyRowBuffer(in);
       }
-      // reevaluate stripes based on predicate tree
-      StripeInformation[] stripes = fileFooter.getStripeInformation();
-      stripes = evaluateStripes(stripes, state);
       LOG.debug("Prepare iterator to read data from {} stripes", stripes.length);
       readPrepared = true;
+      if (in == null) {
+        if (stripes.length == 0 || limit == 0) return Buffers.emptyRowBuffer(in);
+        in = openStream();
+        in.seek(dataOffset);
+      }
+      long requiredFields = requiredFields(fileHeader.getTypeDescription(), state, fields);
+      LOG.debug("Required fields: {}", Long.toBinaryString(requiredFields));
       return Buffers.prepareRowBuffer(in, stripes, fileHeader.getTypeDescription(), codec,
-        bufferSize, state);
+        bufferSize, state, readOptions, requiredFields, limit);
+    } catch (IOException ioe) {
+      if (in != null) {
+        in.close();
+      }
+      throw ioe;
+    }
+  }
+
+  /**
+   * Prepare row buffer that starts with provided row of the file and returns all subsequent rows.
+   * Rows are numbered from 0 in file order. Stripe that contains row is found with row counts
+   * stored in footer, and row is located within stripe with sparse row index, so only rows
+   * between the closest indexed row and provided row are parsed.
+   * Method 'close()' should be called on row buffer after reading all data to close stream.
+   * @param row row number, if row is beyond the last row, row buffer is empty
+   * @return row buffer
+   * @throws IOException if file does not have row counts or IO error occurs
+   */
+  public RowBuffer seekToRow(long row) throws IOException {
+    return prepareRowRange(row, Long.MAX_VALUE);
+  }
+
+  /**
+   * Prepare row buffer that returns at most `count` rows starting with row `from`, see
+   * `seekToRow()` for details.
+   * @param from first row number
+   * @param count maximum number of rows to return
+   * @return row buffer
+   * @throws IOException if file does not have row counts or IO error occurs
+   */
+  public RowBuffer readRows(long from, int count) throws IOException {
+    return prepareRowRange(from, count);
+  }
+
+  /** Prepare row buffer for range of rows */
+  private RowBuffer prepareRowRange(long from, long count) throws IOException {
+    if (from < 0 || count < 0) {
+      throw new IllegalArgumentException("Invalid row range [" + from + ", " + count + "]");
+    }
+    if (readPrepared) throw new IOException("Reader reuse");
+    FSDataInputStream in = null;
+    try {
+      in = openStream();
+      readFileInfo(in, true);
+      long[] firstRows = fileFooter.stripeFirstRows();
+      if (firstRows == null) {
+        throw new IOException("File " + fileStatus.getPath() + " does not have row counts");
+      }
+      readPrepared = true;
+      if (count == 0 || from >= fileFooter.getNumRecords()) {
+        return Buffers.emptyRowBuffer(in);
+      }
+      StripeInformation[] stripes = fileFooter.getStripeInformation();
+      // find the last stripe that starts at or before the row, stripes without rows share the
+      // first row with the next stripe and are skipped this way
+      int first = Arrays.binarySearch(firstRows, from);
+      if (first < 0) {
+        first = -first - 2;
+      }
+      while (first + 1 < firstRows.length && firstRows[first + 1] == from) {
+        first++;
+      }
+      // include stripes until range is covered
+      int last = first;
+      long rows = firstRows[first] + stripes[first].numRows() - from;
+      while (rows < count && last + 1 < stripes.length) {
+        rows += stripes[++last].numRows();
+      }
+      int stripeRow = (int) (from - firstRows[first]);
+      StripeInformation stripe = stripes[first];
+      LOG.debug("Read rows from {} of stripe {}, indexed row {}", stripeRow, stripe,
+        stripe.indexedRow(stripeRow));
+      CompressionCodec codec = Riff.decodeCompressionCodec(fileHeader.state(0));
+      return Buffers.prepareRowRangeBuffer(in, Arrays.copyOfRange(stripes, first, last + 1),
+        fileHeader.getTypeDescription(), codec, bufferSize, readOptions,
+        stripe.indexedOffset(stripeRow), stripeRow - stripe.indexedRow(stripeRow), count);
     } catch (IOException ioe) {
       if (in != null) {
         in.close();
@@ -161,6 +358,29 @@ public class FileReader {
     }
   }
 
+  /**
+   * Open file and return reader that can be shared between threads. Header and footer are read
+   * once, and shared reader keeps file open to serve concurrent row buffers with positional reads,
+   * see `SharedFileReader` for details. This reader cannot be used after this call.
+   * Method 'close()' should be called on shared reader to close file.
+   * @return shared reader
+   * @throws FileNotFoundException if file does not exist
+   * @throws IOException if IO error occurs
+   */
+  public SharedFileReader share() throws FileNotFoundException, IOException {
+    if (readPrepared) throw new IOException("Reader reuse");
+    FSDataInputStream in = openStream();
+    try {
+      readFileInfo(in, true);
+    } catch (IOException ioe) {
+      in.close();
+      throw ioe;
+    }
+    readPrepared = true;
+    return new SharedFileReader(in, fileStatus, fileHeader, fileFooter, dataOffset, bufferSize,
+      readOptions);
+  }
+
   /**
    * File header information for this reader.
    * Only available after calling prepareRead() or `readFileHeader` methods, because it reads file
@@ -202,11 +422,8 @@ public class FileReader {
     if (readPrepared) throw new IOException("Reader reuse");
     FSDataInputStream in = null;
     try {
-      in = fs.open(fileStatus.getPath(), hdfsBufferSize);
-      fileHeader = FileHeader.readFrom(in);
-      if (readFooter) {
-        fileFooter = FileFooter.readFrom(in, fileStatus.getLen());
-      }
+      in = openStream();
+      readFileInfo(in, readFooter);
       readPrepared = true;
     } finally {
       if (in != null) {
@@ -215,6 +432,85 @@ public class FileReader {
     }
   }
 
+  /**
+   * Read file header and optionally footer from input stream.
+   * Head and tail of the file are read speculatively, so header and footer are parsed with single
+   * request each, unless they are larger than speculative read size. Small files are read
+   * entirely with single request. Stream is positioned at the end of the header.
+   *
+   * Header and footer are looked up in shared cache first, and added to cache after read.
+   * @param in input stream
+   * @param readFooter whether or not to read footer
+   * @throws IOException
+   */
+  private void readFileInfo(FSDataInputStream in, boolean readFooter) throws IOException {
+    if (readCachedFileInfo(readFooter)) {
+      in.seek(dataOffset);
+      return;
+    }
+    long length = fileStatus.getLen();
+    FileRegion head = null;
+    FileRegion tail = null;
+    // mapped stream serves header and footer bytes without copy
+    if (speculativeReadSize > 0 && !(in.getWrappedStream() instanceof MappedInputStream)) {
+      int size = (int) Math.min(length, speculativeReadSize);
+      head = FileRegion.read(in, 0L, size);
+      if (readFooter) {
+        tail = (size == length) ? head : FileRegion.read(in, length - size, size);
+      }
+      LOG.debug("Read head {} and tail {}", head, tail);
+    }
+    fileHeader = FileHeader.readFrom(in, head);
+    // header size is the offset of the first stripe
+    dataOffset = in.getPos();
+    if (readFooter) {
+      fileFooter = FileFooter.readFrom(in, length, tail);
+    }
+    long size = dataOffset + (readFooter ? fileFooter.memorySize() : 0);
+    cache.put(fileStatus, fileHeader, readFooter ? fileFooter : null, dataOffset, size);
+  }
+
+  /**
+   * Set header and optionally footer from shared cache.
+   * @param readFooter whether or not footer is required
+   * @return true if file info is found in cache, false otherwise
+   */
+  private boolean readCachedFileInfo(boolean readFooter) {
+    FileInfoCache.Entry entry = cache.get(fileStatus, readFooter);
+    if (entry == null) return false;
+    LOG.debug("Found cached header and footer for {}", fileStatus.getPath());
+    fileHeader = entry.header;
+    if (readFooter) {
+      fileFooter = entry.footer;
+    }
+    dataOffset = entry.dataOffset;
+    return true;
+  }
+
+  /**
+   * Open input stream for the file.
+   * If memory-mapping is enabled and file belongs to local file system, file is mapped and stream
+   * serves bytes from mapping, otherwise file system stream is returned.
+   * @return input stream
+   * @throws IOException
+   */
+  private FSDataInputStream openStream() throws IOException {
+    File file = null;
+    if (readOptions.mmapEnabled()) {
+      // note that mapped reads bypass checksum verification of local file system
+      if (fs instanceof LocalFileSystem) {
+        file = ((LocalFileSystem) fs).pathToFile(fileStatus.getPath());
+      } else if (fs instanceof RawLocalFileSystem) {
+        file = ((RawLocalFileSystem) fs).pathToFile(fileStatus.getPath());
+      }
+    }
+    if (file != null) {
+      LOG.debug("Map local file {}", file);
+      return new FSDataInputStream(MappedInputStream.open(file));
+    }
+    return fs.open(fileStatus.getPath(), hdfsBufferSize);
+  }
+
   /**
    * Get file property.
    * Header must be initialized before calling this method.
@@ -249,6 +545,102 @@ public class FileReader {
     return bufferSize;
   }
 
+  /**
+   * Return number of stripes to read ahead in background, 0 means read-ahead is disabled.
+   * @return number of stripes
+   */
+  public int prefetchStripes() {
+    return readOptions.prefetchStripes();
+  }
+
+  /**
+   * Return read options for stripes, resolved from configuration.
+   * @return read options
+   */
+  public ReadOptions readOptions() {
+    return readOptions;
+  }
+
+  /**
+   * Bit set of fields that need to be read: provided fields and fields referenced by predicate
+   * state, see `IndexedRowReader`.
+   * @param td type description
+   * @param state predicate state, can be null
+   * @param fields field names, null means all fields
+   * @return bit set of field positions
+   */
+  static long requiredFields(TypeDescription td, PredicateState state, String[] fields) {
+    if (fields == null) return IndexedRowReader.ALL_FIELDS;
+    long required = 0L;
+    for (String field : fields) {
+      required |= 1L << td.position(field);
+    }
+    if (state != null) {
+      for (int ordinal : state.referencedFields()) {
+        required |= 1L << ordinal;
+      }
+    }
+    return required;
+  }
+
+  /**
+   * Select stripes of the split that can match predicate state. If predicate state is available,
+   * file statistics are evaluated first to decide on whether or not to read the file any further,
+   * then stripes of the split are reevaluated based on predicate tree.
+   * @param footer file footer
+   * @param dataOffset offset of the first stripe in file
+   * @param state predicate state, can be null
+   * @param start start of the byte range
+   * @param length length of the byte range
+   * @return sorted stripes to read, or null if file does not match predicate state
+   */
+  static StripeInformation[] selectStripes(
+      FileFooter footer,
+      long dataOffset,
+      PredicateState state,
+      long start,
+      long length) {
+    if (state != null) {
+      boolean skipFile;
+      if (state.hasIndexedTreeOnly()) {
+        skipFile = !state.indexTree().evaluateState(footer.getFileStatistics());
+      } else {
+        skipFile = !state.tree().evaluateState(footer.getFileStatistics());
+      }
+      if (skipFile) return null;
+    }
+    // array is copied, since footer can be shared with other readers and evaluation modifies array
+    StripeInformation[] stripes =
+      splitStripes(footer.getStripeInformation(), dataOffset, start, length);
+    return evaluateStripes(stripes, state);
+  }
+
+  /**
+   * Select stripes that start within byte range [start, start + length) of the file.
+   * Returned array is always a copy, so it can be modified by caller.
+   * @param stripes stripes of the file, offsets are relative to data offset
+   * @param dataOffset offset of the first stripe in file
+   * @param start start of the byte range
+   * @param length length of the byte range
+   * @return stripes of the split in original order
+   */
+  protected static StripeInformation[] splitStripes(
+      StripeInformation[] stripes,
+      long dataOffset,
+      long start,
+      long length) {
+    int count = 0;
+    StripeInformation[] selected = new StripeInformation[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      long offset = dataOffset + stripes[i].offset();
+      // avoid overflow of start + length for unbounded splits
+      if (offset >= start && offset - start < length) {
+        selected[count++] = stripes[i];
+      }
+    }
+    return (count == selected.length) ? selected : Arrays.copyOf(selected, count);
+  }
+
   /**
    * Evaluate and reduce stripes based on state. Returned stripes array will have at most all
    * elements of the original stripes. All stripes are sorted in ascending order based on offset.
@@ -261,23 +653,25 @@ public class FileReader {
       PredicateState state) {
     if (state != null) {
       // if stripe has statistics it is evaluated against predicate state, otherwise it is always
-      // included in final result
+      // included in final result; only statistics and filters of referenced fields are decoded,
+      // and filters are decoded only for stripes that pass statistics
+      int[] fields = state.referencedFields();
       int stripesLeft = stripes.length;
       for (int i = 0; i < stripes.length; i++) {
         boolean keep = true;
         if (stripes[i].hasStatistics()) {
           if (state.hasIndexedTreeOnly()) {
-            keep = state.indexTree().evaluateState(stripes[i].getStatistics());
+            keep = state.indexTree().evaluateState(stripes[i].getStatistics(fields));
           } else {
-            keep = state.tree().evaluateState(stripes[i].getStatistics());
+            keep = state.tree().evaluateState(stripes[i].getStatistics(fields));
           }
         }
         // if predicate passes statistics, evaluate column filters
         if (keep && stripes[i].hasColumnFilters()) {
           if (state.hasIndexedTreeOnly()) {
-            keep = state.indexTree().evaluateState(stripes[i].getColumnFilters());
+            keep = state.indexTree().evaluateState(stripes[i].getColumnFilters(fields));
           } else {
-            keep = state.tree().evaluateState(stripes[i].getColumnFilters());
+            keep = state.tree().evaluateState(stripes[i].getColumnFilters(fields));
           }
         }
 
@@ -307,6 +701,8 @@ public class FileReader {
     return "FileReader[" +
       "status=" + fileStatus +
       ", buffer_size=" + bufferSize +
-      ", hdfs_buffer_size=" + hdfsBufferSize + "]";
+      ", hdfs_buffer_size=" + hdfsBufferSize +
+      ", speculative_read_size=" + speculativeReadSize +
+      ", read_options=" + readOptions + "]";
   }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import com.github.sadikovi.riff.io.MappedInputStream;
+
+/**
+ * [[FileRegion]] keeps bytes of a file region that have been read with single request, e.g.
+ * speculative read of the head or the tail of the file. Header and footer are parsed from region
+ * without additional requests, if region contains their bytes.
+ */
+class FileRegion {
+  // stream offset of the first byte in region
+  private final long offset;
+  // region bytes
+  private final byte[] data;
+
+  FileRegion(long offset, byte[] data) {
+    if (offset < 0) throw new IllegalArgumentException("Negative offset: " + offset);
+    if (data == null) throw new IllegalArgumentException("Null data for region");
+    this.offset = offset;
+    this.data = data;
+  }
+
+  /**
+   * Read region of the stream with single positional read.
+   * @param in input stream
+   * @param offset stream offset of the region
+   * @param length number of bytes to read
+   * @return file region
+   * @throws IOException
+   */
+  static FileRegion read(FSDataInputStream in, long offset, int length) throws IOException {
+    byte[] data = new byte[length];
+    in.readFully(offset, data, 0, length);
+    return new FileRegion(offset, data);
+  }
+
+  /**
+   * Whether or not region contains bytes [position, position + length) of the stream.
+   * @param position stream position
+   * @param length number of bytes
+   * @return true if bytes are in region, false otherwise
+   */
+  boolean contains(long position, int length) {
+    return position >= offset && length >= 0 && position + length <= offset + data.length;
+  }
+
+  /**
+   * Return bytes [position, position + length) of the stream as byte buffer. Bytes are served
+   * from region if it contains them, otherwise they are read from stream, see
+   * `MappedInputStream.readBuffer()`.
+   * @param in input stream
+   * @param region file region, can be null
+   * @param position stream position
+   * @param length number of bytes
+   * @return byte buffer with position 0 and limit set to length
+   * @throws IOException
+   */
+  static ByteBuffer readBuffer(
+      FSDataInputStream in,
+      FileRegion region,
+      long position,
+      int length) throws IOException {
+    if (region != null && region.contains(position, length)) {
+      return ByteBuffer.wrap(region.data, (int) (position - region.offset), length).slice();
+    }
+    return MappedInputStream.readBuffer(in, position, length);
+  }
+
+  /**
+   * Stream offset of the region.
+   * @return offset in bytes
+   */
+  long offset() {
+    return offset;
+  }
+
+  /**
+   * Number of bytes in region.
+   * @return length in bytes
+   */
+  int length() {
+    return data.length;
+  }
+
+  @Override
+  public String toString() {
+    return "FileRegion[offset=" + offset + ", length=" + data.length + "]";
+  }
+}
@@ -24,6 +24,9 @@ package com.github.sadikovi.riff;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -35,11 +38,22 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
 
 import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.types.BooleanType;
+import org.apache.spark.sql.types.ByteType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DateType;
+import org.apache.spark.sql.types.IntegerType;
+import org.apache.spark.sql.types.LongType;
+import org.apache.spark.sql.types.ShortType;
+import org.apache.spark.sql.types.StringType;
+import org.apache.spark.sql.types.TimestampType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sadikovi.riff.column.ColumnFilter;
+import com.github.sadikovi.riff.io.BufferPool;
+import com.github.sadikovi.riff.io.ChunkIndex;
 import com.github.sadikovi.riff.io.CompressionCodec;
 import com.github.sadikovi.riff.io.OutputBuffer;
 import com.github.sadikovi.riff.io.OutStream;
@@ -87,6 +101,12 @@ public class FileWriter {
   private final boolean columnFilterEnabled;
   // compression codec, can be null
   private final CompressionCodec codec;
+  // buffer pool for stripe buffers and outstream buffers
+  private final BufferPool pool;
+  // whether or not index and data regions are written into separate streams of stripe
+  private final boolean splitStreams;
+  // whether or not stripes are written with columnar layout, see `StripeInformation`
+  private final boolean columnar;
 
   // write has been prepared
   private boolean writePrepared;
@@ -108,6 +128,16 @@ public class FileWriter {
   private StripeOutputBuffer stripe;
   // current stripe out stream
   private OutStream stripeStream;
+  // data stream of current stripe, null if stripe is written as single stream
+  private StripeOutputBuffer dataStripe;
+  private OutStream dataStream;
+  // buffered values and offsets of values of each data column of current stripe, null if stripe
+  // is not columnar; buffers are reused for all stripes
+  private OutputBuffer[] columnValues;
+  private OutputBuffer[] columnOffsets;
+  // column streams of current stripe, set when stripe is flushed
+  private StripeOutputBuffer[] columnStripes;
+  private OutStream[] columnStreams;
   // number of records in current stripe
   private int stripeCurrentRecords;
   // total number of records in file
@@ -116,6 +146,16 @@ public class FileWriter {
   private Statistics[] stripeStats;
   // column filters per stripe
   private ColumnFilter[] stripeFilters;
+  // number of rows between row index entries, 0 if row index is disabled
+  private final int rowIndexInterval;
+  // row index per stripe, null if row index is disabled
+  private long[] stripeRowIndex;
+  // first index field that rows of stripe are sorted by, null if stripes are not sorted
+  private final TypeSpec sortField;
+  // rows of current stripe buffered for sorting, null if stripes are not sorted
+  private ArrayList<InternalRow> sortBuffer;
+  // statistics of sort field per row index entry, null if stripes are not sorted
+  private Statistics[] stripeKeyStats;
 
   /**
    * Create file writer for path.
@@ -146,10 +186,21 @@ public class FileWriter {
     // this assumes that subsequent rows are provided for this schema
     this.td = td;
     this.numRowsInStripe = Riff.Options.numRowsInStripe(conf);
+    this.rowIndexInterval = Riff.Options.rowIndexInterval(conf);
+    // stripes are sorted by index fields, key statistics are kept for the first index field;
+    // there is nothing to sort by without index fields
+    this.sortField = (Riff.Options.stripeSorted(conf) && td.indexFields().length > 0) ?
+      td.indexFields()[0] : null;
     this.bufferSize = Riff.Options.power2BufferSize(conf);
     this.hdfsBufferSize = Riff.Options.hdfsBufferSize(conf);
     this.columnFilterEnabled = Riff.Options.columnFilterEnabled(conf);
     this.codec = codec;
+    this.pool = BufferPool.shared();
+    // there is nothing to separate, if one of the regions is always empty; columnar layout
+    // separates data region of each column, and takes precedence over split streams
+    this.columnar = Riff.Options.stripeColumnar(conf) && td.dataFields().length > 0;
+    this.splitStreams = !this.columnar && Riff.Options.stripeSplitStreams(conf) &&
+      td.indexFields().length > 0 && td.dataFields().length > 0;
     // current stripe stats and filters
     this.stripeStats = null;
     this.stripeFilters = null;
@@ -224,10 +275,15 @@ public class FileWriter {
     recordWriter = new IndexedRowWriter(td);
     LOG.debug("Initialized record writer {}", recordWriter);
     // initialize stripe related parameters
-    stripe = new StripeOutputBuffer(stripeId++);
-    stripeStream = new OutStream(bufferSize, codec, stripe);
+    stripe = new StripeOutputBuffer(stripeId++, pool, bufferSize);
+    stripeStream = new OutStream(bufferSize, codec, stripe, pool);
+    createDataStream(bufferSize);
+    createColumnBuffers();
     stripeStats = createStatistics(td);
     stripeFilters = createColumnFilters(td, columnFilterEnabled, numRowsInStripe);
+    stripeRowIndex = createRowIndex();
+    stripeKeyStats = createKeyStatistics();
+    sortBuffer = (sortField == null) ? null : new ArrayList<InternalRow>();
     stripeCurrentRecords = numRowsInStripe;
     LOG.debug("Initialize stripe outstream {}", stripeStream);
     // create stream for riff file and write header information
@@ -250,31 +306,80 @@ public class FileWriter {
   /**
    * Write internal row using this writer.
    * Row should confirm to the type description.
+   * If stripes are sorted, rows are buffered and written when stripe is complete.
    * @param row internal row
    * @throws IOException
    */
   public void write(InternalRow row) throws IOException {
+    if (sortBuffer != null) {
+      // rows can be reused by caller, buffer has to keep copies
+      sortBuffer.add(row.copy());
+      if (sortBuffer.size() == numRowsInStripe) {
+        writeSortedRows();
+      }
+    } else {
+      writeRow(row);
+    }
+  }
+
+  /**
+   * Sort buffered rows by index fields and write them into current stripe.
+   * @throws IOException
+   */
+  private void writeSortedRows() throws IOException {
+    Collections.sort(sortBuffer, new KeyComparator(td.indexFields()));
+    for (InternalRow row : sortBuffer) {
+      writeRow(row);
+    }
+    sortBuffer.clear();
+  }
+
+  /**
+   * Write row into current stripe, stripe is flushed when it reaches maximum number of rows.
+   * @param row internal row
+   * @throws IOException
+   */
+  private void writeRow(InternalRow row) throws IOException {
     try {
       if (stripeCurrentRecords == 0) {
         // flush data into stripe buffer
-        stripeStream.flush();
+        flushStreams();
         // write stripe information into output, such as stripe id and length, and capture position
-        StripeInformation stripeInfo =
-          new StripeInformation(stripe, currentOffset, stripeStats, stripeFilters);
+        StripeInformation stripeInfo = stripeInformation(numRowsInStripe);
         currentOffset += stripeInfo.length();
         // written numRowsInStripe records
         totalRecords += numRowsInStripe;
-        stripe.flush(outputStream);
+        writeStripe();
         LOG.debug("Finished writing stripe {}, records={}", stripeInfo, numRowsInStripe);
         stripes.add(stripeInfo);
-        stripe = new StripeOutputBuffer(stripeId++);
-        stripeStream = new OutStream(bufferSize, codec, stripe);
+        // release stripe buffers into pool, next stripe is likely to have similar size
+        closeStreams();
+        stripe = new StripeOutputBuffer(stripeId++, pool, stripeInfo.indexStreamLength());
+        stripeStream = new OutStream(bufferSize, codec, stripe, pool);
+        createDataStream(stripeInfo.length() - stripeInfo.indexStreamLength());
         stripeCurrentRecords = numRowsInStripe;
         stripeStats = createStatistics(td);
+        stripeRowIndex = createRowIndex();
+        stripeKeyStats = createKeyStatistics();
+      }
+      // record offset of every `rowIndexInterval` row in uncompressed stripe stream
+      int stripeRow = numRowsInStripe - stripeCurrentRecords;
+      if (stripeRowIndex != null && stripeRow % rowIndexInterval == 0) {
+        stripeRowIndex[stripeRow / rowIndexInterval] = stripeStream.bytesWritten();
+      }
+      if (stripeKeyStats != null) {
+        stripeKeyStats[stripeRow / rowIndexInterval].update(row, sortField.origSQLPos());
       }
       updateStatistics(stripeStats, td, row);
       updateColumnFilters(stripeFilters, td, row);
-      recordWriter.writeRow(row, stripeStream);
+      if (columnValues != null) {
+        for (int i = 0; i < columnValues.length; i++) {
+          columnOffsets[i].writeInt(columnValues[i].bytesWritten());
+        }
+        recordWriter.writeRow(row, stripeStream, stripeRow, columnValues);
+      } else {
+        recordWriter.writeRow(row, stripeStream, dataStream);
+      }
       stripeCurrentRecords--;
     } catch (IOException ioe) {
       if (outputStream != null) {
@@ -293,20 +398,39 @@ public class FileWriter {
     if (!writePrepared) throw new IOException("Writer is not prepared");
     if (writeFinished) return;
     try {
+      // write remaining buffered rows of the last stripe
+      if (sortBuffer != null) {
+        writeSortedRows();
+        sortBuffer = null;
+      }
       // flush the last stripe into output stream
-      stripeStream.flush();
-      StripeInformation stripeInfo =
-        new StripeInformation(stripe, currentOffset, stripeStats, stripeFilters);
-      stripe.flush(outputStream);
+      flushStreams();
+      int stripeRows = numRowsInStripe - stripeCurrentRecords;
+      // last stripe can contain fewer rows, row index is truncated accordingly
+      if (stripeRowIndex != null) {
+        stripeRowIndex = Arrays.copyOf(stripeRowIndex,
+          (int) ((stripeRows + (long) rowIndexInterval - 1) / rowIndexInterval));
+      }
+      if (stripeKeyStats != null) {
+        stripeKeyStats = Arrays.copyOf(stripeKeyStats, stripeRowIndex.length);
+      }
+      StripeInformation stripeInfo = stripeInformation(stripeRows);
+      writeStripe();
       LOG.debug("Finished writing stripe {}, records={}", stripeInfo,
         numRowsInStripe - stripeCurrentRecords);
       // update total records with delta
       totalRecords += numRowsInStripe - stripeCurrentRecords;
       stripes.add(stripeInfo);
-      stripeStream.close();
+      closeStreams();
       stripe = null;
       stripeStream = null;
+      dataStripe = null;
+      dataStream = null;
+      columnValues = null;
+      columnOffsets = null;
       stripeStats = null;
+      stripeRowIndex = null;
+      stripeKeyStats = null;
 
       LOG.debug("Merge stripe statistics");
       // combine all statistics for a file
@@ -335,6 +459,160 @@ public class FileWriter {
     writeFinished = true;
   }
 
+  /**
+   * Create data stream for a stripe, if index and data regions are written into separate streams.
+   * Data stream has the same id as stripe.
+   * @param initialSize expected size of data stream in bytes
+   */
+  private void createDataStream(int initialSize) {
+    if (!splitStreams) return;
+    dataStripe = new StripeOutputBuffer(stripe.id(), pool, initialSize);
+    dataStream = new OutStream(bufferSize, codec, dataStripe, pool);
+  }
+
+  /** Create buffers for values of data columns, if stripes are written with columnar layout */
+  private void createColumnBuffers() {
+    if (!columnar) return;
+    int numColumns = td.dataColumns().length;
+    columnValues = new OutputBuffer[numColumns];
+    columnOffsets = new OutputBuffer[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columnValues[i] = new OutputBuffer();
+      columnOffsets[i] = new OutputBuffer();
+    }
+  }
+
+  /** Flush streams of current stripe into stripe buffers */
+  private void flushStreams() throws IOException {
+    stripeStream.flush();
+    if (dataStream != null) {
+      dataStream.flush();
+    }
+    if (columnValues != null) {
+      flushColumns();
+    }
+  }
+
+  /**
+   * Write buffered values of each data column into separate column stream of current stripe.
+   * Column stream starts with offsets of values for all rows, so reader can seek to value of any
+   * row, followed by values, see `ColumnStreams`.
+   */
+  private void flushColumns() throws IOException {
+    columnStripes = new StripeOutputBuffer[columnValues.length];
+    columnStreams = new OutStream[columnValues.length];
+    for (int i = 0; i < columnValues.length; i++) {
+      // the last offset marks the end of values of the last row
+      columnOffsets[i].writeInt(columnValues[i].bytesWritten());
+      columnStripes[i] = new StripeOutputBuffer(stripe.id(), pool,
+        columnOffsets[i].bytesWritten() + columnValues[i].bytesWritten());
+      columnStreams[i] = new OutStream(bufferSize, codec, columnStripes[i], pool);
+      columnOffsets[i].writeExternal(columnStreams[i]);
+      columnValues[i].writeExternal(columnStreams[i]);
+      columnStreams[i].flush();
+    }
+  }
+
+  /**
+   * Write stripe buffers into output stream, data stream or column streams are written after
+   * index stream.
+   */
+  private void writeStripe() throws IOException {
+    stripe.flush(outputStream);
+    if (dataStripe != null) {
+      dataStripe.flush(outputStream);
+    }
+    if (columnStripes != null) {
+      for (StripeOutputBuffer columnStripe : columnStripes) {
+        columnStripe.flush(outputStream);
+      }
+    }
+  }
+
+  /** Close streams of current stripe and release buffers, column buffers are reset for reuse */
+  private void closeStreams() throws IOException {
+    stripeStream.close();
+    if (dataStream != null) {
+      dataStream.close();
+    }
+    if (columnStreams != null) {
+      for (OutStream columnStream : columnStreams) {
+        columnStream.close();
+      }
+      columnStreams = null;
+      columnStripes = null;
+    }
+    if (columnValues != null) {
+      for (int i = 0; i < columnValues.length; i++) {
+        columnValues[i].reset();
+        columnOffsets[i].reset();
+      }
+    }
+  }
+
+  /**
+   * Create stripe information for current stripe, streams must be flushed before this call.
+   * @param numRows number of rows in stripe
+   * @return stripe information
+   */
+  private StripeInformation stripeInformation(int numRows) {
+    if (columnStripes != null) {
+      int length = stripe.length();
+      int[] offsets = new int[columnStripes.length];
+      ChunkIndex[] chunkIndexes = new ChunkIndex[columnStripes.length];
+      for (int i = 0; i < columnStripes.length; i++) {
+        offsets[i] = length;
+        chunkIndexes[i] = columnStreams[i].chunkIndex();
+        if (Integer.MAX_VALUE - length < columnStripes[i].length()) {
+          throw new AssertionError("Overflow of stripe " + stripe.id() + ": " + length + " + " +
+            columnStripes[i].length() + " bytes");
+        }
+        length += columnStripes[i].length();
+      }
+      return new StripeInformation(stripe.id(), currentOffset, length, stripeStats,
+        stripeFilters, numRows, rowIndexInterval, stripeRowIndex, sortOrdinal(), stripeKeyStats,
+        stripeStream.chunkIndex(), -1, null, offsets, chunkIndexes);
+    }
+    if (dataStripe == null) {
+      return new StripeInformation(stripe, currentOffset, stripeStats, stripeFilters, numRows,
+        rowIndexInterval, stripeRowIndex, sortOrdinal(), stripeKeyStats,
+        stripeStream.chunkIndex());
+    }
+    return new StripeInformation(stripe.id(), currentOffset, stripe.length() + dataStripe.length(),
+      stripeStats, stripeFilters, numRows, rowIndexInterval, stripeRowIndex, sortOrdinal(),
+      stripeKeyStats, stripeStream.chunkIndex(), stripe.length(), dataStream.chunkIndex());
+  }
+
+  /**
+   * Create row index for a stripe.
+   * @return array with entry per `rowIndexInterval` rows, or null if row index is disabled
+   */
+  private long[] createRowIndex() {
+    if (rowIndexInterval == 0) return null;
+    return new long[(int) ((numRowsInStripe + (long) rowIndexInterval - 1) / rowIndexInterval)];
+  }
+
+  /**
+   * Create statistics of sort field per row index entry for a stripe.
+   * @return array with entry per `rowIndexInterval` rows, or null if stripes are not sorted
+   */
+  private Statistics[] createKeyStatistics() {
+    if (sortField == null || stripeRowIndex == null) return null;
+    Statistics[] stats = new Statistics[stripeRowIndex.length];
+    for (int i = 0; i < stats.length; i++) {
+      stats[i] = Statistics.sqlTypeToStatistics(sortField.dataType());
+    }
+    return stats;
+  }
+
+  /**
+   * Ordinal of sort field in type description.
+   * @return ordinal or -1 if stripes are not sorted
+   */
+  private int sortOrdinal() {
+    return (sortField == null) ? -1 : sortField.position();
+  }
+
   /**
    * Create new array of statistics for a stripe.
    * @return statistics
@@ -397,6 +675,62 @@ public class FileWriter {
     }
   }
 
+  /**
+   * Comparator of rows by values of index fields in declared order, nulls are ordered first.
+   */
+  private static class KeyComparator implements Comparator<InternalRow> {
+    private final int[] ordinals;
+    private final DataType[] dataTypes;
+
+    KeyComparator(TypeSpec[] fields) {
+      this.ordinals = new int[fields.length];
+      this.dataTypes = new DataType[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        this.ordinals[i] = fields[i].origSQLPos();
+        this.dataTypes[i] = fields[i].dataType();
+      }
+    }
+
+    @Override
+    public int compare(InternalRow row1, InternalRow row2) {
+      for (int i = 0; i < ordinals.length; i++) {
+        int result = compare(row1, row2, ordinals[i], dataTypes[i]);
+        if (result != 0) return result;
+      }
+      return 0;
+    }
+
+    /** Compare values of field at ordinal */
+    private static int compare(InternalRow row1, InternalRow row2, int ordinal, DataType dataType) {
+      boolean null1 = row1.isNullAt(ordinal);
+      boolean null2 = row2.isNullAt(ordinal);
+      if (null1 || null2) {
+        return (null1 == null2) ? 0 : (null1 ? -1 : 1);
+      }
+      if (dataType instanceof IntegerType || dataType instanceof DateType) {
+        int value1 = row1.getInt(ordinal);
+        int value2 = row2.getInt(ordinal);
+        return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+      } else if (dataType instanceof LongType || dataType instanceof TimestampType) {
+        long value1 = row1.getLong(ordinal);
+        long value2 = row2.getLong(ordinal);
+        return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+      } else if (dataType instanceof StringType) {
+        return row1.getUTF8String(ordinal).compareTo(row2.getUTF8String(ordinal));
+      } else if (dataType instanceof ShortType) {
+        return row1.getShort(ordinal) - row2.getShort(ordinal);
+      } else if (dataType instanceof ByteType) {
+        return row1.getByte(ordinal) - row2.getByte(ordinal);
+      } else if (dataType instanceof BooleanType) {
+        boolean value1 = row1.getBoolean(ordinal);
+        boolean value2 = row2.getBoolean(ordinal);
+        return (value1 == value2) ? 0 : (value1 ? 1 : -1);
+      } else {
+        throw new UnsupportedOperationException("Cannot sort by data type: " + dataType);
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return "FileWriter[" +
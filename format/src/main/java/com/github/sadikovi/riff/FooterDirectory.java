@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.github.sadikovi.riff.column.ColumnFilter;
+import com.github.sadikovi.riff.io.ChunkIndex;
+import com.github.sadikovi.riff.io.OutputBuffer;
+import com.github.sadikovi.riff.stats.Statistics;
+
+/**
+ * Footer directory stores stripe information with offset table, so statistics and column filters
+ * are decoded per column on demand instead of decoding all of them when footer is read.
+ *
+ * Layout (all offsets are relative to the start of the directory):
+ * {{{
+ * numStripes: int
+ * numColumns: int
+ * stripes: numStripes * (flags: byte, id: short, offset: long, length: int, numRows: int,
+ *   [rowIndexInterval: int, rowIndexLength: int, rowIndex: rowIndexLength * long],
+ *   [sortOrdinal: int, keyStatistics: rowIndexLength * statistics],
+ *   [chunkIndex: numChunks: int, numChunks * (offset: int, uncompressedOffset: long)],
+ *   [dataOffset: int], [dataChunkIndex: same as chunkIndex],
+ *   [numColumnStreams: int, numColumnStreams * (columnOffset: int, hasChunkIndex: byte,
+ *     [columnChunkIndex: same as chunkIndex])])
+ * statistics offsets: numColumns * int, -1 if no stripe has statistics
+ * filter offsets: numColumns * numStripes * int, -1 if stripe has no column filters
+ * statistics blocks: per column, statistics of all stripes that have statistics
+ * filter blocks: per column and stripe, single column filter
+ * }}}
+ *
+ * Directory can be shared between readers (see `FileInfoCache`), therefore decoding methods are
+ * synchronized, and stripe arrays are only filled within directory lock.
+ */
+class FooterDirectory {
+  // stripe flags, same as flags of stripe information
+  private static final byte FLAG_STATS = 1;
+  private static final byte FLAG_FILTERS = 2;
+  private static final byte FLAG_ROW_INDEX = 4;
+  private static final byte FLAG_SORTED = 8;
+  private static final byte FLAG_CHUNK_INDEX = 16;
+  private static final byte FLAG_SPLIT_STREAMS = 32;
+  private static final byte FLAG_DATA_CHUNK_INDEX = 64;
+  private static final byte FLAG_COLUMN_STREAMS = (byte) 128;
+
+  // directory bytes starting at position 0
+  private final ByteBuffer buffer;
+  private final int numColumns;
+  // offset of statistics block per column
+  private final int[] statsOffsets;
+  // offset of column filter per column and stripe
+  private final int[] filterOffsets;
+  // whether or not statistics of column have been decoded
+  private final boolean[] statsLoaded;
+  // lazy stripes that reference this directory
+  private final StripeInformation[] stripes;
+  // directory bytes plus serialized bytes of decoded statistics and column filters
+  private long decodedBytes;
+
+  private FooterDirectory(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    ByteBuffer buf = buffer.duplicate();
+    int numStripes = buf.getInt();
+    this.numColumns = buf.getInt();
+    if (numStripes < 0 || numColumns < 0) {
+      throw new IOException("Invalid footer directory: " + numStripes + " stripes, " +
+        numColumns + " columns");
+    }
+    this.stripes = new StripeInformation[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      byte flags = buf.get();
+      short id = buf.getShort();
+      long offset = buf.getLong();
+      int length = buf.getInt();
+      int numRows = buf.getInt();
+      int rowIndexInterval = 0;
+      long[] rowIndex = null;
+      if ((flags & FLAG_ROW_INDEX) != 0) {
+        rowIndexInterval = buf.getInt();
+        rowIndex = new long[buf.getInt()];
+        for (int j = 0; j < rowIndex.length; j++) {
+          rowIndex[j] = buf.getLong();
+        }
+      }
+      int sortOrdinal = -1;
+      Statistics[] keyStats = null;
+      if ((flags & FLAG_SORTED) != 0 && rowIndex != null) {
+        sortOrdinal = buf.getInt();
+        keyStats = new Statistics[rowIndex.length];
+        for (int j = 0; j < keyStats.length; j++) {
+          keyStats[j] = Statistics.readExternal(buf);
+        }
+      }
+      ChunkIndex chunkIndex = null;
+      if ((flags & FLAG_CHUNK_INDEX) != 0) {
+        chunkIndex = ChunkIndex.readExternal(buf);
+      }
+      int dataOffset = -1;
+      ChunkIndex dataChunkIndex = null;
+      if ((flags & FLAG_SPLIT_STREAMS) != 0) {
+        dataOffset = buf.getInt();
+        if ((flags & FLAG_DATA_CHUNK_INDEX) != 0) {
+          dataChunkIndex = ChunkIndex.readExternal(buf);
+        }
+      }
+      int[] columnOffsets = null;
+      ChunkIndex[] columnChunkIndexes = null;
+      if ((flags & FLAG_COLUMN_STREAMS) != 0) {
+        int numColumnStreams = buf.getInt();
+        if (numColumnStreams < 0) {
+          throw new IOException("Invalid number of column streams " + numColumnStreams +
+            " in " + this);
+        }
+        columnOffsets = new int[numColumnStreams];
+        columnChunkIndexes = new ChunkIndex[numColumnStreams];
+        for (int j = 0; j < numColumnStreams; j++) {
+          columnOffsets[j] = buf.getInt();
+          if (buf.get() != 0) {
+            columnChunkIndexes[j] = ChunkIndex.readExternal(buf);
+          }
+        }
+      }
+      stripes[i] = new StripeInformation(id, offset, length, this, i,
+        (flags & FLAG_STATS) != 0, (flags & FLAG_FILTERS) != 0, numRows, rowIndexInterval,
+        rowIndex, sortOrdinal, keyStats, chunkIndex, dataOffset, dataChunkIndex, columnOffsets,
+        columnChunkIndexes);
+    }
+    this.statsOffsets = new int[numColumns];
+    for (int i = 0; i < statsOffsets.length; i++) {
+      statsOffsets[i] = buf.getInt();
+    }
+    this.filterOffsets = new int[numColumns * numStripes];
+    for (int i = 0; i < filterOffsets.length; i++) {
+      filterOffsets[i] = buf.getInt();
+    }
+    this.statsLoaded = new boolean[numColumns];
+    this.decodedBytes = buffer.remaining();
+  }
+
+  /**
+   * Number of columns in directory, this is the length of statistics and column filters arrays of
+   * each stripe.
+   * @return number of columns
+   */
+  int numColumns() {
+    return numColumns;
+  }
+
+  /**
+   * Stripes of this directory, statistics and column filters are decoded lazily.
+   * @return array of stripes
+   */
+  StripeInformation[] stripes() {
+    return stripes;
+  }
+
+  /**
+   * Estimated number of bytes directory occupies in memory: uncompressed directory bytes plus
+   * serialized bytes of statistics and column filters decoded so far, so estimate grows as
+   * readers request statistics and filters.
+   * @return number of bytes
+   */
+  synchronized long decodedBytes() {
+    return decodedBytes;
+  }
+
+  /** Check that ordinal is a valid column in directory */
+  private void checkOrdinal(int ordinal) {
+    if (ordinal < 0 || ordinal >= numColumns) {
+      throw new IllegalArgumentException("Invalid column ordinal " + ordinal + " for " +
+        numColumns + " columns");
+    }
+  }
+
+  /**
+   * Decode statistics for provided columns of all stripes. Statistics are decoded once per column,
+   * results are stored in statistics arrays of stripes.
+   * @param ordinals column ordinals, null means all columns
+   */
+  synchronized void loadStatistics(int[] ordinals) {
+    int count = (ordinals == null) ? numColumns : ordinals.length;
+    for (int i = 0; i < count; i++) {
+      int ordinal = (ordinals == null) ? i : ordinals[i];
+      checkOrdinal(ordinal);
+      if (statsLoaded[ordinal] || statsOffsets[ordinal] < 0) continue;
+      ByteBuffer buf = buffer.duplicate();
+      buf.position(statsOffsets[ordinal]);
+      for (StripeInformation stripe : stripes) {
+        if (stripe.hasStatistics()) {
+          try {
+            stripe.statistics()[ordinal] = Statistics.readExternal(buf);
+          } catch (IOException ioe) {
+            throw new RuntimeException("Failed to read statistics for column " + ordinal +
+              " of " + stripe, ioe);
+          }
+        }
+      }
+      statsLoaded[ordinal] = true;
+      decodedBytes += buf.position() - statsOffsets[ordinal];
+    }
+  }
+
+  /**
+   * Decode column filters for provided columns of stripe.
+   * @param index stripe index in directory
+   * @param ordinals column ordinals, null means all columns
+   */
+  synchronized void loadColumnFilters(int index, int[] ordinals) {
+    ColumnFilter[] filters = stripes[index].columnFilters();
+    int count = (ordinals == null) ? numColumns : ordinals.length;
+    for (int i = 0; i < count; i++) {
+      int ordinal = (ordinals == null) ? i : ordinals[i];
+      checkOrdinal(ordinal);
+      int offset = filterOffsets[ordinal * stripes.length + index];
+      if (filters[ordinal] != null || offset < 0) continue;
+      ByteBuffer buf = buffer.duplicate();
+      buf.position(offset);
+      try {
+        filters[ordinal] = ColumnFilter.readExternal(buf);
+        decodedBytes += buf.position() - offset;
+      } catch (IOException ioe) {
+        throw new RuntimeException("Failed to read column filter for column " + ordinal +
+          " of " + stripes[index], ioe);
+      }
+    }
+  }
+
+  /**
+   * Read footer directory from byte buffer, only stripe headers and offset tables are decoded.
+   * @param buffer byte buffer with directory bytes between position and limit
+   * @return footer directory
+   * @throws IOException
+   */
+  static FooterDirectory readFrom(ByteBuffer buffer) throws IOException {
+    return new FooterDirectory(buffer.slice());
+  }
+
+  /** Number of columns in stripe, or -1 if stripe has neither statistics nor filters */
+  private static int numColumns(StripeInformation stripe, Statistics[] stats,
+      ColumnFilter[] filters) {
+    if (stats != null && filters != null && stats.length != filters.length) {
+      throw new IllegalArgumentException("Expected the same number of statistics and column " +
+        "filters for " + stripe + ", found " + stats.length + " != " + filters.length);
+    }
+    return (stats != null) ? stats.length : (filters != null ? filters.length : -1);
+  }
+
+  /**
+   * Write stripes into output buffer as footer directory.
+   * All stripes with statistics or column filters must have the same number of columns.
+   * @param stripes array of stripes
+   * @param out output buffer
+   * @throws IOException
+   */
+  static void writeTo(StripeInformation[] stripes, OutputBuffer out) throws IOException {
+    int numColumns = -1;
+    for (StripeInformation stripe : stripes) {
+      int columns = numColumns(stripe, stripe.getStatistics(), stripe.getColumnFilters());
+      if (columns >= 0 && numColumns >= 0 && columns != numColumns) {
+        throw new IllegalArgumentException("Expected " + numColumns + " columns for " + stripe +
+          ", found " + columns);
+      }
+      numColumns = Math.max(numColumns, columns);
+    }
+    numColumns = Math.max(numColumns, 0);
+    // stripe headers have variable size, they are written first to resolve offsets of blocks
+    OutputBuffer headers = new OutputBuffer();
+    for (StripeInformation stripe : stripes) {
+      byte flags = 0;
+      flags |= stripe.hasStatistics() ? FLAG_STATS : 0;
+      flags |= stripe.hasColumnFilters() ? FLAG_FILTERS : 0;
+      flags |= stripe.hasRowIndex() ? FLAG_ROW_INDEX : 0;
+      flags |= stripe.isSorted() ? FLAG_SORTED : 0;
+      flags |= (stripe.getChunkIndex() != null) ? FLAG_CHUNK_INDEX : 0;
+      flags |= stripe.hasSplitStreams() ? FLAG_SPLIT_STREAMS : 0;
+      flags |= (stripe.getDataChunkIndex() != null) ? FLAG_DATA_CHUNK_INDEX : 0;
+      flags |= stripe.hasColumnStreams() ? FLAG_COLUMN_STREAMS : 0;
+      headers.writeByte(flags);
+      headers.writeShort(stripe.id());
+      headers.writeLong(stripe.offset());
+      headers.writeInt(stripe.length());
+      headers.writeInt(stripe.numRows());
+      if (stripe.hasRowIndex()) {
+        headers.writeInt(stripe.rowIndexInterval());
+        headers.writeInt(stripe.getRowIndex().length);
+        for (long offset : stripe.getRowIndex()) {
+          headers.writeLong(offset);
+        }
+      }
+      if (stripe.isSorted()) {
+        headers.writeInt(stripe.sortOrdinal());
+        for (Statistics obj : stripe.getKeyStatistics()) {
+          obj.writeExternal(headers);
+        }
+      }
+      if (stripe.getChunkIndex() != null) {
+        stripe.getChunkIndex().writeExternal(headers);
+      }
+      if (stripe.hasSplitStreams()) {
+        headers.writeInt(stripe.dataOffset());
+        if (stripe.getDataChunkIndex() != null) {
+          stripe.getDataChunkIndex().writeExternal(headers);
+        }
+      }
+      if (stripe.hasColumnStreams()) {
+        headers.writeInt(stripe.numColumnStreams());
+        for (int j = 0; j < stripe.numColumnStreams(); j++) {
+          headers.writeInt(stripe.columnOffset(j));
+          ChunkIndex columnChunkIndex = stripe.getColumnChunkIndex(j);
+          headers.writeByte((columnChunkIndex == null) ? 0 : 1);
+          if (columnChunkIndex != null) {
+            columnChunkIndex.writeExternal(headers);
+          }
+        }
+      }
+    }
+    int headerSize = 4 + 4 + headers.bytesWritten() + numColumns * 4 +
+      numColumns * stripes.length * 4;
+    // write blocks first to resolve offsets
+    OutputBuffer blocks = new OutputBuffer();
+    int[] statsOffsets = new int[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      statsOffsets[i] = -1;
+      for (StripeInformation stripe : stripes) {
+        if (stripe.hasStatistics()) {
+          if (statsOffsets[i] < 0) {
+            statsOffsets[i] = headerSize + blocks.bytesWritten();
+          }
+          Statistics obj = stripe.getStatistics()[i];
+          if (obj == null) {
+            throw new NullPointerException("Encountered null statistics for stripe " + stripe);
+          }
+          obj.writeExternal(blocks);
+        }
+      }
+    }
+    int[] filterOffsets = new int[numColumns * stripes.length];
+    for (int i = 0; i < numColumns; i++) {
+      for (int j = 0; j < stripes.length; j++) {
+        int pos = i * stripes.length + j;
+        filterOffsets[pos] = -1;
+        if (stripes[j].hasColumnFilters()) {
+          ColumnFilter obj = stripes[j].getColumnFilters()[i];
+          if (obj == null) {
+            throw new NullPointerException("Encountered null column filter for stripe " +
+              stripes[j]);
+          }
+          filterOffsets[pos] = headerSize + blocks.bytesWritten();
+          obj.writeExternal(blocks);
+        }
+      }
+    }
+    out.writeInt(stripes.length);
+    out.writeInt(numColumns);
+    headers.writeExternal(out);
+    for (int offset : statsOffsets) {
+      out.writeInt(offset);
+    }
+    for (int offset : filterOffsets) {
+      out.writeInt(offset);
+    }
+    blocks.writeExternal(out);
+  }
+
+  @Override
+  public String toString() {
+    return "FooterDirectory[stripes=" + stripes.length + ", columns=" + numColumns + "]";
+  }
+}
@@ -24,6 +24,8 @@ package com.github.sadikovi.riff;
 
 import java.io.IOException;
 import java.io.EOFException;
+import java.util.Arrays;
+import java.util.HashMap;
 
 import org.apache.spark.sql.catalyst.InternalRow;
 
@@ -33,16 +35,198 @@ import com.github.sadikovi.riff.row.IndexedRow;
 /**
  * Reader for [[IndexedRow]] instances, created per stream and reused across rows.
  * Type description is used directly to map schema to each row.
+ *
+ * If row reuse is enabled, single row instance is returned for all calls, similar to Spark scan
+ * iterators, row is only valid until next read and should be copied to be retained. Row offsets
+ * are cached per distinct null bit set.
+ *
+ * In index-only mode data region of each row is skipped without being read, and data fields of
+ * returned rows are null. This mode should be used when only index fields are required.
+ *
+ * Rows can be read either from single stream or from separate index and data streams, see
+ * `IndexedRowWriter.writeRow(row, out, dataOut)`; in the latter case data stream is only read for
+ * rows accepted by index tree of predicate state.
+ *
+ * If lazy data region is enabled, data region of row in separate data stream is only read on the
+ * first access to data field of the row, see `IndexedRow.setLazyDataRegion()`; rows that are
+ * skipped or only accessed for index fields never read data stream. Lazy mode requires row reuse,
+ * since data stream can only be advanced forward and only the last row can be loaded.
+ *
+ * If data fields are split into column groups, only regions of groups that contain required
+ * fields are read, regions of other groups are skipped, and their fields are returned as null.
+ *
+ * In columnar mode rows are read from index stream and column streams of stripe with columnar
+ * layout, see `ColumnStreams`; only values of required columns are read and copied into data region
+ * of the row, streams of other columns are never opened. Each column is treated as column group.
  */
 public class IndexedRowReader {
+  // maximum number of distinct null bit sets to cache offsets for
+  private static final int OFFSETS_CACHE_SIZE = 64;
+  // bit set of required fields that includes all fields
+  public static final long ALL_FIELDS = -1L;
+
   private final TypeDescription desc;
   // bit set to mark indexed fields
   private long indexed;
   // set of converters to use
   private final RowValueConverter[] converters;
+  // whether or not to reuse row instance
+  private final boolean reuseRow;
+  // whether or not data region is skipped
+  private final boolean indexOnly;
+  // bit set of data fields that are reported as null, e.g. in index-only mode
+  private final long skippedFields;
+  // whether or not rows are read from stripes with columnar layout
+  private final boolean columnar;
+  // data fields of each column group or column of columnar stripe, null if data fields are
+  // written as single region
+  private final TypeSpec[][] columns;
+  // column group for each ordinal, null if data fields are not grouped
+  private final int[] fieldGroups;
+  // whether or not region of each group is skipped, null if data fields are not grouped
+  private final boolean[] skippedGroups;
+  // reusable group offsets, null if row reuse is disabled or data fields are not grouped
+  private final int[] groupOffsets;
+  // whether or not data region in separate data stream is read lazily
+  private final boolean lazyData;
+  // data stream, offset and length of data region of the last lazy row
+  private InStream lazyStream;
+  private int lazyOffset;
+  private int lazyBytes;
+  // loader for data region of the last lazy row
+  private final IndexedRow.DataRegionLoader loader;
+  // reusable data region for values of columns, null if not columnar or row reuse is disabled
+  private byte[] columnBuffer;
+  // reusable row, null if row reuse is disabled or no rows have been read yet
+  private IndexedRow row;
+  // offsets for the last null bit set, most rows share the same null bit set
+  private long lastNulls;
+  private int[] lastOffsets;
+  // cached offsets per null bit set
+  private final HashMap<Long, int[]> offsetsCache;
 
   public IndexedRowReader(TypeDescription desc) {
+    this(desc, false);
+  }
+
+  /**
+   * Create reader for type description.
+   * @param desc type description
+   * @param reuseRow whether or not to return the same row instance for all reads
+   */
+  public IndexedRowReader(TypeDescription desc, boolean reuseRow) {
+    this(desc, reuseRow, false);
+  }
+
+  /**
+   * Create reader for type description.
+   * @param desc type description
+   * @param reuseRow whether or not to return the same row instance for all reads
+   * @param indexOnly whether or not to skip data region, data fields are returned as null
+   */
+  public IndexedRowReader(TypeDescription desc, boolean reuseRow, boolean indexOnly) {
+    this(desc, reuseRow, indexOnly, false);
+  }
+
+  /**
+   * Create reader for type description.
+   * @param desc type description
+   * @param reuseRow whether or not to return the same row instance for all reads
+   * @param indexOnly whether or not to skip data region, data fields are returned as null
+   * @param lazyData whether or not to read data region in separate data stream on the first
+   *   access to data field, requires row reuse; ignored in index-only mode
+   */
+  public IndexedRowReader(
+      TypeDescription desc,
+      boolean reuseRow,
+      boolean indexOnly,
+      boolean lazyData) {
+    this(desc, reuseRow, indexOnly ? 0L : ALL_FIELDS, lazyData);
+  }
+
+  /**
+   * Create reader for type description that only reads required fields. Index fields are always
+   * read; if no data fields are required, reader is in index-only mode, otherwise regions of column
+   * groups without required fields are skipped. Data fields that are not read are returned as null.
+   * @param desc type description
+   * @param reuseRow whether or not to return the same row instance for all reads
+   * @param requiredFields bit set of required field positions, `ALL_FIELDS` to read all fields
+   * @param lazyData whether or not to read data region in separate data stream on the first
+   *   access to data field, requires row reuse; ignored in index-only mode
+   */
+  public IndexedRowReader(
+      TypeDescription desc,
+      boolean reuseRow,
+      long requiredFields,
+      boolean lazyData) {
+    this(desc, reuseRow, requiredFields, lazyData, false);
+  }
+
+  /**
+   * Create reader for type description that only reads required fields, see
+   * `IndexedRowReader(desc, reuseRow, requiredFields, lazyData)`. In columnar mode rows can only
+   * be read with column streams, and only streams of columns with required fields are read.
+   * @param desc type description
+   * @param reuseRow whether or not to return the same row instance for all reads
+   * @param requiredFields bit set of required field positions, `ALL_FIELDS` to read all fields
+   * @param lazyData whether or not to read data region in separate data stream on the first
+   *   access to data field, requires row reuse; ignored in index-only and columnar modes
+   * @param columnar whether or not rows are read from stripes with columnar layout
+   */
+  public IndexedRowReader(
+      TypeDescription desc,
+      boolean reuseRow,
+      long requiredFields,
+      boolean lazyData,
+      boolean columnar) {
+    if (lazyData && !reuseRow) {
+      throw new IllegalArgumentException("Lazy data region requires row reuse");
+    }
     this.desc = desc;
+    this.reuseRow = reuseRow;
+    long dataFields = 0L;
+    for (TypeSpec spec : this.desc.dataFields()) {
+      dataFields |= 1L << spec.position();
+    }
+    boolean indexOnly = (dataFields & requiredFields) == 0;
+    long skipped = indexOnly ? dataFields : 0L;
+    this.columnar = columnar;
+    this.columns = (columnar || this.desc.numGroups() > 0) ? this.desc.dataColumns() : null;
+    if (!indexOnly && this.columns != null) {
+      this.fieldGroups = new int[this.desc.size()];
+      this.skippedGroups = new boolean[this.columns.length];
+      Arrays.fill(this.fieldGroups, -1);
+      for (int group = 0; group < this.columns.length; group++) {
+        long groupFields = 0L;
+        for (TypeSpec spec : this.columns[group]) {
+          this.fieldGroups[spec.position()] = group;
+          groupFields |= 1L << spec.position();
+        }
+        this.skippedGroups[group] = (groupFields & requiredFields) == 0;
+        if (this.skippedGroups[group]) {
+          skipped |= groupFields;
+        }
+      }
+      this.groupOffsets = reuseRow ? new int[this.columns.length] : null;
+    } else {
+      this.fieldGroups = null;
+      this.skippedGroups = null;
+      this.groupOffsets = null;
+    }
+    this.indexOnly = indexOnly;
+    this.skippedFields = skipped;
+    this.lazyData = lazyData && !indexOnly && !columnar;
+    this.columnBuffer = null;
+    this.lazyStream = null;
+    this.loader = new IndexedRow.DataRegionLoader() {
+      @Override
+      public void loadDataRegion(IndexedRow row) {
+        loadLazyDataRegion(row);
+      }
+    };
+    this.row = null;
+    this.lastOffsets = null;
+    this.offsetsCache = new HashMap<Long, int[]>();
     // compute index fields in bit set
     this.indexed = 0L;
     for (TypeSpec spec : this.desc.indexFields()) {
@@ -74,33 +258,190 @@ public class IndexedRowReader {
       throw new AssertionError("Wrong magic number " + magic);
     }
     long nulls = (magic == IndexedRow.MAGIC1) ? 0L : in.readLong();
-    // prepare row, compute row offsets
-    return new IndexedRow(this.indexed, nulls, rowOffsets(nulls));
+    // offsets of index fields do not depend on nulls of data fields
+    nulls |= skippedFields;
+    // prepare row, offsets array is shared between rows with the same null bit set, since it is
+    // never modified by row
+    int[] offsets = cachedRowOffsets(nulls);
+    // data region of the previous row is no longer needed
+    lazyStream = null;
+    if (!reuseRow) return new IndexedRow(this.indexed, nulls, offsets);
+    if (row == null) {
+      row = new IndexedRow(this.indexed, nulls, offsets);
+    } else {
+      row.reset(nulls, offsets);
+    }
+    return row;
+  }
+
+  /** Return row offsets for null bit set, either cached or computed */
+  private int[] cachedRowOffsets(long nulls) {
+    if (lastOffsets != null && lastNulls == nulls) return lastOffsets;
+    int[] offsets = offsetsCache.get(nulls);
+    if (offsets == null) {
+      offsets = rowOffsets(nulls);
+      // bit sets are usually limited to few patterns, start over if this is not the case
+      if (offsetsCache.size() >= OFFSETS_CACHE_SIZE) {
+        offsetsCache.clear();
+      }
+      offsetsCache.put(nulls, offsets);
+    }
+    lastNulls = nulls;
+    lastOffsets = offsets;
+    return offsets;
+  }
+
+  /**
+   * Read index region and length of data region. Index region references instream buffer, if
+   * region and location of data region are in the current chunk, otherwise bytes are copied.
+   * @param in input stream
+   * @param row indexed row to set region for
+   * @param trailer number of bytes that follow index region, e.g. length of data region
+   * @return true if index region references instream buffer, false otherwise
+   * @throws IOException
+   */
+  private boolean readIndexRegion(InStream in, IndexedRow row, int trailer) throws IOException {
+    // note that if no bytes were written, we do not set index region at all
+    int indexBytes = in.readInt();
+    if (indexBytes <= 0) return false;
+    // reading data region length should not refill buffer, otherwise region is overwritten
+    if (in.bufferedBytes() >= indexBytes + trailer) {
+      row.setIndexRegion(in.bufferArray(), in.bufferPosition(), indexBytes);
+      in.skip(indexBytes);
+      return true;
+    }
+    byte[] indexRegion = new byte[indexBytes];
+    in.read(indexRegion, 0, indexBytes);
+    row.setIndexRegion(indexRegion);
+    return false;
+  }
+
+  /**
+   * Read data region. Data region references instream buffer, if region is in the current chunk,
+   * otherwise bytes are copied; in this case index region is copied as well, since buffer is
+   * refilled.
+   * @param in input stream
+   * @param row indexed row to set region for
+   * @param dataBytes length of data region
+   * @param indexView whether or not index region references instream buffer
+   * @throws IOException
+   */
+  private void readDataRegion(
+      InStream in,
+      IndexedRow row,
+      int dataBytes,
+      boolean indexView) throws IOException {
+    // we do not initialize data region, if no bytes were written
+    if (dataBytes <= 0) return;
+    if (indexOnly) {
+      in.skip(dataBytes);
+      return;
+    }
+    if (fieldGroups != null) {
+      readGroupRegions(in, row, dataBytes, indexView);
+      return;
+    }
+    if (in.bufferedBytes() >= dataBytes) {
+      row.setDataRegion(in.bufferArray(), in.bufferPosition(), dataBytes);
+      in.skip(dataBytes);
+    } else {
+      if (indexView) row.copyIndexRegion();
+      byte[] dataRegion = new byte[dataBytes];
+      in.read(dataRegion, 0, dataBytes);
+      row.setDataRegion(dataRegion);
+    }
+  }
+
+  /**
+   * Read data region that consists of column group regions. If data region is in the current
+   * chunk, it references instream buffer and only group offsets are resolved, otherwise only
+   * regions of required groups are copied, and regions of other groups are skipped.
+   * @param in input stream
+   * @param row indexed row to set region for
+   * @param dataBytes length of data region
+   * @param indexView whether or not index region references instream buffer
+   * @throws IOException
+   */
+  private void readGroupRegions(
+      InStream in,
+      IndexedRow row,
+      int dataBytes,
+      boolean indexView) throws IOException {
+    int[] offsets = (groupOffsets != null) ? groupOffsets : new int[skippedGroups.length];
+    if (in.bufferedBytes() >= dataBytes) {
+      byte[] buffer = in.bufferArray();
+      int start = in.bufferPosition();
+      int position = 0;
+      for (int group = 0; group < offsets.length; group++) {
+        int length = readInt(buffer, start + position);
+        offsets[group] = position + 4;
+        position += 4 + length;
+      }
+      if (position != dataBytes) {
+        throw new IOException("Invalid length of group regions: " + position + " != " +
+          dataBytes + " bytes");
+      }
+      row.setDataRegion(buffer, start, dataBytes);
+      in.skip(dataBytes);
+    } else {
+      if (indexView) row.copyIndexRegion();
+      byte[] dataRegion = new byte[dataBytes];
+      int position = 0;
+      for (int group = 0; group < offsets.length; group++) {
+        int length = in.readInt();
+        if (skippedGroups[group]) {
+          offsets[group] = -1;
+          in.skip(length);
+        } else {
+          offsets[group] = position;
+          in.read(dataRegion, position, length);
+          position += length;
+        }
+      }
+      row.setDataRegion(dataRegion, 0, position);
+    }
+    row.setDataGroups(fieldGroups, offsets);
+  }
+
+  /** Read big endian int from array */
+  private static int readInt(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16) |
+      ((buffer[offset + 2] & 0xff) << 8) | (buffer[offset + 3] & 0xff);
   }
 
   /**
    * Read row from input stream. This should reflect write logic in `IndexedRowWriter`. We check
-   * magic byte and buffer optional null bit set; then copy index region and data region into
-   * indexed row.
+   * magic byte and buffer optional null bit set; then set index region and data region of indexed
+   * row. Regions reference instream buffer when possible, so row is only valid until next read
+   * from stream; use `copy()` to retain row.
    * @param in input stream to read from
    * @return indexed row as InternalRow
    * @throws IOException
    */
   public InternalRow readRow(InStream in) throws IOException {
+    return readRow(in, (InStream) null);
+  }
+
+  /**
+   * Read row from separate index and data streams, see `readRow(in)`. Data stream is advanced to
+   * data region of the row, so rows of index stream can be skipped, e.g. with row index, without
+   * reading data stream.
+   * @param in input stream to read row header and index region from
+   * @param data input stream to read data region from, null if row is stored in single stream
+   * @return indexed row as InternalRow
+   * @throws IOException
+   */
+  public InternalRow readRow(InStream in, InStream data) throws IOException {
     IndexedRow row = readRowHeader(in);
-    // read index region, note that if no bytes were written, we do not set index region at all
-    int indexBytes = in.readInt();
-    if (indexBytes > 0) {
-      byte[] indexRegion = new byte[indexBytes];
-      in.read(indexRegion, 0, indexBytes);
-      row.setIndexRegion(indexRegion);
-    }
-    // read data region, similarly we do not initialize data region, if no bytes were written
+    boolean indexView = readIndexRegion(in, row, (data == null) ? 4 : 8);
     int dataBytes = in.readInt();
-    if (dataBytes > 0) {
-      byte[] dataRegion = new byte[dataBytes];
-      in.read(dataRegion, 0, dataBytes);
-      row.setDataRegion(dataRegion);
+    if (data == null) {
+      readDataRegion(in, row, dataBytes, indexView);
+    } else {
+      int dataOffset = in.readInt();
+      if (!indexOnly) {
+        readSeparateDataRegion(data, row, dataBytes, dataOffset);
+      }
     }
     return row;
   }
@@ -110,35 +451,48 @@ public class IndexedRowReader {
    * If row is not accepted by predicate state null is return and this row should be skipped in
    * row buffer. State is guaranteed to be non-null and fully resolved. Because we can evaluate
    * index region separately, if row is discarded stream is automatically advanced to the data
-   * region length.
+   * region length. Similar to `readRow(in)`, row is only valid until next read from stream.
+   * In index-only mode state must only reference index fields, see `PredicateState`.
    * @param in input stream
    * @param state valid predicate state
    * @return indexed row as InternalRow
    * @throws IOException
    */
   public InternalRow readRow(InStream in, PredicateState state) throws IOException {
+    return readRow(in, (InStream) null, state);
+  }
+
+  /**
+   * Read row from separate index and data streams based on current predicate state, see
+   * `readRow(in, state)`. Data stream is only read if index region is accepted by index tree, so
+   * chunks of data stream that only contain rejected rows are never decompressed.
+   * @param in input stream to read row header and index region from
+   * @param data input stream to read data region from, null if row is stored in single stream
+   * @param state valid predicate state
+   * @return indexed row as InternalRow
+   * @throws IOException
+   */
+  public InternalRow readRow(
+      InStream in,
+      InStream data,
+      PredicateState state) throws IOException {
     IndexedRow row = readRowHeader(in);
-    // read index region, note that if no bytes were written, we do not set index region at all
-    int indexBytes = in.readInt();
-    if (indexBytes > 0) {
-      byte[] indexRegion = new byte[indexBytes];
-      in.read(indexRegion, 0, indexBytes);
-      row.setIndexRegion(indexRegion);
-    }
-    // read data region, similarly we do not initialize data region, if no bytes were written
+    boolean indexView = readIndexRegion(in, row, (data == null) ? 4 : 8);
     int dataBytes = in.readInt();
+    int dataOffset = (data == null) ? -1 : in.readInt();
     // if index tree does not accept current row, return it and skip data region
     if (!state.indexTree().evaluateState(row)) {
-      in.skip(dataBytes);
+      if (data == null) in.skip(dataBytes);
       return null;
     }
     // at this point row passes predicate state for index region.
     // state contains index tree only, there is no need to evaluate predicate twice, return row
     // directly, otherwise run predicate state full tree on fully-read row.
-    if (dataBytes > 0) {
-      byte[] dataRegion = new byte[dataBytes];
-      in.read(dataRegion, 0, dataBytes);
-      row.setDataRegion(dataRegion);
+    if (data == null) {
+      readDataRegion(in, row, dataBytes, indexView);
+    } else if (!indexOnly) {
+      // full tree loads lazy data region only if it references data fields
+      readSeparateDataRegion(data, row, dataBytes, dataOffset);
     }
     // we would have evaluated index tree in previous step
     if (state.hasIndexedTreeOnly()) return row;
@@ -147,13 +501,202 @@ public class IndexedRowReader {
     return null;
   }
 
+  /**
+   * Read row from index stream and column streams of stripe with columnar layout, see
+   * `readRow(in)`. Index stream contains row number in stripe after index region, values of
+   * required columns for that row are copied into data region of the row; rows of index stream
+   * can be skipped, e.g. with row index, without reading column streams.
+   * @param in input stream to read row header and index region from
+   * @param columns column streams of stripe
+   * @return indexed row as InternalRow
+   * @throws IOException
+   */
+  public InternalRow readRow(InStream in, ColumnStreams columns) throws IOException {
+    IndexedRow row = readRowHeader(in);
+    readIndexRegion(in, row, 4);
+    int ordinal = in.readInt();
+    readColumnRegions(columns, row, ordinal);
+    return row;
+  }
+
+  /**
+   * Read row from index stream and column streams based on current predicate state, see
+   * `readRow(in, state)` and `readRow(in, columns)`. Column streams are only read if index
+   * region is accepted by index tree.
+   * @param in input stream to read row header and index region from
+   * @param columns column streams of stripe
+   * @param state valid predicate state
+   * @return indexed row as InternalRow
+   * @throws IOException
+   */
+  public InternalRow readRow(
+      InStream in,
+      ColumnStreams columns,
+      PredicateState state) throws IOException {
+    IndexedRow row = readRowHeader(in);
+    readIndexRegion(in, row, 4);
+    int ordinal = in.readInt();
+    if (!state.indexTree().evaluateState(row)) return null;
+    readColumnRegions(columns, row, ordinal);
+    if (state.hasIndexedTreeOnly()) return row;
+    if (state.tree().evaluateState(row)) return row;
+    return null;
+  }
+
+  /**
+   * Read values of required columns for row and set them as data region, each value is a region
+   * of column group; values of skipped columns are not read.
+   * @param columns column streams of stripe
+   * @param row indexed row to set region for
+   * @param ordinal row number in stripe
+   * @throws IOException
+   */
+  private void readColumnRegions(
+      ColumnStreams columns,
+      IndexedRow row,
+      int ordinal) throws IOException {
+    if (!columnar) {
+      throw new IllegalStateException("Reader " + this + " is not in columnar mode");
+    }
+    if (indexOnly) return;
+    if (columns.numColumns() != skippedGroups.length) {
+      throw new IOException("Expected " + skippedGroups.length + " column streams, found " +
+        columns.numColumns());
+    }
+    int[] offsets = (groupOffsets != null) ? groupOffsets : new int[skippedGroups.length];
+    int dataBytes = 0;
+    for (int column = 0; column < offsets.length; column++) {
+      if (!skippedGroups[column]) {
+        dataBytes += columns.valueLength(column, ordinal);
+      }
+    }
+    // we do not initialize data region, if no bytes were written
+    if (dataBytes <= 0) return;
+    byte[] dataRegion = columnBuffer;
+    if (dataRegion == null || dataRegion.length < dataBytes) {
+      dataRegion = new byte[dataBytes];
+      // region of reused row can be overwritten by the next row
+      if (reuseRow) columnBuffer = dataRegion;
+    }
+    int position = 0;
+    for (int column = 0; column < offsets.length; column++) {
+      if (skippedGroups[column]) {
+        offsets[column] = -1;
+      } else {
+        offsets[column] = position;
+        columns.readValue(column, ordinal, dataRegion, position);
+        position += columns.valueLength(column, ordinal);
+      }
+    }
+    row.setDataRegion(dataRegion, 0, dataBytes);
+    row.setDataGroups(fieldGroups, offsets);
+  }
+
+  /**
+   * Read data region from separate data stream, or set it lazily if lazy mode is enabled.
+   * @param data data stream
+   * @param row indexed row to set region for
+   * @param dataBytes length of data region
+   * @param dataOffset offset of data region in uncompressed data stream
+   * @throws IOException
+   */
+  private void readSeparateDataRegion(
+      InStream data,
+      IndexedRow row,
+      int dataBytes,
+      int dataOffset) throws IOException {
+    if (lazyData && dataBytes > 0) {
+      lazyStream = data;
+      lazyOffset = dataOffset;
+      lazyBytes = dataBytes;
+      row.setLazyDataRegion(loader);
+    } else {
+      seekDataRegion(data, dataOffset);
+      // index region references index stream, it is not affected by reads of data stream
+      readDataRegion(data, row, dataBytes, false);
+    }
+  }
+
+  /** Read data region of the last lazy row, invoked by row on the first access to data field */
+  private void loadLazyDataRegion(IndexedRow lazyRow) {
+    if (lazyRow != row || lazyStream == null) {
+      throw new IllegalStateException("Data region of " + lazyRow + " is no longer available");
+    }
+    try {
+      seekDataRegion(lazyStream, lazyOffset);
+      readDataRegion(lazyStream, lazyRow, lazyBytes, false);
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe.getMessage(), ioe);
+    } finally {
+      lazyStream = null;
+    }
+  }
+
+  /**
+   * Read data region of the last returned row if it is set lazily, e.g. before data stream is
+   * released, so row remains valid. No-op if row does not have lazy data region.
+   */
+  public void loadDataRegion() {
+    if (row != null) {
+      row.loadDataRegion();
+    }
+  }
+
+  /**
+   * Advance data stream to the offset of data region, regions of skipped rows are skipped without
+   * being read, see `InStream.skip()`.
+   * @param data data stream
+   * @param dataOffset offset of data region in uncompressed data stream
+   * @throws IOException if offset is before current position or beyond stream
+   */
+  private void seekDataRegion(InStream data, int dataOffset) throws IOException {
+    long bytes = dataOffset - data.position();
+    if (bytes < 0) {
+      throw new IOException("Data region at offset " + dataOffset + " is before position " +
+        data.position() + " of data stream");
+    }
+    if (bytes > 0 && data.skip(bytes) != bytes) {
+      throw new IOException("EOF, failed to seek data stream to offset " + dataOffset);
+    }
+  }
+
+  /**
+   * Whether or not this reader skips data region of rows.
+   * @return true if reader is in index-only mode
+   */
+  public boolean isIndexOnly() {
+    return indexOnly;
+  }
+
+  /**
+   * Whether or not this reader sets data region of rows lazily.
+   * @return true if reader is in lazy mode
+   */
+  public boolean isLazyData() {
+    return lazyData;
+  }
+
+  /**
+   * Whether or not this reader reads rows from stripes with columnar layout.
+   * @return true if reader is in columnar mode
+   */
+  public boolean isColumnar() {
+    return columnar;
+  }
+
   /** Compute relative row offsets for indexed row */
   private int[] rowOffsets(long nulls) {
     int[] offsets = new int[this.desc.size()];
     // update index fields
     relativeRowOffset(offsets, nulls, this.desc.indexFields());
-    // update data fields
-    relativeRowOffset(offsets, nulls, this.desc.dataFields());
+    // update data fields, offsets of grouped fields are relative to their group region
+    if (this.columns != null) {
+      for (TypeSpec[] group : this.columns) {
+        relativeRowOffset(offsets, nulls, group);
+      }
+    } else {
+      relativeRowOffset(offsets, nulls, this.desc.dataFields());
+    }
     return offsets;
   }
 
@@ -43,6 +43,10 @@ public class IndexedRowWriter {
   private OutputBuffer indexVariableBuffer;
   private OutputBuffer dataFixedBuffer;
   private OutputBuffer dataVariableBuffer;
+  // reused buffer for data region of column groups, null if type description has no groups
+  private OutputBuffer groupsBuffer;
+  // data fields of each column of columnar stripe
+  private final TypeSpec[][] columns;
   // set of converters to use
   private final RowValueConverter[] converters;
 
@@ -53,6 +57,8 @@ public class IndexedRowWriter {
     this.indexVariableBuffer = new OutputBuffer();
     this.dataFixedBuffer = new OutputBuffer();
     this.dataVariableBuffer = new OutputBuffer();
+    this.groupsBuffer = (this.desc.numGroups() > 0) ? new OutputBuffer() : null;
+    this.columns = this.desc.dataColumns();
     // initialize converters, they are reused across rows
     this.converters = new RowValueConverter[this.desc.size()];
     TypeSpec[] arr = this.desc.fields();
@@ -75,10 +81,35 @@ public class IndexedRowWriter {
    * usuallly metadata; write variable part of bytes back to back.
    * If value is null, bit is set and value is skipped.
    *
+   * If type description has column groups, data region consists of regions of each group in
+   * group order, each region is written similar to index region and prefixed with its length:
+   * +------------------------+----------------+-----+------------------------+----------------+
+   * | length of group region | group 0 region | ... | length of group region | group N region |
+   * +------------------------+----------------+-----+------------------------+----------------+
+   *
    * @param row row to write
    * @param out output stream to write to
    */
   public void writeRow(InternalRow row, OutStream out) throws IOException {
+    writeRow(row, out, null);
+  }
+
+  /**
+   * Write content of internal row into separate index and data streams. Index stream contains row
+   * header and index region similar to `writeRow(row, out)`, followed by location of data region
+   * in data stream:
+   * +------------------------+--------------+-----------------------+-----------------------+
+   * | length of index region | index region | length of data region | offset of data region |
+   * +------------------------+--------------+-----------------------+-----------------------+
+   * Data stream contains data regions back to back, so reader can evaluate index regions without
+   * reading data stream and seek data stream to regions of accepted rows only.
+   * If data stream is null, row is written into single stream, see `writeRow(row, out)`.
+   *
+   * @param row row to write
+   * @param out output stream for row header and index region
+   * @param dataOut output stream for data region, can be null
+   */
+  public void writeRow(InternalRow row, OutStream out, OutStream dataOut) throws IOException {
     prepareWrite();
     // collect null information
     long bitset = getNullSet(row);
@@ -101,10 +132,82 @@ public class IndexedRowWriter {
     this.indexFixedBuffer.writeExternal(out);
     this.indexVariableBuffer.writeExternal(out);
     // write data region
-    checkOverflow(this.dataFixedBuffer.bytesWritten(), this.dataVariableBuffer.bytesWritten());
-    out.writeInt(this.dataFixedBuffer.bytesWritten() + this.dataVariableBuffer.bytesWritten());
-    this.dataFixedBuffer.writeExternal(out);
-    this.dataVariableBuffer.writeExternal(out);
+    if (this.groupsBuffer != null) {
+      out.writeInt(this.groupsBuffer.bytesWritten());
+    } else {
+      checkOverflow(this.dataFixedBuffer.bytesWritten(), this.dataVariableBuffer.bytesWritten());
+      out.writeInt(this.dataFixedBuffer.bytesWritten() + this.dataVariableBuffer.bytesWritten());
+    }
+    if (dataOut != null) {
+      // stripe cannot have more than 2GB of data
+      if (dataOut.bytesWritten() > Integer.MAX_VALUE) {
+        throw new AssertionError("Overflow of data stream: " + dataOut.bytesWritten() + " bytes");
+      }
+      out.writeInt((int) dataOut.bytesWritten());
+      writeDataRegion(dataOut);
+    } else {
+      writeDataRegion(out);
+    }
+  }
+
+  /**
+   * Write content of internal row for stripe with columnar layout. Output stream contains row
+   * header and index region similar to `writeRow(row, out)`, followed by row number in stripe:
+   * +------------------------+--------------+----------------------+
+   * | length of index region | index region | row number in stripe |
+   * +------------------------+--------------+----------------------+
+   * Value of each data column, see `TypeDescription.dataColumns()`, is appended to the buffer of
+   * that column; value is written similar to region of column group without length, and is empty
+   * if all fields of column are null. Caller is responsible for recording offsets of values.
+   *
+   * @param row row to write
+   * @param out output stream for row header and index region
+   * @param ordinal row number in stripe
+   * @param columns buffer per data column to append values to
+   */
+  public void writeRow(
+      InternalRow row,
+      OutStream out,
+      int ordinal,
+      OutputBuffer[] columns) throws IOException {
+    if (columns.length != this.columns.length) {
+      throw new IllegalArgumentException("Expected " + this.columns.length +
+        " column buffers, found " + columns.length);
+    }
+    prepareWrite();
+    long bitset = getNullSet(row);
+    bufferIndexRegion(row);
+    if (bitset == 0) {
+      out.write(IndexedRow.MAGIC1);
+    } else {
+      out.write(IndexedRow.MAGIC2);
+      out.writeLong(bitset);
+    }
+    checkOverflow(this.indexFixedBuffer.bytesWritten(), this.indexVariableBuffer.bytesWritten());
+    out.writeInt(this.indexFixedBuffer.bytesWritten() + this.indexVariableBuffer.bytesWritten());
+    this.indexFixedBuffer.writeExternal(out);
+    this.indexVariableBuffer.writeExternal(out);
+    out.writeInt(ordinal);
+    for (int i = 0; i < columns.length; i++) {
+      this.dataFixedBuffer.reset();
+      this.dataVariableBuffer.reset();
+      bufferRegion(row, this.columns[i], this.dataFixedBuffer, this.dataVariableBuffer);
+      checkOverflow(this.dataFixedBuffer.bytesWritten(), this.dataVariableBuffer.bytesWritten());
+      checkOverflow(columns[i].bytesWritten(),
+        this.dataFixedBuffer.bytesWritten() + this.dataVariableBuffer.bytesWritten());
+      this.dataFixedBuffer.writeExternal(columns[i]);
+      this.dataVariableBuffer.writeExternal(columns[i]);
+    }
+  }
+
+  /** Write buffered data region into output stream */
+  private void writeDataRegion(OutStream out) throws IOException {
+    if (this.groupsBuffer != null) {
+      this.groupsBuffer.writeExternal(out);
+    } else {
+      this.dataFixedBuffer.writeExternal(out);
+      this.dataVariableBuffer.writeExternal(out);
+    }
   }
 
   /** Check if two numbers result in int overflow */
@@ -123,6 +226,9 @@ public class IndexedRowWriter {
     this.indexVariableBuffer.reset();
     this.dataFixedBuffer.reset();
     this.dataVariableBuffer.reset();
+    if (this.groupsBuffer != null) {
+      this.groupsBuffer.reset();
+    }
   }
 
   /**
@@ -179,8 +285,26 @@ public class IndexedRowWriter {
     bufferRegion(row, this.desc.indexFields(), this.indexFixedBuffer, this.indexVariableBuffer);
   }
 
-  /** Buffer data region */
+  /**
+   * Buffer data region. If type description has column groups, each group is buffered as separate
+   * region into groups buffer, so offsets of each group are relative to the start of its region.
+   */
   private void bufferDataRegion(InternalRow row) throws IOException {
-    bufferRegion(row, this.desc.dataFields(), this.dataFixedBuffer, this.dataVariableBuffer);
+    if (this.groupsBuffer == null) {
+      bufferRegion(row, this.desc.dataFields(), this.dataFixedBuffer, this.dataVariableBuffer);
+      return;
+    }
+    for (int group = 0; group < this.desc.numGroups(); group++) {
+      this.dataFixedBuffer.reset();
+      this.dataVariableBuffer.reset();
+      bufferRegion(row, this.desc.groupFields(group), this.dataFixedBuffer,
+        this.dataVariableBuffer);
+      checkOverflow(this.dataFixedBuffer.bytesWritten(), this.dataVariableBuffer.bytesWritten());
+      int length = this.dataFixedBuffer.bytesWritten() + this.dataVariableBuffer.bytesWritten();
+      checkOverflow(this.groupsBuffer.bytesWritten(), 4 + length);
+      this.groupsBuffer.writeInt(length);
+      this.dataFixedBuffer.writeExternal(this.groupsBuffer);
+      this.dataVariableBuffer.writeExternal(this.groupsBuffer);
+    }
   }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import org.apache.spark.sql.catalyst.InternalRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sadikovi.riff.tree.FilterApi;
+import com.github.sadikovi.riff.tree.Tree;
+
+/**
+ * Point lookups of keys in Riff table, which is either a single file or a directory of files, e.g.
+ * output of Spark job. Each file is read with equality filter on the field, so files and stripes
+ * are pruned by footer statistics and column filters, and only candidate stripes are read.
+ * Headers and footers are kept in shared cache (see `FileInfoCache`) across lookups, files of
+ * table that are pruned with cached footers do not require any reads. Next files of the table can
+ * be opened in background while current file is scanned, see `FilePipeline`.
+ *
+ * Lookup is created for a list of table files, that is taken once, e.g. with `listFiles()`, and
+ * can be reused for any number of lookups, so lookups do not list table directory or request file
+ * status; files that are added to the table afterwards are not visible to the lookup. Lookup does
+ * not keep any state between calls and can be shared between threads.
+ *
+ * Lookup field should be an index field of the table, otherwise stripes can only be pruned by
+ * statistics and every row of candidate stripes is fully read.
+ */
+public class Lookup {
+  private static final Logger LOG = LoggerFactory.getLogger(Lookup.class);
+
+  // ignore hidden files and files with metadata, same as part files of output committer
+  private static final PathFilter TABLE_FILES = new PathFilter() {
+    @Override
+    public boolean accept(Path path) {
+      return !path.getName().startsWith("_") && !path.getName().startsWith(".");
+    }
+  };
+
+  // file system to use
+  private final FileSystem fs;
+  // configuration with Riff options
+  private final Configuration conf;
+  // files of the table in path order
+  private final FileStatus[] files;
+  // number of files to open ahead, see `FilePipeline`
+  private final int prefetchFiles;
+
+  /**
+   * Create lookup for files of the table, files are read in provided order.
+   * @param fs file system
+   * @param conf configuration with Riff options
+   * @param files files of the table, e.g. result of `listFiles()`
+   */
+  public Lookup(FileSystem fs, Configuration conf, FileStatus[] files) {
+    if (fs == null) throw new IllegalArgumentException("Null file system");
+    if (conf == null) throw new IllegalArgumentException("Null configuration");
+    if (files == null) throw new IllegalArgumentException("Null list of files");
+    this.fs = fs;
+    this.conf = conf;
+    this.files = files;
+    this.prefetchFiles = Riff.Options.prefetchFiles(conf);
+  }
+
+  /**
+   * List files of the table in path order. Directory is not traversed recursively.
+   * @param fs file system
+   * @param table path to the file or directory
+   * @return array of file statuses
+   * @throws IOException
+   */
+  public static FileStatus[] listFiles(FileSystem fs, Path table) throws IOException {
+    FileStatus status = fs.getFileStatus(table);
+    if (!status.isDirectory()) {
+      return new FileStatus[] { status };
+    }
+    ArrayList<FileStatus> files = new ArrayList<FileStatus>();
+    for (FileStatus child : fs.listStatus(table, TABLE_FILES)) {
+      if (!child.isDirectory()) {
+        files.add(child);
+      }
+    }
+    FileStatus[] result = files.toArray(new FileStatus[files.size()]);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Files of the table that are read by this lookup.
+   * @return array of file statuses
+   */
+  public FileStatus[] files() {
+    return files;
+  }
+
+  /**
+   * Return rows of the table that have provided key as value of the field.
+   * @param field field name to look up
+   * @param key key to look up
+   * @return list of matching rows
+   * @throws IOException
+   */
+  public List<InternalRow> lookup(String field, Object key) throws IOException {
+    return lookupAll(field, new Object[] { key });
+  }
+
+  /**
+   * Return rows of the table that have any of the keys as value of the field.
+   * Rows are returned in file order, each row is a copy and can be retained.
+   * @param field field name to look up
+   * @param keys non-empty array of keys
+   * @return list of matching rows
+   * @throws IOException
+   */
+  public List<InternalRow> lookupAll(String field, Object... keys) throws IOException {
+    if (field == null) throw new IllegalArgumentException("Null lookup field");
+    if (keys == null || keys.length == 0) {
+      throw new IllegalArgumentException("Expected at least one key to look up");
+    }
+    Tree filter = (keys.length == 1) ? FilterApi.eqt(field, keys[0]) : FilterApi.in(field, keys);
+    List<InternalRow> rows = new ArrayList<InternalRow>();
+    // next files are opened in background, if enabled, while current file is scanned
+    RowBuffer rowbuf = new FilePipeline(fs, conf, files, filter, prefetchFiles);
+    try {
+      while (rowbuf.hasNext()) {
+        rows.add(rowbuf.next().copy());
+      }
+    } finally {
+      rowbuf.close();
+    }
+    LOG.debug("Found {} rows for {} in {} files", rows.size(), filter, files.length);
+    return rows;
+  }
+
+  @Override
+  public String toString() {
+    return "Lookup[files=" + files.length + "]";
+  }
+}
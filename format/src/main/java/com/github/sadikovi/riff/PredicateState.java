@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import com.github.sadikovi.riff.tree.State;
 import com.github.sadikovi.riff.tree.Tree;
 import com.github.sadikovi.riff.tree.rule.BooleanSimplification;
+import com.github.sadikovi.riff.tree.rule.FieldReferences;
 import com.github.sadikovi.riff.tree.rule.IndexFieldsExtract;
 
 /**
@@ -45,6 +46,8 @@ public class PredicateState {
   private final boolean indexedOnly;
   // state for the tree
   private final State state;
+  // sorted ordinals of fields referenced by active tree
+  private final int[] referencedFields;
 
   /**
    * Given resolved/unresolved tree and type description, perform resolution if possible and extract
@@ -73,6 +76,9 @@ public class PredicateState {
       .transform(new BooleanSimplification());
     this.indexedOnly = this.indexTree.equals(this.tree);
     this.state = this.tree.state();
+    FieldReferences refs = new FieldReferences();
+    (this.indexedOnly ? this.indexTree : this.tree).transform(refs);
+    this.referencedFields = refs.ordinals();
     if (this.indexedOnly) {
       // only maintain index tree at this point
       this.tree = null;
@@ -117,6 +123,15 @@ public class PredicateState {
     return state;
   }
 
+  /**
+   * Return sorted ordinals of fields referenced by active tree, either index tree or full tree.
+   * Only statistics and column filters of these fields are required to evaluate the tree.
+   * @return array of ordinals
+   */
+  public int[] referencedFields() {
+    return referencedFields;
+  }
+
   @Override
   public String toString() {
     return "State[" + state + ", index_tree=" + indexTree + ", tree=" + tree + ", index_only=" +
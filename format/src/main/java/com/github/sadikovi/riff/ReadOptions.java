@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.github.sadikovi.riff.io.BufferPool;
+
+/**
+ * [[ReadOptions]] keeps settings that control how row buffers read stripes from the stream, such
+ * as read-ahead and coalescing of stripe reads. Options are resolved from configuration by file
+ * reader, default instance disables all optimizations and streams stripes one by one.
+ */
+public class ReadOptions {
+  // number of stripes to read ahead, 0 if read-ahead is disabled
+  private int prefetchStripes;
+  // whether or not to decompress stripes as part of read-ahead
+  private boolean prefetchDecompress;
+  // number of stripes to decode concurrently, 0 if parallel decoding is disabled
+  private int parallelStripes;
+  // maximum number of stripe bytes decoded concurrently
+  private long parallelMaxBytes;
+  // maximum gap in bytes between stripes to merge into single read, negative disables merge
+  private long coalesceGap;
+  // maximum size in bytes of the merged read
+  private long coalesceMaxSize;
+  // whether or not local files are memory-mapped
+  private boolean mmapEnabled;
+  // whether or not instream buffers are direct
+  private boolean directBuffers;
+  // whether or not data region of rows is read on first access to data field
+  private boolean lazyData;
+  // buffer pool for stripe and instream buffers, null if buffers are allocated
+  private BufferPool bufferPool;
+
+  public ReadOptions() {
+    this.prefetchStripes = Riff.Options.PREFETCH_STRIPES_DEFAULT;
+    this.prefetchDecompress = Riff.Options.PREFETCH_DECOMPRESS_DEFAULT;
+    this.parallelStripes = Riff.Options.PARALLEL_STRIPES_DEFAULT;
+    this.parallelMaxBytes = Riff.Options.PARALLEL_MAX_BYTES_DEFAULT;
+    this.coalesceGap = Riff.Options.COALESCE_GAP_DEFAULT;
+    this.coalesceMaxSize = Riff.Options.COALESCE_MAX_SIZE_DEFAULT;
+    this.mmapEnabled = Riff.Options.MMAP_ENABLED_DEFAULT;
+    this.directBuffers = Riff.Options.DIRECT_BUFFERS_DEFAULT;
+    this.lazyData = Riff.Options.LAZY_DATA_DEFAULT;
+    this.bufferPool = null;
+  }
+
+  /**
+   * Create read options from configuration.
+   * @param conf configuration with Riff options
+   */
+  public ReadOptions(Configuration conf) {
+    this.prefetchStripes = Riff.Options.prefetchStripes(conf);
+    this.prefetchDecompress = Riff.Options.prefetchDecompress(conf);
+    this.parallelStripes = Riff.Options.parallelStripes(conf);
+    this.parallelMaxBytes = Riff.Options.parallelMaxBytes(conf);
+    this.coalesceGap = Riff.Options.coalesceGap(conf);
+    this.coalesceMaxSize = Riff.Options.coalesceMaxSize(conf);
+    this.mmapEnabled = Riff.Options.mmapEnabled(conf);
+    this.directBuffers = Riff.Options.directBuffers(conf);
+    this.lazyData = Riff.Options.lazyData(conf);
+    this.bufferPool = BufferPool.shared();
+  }
+
+  /**
+   * Set stripe read-ahead.
+   * @param stripes number of stripes to read ahead, 0 disables read-ahead
+   * @param decompress whether or not to decompress stripes in background
+   * @return this instance
+   */
+  public ReadOptions setPrefetch(int stripes, boolean decompress) {
+    if (stripes < 0) {
+      throw new IllegalArgumentException("Invalid number of prefetch stripes: " + stripes);
+    }
+    this.prefetchStripes = stripes;
+    this.prefetchDecompress = decompress;
+    return this;
+  }
+
+  /**
+   * Set parallel decoding of stripes. When enabled, stripes are read and decoded in background,
+   * read-ahead, coalescing and direct buffers are not used.
+   * @param stripes number of stripes to decode concurrently, 0 disables parallel decoding
+   * @param maxBytes maximum number of decoded bytes of stripes in flight, see `StripeDecoder`
+   * @return this instance
+   */
+  public ReadOptions setParallel(int stripes, long maxBytes) {
+    if (stripes < 0) {
+      throw new IllegalArgumentException("Invalid number of parallel stripes: " + stripes);
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Invalid parallel max bytes: " + maxBytes);
+    }
+    this.parallelStripes = stripes;
+    this.parallelMaxBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * Set coalescing of stripe reads.
+   * @param gap maximum gap in bytes between stripes to merge, negative value disables merge
+   * @param maxSize maximum size in bytes of merged read
+   * @return this instance
+   */
+  public ReadOptions setCoalesce(long gap, long maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Invalid coalesce max size: " + maxSize);
+    }
+    this.coalesceGap = gap;
+    this.coalesceMaxSize = maxSize;
+    return this;
+  }
+
+  /**
+   * Set memory-mapping of local files.
+   * @param enabled whether or not to memory-map local files
+   * @return this instance
+   */
+  public ReadOptions setMmap(boolean enabled) {
+    this.mmapEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Set direct buffers for instream, only applied when stripes are uncompressed or codec supports
+   * direct buffers.
+   * @param enabled whether or not to use direct buffers
+   * @return this instance
+   */
+  public ReadOptions setDirectBuffers(boolean enabled) {
+    this.directBuffers = enabled;
+    return this;
+  }
+
+  /**
+   * Set lazy data region of rows, only applied to stripes with separate index and data streams.
+   * @param enabled whether or not to read data region on first access to data field
+   * @return this instance
+   */
+  public ReadOptions setLazyData(boolean enabled) {
+    this.lazyData = enabled;
+    return this;
+  }
+
+  /**
+   * Set buffer pool for stripe and instream buffers.
+   * @param pool buffer pool, null if buffers should be allocated
+   * @return this instance
+   */
+  public ReadOptions setBufferPool(BufferPool pool) {
+    this.bufferPool = pool;
+    return this;
+  }
+
+  /**
+   * Number of stripes to read ahead in background.
+   * @return number of stripes, 0 if read-ahead is disabled
+   */
+  public int prefetchStripes() {
+    return prefetchStripes;
+  }
+
+  /**
+   * Whether or not stripes are decompressed as part of read-ahead.
+   * @return true if decompression is enabled
+   */
+  public boolean prefetchDecompress() {
+    return prefetchDecompress;
+  }
+
+  /**
+   * Number of stripes to decode concurrently.
+   * @return number of stripes, 0 if parallel decoding is disabled
+   */
+  public int parallelStripes() {
+    return parallelStripes;
+  }
+
+  /**
+   * Maximum number of stripe bytes decoded concurrently.
+   * @return bytes
+   */
+  public long parallelMaxBytes() {
+    return parallelMaxBytes;
+  }
+
+  /**
+   * Whether or not stripe reads are coalesced.
+   * @return true if coalescing is enabled
+   */
+  public boolean coalesceEnabled() {
+    return coalesceGap >= 0;
+  }
+
+  /**
+   * Maximum gap in bytes between stripes to merge into single read.
+   * @return gap in bytes, negative if coalescing is disabled
+   */
+  public long coalesceGap() {
+    return coalesceGap;
+  }
+
+  /**
+   * Maximum size in bytes of merged read.
+   * @return size in bytes
+   */
+  public long coalesceMaxSize() {
+    return coalesceMaxSize;
+  }
+
+  /**
+   * Whether or not files of local file system are memory-mapped.
+   * @return true if memory-mapping is enabled
+   */
+  public boolean mmapEnabled() {
+    return mmapEnabled;
+  }
+
+  /**
+   * Whether or not instream uses direct buffers.
+   * @return true if direct buffers are enabled
+   */
+  public boolean directBuffers() {
+    return directBuffers;
+  }
+
+  /**
+   * Whether or not data region of rows is read on first access to data field.
+   * @return true if lazy data region is enabled
+   */
+  public boolean lazyData() {
+    return lazyData;
+  }
+
+  /**
+   * Buffer pool for stripe and instream buffers.
+   * @return buffer pool or null, if buffers are allocated
+   */
+  public BufferPool bufferPool() {
+    return bufferPool;
+  }
+
+  @Override
+  public String toString() {
+    return "ReadOptions[prefetch_stripes=" + prefetchStripes +
+      ", prefetch_decompress=" + prefetchDecompress +
+      ", parallel_stripes=" + parallelStripes +
+      ", parallel_max_bytes=" + parallelMaxBytes +
+      ", coalesce_gap=" + coalesceGap +
+      ", coalesce_max_size=" + coalesceMaxSize +
+      ", mmap_enabled=" + mmapEnabled +
+      ", direct_buffers=" + directBuffers +
+      ", lazy_data=" + lazyData +
+      ", buffer_pool=" + bufferPool + "]";
+  }
+}
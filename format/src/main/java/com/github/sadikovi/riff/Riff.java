@@ -23,16 +23,21 @@
 package com.github.sadikovi.riff;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+import org.apache.spark.sql.catalyst.InternalRow;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.sadikovi.riff.io.BufferPool;
 import com.github.sadikovi.riff.io.CompressionCodec;
 import com.github.sadikovi.riff.io.CompressionCodecFactory;
+import com.github.sadikovi.riff.tree.Tree;
 
 /**
  * [[Riff]] class is the main entrypoint of working with Riff file format.
@@ -69,6 +74,14 @@ import com.github.sadikovi.riff.io.CompressionCodecFactory;
  *   process(rowbuf.next()); // user-specific processing of an InternalRow
  * }
  * rowbuf.close();
+ *
+ * // point lookup of keys in file or directory of files
+ * List<InternalRow> rows = Riff.lookupAll(conf, new org.apache.hadoop.fs.Path("table"), "field",
+ *   "key1", "key2");
+ *
+ * // reusable lookup, table is listed once
+ * Lookup lookup = Riff.lookupTable(conf, new org.apache.hadoop.fs.Path("table"));
+ * rows = lookup.lookup("field", "key1");
  * }}}
  *
  * See additional methods to set options for write/read, such as enforcing compression codec,
@@ -90,6 +103,31 @@ public class Riff {
     public static final String STRIPE_ROWS = "riff.stripe.rows";
     public static final int STRIPE_ROWS_DEFAULT = 10000;
 
+    // number of rows between entries of sparse row index within stripe, 0 disables row index;
+    // this is used for writing only
+    public static final String ROW_INDEX_INTERVAL = "riff.stripe.row.index.interval";
+    public static final int ROW_INDEX_INTERVAL_DEFAULT = 1000;
+
+    // whether or not rows of each stripe are sorted by index fields, key statistics of the first
+    // index field are stored per row index entry, so reader can skip parts of stripe; requires row
+    // index, and is ignored if there are no index fields; this is used for writing only
+    public static final String STRIPE_SORTED = "riff.stripe.sorted";
+    public static final boolean STRIPE_SORTED_DEFAULT = false;
+
+    // whether or not index regions and data regions of rows are written into separate streams of
+    // stripe, so predicate on index fields does not decompress data regions of rejected rows;
+    // ignored if there are no index fields or no data fields; this is used for writing only
+    public static final String STRIPE_SPLIT_STREAMS = "riff.stripe.split.streams";
+    public static final boolean STRIPE_SPLIT_STREAMS_DEFAULT = false;
+
+    // whether or not stripes are written in columnar (PAX) layout: index regions of rows are
+    // written into the first stream of stripe, and values of each data column are stored back to
+    // back in separate stream, so projection only decompresses streams of required columns;
+    // takes precedence over split streams, ignored if there are no data fields; this is used for
+    // writing only
+    public static final String STRIPE_COLUMNAR = "riff.stripe.columnar";
+    public static final boolean STRIPE_COLUMNAR_DEFAULT = false;
+
     // buffer size in bytes
     public static final String BUFFER_SIZE = "riff.buffer.size";
     public static final int BUFFER_SIZE_DEFAULT = 256 * 1024;
@@ -106,6 +144,65 @@ public class Riff {
     // column filters are enabled by default
     public static final boolean COLUMN_FILTER_ENABLED_DEFAULT = true;
 
+    // number of stripes to read ahead in background when scanning file, 0 disables read-ahead
+    public static final String PREFETCH_STRIPES = "riff.read.prefetch.stripes";
+    public static final int PREFETCH_STRIPES_DEFAULT = 0;
+
+    // whether or not stripes are decompressed in background as part of read-ahead
+    public static final String PREFETCH_DECOMPRESS = "riff.read.prefetch.decompress";
+    public static final boolean PREFETCH_DECOMPRESS_DEFAULT = false;
+
+    // number of files to open in background when reading several files, e.g. files of table,
+    // 0 disables opening of files ahead
+    public static final String PREFETCH_FILES = "riff.read.prefetch.files";
+    public static final int PREFETCH_FILES_DEFAULT = 0;
+
+    // number of stripes to decode concurrently when scanning file, 0 disables parallel decoding
+    public static final String PARALLEL_STRIPES = "riff.read.parallel.stripes";
+    public static final int PARALLEL_STRIPES_DEFAULT = 0;
+
+    // maximum number of bytes of stripes that are decoded or kept as decoded rows until they are
+    // consumed, estimated as compressed plus uncompressed bytes of stripe; at least one stripe is
+    // always decoded
+    public static final String PARALLEL_MAX_BYTES = "riff.read.parallel.max.bytes";
+    public static final long PARALLEL_MAX_BYTES_DEFAULT = 128 * 1024 * 1024L;
+
+    // maximum gap in bytes between stripes to merge into single read, negative disables merge
+    public static final String COALESCE_GAP = "riff.read.coalesce.gap";
+    public static final long COALESCE_GAP_DEFAULT = -1L;
+
+    // maximum size in bytes of the merged read
+    public static final String COALESCE_MAX_SIZE = "riff.read.coalesce.max.size";
+    public static final long COALESCE_MAX_SIZE_DEFAULT = 8 * 1024 * 1024L;
+
+    // whether or not to memory-map files of local file system instead of opening stream
+    public static final String MMAP_ENABLED = "riff.read.mmap.enabled";
+    public static final boolean MMAP_ENABLED_DEFAULT = false;
+
+    // number of bytes to read speculatively at the head and the tail of the file when opening
+    // it, so header and footer are read with single request each; 0 disables speculative reads
+    public static final String SPECULATIVE_READ_SIZE = "riff.read.speculative.size";
+    public static final int SPECULATIVE_READ_SIZE_DEFAULT = 64 * 1024;
+
+    // maximum number of bytes kept in cache of file headers and footers shared by readers in JVM,
+    // 0 disables caching; applied by `Riff.configureSharedResources()`
+    public static final String FILE_INFO_CACHE_MAX_BYTES = "riff.read.file.info.cache.max.bytes";
+    public static final long FILE_INFO_CACHE_MAX_BYTES_DEFAULT = FileInfoCache.MAX_BYTES_DEFAULT;
+
+    // whether or not to use direct (off-heap) buffers to read and decompress stripes
+    public static final String DIRECT_BUFFERS = "riff.read.direct.buffers";
+    public static final boolean DIRECT_BUFFERS_DEFAULT = false;
+
+    // whether or not data region of row is read only when data field is accessed, applies to
+    // stripes with separate index and data streams
+    public static final String LAZY_DATA = "riff.read.lazy.data";
+    public static final boolean LAZY_DATA_DEFAULT = false;
+
+    // maximum number of bytes kept in buffer pool shared by readers and writers in JVM,
+    // 0 disables pooling; applied by `Riff.configureSharedResources()`
+    public static final String BUFFER_POOL_MAX_BYTES = "riff.buffer.pool.max.bytes";
+    public static final long BUFFER_POOL_MAX_BYTES_DEFAULT = BufferPool.MAX_BYTES_DEFAULT;
+
     /**
      * Get compression codec from configuration.
      * If option is not set, null value is returned.
@@ -160,6 +257,54 @@ public class Riff {
       return rows;
     }
 
+    /**
+     * Select number of rows between row index entries.
+     * @param conf configuration
+     * @return non-negative interval, 0 if row index is disabled, or throws exception if value is
+     * invalid
+     */
+    static int rowIndexInterval(Configuration conf) {
+      int rows = conf.getInt(ROW_INDEX_INTERVAL, ROW_INDEX_INTERVAL_DEFAULT);
+      if (rows < 0) {
+        throw new IllegalArgumentException("Expected non-negative row index interval, found " +
+          rows + " < 0");
+      }
+      return rows;
+    }
+
+    /**
+     * Select sorted stripes (enable/disable).
+     * Sorted stripes require row index, exception is thrown if row index is disabled.
+     * @param conf configuration
+     * @return true if stripes should be sorted
+     */
+    static boolean stripeSorted(Configuration conf) {
+      boolean sorted = conf.getBoolean(STRIPE_SORTED, STRIPE_SORTED_DEFAULT);
+      if (sorted && rowIndexInterval(conf) == 0) {
+        throw new IllegalArgumentException("Sorted stripes require row index, set " +
+          ROW_INDEX_INTERVAL + " to a positive value");
+      }
+      return sorted;
+    }
+
+    /**
+     * Select stripe layout with separate index and data streams (enable/disable).
+     * @param conf configuration
+     * @return true if index and data regions should be written into separate streams
+     */
+    static boolean stripeSplitStreams(Configuration conf) {
+      return conf.getBoolean(STRIPE_SPLIT_STREAMS, STRIPE_SPLIT_STREAMS_DEFAULT);
+    }
+
+    /**
+     * Select columnar stripe layout (enable/disable).
+     * @param conf configuration
+     * @return true if values of data columns should be written into separate streams of stripe
+     */
+    static boolean stripeColumnar(Configuration conf) {
+      return conf.getBoolean(STRIPE_COLUMNAR, STRIPE_COLUMNAR_DEFAULT);
+    }
+
     /**
      * Select column filters (enable/disable).
      * @param conf configuration
@@ -168,6 +313,163 @@ public class Riff {
     static boolean columnFilterEnabled(Configuration conf) {
       return conf.getBoolean(COLUMN_FILTER_ENABLED, COLUMN_FILTER_ENABLED_DEFAULT);
     }
+
+    /**
+     * Select number of stripes to read ahead.
+     * @param conf configuration
+     * @return non-negative number of stripes, or throws exception if number is invalid
+     */
+    static int prefetchStripes(Configuration conf) {
+      int stripes = conf.getInt(PREFETCH_STRIPES, PREFETCH_STRIPES_DEFAULT);
+      if (stripes < 0) {
+        throw new IllegalArgumentException("Expected non-negative number of prefetch stripes, " +
+          "found " + stripes + " < 0");
+      }
+      return stripes;
+    }
+
+    /**
+     * Select stripe decompression as part of read-ahead (enable/disable).
+     * @param conf configuration
+     * @return true if stripes should be decompressed in background
+     */
+    static boolean prefetchDecompress(Configuration conf) {
+      return conf.getBoolean(PREFETCH_DECOMPRESS, PREFETCH_DECOMPRESS_DEFAULT);
+    }
+
+    /**
+     * Select number of files to open ahead when reading several files.
+     * @param conf configuration
+     * @return non-negative number of files, or throws exception if number is invalid
+     */
+    static int prefetchFiles(Configuration conf) {
+      int files = conf.getInt(PREFETCH_FILES, PREFETCH_FILES_DEFAULT);
+      if (files < 0) {
+        throw new IllegalArgumentException("Expected non-negative number of prefetch files, " +
+          "found " + files + " < 0");
+      }
+      return files;
+    }
+
+    /**
+     * Select number of stripes to decode concurrently.
+     * @param conf configuration
+     * @return non-negative number of stripes, or throws exception if number is invalid
+     */
+    static int parallelStripes(Configuration conf) {
+      int stripes = conf.getInt(PARALLEL_STRIPES, PARALLEL_STRIPES_DEFAULT);
+      if (stripes < 0) {
+        throw new IllegalArgumentException("Expected non-negative number of parallel stripes, " +
+          "found " + stripes + " < 0");
+      }
+      return stripes;
+    }
+
+    /**
+     * Select maximum number of decoded bytes of stripes in flight.
+     * @param conf configuration
+     * @return positive number of bytes, or throws exception if value is invalid
+     */
+    static long parallelMaxBytes(Configuration conf) {
+      long bytes = conf.getLong(PARALLEL_MAX_BYTES, PARALLEL_MAX_BYTES_DEFAULT);
+      if (bytes <= 0) {
+        throw new IllegalArgumentException("Expected positive parallel max bytes, found " +
+          bytes + " <= 0");
+      }
+      return bytes;
+    }
+
+    /**
+     * Select maximum gap between stripes to coalesce reads.
+     * @param conf configuration
+     * @return gap in bytes, negative value means coalescing is disabled
+     */
+    static long coalesceGap(Configuration conf) {
+      return conf.getLong(COALESCE_GAP, COALESCE_GAP_DEFAULT);
+    }
+
+    /**
+     * Select maximum size of coalesced read.
+     * @param conf configuration
+     * @return positive size in bytes, or throws exception if size is invalid
+     */
+    static long coalesceMaxSize(Configuration conf) {
+      long bytes = conf.getLong(COALESCE_MAX_SIZE, COALESCE_MAX_SIZE_DEFAULT);
+      if (bytes <= 0) {
+        throw new IllegalArgumentException("Expected positive coalesce max size, found " +
+          bytes + " <= 0");
+      }
+      return bytes;
+    }
+
+    /**
+     * Select whether or not local files should be memory-mapped.
+     * @param conf configuration
+     * @return true if memory-mapping is enabled
+     */
+    static boolean mmapEnabled(Configuration conf) {
+      return conf.getBoolean(MMAP_ENABLED, MMAP_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Select number of bytes to read speculatively at each end of the file.
+     * @param conf configuration
+     * @return non-negative number of bytes, or throws exception if value is invalid
+     */
+    static int speculativeReadSize(Configuration conf) {
+      int bytes = conf.getInt(SPECULATIVE_READ_SIZE, SPECULATIVE_READ_SIZE_DEFAULT);
+      if (bytes < 0) {
+        throw new IllegalArgumentException("Expected non-negative speculative read size, found " +
+          bytes + " < 0");
+      }
+      return bytes;
+    }
+
+    /**
+     * Select maximum number of bytes kept in shared cache of file headers and footers.
+     * @param conf configuration
+     * @return non-negative number of bytes, or throws exception if value is invalid
+     */
+    static long fileInfoCacheMaxBytes(Configuration conf) {
+      long bytes = conf.getLong(FILE_INFO_CACHE_MAX_BYTES, FILE_INFO_CACHE_MAX_BYTES_DEFAULT);
+      if (bytes < 0) {
+        throw new IllegalArgumentException("Expected non-negative file info cache size, found " +
+          bytes + " < 0");
+      }
+      return bytes;
+    }
+
+    /**
+     * Select whether or not stripes are read into direct buffers.
+     * @param conf configuration
+     * @return true if direct buffers are enabled
+     */
+    static boolean directBuffers(Configuration conf) {
+      return conf.getBoolean(DIRECT_BUFFERS, DIRECT_BUFFERS_DEFAULT);
+    }
+
+    /**
+     * Select whether or not data region of rows is read lazily.
+     * @param conf configuration
+     * @return true if lazy data region is enabled
+     */
+    static boolean lazyData(Configuration conf) {
+      return conf.getBoolean(LAZY_DATA, LAZY_DATA_DEFAULT);
+    }
+
+    /**
+     * Select maximum number of bytes kept in shared buffer pool.
+     * @param conf configuration
+     * @return non-negative number of bytes, or throws exception if value is invalid
+     */
+    static long bufferPoolMaxBytes(Configuration conf) {
+      long bytes = conf.getLong(BUFFER_POOL_MAX_BYTES, BUFFER_POOL_MAX_BYTES_DEFAULT);
+      if (bytes < 0) {
+        throw new IllegalArgumentException("Expected non-negative buffer pool size, found " +
+          bytes + " < 0");
+      }
+      return bytes;
+    }
   }
 
   /**
@@ -203,6 +505,26 @@ public class Riff {
 
   private Riff() { /* no-op */ }
 
+  //////////////////////////////////////////////////////////////
+  // Public API for shared resources
+  //////////////////////////////////////////////////////////////
+
+  /**
+   * Apply maximum sizes of buffer pool and file info cache that are shared by all readers and
+   * writers in JVM. Only options that are set in configuration are applied, readers and writers
+   * never change shared resources, so this method should be called once, e.g. when application
+   * or executor starts.
+   * @param conf configuration with Riff options
+   */
+  public static void configureSharedResources(Configuration conf) {
+    if (conf.get(Options.BUFFER_POOL_MAX_BYTES) != null) {
+      BufferPool.shared(Options.bufferPoolMaxBytes(conf));
+    }
+    if (conf.get(Options.FILE_INFO_CACHE_MAX_BYTES) != null) {
+      FileInfoCache.shared(Options.fileInfoCacheMaxBytes(conf));
+    }
+  }
+
   //////////////////////////////////////////////////////////////
   // Public API for file writer
   //////////////////////////////////////////////////////////////
@@ -282,6 +604,34 @@ public class Riff {
     }
   }
 
+  /**
+   * Get new reader for file of known length, e.g. length from file listing, file status is not
+   * requested from file system.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param path file path to read
+   * @param length file length in bytes
+   * @return file reader
+   */
+  public static FileReader reader(FileSystem fs, Configuration conf, Path path, long length) {
+    return new FileReader(fs, conf, path, length);
+  }
+
+  /**
+   * Get new reader for file of known length.
+   * @param conf configuration with Riff options
+   * @param path file path to read
+   * @param length file length in bytes
+   * @return file reader
+   */
+  public static FileReader reader(Configuration conf, Path path, long length) {
+    try {
+      return reader(path.getFileSystem(conf), conf, path, length);
+    } catch (IOException err) {
+      throw new RuntimeException("Error occured: " + err.getMessage(), err);
+    }
+  }
+
   /**
    * Get new reader.
    * @param conf configuration with Riff options
@@ -296,6 +646,23 @@ public class Riff {
     }
   }
 
+  /**
+   * Get new reader for file that has possibly been read before, e.g. another split of the same
+   * file. File length is resolved from shared cache of headers and footers, and file status is
+   * only requested from file system if file is not cached. File must not be modified while it is
+   * read, otherwise cached length can be stale.
+   * @param conf configuration with Riff options
+   * @param path file path to read
+   * @return file reader
+   */
+  public static FileReader cachedReader(Configuration conf, Path path) {
+    try {
+      return FileReader.cached(path.getFileSystem(conf), conf, path);
+    } catch (IOException err) {
+      throw new RuntimeException("Error occured: " + err.getMessage(), err);
+    }
+  }
+
   /**
    * Get new reader.
    * @param path file path to read
@@ -305,6 +672,203 @@ public class Riff {
     return reader(new Configuration(), path);
   }
 
+  /**
+   * Open file and return reader that can be shared between threads, see `SharedFileReader`.
+   * Method 'close()' should be called on shared reader to close file.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param path file path to read
+   * @return shared file reader
+   * @throws IOException if file cannot be opened or IO error occurs
+   */
+  public static SharedFileReader sharedReader(
+      FileSystem fs,
+      Configuration conf,
+      Path path) throws IOException {
+    return new FileReader(fs, conf, path).share();
+  }
+
+  /**
+   * Open file and return reader that can be shared between threads.
+   * @param conf configuration with Riff options
+   * @param path file path to read
+   * @return shared file reader
+   * @throws IOException if file cannot be opened or IO error occurs
+   */
+  public static SharedFileReader sharedReader(Configuration conf, Path path) throws IOException {
+    return sharedReader(path.getFileSystem(conf), conf, path);
+  }
+
+  /**
+   * Read all files of the table, which is either a single file or a directory of files, in path
+   * order. Next files are opened in background while current file is scanned, number of files to
+   * open ahead is set with `Options.PREFETCH_FILES`, see `FilePipeline` for details.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory
+   * @param filter optional filter, if null then no filter applied
+   * @return row buffer over rows of all files
+   * @throws IOException if table cannot be listed
+   */
+  public static RowBuffer readTable(
+      FileSystem fs,
+      Configuration conf,
+      Path table,
+      Tree filter) throws IOException {
+    return new FilePipeline(fs, conf, Lookup.listFiles(fs, table), filter,
+      Options.prefetchFiles(conf));
+  }
+
+  /**
+   * Read all files of the table in path order, see `readTable(fs, conf, table, filter)`.
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory
+   * @param filter optional filter, if null then no filter applied
+   * @return row buffer over rows of all files
+   * @throws IOException if table cannot be listed
+   */
+  public static RowBuffer readTable(Configuration conf, Path table, Tree filter)
+      throws IOException {
+    return readTable(table.getFileSystem(conf), conf, table, filter);
+  }
+
+  //////////////////////////////////////////////////////////////
+  // Public API for point lookups
+  //////////////////////////////////////////////////////////////
+
+  /**
+   * Create reusable lookup for table, which is either a single file or directory of files.
+   * Table is listed once, lookups made with returned instance do not list table or request file
+   * status, see `Lookup` for details.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @return lookup for files of the table
+   * @throws IOException if table cannot be listed
+   */
+  public static Lookup lookupTable(FileSystem fs, Configuration conf, Path table)
+      throws IOException {
+    return new Lookup(fs, conf, Lookup.listFiles(fs, table));
+  }
+
+  /**
+   * Create reusable lookup for table, see `lookupTable(fs, conf, table)`.
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @return lookup for files of the table
+   * @throws IOException if table cannot be listed
+   */
+  public static Lookup lookupTable(Configuration conf, Path table) throws IOException {
+    return lookupTable(table.getFileSystem(conf), conf, table);
+  }
+
+  /**
+   * Look up rows of table that have provided key as value of index field.
+   * Table is either a single file or directory of files, files and stripes are pruned by
+   * statistics and column filters, and headers and footers are cached across lookups.
+   * Returned rows are copies and can be retained.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param key key to look up
+   * @return list of matching rows
+   * @throws IOException
+   */
+  public static List<InternalRow> lookup(
+      FileSystem fs,
+      Configuration conf,
+      Path table,
+      String indexField,
+      Object key) throws IOException {
+    return lookupTable(fs, conf, table).lookup(indexField, key);
+  }
+
+  /**
+   * Look up rows of table that have provided key as value of index field.
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param key key to look up
+   * @return list of matching rows
+   * @throws IOException
+   */
+  public static List<InternalRow> lookup(
+      Configuration conf,
+      Path table,
+      String indexField,
+      Object key) throws IOException {
+    return lookup(table.getFileSystem(conf), conf, table, indexField, key);
+  }
+
+  /**
+   * Look up rows of table that have provided key as value of index field.
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param key key to look up
+   * @return list of matching rows
+   * @throws IOException
+   */
+  public static List<InternalRow> lookup(
+      Path table,
+      String indexField,
+      Object key) throws IOException {
+    return lookup(new Configuration(), table, indexField, key);
+  }
+
+  /**
+   * Look up rows of table that have any of provided keys as value of index field.
+   * Keys are looked up with single pass over table, see `lookup()` for details.
+   * @param fs file system to use
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param keys keys to look up, at least one key is required
+   * @return list of matching rows in file order
+   * @throws IOException
+   */
+  public static List<InternalRow> lookupAll(
+      FileSystem fs,
+      Configuration conf,
+      Path table,
+      String indexField,
+      Object... keys) throws IOException {
+    return lookupTable(fs, conf, table).lookupAll(indexField, keys);
+  }
+
+  /**
+   * Look up rows of table that have any of provided keys as value of index field.
+   * @param conf configuration with Riff options
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param keys keys to look up, at least one key is required
+   * @return list of matching rows in file order
+   * @throws IOException
+   */
+  public static List<InternalRow> lookupAll(
+      Configuration conf,
+      Path table,
+      String indexField,
+      Object... keys) throws IOException {
+    return lookupAll(table.getFileSystem(conf), conf, table, indexField, keys);
+  }
+
+  /**
+   * Look up rows of table that have any of provided keys as value of index field.
+   * @param table path to the file or directory of files
+   * @param indexField index field name
+   * @param keys keys to look up, at least one key is required
+   * @return list of matching rows in file order
+   * @throws IOException
+   */
+  public static List<InternalRow> lookupAll(
+      Path table,
+      String indexField,
+      Object... keys) throws IOException {
+    return lookupAll(new Configuration(), table, indexField, keys);
+  }
+
   //////////////////////////////////////////////////////////////
   // Public API for metadata write/read
   //////////////////////////////////////////////////////////////
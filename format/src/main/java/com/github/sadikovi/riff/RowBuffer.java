@@ -39,6 +39,8 @@ public interface RowBuffer extends Iterator<InternalRow> {
 
   /**
    * Return next record from buffer.
+   * Row instance can be reused by buffer, so row is only valid until next call to `hasNext()` or
+   * `next()`; use `copy()` to retain row.
    * @return internal row
    */
   InternalRow next();
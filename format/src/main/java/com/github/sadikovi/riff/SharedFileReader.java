@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sadikovi.riff.io.CursorInputStream;
+import com.github.sadikovi.riff.io.MappedInputStream;
+import com.github.sadikovi.riff.tree.Tree;
+
+/**
+ * Shared file reader keeps a single stream open for the file and parsed header and footer, and
+ * returns independent row buffers (cursors) for different filters or splits of the file. Class
+ * is thread-safe and can be used by several threads concurrently, each row buffer should be used
+ * by single thread.
+ *
+ * Row buffers do not seek shared stream, each buffer reads file through its own cursor (see
+ * `CursorInputStream`) that serves reads with positional reads of shared stream; memory-mapped
+ * file is duplicated per cursor instead. Closing row buffer does not close shared stream.
+ *
+ * Usage:
+ * {{{
+ * SharedFileReader reader = Riff.sharedReader(conf, path);
+ * // in each thread
+ * RowBuffer rowbuf = reader.prepareRead(filter);
+ * while (rowbuf.hasNext()) {
+ *   process(rowbuf.next());
+ * }
+ * rowbuf.close();
+ * // once all threads are done
+ * reader.close();
+ * }}}
+ *
+ * Row buffers that are open when shared reader is closed fail on subsequent reads.
+ */
+public class SharedFileReader implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(SharedFileReader.class);
+
+  // shared input stream, all reads are positional reads
+  private final FSDataInputStream in;
+  // file status of the riff file
+  private final FileStatus fileStatus;
+  // file header
+  private final FileHeader fileHeader;
+  // file footer
+  private final FileFooter fileFooter;
+  // offset of the first stripe in file, stripe offsets are relative to this offset
+  private final long dataOffset;
+  // buffer size for instream
+  private final int bufferSize;
+  // options for reading stripes
+  private final ReadOptions readOptions;
+  // whether or not reader is closed
+  private volatile boolean closed;
+
+  SharedFileReader(
+      FSDataInputStream in,
+      FileStatus fileStatus,
+      FileHeader fileHeader,
+      FileFooter fileFooter,
+      long dataOffset,
+      int bufferSize,
+      ReadOptions readOptions) {
+    this.in = in;
+    this.fileStatus = fileStatus;
+    this.fileHeader = fileHeader;
+    this.fileFooter = fileFooter;
+    this.dataOffset = dataOffset;
+    this.bufferSize = bufferSize;
+    this.readOptions = readOptions;
+    this.closed = false;
+  }
+
+  /**
+   * Prepare row buffer without filter.
+   * @return row buffer
+   * @throws IOException
+   */
+  public RowBuffer prepareRead() throws IOException {
+    return prepareRead(null);
+  }
+
+  /**
+   * Prepare row buffer with optional filter.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param filter optional filter, if null then no filter applied
+   * @return row buffer
+   * @throws IOException if reader is closed or IO error occurs
+   */
+  public RowBuffer prepareRead(Tree filter) throws IOException {
+    return prepareRead(filter, 0L, Long.MAX_VALUE);
+  }
+
+  /**
+   * Prepare row buffer that returns at most `limit` rows that match filter, see
+   * `FileReader.prepareRead(filter, limit)`.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param filter optional filter, if null then no filter applied
+   * @param limit maximum number of rows to return
+   * @return row buffer
+   * @throws IOException if reader is closed or IO error occurs
+   */
+  public RowBuffer prepareRead(Tree filter, long limit) throws IOException {
+    return prepareRead(filter, 0L, Long.MAX_VALUE, null, limit);
+  }
+
+  /**
+   * Prepare row buffer for split of the file, only stripes that start within byte range
+   * [start, start + length) are read, see `FileReader.prepareRead(filter, start, length)`.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @return row buffer
+   * @throws IOException if reader is closed or IO error occurs
+   */
+  public RowBuffer prepareRead(Tree filter, long start, long length) throws IOException {
+    return prepareRead(filter, start, length, null);
+  }
+
+  /**
+   * Prepare row buffer for split of the file when only some fields are required, index-only scan
+   * is selected when fields and filter only reference index fields, see
+   * `FileReader.prepareRead(filter, start, length, fields)`.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @param fields required field names, null if all fields are required
+   * @return row buffer
+   * @throws IOException if reader is closed or IO error occurs
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long start,
+      long length,
+      String[] fields) throws IOException {
+    return prepareRead(filter, start, length, fields, Long.MAX_VALUE);
+  }
+
+  /**
+   * Prepare row buffer for split of the file that returns at most `limit` rows, see
+   * `FileReader.prepareRead(filter, start, length, fields, limit)`.
+   * Method 'close()' should be called on row buffer after reading all data.
+   * @param filter optional filter, if null then no filter applied
+   * @param start start of the byte range in file
+   * @param length length of the byte range in bytes
+   * @param fields required field names, null if all fields are required
+   * @param limit maximum number of rows to return, `Long.MAX_VALUE` if there is no limit
+   * @return row buffer
+   * @throws IOException if reader is closed or IO error occurs
+   */
+  public RowBuffer prepareRead(
+      Tree filter,
+      long start,
+      long length,
+      String[] fields,
+      long limit) throws IOException {
+    if (start < 0 || length < 0) {
+      throw new IllegalArgumentException("Invalid split [" + start + ", " + length + "]");
+    }
+    if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
+    if (closed) throw new IOException("Reader is closed");
+    PredicateState state = null;
+    if (filter != null) {
+      state = new PredicateState(filter, fileHeader.getTypeDescription());
+    }
+    StripeInformation[] stripes =
+      FileReader.selectStripes(fileFooter, dataOffset, state, start, length);
+    if (stripes == null || stripes.length == 0 || limit == 0) {
+      LOG.debug("No stripes to read for {}", fileStatus.getPath());
+      return Buffers.emptyRowBuffer(null);
+    }
+    long requiredFields =
+      FileReader.requiredFields(fileHeader.getTypeDescription(), state, fields);
+    FSDataInputStream cursor = openCursor();
+    try {
+      cursor.seek(dataOffset);
+      // codec is closed by row buffer, so each buffer has its own instance
+      return Buffers.prepareRowBuffer(cursor, stripes, fileHeader.getTypeDescription(),
+        Riff.decodeCompressionCodec(fileHeader.state(0)), bufferSize, state, readOptions,
+        requiredFields, limit);
+    } catch (IOException ioe) {
+      cursor.close();
+      throw ioe;
+    }
+  }
+
+  /** Open cursor over shared stream with its own position */
+  private FSDataInputStream openCursor() throws IOException {
+    InputStream stream;
+    if (in.getWrappedStream() instanceof MappedInputStream) {
+      // mapped stream keeps slicing of stripes
+      stream = ((MappedInputStream) in.getWrappedStream()).duplicate();
+    } else {
+      stream = new CursorInputStream(in, fileStatus.getLen());
+    }
+    return new FSDataInputStream(stream);
+  }
+
+  /**
+   * File header of this reader.
+   * @return file header
+   */
+  public FileHeader getFileHeader() {
+    return fileHeader;
+  }
+
+  /**
+   * File footer of this reader.
+   * @return file footer
+   */
+  public FileFooter getFileFooter() {
+    return fileFooter;
+  }
+
+  /**
+   * Get file property.
+   * @param key file property key
+   * @return value as String or null, if no such key exists
+   */
+  public String getFileProperty(String key) {
+    return fileHeader.getProperty(key);
+  }
+
+  /**
+   * Get file path for this reader.
+   * @return file path
+   */
+  public Path filePath() {
+    return fileStatus.getPath();
+  }
+
+  /**
+   * Get file status for this reader.
+   * @return file status
+   */
+  public FileStatus getFileStatus() {
+    return fileStatus;
+  }
+
+  /**
+   * Whether or not reader is closed.
+   * @return true if reader is closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Close shared stream, subsequent calls are no-op.
+   * @throws IOException
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      in.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SharedFileReader[" +
+      "status=" + fileStatus +
+      ", buffer_size=" + bufferSize +
+      ", read_options=" + readOptions +
+      ", closed=" + closed + "]";
+  }
+}
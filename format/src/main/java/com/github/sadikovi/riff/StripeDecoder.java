@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.spark.sql.catalyst.InternalRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sadikovi.riff.io.BufferPool;
+import com.github.sadikovi.riff.io.ChunkIndex;
+import com.github.sadikovi.riff.io.CompressionCodec;
+import com.github.sadikovi.riff.io.CompressionCodecFactory;
+import com.github.sadikovi.riff.io.InStream;
+import com.github.sadikovi.riff.io.MappedInputStream;
+import com.github.sadikovi.riff.io.StripeInputBuffer;
+
+/**
+ * Stripe decoder reads, decompresses and decodes up to N stripes concurrently, and returns rows
+ * of each stripe in the same order as provided array of stripes. Each stripe is decoded by a
+ * separate task with its own codec, instream and row reader, tasks only share raw input stream
+ * that is read with positional reads, so decoder does not modify position of the raw stream.
+ *
+ * Decoded stripes are kept in memory as copied rows until they are consumed, number of stripes
+ * in flight is bounded by both number of stripes and their decoded bytes, see `decodedBytes()`;
+ * the first pending stripe is always scheduled, even if it is larger than byte limit.
+ */
+class StripeDecoder {
+  private static final Logger LOG = LoggerFactory.getLogger(StripeDecoder.class);
+
+  // shared pool of daemon threads to decode stripes for all decoders within JVM, pool is bounded
+  // by number of available processors; tasks block on positional reads of stripe bytes, so fixed
+  // pool is used instead of fork-join pool that expects non-blocking tasks
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+    Runtime.getRuntime().availableProcessors(),
+    new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "riff-stripe-decode-" + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  // raw input stream, shared with all tasks
+  private final FSDataInputStream in;
+  // stream offset of the first stripe
+  private final long offset;
+  // stripes to decode, sorted by offsets
+  private final StripeInformation[] stripes;
+  // estimated decoded bytes of each stripe
+  private final long[] stripeBytes;
+  // type description for records
+  private final TypeDescription td;
+  // compression codec, used to create codec instance per task, can be null
+  private final CompressionCodec codec;
+  // buffer size for instream
+  private final int bufferSize;
+  // predicate state to filter rows, null if all rows are returned
+  private final PredicateState state;
+  // bit set of required fields, see `IndexedRowReader`
+  private final long requiredFields;
+  // fields referenced by predicate state, null if state is not set
+  private final int[] fields;
+  // memory-mapped file that backs raw input stream, null if stream is not mapped
+  private final MappedInputStream mapped;
+  // buffer pool for stripe and instream buffers, can be null
+  private final BufferPool pool;
+  // maximum number of stripes and decoded bytes in flight
+  private final int numStripes;
+  private final long maxBytes;
+  // pending stripe tasks in stripe order
+  private final ArrayDeque<Future<List<InternalRow>>> pending;
+  // index of the next stripe to schedule and index of the next stripe to return
+  private int nextStripeIndex;
+  private int returnStripeIndex;
+  // total decoded bytes of scheduled stripes that have not been returned yet, and of the last
+  // returned stripe, whose rows are consumed until the next call
+  private long pendingBytes;
+  private long returnedBytes;
+  // set when decoder is closed, running tasks stop reading and decoding stripes
+  private volatile boolean closed;
+
+  /**
+   * Create stripe decoder and schedule the first stripes.
+   * @param in raw input stream
+   * @param offset stream offset for each stripe
+   * @param stripes sorted array of stripes to decode
+   * @param td type description for records
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param state predicate state, null - rows are not filtered
+   * @param requiredFields bit set of required fields, data fields that are not required can be
+   *   skipped
+   * @param numStripes number of stripes to decode concurrently, must be positive
+   * @param maxBytes maximum number of decoded bytes of stripes in flight, must be positive
+   * @param pool buffer pool for stripe and instream buffers, null if buffers are allocated
+   */
+  StripeDecoder(
+      FSDataInputStream in,
+      long offset,
+      StripeInformation[] stripes,
+      TypeDescription td,
+      CompressionCodec codec,
+      int bufferSize,
+      PredicateState state,
+      long requiredFields,
+      int numStripes,
+      long maxBytes,
+      BufferPool pool) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("Expected positive number of stripes, found " +
+        numStripes);
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Expected positive max bytes, found " + maxBytes);
+    }
+    this.in = in;
+    this.offset = offset;
+    this.stripes = stripes;
+    this.stripeBytes = new long[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      this.stripeBytes[i] = decodedBytes(stripes[i], bufferSize);
+    }
+    this.td = td;
+    this.codec = codec;
+    this.bufferSize = bufferSize;
+    this.state = state;
+    this.requiredFields = requiredFields;
+    this.fields = (state == null) ? null : state.referencedFields();
+    this.mapped = (in.getWrappedStream() instanceof MappedInputStream) ?
+      (MappedInputStream) in.getWrappedStream() : null;
+    this.pool = pool;
+    this.numStripes = numStripes;
+    this.maxBytes = maxBytes;
+    this.pending = new ArrayDeque<Future<List<InternalRow>>>();
+    this.nextStripeIndex = 0;
+    this.returnStripeIndex = 0;
+    this.pendingBytes = 0;
+    this.returnedBytes = 0;
+    this.closed = false;
+    schedule();
+  }
+
+  /**
+   * Estimate number of bytes stripe occupies while it is decoded and kept in memory: compressed
+   * bytes of stripe plus uncompressed bytes of its streams, which bound bytes of copied rows.
+   * Uncompressed length of compressed stream is estimated with chunk index, since every chunk
+   * contains at most `bufferSize` uncompressed bytes; if stream does not have chunk index, e.g.
+   * written by older version, compressed length is used instead.
+   * @param info stripe information
+   * @param bufferSize buffer size of instream
+   * @return estimated number of bytes
+   */
+  static long decodedBytes(StripeInformation info, int bufferSize) {
+    long bytes = info.length();
+    if (info.hasColumnStreams()) {
+      bytes += streamBytes(info.getChunkIndex(), info.indexStreamLength(), bufferSize);
+      for (int i = 0; i < info.numColumnStreams(); i++) {
+        bytes += streamBytes(info.getColumnChunkIndex(i), info.columnLength(i), bufferSize);
+      }
+    } else if (info.hasSplitStreams()) {
+      bytes += streamBytes(info.getChunkIndex(), info.dataOffset(), bufferSize);
+      bytes += streamBytes(info.getDataChunkIndex(), info.length() - info.dataOffset(),
+        bufferSize);
+    } else {
+      bytes += streamBytes(info.getChunkIndex(), info.length(), bufferSize);
+    }
+    return bytes;
+  }
+
+  /** Estimated uncompressed length of stream, see `decodedBytes()` */
+  private static long streamBytes(ChunkIndex chunkIndex, long length, int bufferSize) {
+    if (chunkIndex == null || chunkIndex.numChunks() == 0) return length;
+    return chunkIndex.uncompressedOffset(chunkIndex.numChunks() - 1) + bufferSize;
+  }
+
+  /**
+   * Schedule stripes until either number of stripes or byte limit is reached, or no stripes are
+   * left. Stripe is scheduled regardless of byte limit if there are no pending stripes.
+   */
+  private void schedule() {
+    while (nextStripeIndex < stripes.length && pending.size() < numStripes &&
+        (pending.isEmpty() || pendingBytes + stripeBytes[nextStripeIndex] <= maxBytes)) {
+      LOG.debug("Schedule decoding of stripe {}, estimated {} bytes", stripes[nextStripeIndex],
+        stripeBytes[nextStripeIndex]);
+      pendingBytes += stripeBytes[nextStripeIndex];
+      final StripeInformation info = stripes[nextStripeIndex++];
+      pending.add(EXECUTOR.submit(new Callable<List<InternalRow>>() {
+        @Override
+        public List<InternalRow> call() throws IOException {
+          return decodeStripe(info);
+        }
+      }));
+    }
+  }
+
+  /** Read stripe bytes and decode rows, codec is created per call, since it is not thread-safe */
+  private List<InternalRow> decodeStripe(StripeInformation info) throws IOException {
+    // raw stream can be closed after decoder is closed
+    if (closed) return Collections.emptyList();
+    byte[] data = null;
+    StripeInputBuffer stripe;
+    if (mapped != null && mapped.canSlice(info.offset() + offset, info.length())) {
+      // stripe shares bytes with mapping, no copy is made
+      stripe = new StripeInputBuffer(info.id(), mapped.slice(info.offset() + offset,
+        info.length()));
+    } else {
+      data = (pool == null) ? new byte[info.length()] : pool.acquire(info.length());
+      in.readFully(info.offset() + offset, data, 0, info.length());
+      stripe = new StripeInputBuffer(info.id(), data, 0, info.length());
+    }
+    CompressionCodec taskCodec = (codec == null) ? null :
+      CompressionCodecFactory.decode(CompressionCodecFactory.encode(codec));
+    InStream stream = null;
+    InStream dataStream = null;
+    ColumnStreams columns = null;
+    try {
+      if (info.hasColumnStreams()) {
+        // column streams are opened on the first access, only required columns are decompressed
+        columns = new ColumnStreams(stripe, info, taskCodec, bufferSize, pool);
+        stream = new InStream(bufferSize, taskCodec, stripe.slice(0, info.indexStreamLength()),
+          pool);
+      } else if (info.hasSplitStreams()) {
+        // index and data streams are read independently from slices of stripe
+        dataStream = new InStream(bufferSize, taskCodec,
+          stripe.slice(info.dataOffset(), info.length() - info.dataOffset()), pool);
+        stream = new InStream(bufferSize, taskCodec, stripe.slice(0, info.dataOffset()), pool);
+        if (taskCodec != null) {
+          dataStream.setChunkIndex(info.getDataChunkIndex());
+        }
+      } else {
+        stream = new InStream(bufferSize, taskCodec, stripe, pool);
+      }
+      if (taskCodec != null) {
+        stream.setChunkIndex(info.getChunkIndex());
+      }
+      return decodeRows(info, stream, dataStream, columns);
+    } finally {
+      if (stream != null) {
+        stream.close();
+      }
+      if (dataStream != null) {
+        dataStream.close();
+      }
+      if (columns != null) {
+        columns.close();
+      }
+      stripe.close();
+      if (taskCodec != null) {
+        taskCodec.close();
+      }
+      if (pool != null && data != null) {
+        pool.release(data);
+      }
+    }
+  }
+
+  /**
+   * Decode rows of the stripe, rows are copied, since regions of rows read from instream can
+   * reference instream buffers. If stripe is sorted by field referenced in predicate, row index
+   * entries that cannot match predicate are skipped.
+   */
+  private List<InternalRow> decodeRows(
+      StripeInformation info,
+      InStream stream,
+      InStream dataStream,
+      ColumnStreams columns) throws IOException {
+    IndexedRowReader reader =
+      new IndexedRowReader(td, true, requiredFields, false, columns != null);
+    boolean[] candidates = (state == null) ? null : Buffers.keyCandidates(info, state, fields);
+    List<InternalRow> rows = new ArrayList<InternalRow>(Math.max(info.numRows(), 16));
+    int stripeRow = 0;
+    while (!closed && stream.available() > 0) {
+      if (candidates != null) {
+        stripeRow = Buffers.positionCandidate(info, stream, candidates, stripeRow);
+        if (stripeRow < 0) break;
+      }
+      InternalRow row;
+      if (columns != null) {
+        row = (state == null) ? reader.readRow(stream, columns) :
+          reader.readRow(stream, columns, state);
+      } else {
+        row = (state == null) ? reader.readRow(stream, dataStream) :
+          reader.readRow(stream, dataStream, state);
+      }
+      stripeRow++;
+      if (row != null) {
+        rows.add(row.copy());
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Whether or not there are more stripes to return.
+   * @return true if more stripes are available
+   */
+  public boolean hasNext() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Return rows of the next stripe, blocks until stripe is decoded.
+   * Returned rows are owned by the caller.
+   * @return list of rows, can be empty if no rows match predicate
+   * @throws IOException if read or decoding of the stripe failed
+   */
+  public List<InternalRow> next() throws IOException {
+    Future<List<InternalRow>> future = pending.poll();
+    if (future == null) throw new NoSuchElementException("No stripes left");
+    // rows of the previously returned stripe are consumed at this point
+    pendingBytes -= returnedBytes;
+    returnedBytes = stripeBytes[returnStripeIndex++];
+    // keep decoding next stripes while rows of this stripe are consumed
+    schedule();
+    try {
+      return future.get();
+    } catch (InterruptedException err) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for stripe", err);
+    } catch (ExecutionException err) {
+      if (err.getCause() instanceof IOException) {
+        throw (IOException) err.getCause();
+      }
+      throw new IOException("Failed to decode stripe", err.getCause());
+    }
+  }
+
+  /**
+   * Cancel pending tasks and wait for tasks that are already running, so raw stream can be closed
+   * once method returns. Running tasks stop decoding rows, their results are discarded.
+   */
+  public void close() {
+    closed = true;
+    for (Future<List<InternalRow>> future : pending) {
+      if (!future.cancel(false)) {
+        try {
+          future.get();
+        } catch (InterruptedException err) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException err) {
+          LOG.warn("Exception occuried during release of resources: {}", err.getMessage());
+        }
+      }
+    }
+    pending.clear();
+    pendingBytes = 0;
+    returnedBytes = 0;
+    nextStripeIndex = stripes.length;
+    returnStripeIndex = stripes.length;
+  }
+
+  @Override
+  public String toString() {
+    return "StripeDecoder[stripes=" + numStripes + ", max_bytes=" + maxBytes + "]";
+  }
+}
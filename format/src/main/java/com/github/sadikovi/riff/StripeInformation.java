@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.github.sadikovi.riff.column.ColumnFilter;
+import com.github.sadikovi.riff.io.ChunkIndex;
 import com.github.sadikovi.riff.io.OutputBuffer;
 import com.github.sadikovi.riff.io.StripeOutputBuffer;
 import com.github.sadikovi.riff.stats.Statistics;
@@ -45,6 +46,36 @@ public class StripeInformation implements Comparable<StripeInformation> {
   private final Statistics[] stats;
   // array of column filters, each index matches type spec index in type description
   private final ColumnFilter[] filters;
+  // footer directory to decode statistics and filters from, null if arrays are fully loaded
+  private final FooterDirectory directory;
+  // index of the stripe in footer directory
+  private final int index;
+  // number of rows in stripe, -1 if unknown
+  private final int numRows;
+  // number of rows between entries of row index
+  private final int rowIndexInterval;
+  // sparse row index, uncompressed stream offset of every `rowIndexInterval` row starting with
+  // row 0, null if stripe has no row index
+  private final long[] rowIndex;
+  // ordinal of the field that rows of stripe are sorted by, -1 if stripe is not sorted
+  private final int sortOrdinal;
+  // key directory of sorted stripe, statistics of sort field per row index entry, null if stripe
+  // is not sorted
+  private final Statistics[] keyStats;
+  // offsets of compressed chunks in stripe, null if stripe is uncompressed or index is not stored
+  private final ChunkIndex chunkIndex;
+  // offset of data stream in stripe, if index and data regions are written into separate streams,
+  // -1 if regions are interleaved in single stream
+  private final int dataOffset;
+  // offsets of compressed chunks relative to data stream, null if stripe does not have separate
+  // data stream, or data stream is uncompressed
+  private final ChunkIndex dataChunkIndex;
+  // offsets of column streams in stripe, if stripe has columnar layout, null otherwise; index
+  // stream occupies bytes before the first column stream
+  private final int[] columnOffsets;
+  // offsets of compressed chunks relative to each column stream, null if stripe does not have
+  // column streams, or streams are uncompressed
+  private final ChunkIndex[] columnChunkIndexes;
 
   public StripeInformation(StripeOutputBuffer stripe, long pos) {
     this(stripe.id(), pos, stripe.length(), null, null);
@@ -59,20 +90,308 @@ public class StripeInformation implements Comparable<StripeInformation> {
     this(stripe.id(), pos, stripe.length(), stats, filters);
   }
 
+  public StripeInformation(
+      StripeOutputBuffer stripe,
+      long pos,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats,
+      ChunkIndex chunkIndex) {
+    this(stripe.id(), pos, stripe.length(), stats, filters, numRows, rowIndexInterval, rowIndex,
+      sortOrdinal, keyStats, chunkIndex);
+  }
+
   public StripeInformation(short id, long offset, int length, Statistics[] stats) {
     this(id, offset, length, stats, null);
   }
 
   public StripeInformation(
       short id, long offset, int length, Statistics[] stats, ColumnFilter[] filters) {
+    this(id, offset, length, stats, filters, -1, 0, null);
+  }
+
+  /**
+   * Create stripe information with number of rows and optional sparse row index.
+   * @param id stripe id
+   * @param offset stripe offset relative to the first stripe
+   * @param length stripe length in bytes
+   * @param stats statistics, can be null
+   * @param filters column filters, can be null
+   * @param numRows number of rows in stripe, -1 if unknown
+   * @param rowIndexInterval number of rows between row index entries, ignored if index is null
+   * @param rowIndex uncompressed offsets of every `rowIndexInterval` row, can be null
+   */
+  public StripeInformation(
+      short id,
+      long offset,
+      int length,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex) {
+    this(id, offset, length, stats, filters, numRows, rowIndexInterval, rowIndex, -1, null);
+  }
+
+  /**
+   * Create stripe information for stripe with rows sorted by field. Key directory contains
+   * statistics of sort field for rows of each row index entry, so rows of stripe can be pruned
+   * without reading them.
+   * @param id stripe id
+   * @param offset stripe offset relative to the first stripe
+   * @param length stripe length in bytes
+   * @param stats statistics, can be null
+   * @param filters column filters, can be null
+   * @param numRows number of rows in stripe, -1 if unknown
+   * @param rowIndexInterval number of rows between row index entries, ignored if index is null
+   * @param rowIndex uncompressed offsets of every `rowIndexInterval` row, can be null
+   * @param sortOrdinal ordinal of sort field, ignored if key directory is null
+   * @param keyStats statistics of sort field per row index entry, can be null
+   */
+  public StripeInformation(
+      short id,
+      long offset,
+      int length,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats) {
+    this(id, offset, length, stats, filters, numRows, rowIndexInterval, rowIndex, sortOrdinal,
+      keyStats, null);
+  }
+
+  /**
+   * Create stripe information with chunk index of compressed stripe, see `ChunkIndex`.
+   * @param id stripe id
+   * @param offset stripe offset relative to the first stripe
+   * @param length stripe length in bytes
+   * @param stats statistics, can be null
+   * @param filters column filters, can be null
+   * @param numRows number of rows in stripe, -1 if unknown
+   * @param rowIndexInterval number of rows between row index entries, ignored if index is null
+   * @param rowIndex uncompressed offsets of every `rowIndexInterval` row, can be null
+   * @param sortOrdinal ordinal of sort field, ignored if key directory is null
+   * @param keyStats statistics of sort field per row index entry, can be null
+   * @param chunkIndex offsets of compressed chunks, can be null
+   */
+  public StripeInformation(
+      short id,
+      long offset,
+      int length,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats,
+      ChunkIndex chunkIndex) {
+    this(id, offset, length, stats, filters, numRows, rowIndexInterval, rowIndex, sortOrdinal,
+      keyStats, chunkIndex, -1, null);
+  }
+
+  /**
+   * Create stripe information for stripe with separate index and data streams, see
+   * `StripeInformation(..., dataOffset, dataChunkIndex, columnOffsets, columnChunkIndexes)`.
+   */
+  public StripeInformation(
+      short id,
+      long offset,
+      int length,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats,
+      ChunkIndex chunkIndex,
+      int dataOffset,
+      ChunkIndex dataChunkIndex) {
+    this(id, offset, length, stats, filters, numRows, rowIndexInterval, rowIndex, sortOrdinal,
+      keyStats, chunkIndex, dataOffset, dataChunkIndex, null, null);
+  }
+
+  /**
+   * Create stripe information for stripe with separate index and data streams. Index stream
+   * starts at the beginning of the stripe and contains row headers, index regions and location of
+   * data regions, data stream starts at `dataOffset` and contains data regions only, see
+   * `IndexedRowWriter`. Chunk index and row index reference index stream.
+   * @param id stripe id
+   * @param offset stripe offset relative to the first stripe
+   * @param length stripe length in bytes
+   * @param stats statistics, can be null
+   * @param filters column filters, can be null
+   * @param numRows number of rows in stripe, -1 if unknown
+   * @param rowIndexInterval number of rows between row index entries, ignored if index is null
+   * @param rowIndex uncompressed offsets of every `rowIndexInterval` row, can be null
+   * @param sortOrdinal ordinal of sort field, ignored if key directory is null
+   * @param keyStats statistics of sort field per row index entry, can be null
+   * @param chunkIndex offsets of compressed chunks of index stream, can be null
+   * Stripe with columnar layout has index stream followed by stream per data column, see
+   * `TypeDescription.dataColumns()`; index stream contains row headers, index regions and row
+   * numbers, column streams contain values of column for all rows of stripe.
+   *
+   * @param dataOffset offset of data stream in stripe, -1 if stripe has single stream
+   * @param dataChunkIndex offsets of compressed chunks relative to data stream, can be null
+   * @param columnOffsets offsets of column streams in stripe, null if stripe is not columnar
+   * @param columnChunkIndexes offsets of compressed chunks relative to each column stream, can be
+   *   null, as well as chunk index of any column
+   */
+  public StripeInformation(
+      short id,
+      long offset,
+      int length,
+      Statistics[] stats,
+      ColumnFilter[] filters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats,
+      ChunkIndex chunkIndex,
+      int dataOffset,
+      ChunkIndex dataChunkIndex,
+      int[] columnOffsets,
+      ChunkIndex[] columnChunkIndexes) {
     if (id < 0) throw new IllegalArgumentException("Negative id: " + id);
     if (offset < 0) throw new IllegalArgumentException("Negative offset: " + offset);
     if (length < 0) throw new IllegalArgumentException("Negative length: " + length);
+    checkRowIndex(numRows, rowIndexInterval, rowIndex);
+    checkKeyStatistics(rowIndex, sortOrdinal, keyStats);
+    checkDataOffset(length, dataOffset);
+    checkColumnOffsets(length, dataOffset, columnOffsets, columnChunkIndexes);
     this.id = id;
     this.offset = offset;
     this.length = length;
     this.stats = stats;
     this.filters = filters;
+    this.directory = null;
+    this.index = -1;
+    this.numRows = numRows;
+    this.rowIndexInterval = (rowIndex == null) ? 0 : rowIndexInterval;
+    this.rowIndex = rowIndex;
+    this.sortOrdinal = (keyStats == null) ? -1 : sortOrdinal;
+    this.keyStats = keyStats;
+    this.chunkIndex = chunkIndex;
+    this.dataOffset = dataOffset;
+    this.dataChunkIndex = (dataOffset < 0) ? null : dataChunkIndex;
+    this.columnOffsets = columnOffsets;
+    this.columnChunkIndexes = (columnOffsets == null) ? null : columnChunkIndexes;
+  }
+
+  /** Check that data stream is within stripe */
+  private static void checkDataOffset(int length, int dataOffset) {
+    if (dataOffset < -1 || dataOffset > length) {
+      throw new IllegalArgumentException("Invalid data offset " + dataOffset + " for stripe of " +
+        length + " bytes");
+    }
+  }
+
+  /** Check that column streams are within stripe and follow each other */
+  private static void checkColumnOffsets(
+      int length,
+      int dataOffset,
+      int[] columnOffsets,
+      ChunkIndex[] columnChunkIndexes) {
+    if (columnOffsets == null) return;
+    if (dataOffset >= 0) {
+      throw new IllegalArgumentException("Stripe cannot have both data stream at offset " +
+        dataOffset + " and column streams");
+    }
+    int previous = 0;
+    for (int i = 0; i < columnOffsets.length; i++) {
+      if (columnOffsets[i] < previous || columnOffsets[i] > length) {
+        throw new IllegalArgumentException("Invalid column offsets " +
+          Arrays.toString(columnOffsets) + " for stripe of " + length + " bytes");
+      }
+      previous = columnOffsets[i];
+    }
+    if (columnChunkIndexes != null && columnChunkIndexes.length != columnOffsets.length) {
+      throw new IllegalArgumentException("Expected " + columnOffsets.length +
+        " column chunk indexes, found " + columnChunkIndexes.length);
+    }
+  }
+
+  /** Check that key directory has statistics for each row index entry */
+  private static void checkKeyStatistics(long[] rowIndex, int sortOrdinal, Statistics[] keyStats) {
+    if (keyStats == null) return;
+    if (rowIndex == null || sortOrdinal < 0 || keyStats.length != rowIndex.length) {
+      throw new IllegalArgumentException("Invalid key directory of " + keyStats.length +
+        " entries for sort ordinal " + sortOrdinal + " and row index of " +
+        (rowIndex == null ? 0 : rowIndex.length) + " entries");
+    }
+  }
+
+  /** Check that row index covers all rows of the stripe */
+  private static void checkRowIndex(int numRows, int interval, long[] rowIndex) {
+    if (numRows < -1) throw new IllegalArgumentException("Invalid number of rows: " + numRows);
+    if (rowIndex == null) return;
+    if (numRows < 0 || interval <= 0 ||
+        rowIndex.length != (int) ((numRows + (long) interval - 1) / interval)) {
+      throw new IllegalArgumentException("Invalid row index of " + rowIndex.length +
+        " entries for " + numRows + " rows and interval " + interval);
+    }
+  }
+
+  /**
+   * Create stripe information that decodes statistics and column filters lazily from footer
+   * directory; arrays are allocated, but only filled when requested.
+   */
+  StripeInformation(
+      short id,
+      long offset,
+      int length,
+      FooterDirectory directory,
+      int index,
+      boolean hasStatistics,
+      boolean hasFilters,
+      int numRows,
+      int rowIndexInterval,
+      long[] rowIndex,
+      int sortOrdinal,
+      Statistics[] keyStats,
+      ChunkIndex chunkIndex,
+      int dataOffset,
+      ChunkIndex dataChunkIndex,
+      int[] columnOffsets,
+      ChunkIndex[] columnChunkIndexes) throws IOException {
+    if (id < 0 || offset < 0 || length < 0) {
+      throw new IOException("Invalid stripe [id=" + id + ", offset=" + offset + ", length=" +
+        length + "] in " + directory);
+    }
+    try {
+      checkRowIndex(numRows, rowIndexInterval, rowIndex);
+      checkKeyStatistics(rowIndex, sortOrdinal, keyStats);
+      checkDataOffset(length, dataOffset);
+      checkColumnOffsets(length, dataOffset, columnOffsets, columnChunkIndexes);
+    } catch (IllegalArgumentException err) {
+      throw new IOException(err.getMessage() + " in " + directory, err);
+    }
+    this.id = id;
+    this.offset = offset;
+    this.length = length;
+    this.stats = hasStatistics ? new Statistics[directory.numColumns()] : null;
+    this.filters = hasFilters ? new ColumnFilter[directory.numColumns()] : null;
+    this.directory = directory;
+    this.index = index;
+    this.numRows = numRows;
+    this.rowIndexInterval = (rowIndex == null) ? 0 : rowIndexInterval;
+    this.rowIndex = rowIndex;
+    this.sortOrdinal = (keyStats == null) ? -1 : sortOrdinal;
+    this.keyStats = keyStats;
+    this.chunkIndex = chunkIndex;
+    this.dataOffset = dataOffset;
+    this.dataChunkIndex = (dataOffset < 0) ? null : dataChunkIndex;
+    this.columnOffsets = columnOffsets;
+    this.columnChunkIndexes = (columnOffsets == null) ? null : columnChunkIndexes;
   }
 
   /**
@@ -99,6 +418,177 @@ public class StripeInformation implements Comparable<StripeInformation> {
     return this.length;
   }
 
+  /**
+   * Get number of rows in stripe.
+   * @return number of rows, or -1 if stripe was written without row count
+   */
+  public int numRows() {
+    return this.numRows;
+  }
+
+  /**
+   * Whether or not this stripe has sparse row index.
+   * @return true if stripe has row index, false otherwise
+   */
+  public boolean hasRowIndex() {
+    return this.rowIndex != null;
+  }
+
+  /**
+   * Number of rows between row index entries, 0 if stripe has no row index.
+   * @return row index interval
+   */
+  public int rowIndexInterval() {
+    return this.rowIndexInterval;
+  }
+
+  /**
+   * Get sparse row index, can be null - see `hasRowIndex()` method.
+   * Returned instance should be considered read-only.
+   * @return uncompressed stream offsets of every `rowIndexInterval()` row
+   */
+  public long[] getRowIndex() {
+    return this.rowIndex;
+  }
+
+  /**
+   * Whether or not rows of this stripe are sorted by field and stripe has key directory.
+   * @return true if stripe is sorted, false otherwise
+   */
+  public boolean isSorted() {
+    return this.keyStats != null;
+  }
+
+  /**
+   * Ordinal of the field that rows are sorted by, -1 if stripe is not sorted.
+   * @return sort ordinal
+   */
+  public int sortOrdinal() {
+    return this.sortOrdinal;
+  }
+
+  /**
+   * Get key directory of sorted stripe: statistics of sort field for rows of each row index entry,
+   * i.e. element `i` contains statistics for rows [i * interval, (i + 1) * interval). Can be null,
+   * see `isSorted()` method. Returned instance should be considered read-only.
+   * @return key statistics
+   */
+  public Statistics[] getKeyStatistics() {
+    return this.keyStats;
+  }
+
+  /**
+   * Get chunk index of compressed stripe, used to skip chunks without decompressing them.
+   * @return chunk index or null if stripe does not have chunk index
+   */
+  public ChunkIndex getChunkIndex() {
+    return this.chunkIndex;
+  }
+
+  /**
+   * Whether or not index regions and data regions of rows are stored in separate streams.
+   * @return true if stripe has separate data stream, false otherwise
+   */
+  public boolean hasSplitStreams() {
+    return this.dataOffset >= 0;
+  }
+
+  /**
+   * Offset of data stream in stripe, index stream occupies bytes [0, dataOffset).
+   * @return offset in bytes, or -1 if stripe does not have separate data stream
+   */
+  public int dataOffset() {
+    return this.dataOffset;
+  }
+
+  /**
+   * Get chunk index of compressed data stream, offsets are relative to the start of data stream.
+   * @return chunk index or null if stripe does not have data chunk index
+   */
+  public ChunkIndex getDataChunkIndex() {
+    return this.dataChunkIndex;
+  }
+
+  /**
+   * Whether or not stripe has columnar layout, where values of each data column are stored in
+   * separate stream.
+   * @return true if stripe has column streams, false otherwise
+   */
+  public boolean hasColumnStreams() {
+    return this.columnOffsets != null;
+  }
+
+  /**
+   * Number of column streams in stripe.
+   * @return number of streams, 0 if stripe does not have column streams
+   */
+  public int numColumnStreams() {
+    return (this.columnOffsets == null) ? 0 : this.columnOffsets.length;
+  }
+
+  /**
+   * Offset of column stream in stripe, index stream occupies bytes before the first column stream.
+   * @param column column number, must be less than `numColumnStreams()`
+   * @return offset in bytes
+   */
+  public int columnOffset(int column) {
+    return this.columnOffsets[column];
+  }
+
+  /**
+   * Length of column stream in bytes.
+   * @param column column number, must be less than `numColumnStreams()`
+   * @return number of bytes in stream
+   */
+  public int columnLength(int column) {
+    int end = (column + 1 < this.columnOffsets.length) ? this.columnOffsets[column + 1] : length;
+    return end - this.columnOffsets[column];
+  }
+
+  /**
+   * Get chunk index of compressed column stream, offsets are relative to the start of stream.
+   * @param column column number, must be less than `numColumnStreams()`
+   * @return chunk index or null if column stream does not have chunk index
+   */
+  public ChunkIndex getColumnChunkIndex(int column) {
+    return (this.columnChunkIndexes == null) ? null : this.columnChunkIndexes[column];
+  }
+
+  /**
+   * Length of the first stream of stripe, that contains row headers and index regions.
+   * @return number of bytes in index stream, or stripe length if stripe has single stream
+   */
+  public int indexStreamLength() {
+    if (hasSplitStreams()) return this.dataOffset;
+    if (hasColumnStreams()) {
+      return (this.columnOffsets.length == 0) ? length : this.columnOffsets[0];
+    }
+    return length;
+  }
+
+  /**
+   * Return the closest row at or before provided row that has an entry in row index; rows
+   * starting with returned row can be read from `indexedOffset(row)` offset of stripe stream.
+   * If stripe has no row index, 0 is returned.
+   * @param row row number within stripe
+   * @return indexed row number
+   */
+  public int indexedRow(int row) {
+    if (rowIndex == null || rowIndex.length == 0 || row <= 0) return 0;
+    return Math.min(row / rowIndexInterval, rowIndex.length - 1) * rowIndexInterval;
+  }
+
+  /**
+   * Return uncompressed stream offset of the indexed row for provided row, see `indexedRow()`.
+   * If stripe has no row index, 0 is returned.
+   * @param row row number within stripe
+   * @return offset in uncompressed stripe stream
+   */
+  public long indexedOffset(int row) {
+    if (rowIndex == null || rowIndex.length == 0) return 0L;
+    return rowIndex[indexedRow(row) / rowIndexInterval];
+  }
+
   /**
    * Whether or not this stripe has column statistics.
    * @return true if stripe has statistics, false otherwise
@@ -113,6 +603,25 @@ public class StripeInformation implements Comparable<StripeInformation> {
    * @return stripe statistics
    */
   public Statistics[] getStatistics() {
+    return getStatistics(null);
+  }
+
+  /**
+   * Get statistics for this stripe, only statistics of provided columns are guaranteed to be
+   * set, other elements can be null if statistics are decoded lazily from footer.
+   * Can return null - see `hasStatistics()` method.
+   * @param ordinals column ordinals to load, null means all columns
+   * @return stripe statistics
+   */
+  public Statistics[] getStatistics(int[] ordinals) {
+    if (this.stats != null && this.directory != null) {
+      this.directory.loadStatistics(ordinals);
+    }
+    return this.stats;
+  }
+
+  /** Statistics array without decoding, used by footer directory */
+  Statistics[] statistics() {
     return this.stats;
   }
 
@@ -130,6 +639,25 @@ public class StripeInformation implements Comparable<StripeInformation> {
    * @return stripe filters
    */
   public ColumnFilter[] getColumnFilters() {
+    return getColumnFilters(null);
+  }
+
+  /**
+   * Get column filters for this stripe, only filters of provided columns are guaranteed to be
+   * set, other elements can be null if filters are decoded lazily from footer.
+   * Can return null - see `hasColumnFilters()` method.
+   * @param ordinals column ordinals to load, null means all columns
+   * @return stripe filters
+   */
+  public ColumnFilter[] getColumnFilters(int[] ordinals) {
+    if (this.filters != null && this.directory != null) {
+      this.directory.loadColumnFilters(this.index, ordinals);
+    }
+    return this.filters;
+  }
+
+  /** Column filters array without decoding, used by footer directory */
+  ColumnFilter[] columnFilters() {
     return this.filters;
   }
 
@@ -152,6 +680,7 @@ public class StripeInformation implements Comparable<StripeInformation> {
     buffer.writeInt(length());
     // stripe statistics information
     if (hasStatistics()) {
+      Statistics[] stats = getStatistics();
       buffer.writeInt(stats.length);
       // statistics instance should never be null
       for (Statistics obj : stats) {
@@ -163,6 +692,7 @@ public class StripeInformation implements Comparable<StripeInformation> {
     }
     // stripe filters information
     if (hasColumnFilters()) {
+      ColumnFilter[] filters = getColumnFilters();
       buffer.writeInt(filters.length);
       // filters instance should never be null
       for (ColumnFilter obj : filters) {
@@ -221,7 +751,18 @@ public class StripeInformation implements Comparable<StripeInformation> {
     if (obj == null || !(obj instanceof StripeInformation)) return false;
     StripeInformation that = (StripeInformation) obj;
     boolean same = this.id() == that.id() && this.offset() == that.offset() &&
-      this.length() == that.length() && this.hasStatistics() == that.hasStatistics();
+      this.length() == that.length() && this.hasStatistics() == that.hasStatistics() &&
+      this.numRows() == that.numRows() && this.rowIndexInterval() == that.rowIndexInterval() &&
+      Arrays.equals(this.getRowIndex(), that.getRowIndex()) &&
+      this.sortOrdinal() == that.sortOrdinal() &&
+      Arrays.equals(this.getKeyStatistics(), that.getKeyStatistics()) &&
+      (this.getChunkIndex() == null ? that.getChunkIndex() == null :
+        this.getChunkIndex().equals(that.getChunkIndex())) &&
+      this.dataOffset() == that.dataOffset() &&
+      (this.getDataChunkIndex() == null ? that.getDataChunkIndex() == null :
+        this.getDataChunkIndex().equals(that.getDataChunkIndex())) &&
+      Arrays.equals(this.columnOffsets, that.columnOffsets) &&
+      Arrays.equals(this.columnChunkIndexes, that.columnChunkIndexes);
     if (hasStatistics()) {
       same = same && Arrays.equals(this.getStatistics(), that.getStatistics());
     }
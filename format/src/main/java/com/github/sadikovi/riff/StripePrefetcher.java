@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sadikovi.riff.io.BufferPool;
+import com.github.sadikovi.riff.io.ChunkIndex;
+import com.github.sadikovi.riff.io.CompressionCodec;
+import com.github.sadikovi.riff.io.CompressionCodecFactory;
+import com.github.sadikovi.riff.io.InStream;
+import com.github.sadikovi.riff.io.StripeInputBuffer;
+
+/**
+ * Stripe prefetcher reads next N stripes in background while current stripe is being consumed by
+ * row buffer. Stripes are returned in the same order as provided array of stripes. Stripes are read
+ * as stripe ranges (see `StripeRange`), each range is read with positional read, so prefetcher does
+ * not modify position of the raw stream; row buffer should not read stream directly while
+ * prefetcher is active.
+ *
+ * If decompression is enabled, stripe bytes are also decompressed in background and returned stripe
+ * buffer contains uncompressed bytes, and should be read with instream without codec.
+ */
+class StripePrefetcher {
+  private static final Logger LOG = LoggerFactory.getLogger(StripePrefetcher.class);
+
+  // shared pool of daemon threads to read stripes for all prefetchers within JVM
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "riff-stripe-prefetch-" + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  // raw input stream, shared with row buffer
+  private final FSDataInputStream in;
+  // stream offset of the first stripe
+  private final long offset;
+  // ranges to read, sorted by offsets
+  private final StripeRange[] ranges;
+  // maximum number of stripes to read ahead
+  private final int numStripes;
+  // compression codec, used to create codec instance per task, can be null
+  private final CompressionCodec codec;
+  // buffer size for instream, used for decompression
+  private final int bufferSize;
+  // whether or not stripes are decompressed in background
+  private final boolean decompress;
+  // buffer pool to acquire range arrays from, can be null
+  private final BufferPool pool;
+  // pending range reads in range order
+  private final ArrayDeque<Future<RangeBuffers>> pending;
+  // index of the next range to schedule
+  private int nextRangeIndex;
+  // number of scheduled stripes that have not been returned yet
+  private int pendingStripes;
+  // current range and index of the next stripe to return
+  private RangeBuffers current;
+  private int currentIndex;
+  // array of the last returned decompressed stripe, released on the next call
+  private byte[] returnedData;
+
+  /**
+   * Stripes of the range and arrays that back them, if arrays should be returned into pool:
+   * either single array of the range, or array per stripe if stripes are decompressed.
+   */
+  private static class RangeBuffers {
+    final byte[] data;
+    final byte[][] stripeData;
+    final StripeInputBuffer[] stripes;
+
+    RangeBuffers(byte[] data, byte[][] stripeData, StripeInputBuffer[] stripes) {
+      this.data = data;
+      this.stripeData = stripeData;
+      this.stripes = stripes;
+    }
+  }
+
+  /**
+   * Create stripe prefetcher and schedule reads for the first stripes.
+   * @param in raw input stream
+   * @param offset stream offset for each stripe
+   * @param ranges sorted array of ranges to read
+   * @param numStripes number of stripes to read ahead, must be positive
+   * @param codec compression codec, null - no compression
+   * @param bufferSize buffer size for instream
+   * @param decompress whether or not to decompress stripes in background
+   * @param pool buffer pool for range arrays, null if arrays are allocated
+   */
+  StripePrefetcher(
+      FSDataInputStream in,
+      long offset,
+      StripeRange[] ranges,
+      int numStripes,
+      CompressionCodec codec,
+      int bufferSize,
+      boolean decompress,
+      BufferPool pool) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("Expected positive number of stripes, found " +
+        numStripes);
+    }
+    this.in = in;
+    this.offset = offset;
+    this.ranges = ranges;
+    this.numStripes = numStripes;
+    this.codec = codec;
+    this.bufferSize = bufferSize;
+    // there is nothing to decompress for uncompressed stream
+    this.decompress = decompress && codec != null;
+    this.pool = pool;
+    this.pending = new ArrayDeque<Future<RangeBuffers>>();
+    this.nextRangeIndex = 0;
+    this.pendingStripes = 0;
+    this.current = null;
+    this.currentIndex = 0;
+    this.returnedData = null;
+    schedule();
+  }
+
+  /**
+   * Schedule range reads until read-ahead limit is reached or no ranges are left. Range is always
+   * scheduled entirely, so number of stripes in flight can exceed limit by range size.
+   */
+  private void schedule() {
+    while (pendingStripes < numStripes && nextRangeIndex < ranges.length) {
+      final StripeRange range = ranges[nextRangeIndex++];
+      LOG.debug("Schedule read of range {}", range);
+      pendingStripes += range.stripes().length;
+      pending.add(EXECUTOR.submit(new Callable<RangeBuffers>() {
+        @Override
+        public RangeBuffers call() throws IOException {
+          return readRange(range);
+        }
+      }));
+    }
+  }
+
+  /** Read range of stripes and optionally decompress them */
+  private RangeBuffers readRange(StripeRange range) throws IOException {
+    byte[] data = (pool == null) ? new byte[range.length()] : pool.acquire(range.length());
+    StripeInputBuffer[] buffers;
+    try {
+      buffers = range.read(in, offset, data);
+    } catch (IOException ioe) {
+      // failed read is never returned, array would not be released otherwise
+      release(data);
+      throw ioe;
+    }
+    if (!decompress) return new RangeBuffers(data, null, buffers);
+    byte[][] stripeData = new byte[buffers.length][];
+    // codec is created per range, since codecs are not thread-safe
+    CompressionCodec taskCodec =
+      CompressionCodecFactory.decode(CompressionCodecFactory.encode(codec));
+    try {
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = decompressStripe(range.stripes()[i], buffers[i], taskCodec, stripeData, i);
+      }
+    } catch (IOException ioe) {
+      release(stripeData);
+      throw ioe;
+    } finally {
+      taskCodec.close();
+      // compressed bytes are no longer referenced by stripes
+      release(data);
+    }
+    return new RangeBuffers(null, stripeData, buffers);
+  }
+
+  /** Return array into pool, if pool is set */
+  private void release(byte[] data) {
+    if (pool != null) {
+      pool.release(data);
+    }
+  }
+
+  /** Return arrays of decompressed stripes into pool, array can be null */
+  private void release(byte[][] stripeData) {
+    if (stripeData == null) return;
+    for (byte[] data : stripeData) {
+      release(data);
+    }
+  }
+
+  /** Acquire array from pool, if pool is set, otherwise allocate new array */
+  private byte[] acquire(int size) {
+    return (pool == null) ? new byte[size] : pool.acquire(size);
+  }
+
+  /**
+   * Decompress stripe bytes into array of expected uncompressed size, array is acquired from pool
+   * and is stored in `stripeData` at provided index, so it can be released after stripe is
+   * consumed. Size is estimated with chunk index: every chunk contains at most `bufferSize`
+   * uncompressed bytes; array grows if stripe does not have chunk index.
+   */
+  private StripeInputBuffer decompressStripe(
+      StripeInformation info,
+      StripeInputBuffer stripe,
+      CompressionCodec taskCodec,
+      byte[][] stripeData,
+      int index) throws IOException {
+    ChunkIndex chunkIndex = info.getChunkIndex();
+    long expected = (chunkIndex == null || chunkIndex.numChunks() == 0) ?
+      Math.max(stripe.length(), bufferSize) :
+      chunkIndex.uncompressedOffset(chunkIndex.numChunks() - 1) + bufferSize;
+    stripeData[index] = acquire((int) Math.min(expected, Integer.MAX_VALUE - 8));
+    InStream stream = new InStream(bufferSize, taskCodec, stripe, pool);
+    try {
+      int size = 0;
+      while (stream.available() > 0) {
+        if (size == stripeData[index].length) {
+          byte[] array = acquire(Math.max(2 * size, bufferSize));
+          System.arraycopy(stripeData[index], 0, array, 0, size);
+          release(stripeData[index]);
+          stripeData[index] = array;
+        }
+        int len = stream.read(stripeData[index], size, stripeData[index].length - size);
+        if (len <= 0) break;
+        size += len;
+      }
+      return new StripeInputBuffer(stripe.id(), stripeData[index], 0, size);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Whether or not returned stripes contain decompressed bytes.
+   * @return true if stripes are decompressed, false otherwise
+   */
+  public boolean isDecompressed() {
+    return decompress;
+  }
+
+  /**
+   * Whether or not there are more stripes to return.
+   * @return true if more stripes are available
+   */
+  public boolean hasNext() {
+    return (current != null && currentIndex < current.stripes.length) || !pending.isEmpty();
+  }
+
+  /**
+   * Return next stripe, blocks until stripe is read.
+   * Previously returned stripe must be closed before this call, because its bytes can be reused.
+   * @return stripe input buffer
+   * @throws IOException if read of the stripe failed
+   */
+  public StripeInputBuffer next() throws IOException {
+    // previously returned stripe is closed, its decompressed bytes can be reused
+    release(returnedData);
+    returnedData = null;
+    if (current == null || currentIndex >= current.stripes.length) {
+      if (current != null) {
+        release(current.data);
+        current = null;
+      }
+      current = nextRange();
+      currentIndex = 0;
+    }
+    pendingStripes--;
+    // keep read-ahead window full while current stripe is consumed
+    schedule();
+    StripeInputBuffer stripe = current.stripes[currentIndex];
+    current.stripes[currentIndex] = null;
+    if (current.stripeData != null) {
+      returnedData = current.stripeData[currentIndex];
+      current.stripeData[currentIndex] = null;
+    }
+    currentIndex++;
+    return stripe;
+  }
+
+  /** Wait for the next range to be read */
+  private RangeBuffers nextRange() throws IOException {
+    Future<RangeBuffers> future = pending.poll();
+    if (future == null) throw new NoSuchElementException("No stripes left");
+    try {
+      return future.get();
+    } catch (InterruptedException err) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for stripe", err);
+    } catch (ExecutionException err) {
+      if (err.getCause() instanceof IOException) {
+        throw (IOException) err.getCause();
+      }
+      throw new IOException("Failed to read stripe", err.getCause());
+    }
+  }
+
+  /**
+   * Cancel pending reads and release resources.
+   * Reads that are already running cannot be cancelled, they are waited for and their arrays are
+   * released, so no read uses raw stream after this call and stream can be closed. Stripes that
+   * have been returned must be closed before this call.
+   */
+  public void close() {
+    for (Future<RangeBuffers> future : pending) {
+      if (!future.cancel(false)) {
+        try {
+          RangeBuffers buffers = future.get();
+          release(buffers.data);
+          release(buffers.stripeData);
+        } catch (InterruptedException err) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException err) {
+          LOG.warn("Exception occuried during release of resources: {}", err.getMessage());
+        }
+      }
+    }
+    pending.clear();
+    release(returnedData);
+    returnedData = null;
+    if (current != null) {
+      release(current.data);
+      release(current.stripeData);
+      current = null;
+    }
+    pendingStripes = 0;
+    nextRangeIndex = ranges.length;
+  }
+
+  @Override
+  public String toString() {
+    return "StripePrefetcher[stripes=" + numStripes + ", decompress=" + decompress + "]";
+  }
+}
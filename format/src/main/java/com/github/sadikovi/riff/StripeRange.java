@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import com.github.sadikovi.riff.io.StripeInputBuffer;
+
+/**
+ * Contiguous byte range of the file that covers one or more stripes, which are read with single
+ * positional read and sliced back into stripe buffers. Ranges are created by `plan()` method that
+ * merges nearby stripes based on maximum gap and maximum range size.
+ */
+class StripeRange {
+  // offset of the range relative to the first stripe
+  private final long offset;
+  // total length of the range in bytes, including gaps between stripes
+  private final int length;
+  // stripes that are covered by this range, sorted by offset
+  private final StripeInformation[] stripes;
+
+  StripeRange(StripeInformation[] stripes) {
+    if (stripes == null || stripes.length == 0) {
+      throw new IllegalArgumentException("Empty stripes for range");
+    }
+    StripeInformation last = stripes[stripes.length - 1];
+    long len = last.offset() + last.length() - stripes[0].offset();
+    if (len > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Range length " + len + " exceeds " + Integer.MAX_VALUE);
+    }
+    this.offset = stripes[0].offset();
+    this.length = (int) len;
+    this.stripes = stripes;
+  }
+
+  /**
+   * Plan reads for provided stripes. Stripe is merged into current range, if gap between range and
+   * stripe is at most `maxGap` bytes and total range length does not exceed `maxSize` bytes.
+   * @param stripes stripes sorted by offset in ascending order
+   * @param maxGap maximum gap in bytes between stripes to merge, negative value disables merge
+   * @param maxSize maximum size in bytes of the merged range
+   * @return ranges in the same order as stripes
+   */
+  public static StripeRange[] plan(StripeInformation[] stripes, long maxGap, long maxSize) {
+    ArrayList<StripeRange> ranges = new ArrayList<StripeRange>();
+    int start = 0;
+    for (int i = 1; i <= stripes.length; i++) {
+      boolean merge = false;
+      if (i < stripes.length && maxGap >= 0) {
+        long end = stripes[i - 1].offset() + stripes[i - 1].length();
+        long gap = stripes[i].offset() - end;
+        long size = stripes[i].offset() + stripes[i].length() - stripes[start].offset();
+        merge = gap >= 0 && gap <= maxGap && size <= maxSize && size <= Integer.MAX_VALUE;
+      }
+      if (!merge && start < stripes.length) {
+        StripeInformation[] arr = new StripeInformation[i - start];
+        System.arraycopy(stripes, start, arr, 0, arr.length);
+        ranges.add(new StripeRange(arr));
+        start = i;
+      }
+    }
+    return ranges.toArray(new StripeRange[ranges.size()]);
+  }
+
+  /**
+   * Offset of the range relative to the first stripe in file.
+   * @return range offset
+   */
+  public long offset() {
+    return offset;
+  }
+
+  /**
+   * Length of the range in bytes.
+   * @return range length
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Stripes covered by this range.
+   * @return array of stripes
+   */
+  public StripeInformation[] stripes() {
+    return stripes;
+  }
+
+  /**
+   * Read range with single positional read and slice bytes into stripe buffers.
+   * Position of the stream is not modified.
+   * @param in raw input stream
+   * @param streamOffset stream offset of the first stripe
+   * @return stripe buffers in the same order as stripes
+   * @throws IOException
+   */
+  public StripeInputBuffer[] read(FSDataInputStream in, long streamOffset) throws IOException {
+    return read(in, streamOffset, new byte[length]);
+  }
+
+  /**
+   * Read range into provided array and slice bytes into stripe buffers.
+   * Array is shared by returned stripes and can be reused only after all stripes are closed.
+   * @param in raw input stream
+   * @param streamOffset stream offset of the first stripe
+   * @param bytes array of at least `length()` bytes, e.g. acquired from buffer pool
+   * @return stripe buffers in the same order as stripes
+   * @throws IOException
+   */
+  public StripeInputBuffer[] read(
+      FSDataInputStream in,
+      long streamOffset,
+      byte[] bytes) throws IOException {
+    if (bytes.length < length) {
+      throw new IllegalArgumentException("Array of " + bytes.length + " bytes is too small for " +
+        this);
+    }
+    in.readFully(streamOffset + offset, bytes, 0, length);
+    StripeInputBuffer[] buffers = new StripeInputBuffer[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      buffers[i] = new StripeInputBuffer(stripes[i].id(), bytes,
+        (int) (stripes[i].offset() - offset), stripes[i].length());
+    }
+    return buffers;
+  }
+
+  @Override
+  public String toString() {
+    return "StripeRange[offset=" + offset + ", length=" + length +
+      ", stripes=" + stripes.length + "]";
+  }
+}
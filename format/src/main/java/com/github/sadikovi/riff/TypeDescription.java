@@ -50,6 +50,10 @@ import org.apache.spark.sql.types.TimestampType;
 /**
  * Internal schema specification based on Spark SQL schema, that acts as proxy to write and read
  * SQL rows. Note that type description columns index might be different from Spark SQL schema.
+ *
+ * Data fields can be split into column groups, each group is written as separate region of the
+ * row, so reader can skip groups that are not required. Fields of declared groups follow index
+ * fields in declaration order, the remaining data fields form the last group.
  */
 public class TypeDescription implements Externalizable {
   private HashMap<String, TypeSpec> schema;
@@ -58,8 +62,21 @@ public class TypeDescription implements Externalizable {
   // quick access arrays for specific field types
   private TypeSpec[] indexFields;
   private TypeSpec[] dataFields;
+  // data fields of each column group, empty if type description has no groups
+  private TypeSpec[][] groups;
 
   public TypeDescription(StructType schema, String[] indexColumns) {
+    this(schema, indexColumns, null);
+  }
+
+  /**
+   * Create type description with index fields and column groups.
+   * @param schema Spark SQL schema
+   * @param indexColumns index columns, can be null
+   * @param groupColumns columns of each group, can be null; columns must be non-index columns and
+   *   belong to at most one group
+   */
+  public TypeDescription(StructType schema, String[] indexColumns, String[][] groupColumns) {
     assertSchema(schema);
     this.schema = new HashMap<String, TypeSpec>();
     int numFields = 0;
@@ -88,12 +105,38 @@ public class TypeDescription implements Externalizable {
       this.indexFields = new TypeSpec[0];
     }
 
-    // resolve non-indexed fields
+    // resolve non-indexed fields, fields of declared groups are resolved first
     this.dataFields = new TypeSpec[schema.length() - this.indexFields.length];
     int index = 0;
+    int numGroups = (groupColumns == null) ? 0 : groupColumns.length;
+    for (int group = 0; group < numGroups; group++) {
+      if (groupColumns[group] == null || groupColumns[group].length == 0) {
+        throw new IllegalArgumentException("Empty column group " + group + " in list " +
+          Arrays.deepToString(groupColumns));
+      }
+      for (String name : groupColumns[group]) {
+        if (this.schema.containsKey(name)) {
+          throw new IllegalArgumentException("Column '" + name + "' of group " + group +
+            " is an index column or belongs to another group in list " +
+            Arrays.deepToString(groupColumns));
+        }
+        TypeSpec spec = null;
+        try {
+          spec = new TypeSpec(schema.apply(name), false, numFields, schema.fieldIndex(name), group);
+        } catch (IllegalArgumentException err) {
+          // error message always includes trailing "."
+          throw new IllegalArgumentException(err.getMessage() + " Schema " + schema, err);
+        }
+        this.dataFields[index++] = spec;
+        this.schema.put(spec.field().name(), spec);
+        ++numFields;
+      }
+    }
     for (StructField field : schema.fields()) {
       if (!this.schema.containsKey(field.name())) {
-        TypeSpec spec = new TypeSpec(field, false, numFields, schema.fieldIndex(field.name()));
+        // remaining fields form the last group, if groups are declared
+        TypeSpec spec = new TypeSpec(field, false, numFields, schema.fieldIndex(field.name()),
+          (numGroups > 0) ? numGroups : -1);
         // internal array index is different from numFields
         this.dataFields[index++] = spec;
         this.schema.put(field.name(), spec);
@@ -124,6 +167,7 @@ public class TypeDescription implements Externalizable {
     for (int i = 0; i < this.dataFields.length; i++) {
       this.ordinalFields[this.dataFields[i].position()] = this.dataFields[i];
     }
+    initGroups();
   }
 
   public TypeDescription(StructType schema) {
@@ -136,6 +180,29 @@ public class TypeDescription implements Externalizable {
     this.ordinalFields = null;
     this.indexFields = null;
     this.dataFields = null;
+    this.groups = null;
+  }
+
+  /** Build data fields of each column group, groups are numbered from 0 without gaps */
+  private void initGroups() {
+    int numGroups = 0;
+    for (TypeSpec spec : this.dataFields) {
+      numGroups = Math.max(numGroups, spec.group() + 1);
+    }
+    this.groups = new TypeSpec[numGroups][];
+    int start = 0;
+    for (int group = 0; group < numGroups; group++) {
+      // data fields are sorted by group, since groups are resolved in order
+      int end = start;
+      while (end < this.dataFields.length && this.dataFields[end].group() == group) {
+        end++;
+      }
+      if (end == start) {
+        throw new IllegalStateException("Column group " + group + " has no fields in " + this);
+      }
+      this.groups[group] = Arrays.copyOfRange(this.dataFields, start, end);
+      start = end;
+    }
   }
 
   /** Check if schema is valid, contains supported types */
@@ -198,6 +265,39 @@ public class TypeDescription implements Externalizable {
     return this.dataFields;
   }
 
+  /**
+   * Number of column groups of data fields.
+   * @return number of groups, 0 if data fields are not grouped
+   */
+  public int numGroups() {
+    return this.groups.length;
+  }
+
+  /**
+   * Return data fields of column group, fields are sorted by their `position()` in type
+   * description.
+   * @param group group number, must be less than `numGroups()`
+   * @return array of TypeSpec fields of the group
+   */
+  public TypeSpec[] groupFields(int group) {
+    return this.groups[group];
+  }
+
+  /**
+   * Return data fields of each column of stripe with columnar layout: columns are column groups,
+   * if data fields are grouped, otherwise each data field is a separate column. Returned array
+   * should be considered read-only.
+   * @return array of columns, each column is an array of TypeSpec fields
+   */
+  public TypeSpec[][] dataColumns() {
+    if (this.groups.length > 0) return this.groups;
+    TypeSpec[][] columns = new TypeSpec[this.dataFields.length][];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new TypeSpec[] { this.dataFields[i] };
+    }
+    return columns;
+  }
+
   /**
    * Get an array of fields in ordinal positions. Internal array is returned and is assumed as
    * read-only. Position in array is equavalent of `position()` method for type spec.
@@ -252,16 +352,23 @@ public class TypeDescription implements Externalizable {
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
     // type description ordinal fields array is only serialized, the rest can be reconstructed from
-    // that array
-    out.writeInt(ordinalFields.length);
+    // that array; negative length indicates that groups of fields follow the array
+    out.writeInt(groups.length > 0 ? -ordinalFields.length : ordinalFields.length);
     for (int i = 0; i < ordinalFields.length; i++) {
       out.writeObject(ordinalFields[i]);
     }
+    if (groups.length > 0) {
+      for (int i = 0; i < ordinalFields.length; i++) {
+        out.writeInt(ordinalFields[i].group());
+      }
+    }
   }
 
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
     int len = in.readInt();
+    boolean grouped = len < 0;
+    if (grouped) len = -len;
     this.ordinalFields = new TypeSpec[len];
     // number of index fields in this array
     int numIndexed = 0;
@@ -271,6 +378,13 @@ public class TypeDescription implements Externalizable {
         numIndexed++;
       }
     }
+    if (grouped) {
+      for (int i = 0; i < len; i++) {
+        TypeSpec spec = this.ordinalFields[i];
+        this.ordinalFields[i] = new TypeSpec(spec.field(), spec.isIndexed(), spec.position(),
+          spec.origSQLPos(), in.readInt());
+      }
+    }
     // build index fields and data fields
     this.indexFields = new TypeSpec[numIndexed];
     this.dataFields = new TypeSpec[len - numIndexed];
@@ -287,6 +401,7 @@ public class TypeDescription implements Externalizable {
     for (int i = 0; i < len; i++) {
       this.schema.put(this.ordinalFields[i].field().name(), this.ordinalFields[i]);
     }
+    initGroups();
   }
 
   /**
@@ -40,12 +40,19 @@ public class TypeSpec implements Externalizable {
   private int pos;
   // original position of the StructField in SQL schema, used for writes
   private int origPos;
+  // column group of data field, -1 if field is indexed or type description has no groups
+  private int group;
 
   TypeSpec(StructField field, boolean indexed, int pos, int origPos) {
+    this(field, indexed, pos, origPos, -1);
+  }
+
+  TypeSpec(StructField field, boolean indexed, int pos, int origPos, int group) {
     this.field = field;
     this.indexed = indexed;
     this.pos = pos;
     this.origPos = origPos;
+    this.group = group;
   }
 
   // for serializer
@@ -76,12 +83,20 @@ public class TypeSpec implements Externalizable {
     return this.origPos;
   }
 
+  /** Get column group of the field, -1 if field does not belong to any group */
+  public int group() {
+    return this.group;
+  }
+
   @Override
   public int hashCode() {
     int result = this.field.hashCode();
     result += 31 * result + (this.indexed ? 0 : 1);
     result += 31 * result + this.pos;
     result += 31 * result + this.origPos;
+    if (this.group >= 0) {
+      result += 31 * result + this.group;
+    }
     return result;
   }
 
@@ -94,7 +109,8 @@ public class TypeSpec implements Externalizable {
       spec.field.equals(this.field) &&
       spec.isIndexed() == this.isIndexed() &&
       spec.position() == this.position() &&
-      spec.origSQLPos() == this.origSQLPos();
+      spec.origSQLPos() == this.origSQLPos() &&
+      spec.group() == this.group();
   }
 
   @Override
@@ -111,6 +127,8 @@ public class TypeSpec implements Externalizable {
 
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    // group is serialized by type description, see `TypeDescription.writeExternal()`
+    this.group = -1;
     this.indexed = in.readBoolean();
     this.pos = in.readInt();
     this.origPos = in.readInt();
@@ -125,6 +143,7 @@ public class TypeSpec implements Externalizable {
   @Override
   public String toString() {
     return "TypeSpec(" + this.field.name() + ": " + this.field.dataType().simpleString() +
-      ", indexed=" + this.indexed + ", position=" + this.pos + ", origPos=" + this.origPos + ")";
+      ", indexed=" + this.indexed + ", position=" + this.pos + ", origPos=" + this.origPos +
+      (this.group < 0 ? "" : ", group=" + this.group) + ")";
   }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.io;
+
+import java.util.ArrayDeque;
+
+/**
+ * Size-classed pool of byte arrays.
+ * Arrays are grouped into power-of-two size classes, `acquire()` returns array of at least
+ * requested size, and `release()` returns array into pool, so it can be reused by subsequent
+ * readers and writers instead of allocating new one. Total number of bytes kept in pool is capped,
+ * arrays that do not fit are left for garbage collection.
+ *
+ * Pool is thread-safe, and a single instance is shared by all readers and writers in JVM, see
+ * `shared()` method. Array must not be used after it has been released.
+ */
+public class BufferPool {
+  // smallest size class, 1KB
+  private static final int MIN_CLASS = 10;
+  // largest size class, 256MB, larger arrays are not pooled
+  private static final int MAX_CLASS = 28;
+  // default maximum number of bytes kept in shared pool, 64MB
+  public static final long MAX_BYTES_DEFAULT = 64 * 1024 * 1024L;
+
+  private static final BufferPool SHARED = new BufferPool(MAX_BYTES_DEFAULT);
+
+  // free arrays for each size class
+  private final ArrayDeque<byte[]>[] classes;
+  // maximum number of bytes kept in pool
+  private long maxBytes;
+  // current number of bytes kept in pool
+  private long pooledBytes;
+
+  @SuppressWarnings("unchecked")
+  public BufferPool(long maxBytes) {
+    if (maxBytes < 0) throw new IllegalArgumentException("Negative max bytes: " + maxBytes);
+    this.classes = new ArrayDeque[MAX_CLASS - MIN_CLASS + 1];
+    for (int i = 0; i < classes.length; i++) {
+      this.classes[i] = new ArrayDeque<byte[]>();
+    }
+    this.maxBytes = maxBytes;
+    this.pooledBytes = 0;
+  }
+
+  /**
+   * Return buffer pool shared by all readers and writers in JVM.
+   * @return shared pool
+   */
+  public static BufferPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * Return shared buffer pool and update its maximum number of bytes.
+   * Pool is shared, so the last provided value is used.
+   * @param maxBytes maximum number of bytes kept in pool, 0 disables pooling
+   * @return shared pool
+   */
+  public static BufferPool shared(long maxBytes) {
+    SHARED.setMaxBytes(maxBytes);
+    return SHARED;
+  }
+
+  /** Index of size class for provided size, or -1 if size is too large to pool */
+  private static int sizeClass(int size) {
+    int bits = (size <= 1) ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    if (bits > MAX_CLASS) return -1;
+    return Math.max(bits, MIN_CLASS) - MIN_CLASS;
+  }
+
+  /**
+   * Acquire byte array of at least provided size.
+   * Array content is undefined, it can contain bytes of previous use.
+   * @param size minimum size in bytes
+   * @return byte array
+   */
+  public byte[] acquire(int size) {
+    if (size < 0) throw new IllegalArgumentException("Negative size: " + size);
+    int index = sizeClass(size);
+    // array is too large to be pooled
+    if (index < 0) return new byte[size];
+    synchronized (this) {
+      byte[] array = classes[index].pollFirst();
+      if (array != null) {
+        pooledBytes -= array.length;
+        return array;
+      }
+    }
+    return new byte[1 << (index + MIN_CLASS)];
+  }
+
+  /**
+   * Release byte array into pool.
+   * Arrays that do not belong to any size class or do not fit into pool are discarded.
+   * @param array byte array, can be null
+   */
+  public void release(byte[] array) {
+    if (array == null) return;
+    int index = sizeClass(array.length);
+    // only arrays with exact size of the class are pooled
+    if (index < 0 || array.length != 1 << (index + MIN_CLASS)) return;
+    synchronized (this) {
+      if (pooledBytes + array.length <= maxBytes) {
+        classes[index].addFirst(array);
+        pooledBytes += array.length;
+      }
+    }
+  }
+
+  /**
+   * Update maximum number of bytes kept in pool, evicts arrays if pool exceeds new value.
+   * @param maxBytes maximum number of bytes, 0 disables pooling
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    if (maxBytes < 0) throw new IllegalArgumentException("Negative max bytes: " + maxBytes);
+    this.maxBytes = maxBytes;
+    // evict largest arrays first
+    for (int i = classes.length - 1; i >= 0 && pooledBytes > maxBytes; i--) {
+      while (pooledBytes > maxBytes && !classes[i].isEmpty()) {
+        pooledBytes -= classes[i].pollFirst().length;
+      }
+    }
+  }
+
+  /**
+   * Maximum number of bytes kept in pool.
+   * @return number of bytes
+   */
+  public synchronized long maxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Number of bytes currently kept in pool.
+   * @return number of bytes
+   */
+  public synchronized long pooledBytes() {
+    return pooledBytes;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "BufferPool[max_bytes=" + maxBytes + ", pooled_bytes=" + pooledBytes + "]";
+  }
+}
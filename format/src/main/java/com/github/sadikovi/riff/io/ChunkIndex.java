@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Chunk index of compressed stripe stream.
+ * Keeps offset of each chunk in stripe bytes (position of the chunk header) and offset of the
+ * first uncompressed byte of the chunk in uncompressed stream, so instream can seek directly to
+ * the chunk that contains uncompressed offset without decompressing preceding chunks.
+ * Index is built by outstream while chunks are written, see `OutStream.chunkIndex()`.
+ */
+public class ChunkIndex {
+  // default number of chunks to allocate
+  private static final int DEFAULT_CHUNKS = 8;
+
+  // offset of each chunk in stripe
+  private int[] offsets;
+  // offset of the first uncompressed byte of each chunk
+  private long[] uncompressedOffsets;
+  // number of chunks in index
+  private int numChunks;
+
+  /** Create empty index that grows when chunks are added */
+  public ChunkIndex() {
+    this.offsets = new int[DEFAULT_CHUNKS];
+    this.uncompressedOffsets = new long[DEFAULT_CHUNKS];
+    this.numChunks = 0;
+  }
+
+  /**
+   * Create index from offsets of chunks.
+   * @param offsets offsets of chunks in stripe
+   * @param uncompressedOffsets offsets of chunks in uncompressed stream
+   */
+  public ChunkIndex(int[] offsets, long[] uncompressedOffsets) {
+    if (offsets == null || uncompressedOffsets == null ||
+        offsets.length != uncompressedOffsets.length) {
+      throw new IllegalArgumentException("Invalid chunk offsets " + Arrays.toString(offsets) +
+        " and " + Arrays.toString(uncompressedOffsets));
+    }
+    this.offsets = offsets;
+    this.uncompressedOffsets = uncompressedOffsets;
+    this.numChunks = 0;
+    for (int i = 0; i < offsets.length; i++) {
+      add(offsets[i], uncompressedOffsets[i]);
+    }
+  }
+
+  /**
+   * Add chunk to the index, chunks must be added in stream order.
+   * @param offset offset of chunk in stripe
+   * @param uncompressedOffset offset of the first byte of chunk in uncompressed stream
+   */
+  void add(int offset, long uncompressedOffset) {
+    if (offset < 0 || uncompressedOffset < 0 ||
+        (numChunks > 0 && (offset <= offsets[numChunks - 1] ||
+          uncompressedOffset <= uncompressedOffsets[numChunks - 1]))) {
+      throw new IllegalArgumentException("Invalid chunk [" + offset + ", " + uncompressedOffset +
+        "] after " + numChunks + " chunks");
+    }
+    if (numChunks == offsets.length) {
+      int size = Math.max(DEFAULT_CHUNKS, 2 * numChunks);
+      offsets = Arrays.copyOf(offsets, size);
+      uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, size);
+    }
+    offsets[numChunks] = offset;
+    uncompressedOffsets[numChunks] = uncompressedOffset;
+    numChunks++;
+  }
+
+  /**
+   * Number of chunks in index.
+   * @return number of chunks
+   */
+  public int numChunks() {
+    return numChunks;
+  }
+
+  /**
+   * Offset of chunk in stripe.
+   * @param chunk chunk number
+   * @return offset in bytes
+   */
+  public int offset(int chunk) {
+    if (chunk < 0 || chunk >= numChunks) {
+      throw new IndexOutOfBoundsException("Invalid chunk " + chunk + " for " + this);
+    }
+    return offsets[chunk];
+  }
+
+  /**
+   * Offset of the first byte of chunk in uncompressed stream.
+   * @param chunk chunk number
+   * @return offset in uncompressed stream
+   */
+  public long uncompressedOffset(int chunk) {
+    if (chunk < 0 || chunk >= numChunks) {
+      throw new IndexOutOfBoundsException("Invalid chunk " + chunk + " for " + this);
+    }
+    return uncompressedOffsets[chunk];
+  }
+
+  /**
+   * Find chunk that contains byte at uncompressed offset, i.e. the last chunk that starts at or
+   * before offset.
+   * @param uncompressedOffset offset in uncompressed stream
+   * @return chunk number or -1 if index is empty or offset is before the first chunk
+   */
+  public int chunkAt(long uncompressedOffset) {
+    int index = Arrays.binarySearch(uncompressedOffsets, 0, numChunks, uncompressedOffset);
+    return (index >= 0) ? index : -index - 2;
+  }
+
+  /**
+   * Write index into output buffer.
+   * @param out output buffer
+   * @throws IOException
+   */
+  public void writeExternal(OutputBuffer out) throws IOException {
+    out.writeInt(numChunks);
+    for (int i = 0; i < numChunks; i++) {
+      out.writeInt(offsets[i]);
+      out.writeLong(uncompressedOffsets[i]);
+    }
+  }
+
+  /**
+   * Read index from byte buffer, buffer position is advanced past index.
+   * @param buffer byte buffer
+   * @return chunk index
+   * @throws IOException
+   */
+  public static ChunkIndex readExternal(ByteBuffer buffer) throws IOException {
+    int numChunks = buffer.getInt();
+    if (numChunks < 0) throw new IOException("Invalid number of chunks: " + numChunks);
+    int[] offsets = new int[numChunks];
+    long[] uncompressedOffsets = new long[numChunks];
+    for (int i = 0; i < numChunks; i++) {
+      offsets[i] = buffer.getInt();
+      uncompressedOffsets[i] = buffer.getLong();
+    }
+    try {
+      return new ChunkIndex(offsets, uncompressedOffsets);
+    } catch (IllegalArgumentException err) {
+      throw new IOException(err.getMessage(), err);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null || !(obj instanceof ChunkIndex)) return false;
+    ChunkIndex that = (ChunkIndex) obj;
+    return this.numChunks == that.numChunks &&
+      Arrays.equals(Arrays.copyOf(this.offsets, numChunks),
+        Arrays.copyOf(that.offsets, that.numChunks)) &&
+      Arrays.equals(Arrays.copyOf(this.uncompressedOffsets, numChunks),
+        Arrays.copyOf(that.uncompressedOffsets, that.numChunks));
+  }
+
+  @Override
+  public int hashCode() {
+    int result = numChunks;
+    for (int i = 0; i < numChunks; i++) {
+      result = 31 * result + offsets[i];
+      result = 31 * result + (int) (uncompressedOffsets[i] ^ (uncompressedOffsets[i] >>> 32));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ChunkIndex[chunks=" + numChunks + "]";
+  }
+}
@@ -49,6 +49,13 @@ public interface CompressionCodec {
    */
   void decompress(ByteBuffer in, ByteBuffer out) throws IOException;
 
+  /**
+   * Whether or not codec can decompress direct buffers, see `decompress()` method. When true, both
+   * in and out buffers can be direct, otherwise buffers must be backed by arrays.
+   * @return true if direct buffers are supported, false otherwise
+   */
+  boolean supportsDirectBuffers();
+
   /** Reset the codec, preparing it for reuse */
   void reset();
 
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+
+/**
+ * Cursor over input stream that is shared between several readers.
+ * Cursor keeps its own position and serves all reads with positional reads of shared stream, so
+ * position of shared stream is never modified, and cursors can be used by different threads
+ * concurrently, as long as each cursor is used by single thread. Cursor can be wrapped into
+ * `FSDataInputStream` and used as regular seekable stream.
+ *
+ * Closing cursor does not close shared stream, it is owned by the caller.
+ */
+public class CursorInputStream extends InputStream implements Seekable, PositionedReadable {
+  // shared input stream, null if cursor is closed
+  private FSDataInputStream in;
+  // total length of the stream
+  private final long length;
+  // current position of the cursor
+  private long pos;
+  // single byte array for `read()` calls, lazily created
+  private byte[] single;
+
+  /**
+   * Create cursor positioned at the beginning of the stream.
+   * @param in shared input stream
+   * @param length total length of the stream in bytes
+   */
+  public CursorInputStream(FSDataInputStream in, long length) {
+    if (in == null) throw new IllegalArgumentException("Null input stream");
+    if (length < 0) throw new IllegalArgumentException("Negative length: " + length);
+    this.in = in;
+    this.length = length;
+    this.pos = 0;
+    this.single = null;
+  }
+
+  /** Check if cursor is open */
+  private void assertOpen() throws IOException {
+    if (in == null) throw new IOException("Cursor is closed");
+  }
+
+  @Override
+  public int available() throws IOException {
+    assertOpen();
+    return (int) Math.min(length - pos, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (single == null) {
+      single = new byte[1];
+    }
+    int n = read(single, 0, 1);
+    return (n <= 0) ? -1 : (single[0] & 0xff);
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int len) throws IOException {
+    int n = read(pos, bytes, offset, len);
+    if (n > 0) pos += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long bytes) throws IOException {
+    assertOpen();
+    long n = Math.max(Math.min(bytes, length - pos), 0);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int read(long position, byte[] bytes, int offset, int len) throws IOException {
+    assertOpen();
+    if (position < 0) throw new EOFException("Negative position: " + position);
+    if (position >= length) return len == 0 ? 0 : -1;
+    return in.read(position, bytes, offset, (int) Math.min(len, length - position));
+  }
+
+  @Override
+  public void readFully(long position, byte[] bytes, int offset, int len) throws IOException {
+    assertOpen();
+    in.readFully(position, bytes, offset, len);
+  }
+
+  @Override
+  public void readFully(long position, byte[] bytes) throws IOException {
+    readFully(position, bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void seek(long position) throws IOException {
+    assertOpen();
+    if (position < 0 || position > length) {
+      throw new EOFException("Cannot seek to " + position + " for " + this);
+    }
+    pos = position;
+  }
+
+  @Override
+  public long getPos() throws IOException {
+    return pos;
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) throws IOException {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // shared stream is owned by the caller
+    in = null;
+    single = null;
+  }
+
+  @Override
+  public String toString() {
+    return "CursorInputStream[length=" + length + ", position=" + pos +
+      ", closed=" + (in == null) + "]";
+  }
+}
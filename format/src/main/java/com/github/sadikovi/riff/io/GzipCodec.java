@@ -98,6 +98,12 @@ public class GzipCodec implements CompressionCodec {
     in.position(in.limit());
   }
 
+  @Override
+  public boolean supportsDirectBuffers() {
+    // inflater only accepts byte arrays
+    return false;
+  }
+
   @Override
   public void reset() {
     buffer.reset();
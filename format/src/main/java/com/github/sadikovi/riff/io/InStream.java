@@ -40,11 +40,63 @@ public class InStream extends InputStream {
   private StripeInputBuffer source;
   // byte buffer to store uncompressed part of data
   private ByteBuffer uncompressed;
+  // optional buffer pool to acquire heap buffers from, null if buffers are allocated
+  private final BufferPool pool;
+  // whether or not direct buffers are used instead of heap buffers
+  private final boolean direct;
+  // buffer to read raw chunk bytes into, reused for all chunks, null if codec is not set
+  private ByteBuffer chunk;
+  // optional chunk index of compressed source, used to skip chunks without decompression
+  private ChunkIndex chunkIndex;
+  // offset of the current chunk in uncompressed stream and number of uncompressed bytes in chunk
+  private long chunkStart;
+  private int chunkLength;
 
   public InStream(
       int bufferSize,
       CompressionCodec codec,
       StripeInputBuffer source) throws IOException {
+    this(bufferSize, codec, source, null, false);
+  }
+
+  /**
+   * Create instream that acquires intermediate buffers from pool.
+   * Buffers are returned into pool when stream is closed.
+   * @param bufferSize buffer size
+   * @param codec compression codec, null if source is uncompressed
+   * @param source stripe input buffer
+   * @param pool buffer pool, null if buffers should be allocated
+   * @throws IOException
+   */
+  public InStream(
+      int bufferSize,
+      CompressionCodec codec,
+      StripeInputBuffer source,
+      BufferPool pool) throws IOException {
+    this(bufferSize, codec, source, pool, false);
+  }
+
+  /**
+   * Create instream with either heap or direct buffers.
+   * Direct buffers keep chunk data off heap, codec must support direct buffers, see
+   * `CompressionCodec.supportsDirectBuffers()`. Since direct buffers are expensive to allocate,
+   * stream should be reused for subsequent stripes with `reset()` method.
+   * @param bufferSize buffer size
+   * @param codec compression codec, null if source is uncompressed
+   * @param source stripe input buffer
+   * @param pool buffer pool for heap buffers, null if buffers should be allocated
+   * @param direct whether or not to use direct buffers
+   * @throws IOException
+   */
+  public InStream(
+      int bufferSize,
+      CompressionCodec codec,
+      StripeInputBuffer source,
+      BufferPool pool,
+      boolean direct) throws IOException {
+    if (direct && codec != null && !codec.supportsDirectBuffers()) {
+      throw new IllegalArgumentException("Codec " + codec + " does not support direct buffers");
+    }
     this.bufferSize = bufferSize;
     // initialize buffer to read all primitive types (8 bytes max for long and double)
     this.buf = new byte[8];
@@ -53,10 +105,30 @@ public class InStream extends InputStream {
     // codec is null if source stream does not have compressed chunks
     this.codec = codec;
     this.source = source;
-    this.uncompressed = ByteBuffer.allocate(bufferSize);
+    this.pool = pool;
+    this.direct = direct;
+    this.uncompressed = allocate(bufferSize);
+    this.chunk = null;
+    this.chunkIndex = null;
+    this.chunkStart = 0L;
+    this.chunkLength = 0;
     readChunk();
   }
 
+  /** Allocate buffer of exactly provided capacity */
+  private ByteBuffer allocate(int size) {
+    if (direct) return ByteBuffer.allocateDirect(size);
+    if (pool == null) return ByteBuffer.allocate(size);
+    return ByteBuffer.wrap(pool.acquire(size), 0, size).slice();
+  }
+
+  /** Return buffer into pool, if applicable */
+  private void release(ByteBuffer buffer) {
+    if (!direct && pool != null && buffer != null) {
+      pool.release(buffer.array());
+    }
+  }
+
   /**
    * Depending on compression codec, read directly into uncompressed buffer or use compressed buffer
    * to either decompress bytes or reset to uncompressed depending on chunk header, since we do not
@@ -65,6 +137,13 @@ public class InStream extends InputStream {
    * This method assumes that uncompressed buffer is empty and needs buffering.
    */
   private void readChunk() throws IOException {
+    chunkStart += chunkLength;
+    readChunkBytes();
+    chunkLength = uncompressed.remaining();
+  }
+
+  /** Read the next chunk of source into uncompressed buffer */
+  private void readChunkBytes() throws IOException {
     uncompressed.clear();
     if (codec == null) {
       source.copy(uncompressed);
@@ -80,28 +159,98 @@ public class InStream extends InputStream {
       int info = header.getInt();
       boolean isCompressed = (info & (1 << 31)) != 0;
       int chunkLength = info & ~(1 << 31);
-      // copy raw bytes (either compressed or uncompressed) into compressed buffer, we should be able
-      // to just swap it in uncompressed case
-      ByteBuffer compressed = ByteBuffer.allocate(chunkLength);
+      // copy raw bytes (either compressed or uncompressed) into chunk buffer, we should be able
+      // to just swap it in uncompressed case; buffer is reused across chunks
+      if (chunk == null || chunk.capacity() < chunkLength) {
+        release(chunk);
+        chunk = allocate(Math.max(chunkLength, bufferSize));
+      }
+      chunk.clear();
+      chunk.limit(chunkLength);
       // fewer bytes can be read from stream
-      source.copy(compressed);
+      source.copy(chunk);
       if (isCompressed) {
         // reset uncompressed buffer and decompress bytes, if uncompressed buffer has smaller than
-        // bufferSize - reset it to bufferSize, otherwise just clear position and limit
+        // bufferSize - reset it to bufferSize, otherwise it is already cleared
         // TODO: resize uncompressed buffer in case chunkLength results in more than bufferSize bytes
         // right now it will throw exception, if this situation happens
-        if (uncompressed.limit() < bufferSize) {
-          uncompressed = ByteBuffer.allocate(bufferSize);
+        if (uncompressed.capacity() < bufferSize) {
+          release(uncompressed);
+          uncompressed = allocate(bufferSize);
         }
-        codec.decompress(compressed, uncompressed);
+        codec.decompress(chunk, uncompressed);
         // at this point uncompressed buffer is set for reading, no need to flip
       } else {
-        // just swap byte buffers
-        uncompressed = compressed;
+        // just swap byte buffers, chunk buffer is already set for reading
+        ByteBuffer tmp = uncompressed;
+        uncompressed = chunk;
+        chunk = tmp;
       }
     }
   }
 
+  /**
+   * Reset stream to read from new source, buffers of this stream are reused. Previous source is
+   * closed as part of this call.
+   * @param source new stripe input buffer
+   * @throws IOException
+   */
+  public void reset(StripeInputBuffer source) throws IOException {
+    if (this.source != null) {
+      this.source.close();
+    }
+    this.source = source;
+    this.chunkIndex = null;
+    this.chunkStart = 0L;
+    this.chunkLength = 0;
+    readChunk();
+  }
+
+  /**
+   * Set chunk index for compressed source, so skips beyond current chunk seek source directly to
+   * the target chunk instead of decompressing every chunk in between. Index is cleared when
+   * stream is reset, and ignored if stream is uncompressed.
+   * @param chunkIndex chunk index of source, can be null
+   */
+  public void setChunkIndex(ChunkIndex chunkIndex) {
+    this.chunkIndex = chunkIndex;
+  }
+
+  /**
+   * Number of bytes of the current chunk that can be referenced without copy, see `bufferArray()`
+   * and `bufferPosition()`. Bytes are only valid until buffer is refilled by subsequent read, and
+   * 0 is returned if chunk is not backed by array, e.g. direct buffer.
+   * @return number of buffered bytes
+   */
+  public int bufferedBytes() {
+    return uncompressed.hasArray() ? uncompressed.remaining() : 0;
+  }
+
+  /**
+   * Array that backs current chunk, only valid if `bufferedBytes()` is positive.
+   * @return backing array
+   */
+  public byte[] bufferArray() {
+    return uncompressed.array();
+  }
+
+  /**
+   * Position of the next byte to read in array of current chunk, only valid if `bufferedBytes()`
+   * is positive.
+   * @return position in backing array
+   */
+  public int bufferPosition() {
+    return uncompressed.arrayOffset() + uncompressed.position();
+  }
+
+  /**
+   * Offset of the next byte to read in uncompressed stream, e.g. sum of bytes read and skipped.
+   * @return position in uncompressed stream
+   */
+  public long position() {
+    return chunkStart + chunkLength - uncompressed.remaining();
+  }
+
   @Override
   public int available() throws IOException {
     if (uncompressed.remaining() != 0) return uncompressed.remaining();
@@ -228,21 +377,42 @@ public class InStream extends InputStream {
     // at this point, we are short on bytes to skip, we need to indicate to source that we require
     // seeking to new offset, after this refill buffer
     if (codec == null) {
-      // for uncompressed input stream, we just reposition pointer in source
-      int nextPosition = source.position() + (int) (bytes - uncompressed.remaining());
+      // for uncompressed input stream, we just reposition pointer in source; remaining bytes of
+      // buffer are skipped as well
+      int remaining = uncompressed.remaining();
+      int nextPosition = source.position() + (int) (bytes - remaining);
       if (nextPosition > source.length()) {
         // at this point we reached EOF, just set it, so next copy will result in 0 copied bytes
-        bytes = source.length() - source.position();
+        bytes = remaining + source.length() - source.position();
         source.seek(source.length());
       } else {
-        bytes = nextPosition - source.position();
         source.seek(nextPosition);
       }
+      // source offset is the same as uncompressed offset, next chunk starts at source position
+      chunkStart = source.position();
+      chunkLength = 0;
       readChunk();
       return bytes;
     } else {
-      // for compressed input stream, we will have to read bytes in order to determine skip position
+      // seek directly to the chunk that contains target offset, if chunk index is available,
+      // otherwise we will have to read bytes in order to determine skip position
       int diff = (int) (bytes - uncompressed.remaining());
+      long target = chunkStart + uncompressed.position() + bytes;
+      int next = (chunkIndex == null) ? -1 : chunkIndex.chunkAt(target);
+      if (next >= 0 && chunkIndex.uncompressedOffset(next) > chunkStart) {
+        source.seek(chunkIndex.offset(next));
+        chunkStart = chunkIndex.uncompressedOffset(next);
+        chunkLength = 0;
+        readChunk();
+        diff = (int) (target - chunkStart);
+        if (uncompressed.remaining() >= diff) {
+          uncompressed.position(uncompressed.position() + diff);
+          return bytes;
+        }
+        // target is beyond the chunk, continue with subsequent chunks
+        diff -= uncompressed.remaining();
+        uncompressed.position(uncompressed.limit());
+      }
       while (source.length() > source.position()) {
         readChunk();
         if (uncompressed.remaining() >= diff) {
@@ -251,6 +421,8 @@ public class InStream extends InputStream {
           return bytes;
         }
         diff -= uncompressed.remaining();
+        // bytes of chunk are skipped, even if source encounters EOF
+        uncompressed.position(uncompressed.limit());
       }
       // at this point source enountered EOF, return read bytes so far
       return bytes - diff;
@@ -262,7 +434,10 @@ public class InStream extends InputStream {
     // release resources
     this.source.close();
     this.source = null;
+    release(uncompressed);
+    release(chunk);
     this.uncompressed = null;
+    this.chunk = null;
   }
 
   @Override
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+
+/**
+ * Input stream backed by memory-mapped local file.
+ * Stream implements Hadoop seekable and positioned read interfaces, so it can be wrapped into
+ * `FSDataInputStream` and used instead of stream returned by local file system. Reads are served
+ * from mapping without system calls, and `slice()` method returns bytes of the file without copy.
+ *
+ * File is mapped in regions, since single mapping cannot exceed 2GB. Mapping stays valid after
+ * stream is closed until buffers are garbage collected.
+ */
+public class MappedInputStream extends InputStream
+    implements Seekable, PositionedReadable, ByteBufferReadable {
+  // default size of mapped region, 1GB
+  private static final long REGION_SIZE = 1L << 30;
+
+  // size of each mapped region, last region can be smaller
+  private final long regionSize;
+  // total length of the file
+  private final long length;
+  // mapped regions of the file, null if stream is closed
+  private MappedByteBuffer[] regions;
+  // current position in stream
+  private long pos;
+
+  MappedInputStream(MappedByteBuffer[] regions, long regionSize, long length) {
+    this.regions = regions;
+    this.regionSize = regionSize;
+    this.length = length;
+    this.pos = 0;
+  }
+
+  /**
+   * Map local file in read-only mode.
+   * @param file local file
+   * @return mapped input stream
+   * @throws IOException if file cannot be mapped
+   */
+  public static MappedInputStream open(File file) throws IOException {
+    return open(file, REGION_SIZE);
+  }
+
+  /**
+   * Map local file in read-only mode with provided region size.
+   * @param file local file
+   * @param regionSize maximum size of single mapped region
+   * @return mapped input stream
+   * @throws IOException if file cannot be mapped
+   */
+  static MappedInputStream open(File file, long regionSize) throws IOException {
+    if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid region size: " + regionSize);
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long length = channel.size();
+      MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((length + regionSize - 1) /
+        regionSize)];
+      for (int i = 0; i < regions.length; i++) {
+        long start = i * regionSize;
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+          Math.min(regionSize, length - start));
+      }
+      return new MappedInputStream(regions, regionSize, length);
+    } finally {
+      // mapping is not affected by closing channel
+      raf.close();
+    }
+  }
+
+  /**
+   * Read bytes at provided position into byte buffer.
+   * If stream is backed by mapping, returned buffer is a slice of mapping, otherwise bytes are
+   * read with positional read into heap buffer. Stream position is not modified.
+   * @param in input stream
+   * @param position position in stream
+   * @param length number of bytes to read
+   * @return byte buffer with position 0 and limit set to length
+   * @throws IOException if read fails
+   */
+  public static ByteBuffer readBuffer(
+      FSDataInputStream in,
+      long position,
+      int length) throws IOException {
+    if (in.getWrappedStream() instanceof MappedInputStream) {
+      MappedInputStream mapped = (MappedInputStream) in.getWrappedStream();
+      if (mapped.canSlice(position, length)) return mapped.slice(position, length);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    in.readFully(position, buffer.array(), buffer.arrayOffset(), length);
+    return buffer;
+  }
+
+  /**
+   * Create stream that shares mapping with this stream, but keeps its own position, e.g. to read
+   * file from several threads. Closing either stream does not affect the other one.
+   * @return new stream positioned at the beginning of the file
+   * @throws IOException if stream is closed
+   */
+  public MappedInputStream duplicate() throws IOException {
+    assertOpen();
+    return new MappedInputStream(regions, regionSize, length);
+  }
+
+  /** Check if stream is open */
+  private void assertOpen() throws IOException {
+    if (regions == null) throw new IOException("Stream is closed");
+  }
+
+  /** Copy bytes starting at position into array, position and length must be within file */
+  private void copy(long position, byte[] bytes, int offset, int len) {
+    while (len > 0) {
+      ByteBuffer src = regions[(int) (position / regionSize)].duplicate();
+      src.position((int) (position % regionSize));
+      int n = Math.min(len, src.remaining());
+      src.get(bytes, offset, n);
+      position += n;
+      offset += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Whether or not range can be returned as single slice of mapping.
+   * @param position position in file
+   * @param len number of bytes
+   * @return true if range is within file and does not span several mapped regions
+   */
+  public boolean canSlice(long position, int len) {
+    return regions != null && position >= 0 && len >= 0 && position <= length - len &&
+      (len == 0 || position / regionSize == (position + len - 1) / regionSize);
+  }
+
+  /**
+   * Return slice of mapping for provided range, slice shares content with mapping.
+   * @param position position in file
+   * @param len number of bytes
+   * @return byte buffer with position 0 and limit set to length
+   * @throws IOException if range cannot be sliced, see `canSlice()`
+   */
+  public ByteBuffer slice(long position, int len) throws IOException {
+    assertOpen();
+    if (!canSlice(position, len)) {
+      throw new IOException("Cannot slice range [" + position + ", " + len + "] for " + this);
+    }
+    if (len == 0) return ByteBuffer.allocate(0);
+    int start = (int) (position % regionSize);
+    ByteBuffer buffer = regions[(int) (position / regionSize)].duplicate();
+    buffer.position(start);
+    buffer.limit(start + len);
+    return buffer.slice();
+  }
+
+  /**
+   * Total length of the mapped file.
+   * @return length in bytes
+   */
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public int available() throws IOException {
+    assertOpen();
+    return (int) Math.min(length - pos, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int read() throws IOException {
+    assertOpen();
+    if (pos >= length) return -1;
+    ByteBuffer region = regions[(int) (pos / regionSize)];
+    int value = region.get((int) (pos % regionSize)) & 0xff;
+    pos++;
+    return value;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int len) throws IOException {
+    int n = read(pos, bytes, offset, len);
+    if (n > 0) pos += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long bytes) throws IOException {
+    assertOpen();
+    long n = Math.max(Math.min(bytes, length - pos), 0);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int read(ByteBuffer buf) throws IOException {
+    assertOpen();
+    if (pos >= length) return -1;
+    int total = (int) Math.min(buf.remaining(), length - pos);
+    int len = total;
+    while (len > 0) {
+      ByteBuffer src = regions[(int) (pos / regionSize)].duplicate();
+      src.position((int) (pos % regionSize));
+      int n = Math.min(len, src.remaining());
+      src.limit(src.position() + n);
+      buf.put(src);
+      pos += n;
+      len -= n;
+    }
+    return total;
+  }
+
+  @Override
+  public int read(long position, byte[] bytes, int offset, int len) throws IOException {
+    assertOpen();
+    if (position < 0) throw new EOFException("Negative position: " + position);
+    if (position >= length) return len == 0 ? 0 : -1;
+    int n = (int) Math.min(len, length - position);
+    copy(position, bytes, offset, n);
+    return n;
+  }
+
+  @Override
+  public void readFully(long position, byte[] bytes, int offset, int len) throws IOException {
+    assertOpen();
+    if (position < 0 || len < 0 || position > length - len) {
+      throw new EOFException("Failed to read [" + position + ", " + len + "] for " + this);
+    }
+    copy(position, bytes, offset, len);
+  }
+
+  @Override
+  public void readFully(long position, byte[] bytes) throws IOException {
+    readFully(position, bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void seek(long position) throws IOException {
+    assertOpen();
+    if (position < 0 || position > length) {
+      throw new EOFException("Cannot seek to " + position + " for " + this);
+    }
+    pos = position;
+  }
+
+  @Override
+  public long getPos() throws IOException {
+    return pos;
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) throws IOException {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    regions = null;
+  }
+
+  @Override
+  public String toString() {
+    return "MappedInputStream[length=" + length + ", position=" + pos +
+      ", closed=" + (regions == null) + "]";
+  }
+}
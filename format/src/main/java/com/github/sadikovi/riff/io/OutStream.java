@@ -45,37 +45,96 @@ public class OutStream extends OutputStream {
   // buffer for writing primitive types (similar to DataOutputStream)
   private final byte[] buf;
   // buffer for uncompressed raw bytes
-  private final ByteBuffer uncompressed;
+  private ByteBuffer uncompressed;
   // optional compression codec, should be set to null if no compression
   private final CompressionCodec codec;
   // optional byte buffer for compressed data, only set if codec is set
-  private final ByteBuffer compressed;
+  private ByteBuffer compressed;
   // optional overflow buffer that is used to store some bytes left from compression if main
   // compressed buffer is full, generally it should fit all bytes left
-  private final ByteBuffer overflow;
+  private ByteBuffer overflow;
   // receiver output stream
   private final StripeOutputBuffer receiver;
+  // optional buffer pool to acquire buffers from, null if buffers are allocated
+  private final BufferPool pool;
+  // number of uncompressed bytes written into stream
+  private long uncompressedBytes;
+  // number of uncompressed bytes spilled into chunks
+  private long spilledBytes;
+  // offsets of chunks written so far, null if stream is uncompressed
+  private ChunkIndex chunkIndex;
 
   public OutStream(int bufferSize, CompressionCodec codec, StripeOutputBuffer receiver) {
+    this(bufferSize, codec, receiver, null);
+  }
+
+  /**
+   * Create outstream that acquires intermediate buffers from pool.
+   * Buffers are returned into pool when stream is closed.
+   * @param bufferSize buffer size
+   * @param codec compression codec, null if no compression
+   * @param receiver stripe output buffer
+   * @param pool buffer pool, null if buffers should be allocated
+   */
+  public OutStream(
+      int bufferSize,
+      CompressionCodec codec,
+      StripeOutputBuffer receiver,
+      BufferPool pool) {
     this.bufferSize = bufferSize;
     // initialize buffer to accomodate all primitive values (8 bytes max for long or double)
     this.buf = new byte[8];
     this.codec = codec;
+    this.pool = pool;
     if (codec == null) {
       // when there is no codec, ho header is written
-      this.uncompressed = ByteBuffer.allocate(bufferSize);
+      this.uncompressed = allocate(bufferSize);
       this.compressed = null;
       this.overflow = null;
     } else {
       // we need to insert some root for header into uncompressed stream - this is done so when we
       // decide to use raw bytes over compressed data we would still be able to write header into
       // uncompressed buffer (normally it would be written into compressed buffer)
-      this.uncompressed = ByteBuffer.allocate(bufferSize + HEADER_SIZE);
+      this.uncompressed = allocate(bufferSize + HEADER_SIZE);
       this.uncompressed.position(HEADER_SIZE);
-      this.compressed = ByteBuffer.allocate(bufferSize + HEADER_SIZE);
-      this.overflow = ByteBuffer.allocate(bufferSize + HEADER_SIZE);
+      this.compressed = allocate(bufferSize + HEADER_SIZE);
+      this.overflow = allocate(bufferSize + HEADER_SIZE);
     }
     this.receiver = receiver;
+    this.uncompressedBytes = 0L;
+    this.spilledBytes = 0L;
+    this.chunkIndex = (codec == null) ? null : new ChunkIndex();
+  }
+
+  /**
+   * Number of uncompressed bytes written into this stream so far, this is also the position of the
+   * next byte when stream is read with instream.
+   * @return number of bytes
+   */
+  public long bytesWritten() {
+    return uncompressedBytes;
+  }
+
+  /**
+   * Index of chunks written into receiver so far, complete after stream is flushed. Instream can
+   * use index to skip chunks without decompressing them.
+   * @return chunk index or null if stream is uncompressed
+   */
+  public ChunkIndex chunkIndex() {
+    return chunkIndex;
+  }
+
+  /** Allocate buffer of exactly provided capacity, backing array is acquired from pool if set */
+  private ByteBuffer allocate(int size) {
+    if (pool == null) return ByteBuffer.allocate(size);
+    return ByteBuffer.wrap(pool.acquire(size), 0, size).slice();
+  }
+
+  /** Return backing array of buffer into pool */
+  private void release(ByteBuffer buffer) {
+    if (pool != null && buffer != null) {
+      pool.release(buffer.array());
+    }
   }
 
   /**
@@ -121,6 +180,7 @@ public class OutStream extends OutputStream {
 
   @Override
   public void write(byte[] bytes, int offset, int length) throws IOException {
+    this.uncompressedBytes += length;
     int bytesWritten = Math.min(uncompressed.remaining(), length);
     // write bytes that will fit into this buffer
     uncompressed.put(bytes, offset, bytesWritten);
@@ -164,10 +224,21 @@ public class OutStream extends OutputStream {
     }
   }
 
+  /**
+   * Close output receiver and release buffers. Stream should be flushed before closing, it cannot
+   * be used after this call.
+   * @throws IOException
+   */
   @Override
   public void close() throws IOException {
     // close output receiver
     this.receiver.close();
+    release(uncompressed);
+    release(compressed);
+    release(overflow);
+    this.uncompressed = null;
+    this.compressed = null;
+    this.overflow = null;
   }
 
   @Override
@@ -221,6 +292,9 @@ public class OutStream extends OutputStream {
       // spill - this already has header written, which is not going to be altered. This new batch
       // will have new header, so make room for it
       int prevPos = compressed.position();
+      // chunk header is written after bytes of previous chunks, regardless of compression result
+      chunkIndex.add(receiver.length() + prevPos, spilledBytes);
+      spilledBytes += length;
       compressed.position(prevPos + HEADER_SIZE);
       if (codec.compress(uncompressed, compressed, overflow)) {
         // compression is okay and smaller than uncompressed bytes
@@ -49,6 +49,29 @@ public class OutputBuffer extends ByteArrayOutputStream {
     this.buffer = new byte[8];
   }
 
+  /**
+   * Create output buffer that writes into provided array, e.g. acquired from buffer pool.
+   * Array is replaced with a larger copy when buffer grows.
+   * @param array initial array
+   */
+  public OutputBuffer(byte[] array) {
+    super(0);
+    this.buf = array;
+    this.buffer = new byte[8];
+  }
+
+  /**
+   * Detach current backing array from this buffer, buffer is reset and becomes empty.
+   * Used to return array into buffer pool.
+   * @return backing array
+   */
+  byte[] detach() {
+    byte[] array = buf;
+    buf = new byte[0];
+    reset();
+    return array;
+  }
+
   /**
    * How many bytes are written so far into this buffer.
    * @return number of bytes
@@ -73,6 +73,10 @@ public class SnappyCodec implements CompressionCodec {
 
   @Override
   public void decompress(ByteBuffer in, ByteBuffer out) throws IOException {
+    if (in.isDirect() || out.isDirect()) {
+      decompressDirect(in, out);
+      return;
+    }
     int uncompressedBytes = Snappy.uncompressedLength(in.array(), in.arrayOffset() + in.position(),
       in.remaining());
     if (uncompressedBytes > out.remaining()) {
@@ -89,6 +93,33 @@ public class SnappyCodec implements CompressionCodec {
     in.position(in.limit());
   }
 
+  /** Decompress direct in buffer into direct out buffer */
+  private void decompressDirect(ByteBuffer in, ByteBuffer out) throws IOException {
+    if (!in.isDirect() || !out.isDirect()) {
+      throw new IllegalArgumentException("Expected both buffers to be direct, found in=" + in +
+        ", out=" + out);
+    }
+    int uncompressedBytes = Snappy.uncompressedLength(in);
+    if (uncompressedBytes > out.remaining()) {
+      throw new IOException("Output buffer is too short, could not insert more bytes from " +
+        "compressed byte buffer");
+    }
+    // snappy uses [position, limit) of both buffers and sets out limit to the end of uncompressed
+    // bytes, positions are not updated
+    int position = out.position();
+    uncompressedBytes = Snappy.uncompress(in, out);
+    out.limit(position + uncompressedBytes);
+    out.position(position + uncompressedBytes);
+    // prepare for read
+    out.flip();
+    in.position(in.limit());
+  }
+
+  @Override
+  public boolean supportsDirectBuffers() {
+    return true;
+  }
+
   @Override
   public void reset() {
     // no-op
@@ -22,22 +22,42 @@
 
 package com.github.sadikovi.riff.io;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+
 /**
  * Stripe input buffer.
  * Keeps information about current stripe, including total bytes in stripe, offset, and id.
- * Specification implies that stripe is loaded into memory entirely and read in parts by consumers,
- * such as `InStream`s.
+ * Stripe is either loaded into memory entirely and read in parts by consumers, such as
+ * `InStream`s, or streamed from the underlying input stream on demand, in which case only bytes
+ * requested by consumer are read, and memory is bounded by consumer buffers rather than stripe
+ * length. Stripe can also be backed by byte buffer, e.g. slice of memory-mapped file.
  */
 public class StripeInputBuffer {
+  // maximum size of scratch array for copying streamed bytes
+  private static final int SCRATCH_SIZE = 64 * 1024;
+
   // stripe unique id (across stripes within file)
   private final short id;
-  // total data in stripe
+  // total bytes in stripe
+  private final int length;
+  // total data in stripe, null if stripe is streamed
   private byte[] data;
+  // start of the stripe in data array, data array can be shared between stripes
+  private final int dataOffset;
+  // input stream positioned at the beginning of the stripe, null if stripe is buffered
+  private DataInputStream in;
+  // byte buffer with stripe bytes starting at position 0, null if stripe is not backed by buffer
+  private ByteBuffer buffer;
   // current offset in data
   private int offset;
+  // scratch array to copy streamed bytes into buffers without backing array, lazily created
+  private byte[] scratch;
 
   public StripeInputBuffer(short id, byte[] data) {
     // data array can be empty
@@ -45,17 +65,123 @@ public class StripeInputBuffer {
       throw new IllegalArgumentException("Null data for stripe");
     }
     this.id = id;
+    this.length = data.length;
+    this.data = data;
+    this.dataOffset = 0;
+    this.in = null;
+    this.buffer = null;
+    this.offset = 0;
+  }
+
+  /**
+   * Create stripe input buffer as a slice of provided data array, which can contain several
+   * stripes, e.g. when stripes are read with single request.
+   * @param id stripe id
+   * @param data data array
+   * @param dataOffset start of the stripe in data array
+   * @param length stripe length in bytes
+   */
+  public StripeInputBuffer(short id, byte[] data, int dataOffset, int length) {
+    if (data == null) {
+      throw new IllegalArgumentException("Null data for stripe");
+    }
+    if (dataOffset < 0 || length < 0 || dataOffset > data.length - length) {
+      throw new IllegalArgumentException("Invalid slice [" + dataOffset + ", " + length +
+        "] for data of " + data.length + " bytes");
+    }
+    this.id = id;
+    this.length = length;
     this.data = data;
+    this.dataOffset = dataOffset;
+    this.in = null;
+    this.buffer = null;
     this.offset = 0;
   }
 
+  /**
+   * Create stripe input buffer that streams bytes from provided input stream.
+   * Stream must be positioned at the beginning of the stripe, and is not closed when this buffer
+   * is closed - it is owned by the caller.
+   * @param id stripe id
+   * @param in input stream positioned at the stripe offset
+   * @param length stripe length in bytes
+   */
+  public StripeInputBuffer(short id, DataInputStream in, int length) {
+    if (in == null) {
+      throw new IllegalArgumentException("Null input stream for stripe");
+    }
+    if (length < 0) {
+      throw new IllegalArgumentException("Negative length: " + length);
+    }
+    this.id = id;
+    this.length = length;
+    this.data = null;
+    this.dataOffset = 0;
+    this.in = in;
+    this.buffer = null;
+    this.offset = 0;
+  }
+
+  /**
+   * Create stripe input buffer backed by byte buffer, e.g. slice of memory-mapped file.
+   * Stripe contains remaining bytes of the buffer, buffer is not modified by this stripe.
+   * @param id stripe id
+   * @param buffer byte buffer with stripe bytes between position and limit
+   */
+  public StripeInputBuffer(short id, ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("Null buffer for stripe");
+    }
+    this.id = id;
+    this.length = buffer.remaining();
+    this.data = null;
+    this.dataOffset = 0;
+    this.in = null;
+    this.buffer = buffer.slice();
+    this.offset = 0;
+  }
+
+  /**
+   * Create stripe input buffer for range of bytes of this stripe, e.g. stream of the stripe.
+   * Returned buffer shares bytes with this stripe and has its own cursor, this stripe is not
+   * modified. Streamed stripe cannot be sliced, since bytes can only be read in order.
+   * @param position start of the slice in stripe
+   * @param length length of the slice in bytes
+   * @return stripe input buffer for slice
+   */
+  public StripeInputBuffer slice(int position, int length) {
+    if (in != null || (data == null && buffer == null)) {
+      throw new IllegalStateException("Cannot slice " + (in != null ? "streamed " : "closed ") +
+        this);
+    }
+    if (position < 0 || length < 0 || position > this.length - length) {
+      throw new IllegalArgumentException("Invalid slice [" + position + ", " + length +
+        "] for stripe of " + this.length + " bytes");
+    }
+    if (buffer != null) {
+      ByteBuffer slice = buffer.duplicate();
+      slice.position(position);
+      slice.limit(position + length);
+      return new StripeInputBuffer(id, slice);
+    }
+    return new StripeInputBuffer(id, data, dataOffset + position, length);
+  }
+
   /**
    * Total number of bytes in this stripe.
    * Stripe cannot have more than 2GB of data.
    * @return number of bytes
    */
   public int length() {
-    return this.data.length;
+    return this.length;
+  }
+
+  /**
+   * Whether or not this stripe is streamed from input stream instead of being buffered.
+   * @return true if stripe is streamed, false otherwise
+   */
+  public boolean isStreamed() {
+    return this.in != null;
   }
 
   /**
@@ -81,13 +207,24 @@ public class StripeInputBuffer {
    * @throws IOException when position is < 0 or >= length, or less than current position
    */
   public void seek(int position) throws IOException {
-    if (position < 0 || position > data.length) {
+    if (position < 0 || position > length) {
       throw new IOException("Invalid position " + position + " for " + this);
     }
 
     if (position < offset) {
       throw new IOException("Cannot set position " + position + " < current offset " + offset);
     }
+    if (in != null) {
+      // stream can only move forward, skip bytes until position is reached
+      int bytes = position - offset;
+      while (bytes > 0) {
+        int skipped = in.skipBytes(bytes);
+        if (skipped <= 0) {
+          throw new IOException("EOF, failed to skip " + bytes + " bytes for " + this);
+        }
+        bytes -= skipped;
+      }
+    }
     offset = position;
   }
 
@@ -97,10 +234,26 @@ public class StripeInputBuffer {
    * fewer bytes (potentially 0) than remaining in output buffer, output buffer will be modified to
    * reflect this change (limit will be resized, so remaining bytes are only those copied).
    * @param out buffer to copy into
+   * @throws IOException if stripe is streamed and read fails
    */
-  public void copy(ByteBuffer out) {
-    int remaining = Math.min(out.remaining(), data.length - offset);
-    out.put(data, offset, remaining);
+  public void copy(ByteBuffer out) throws IOException {
+    int remaining = Math.min(out.remaining(), length - offset);
+    if (in != null) {
+      if (out.hasArray()) {
+        in.readFully(out.array(), out.arrayOffset() + out.position(), remaining);
+        out.position(out.position() + remaining);
+      } else {
+        readDirect(out, remaining);
+      }
+    } else if (buffer != null) {
+      // duplicate shares content, but keeps separate position and limit
+      ByteBuffer src = buffer.duplicate();
+      src.position(offset);
+      src.limit(offset + remaining);
+      out.put(src);
+    } else {
+      out.put(data, dataOffset + offset, remaining);
+    }
     // advance position
     offset += remaining;
     // flip buffer to make it ready for reads; if we copied fewer bytes than remaining in buffer,
@@ -108,18 +261,57 @@ public class StripeInputBuffer {
     out.flip();
   }
 
+  /**
+   * Read bytes from stream into buffer without backing array, e.g. direct buffer.
+   * If stream supports byte buffer reads, bytes are read without copy, otherwise bytes are copied
+   * through heap scratch array.
+   * @param out buffer to read into
+   * @param bytes number of bytes to read
+   * @throws IOException
+   */
+  private void readDirect(ByteBuffer out, int bytes) throws IOException {
+    int limit = out.limit();
+    if (in instanceof FSDataInputStream &&
+        ((FSDataInputStream) in).getWrappedStream() instanceof ByteBufferReadable) {
+      try {
+        out.limit(out.position() + bytes);
+        while (out.hasRemaining()) {
+          if (((FSDataInputStream) in).read(out) < 0) {
+            throw new EOFException("EOF, failed to read " + out.remaining() + " bytes for " + this);
+          }
+        }
+      } finally {
+        out.limit(limit);
+      }
+    } else {
+      if (scratch == null) {
+        scratch = new byte[Math.min(bytes, SCRATCH_SIZE)];
+      }
+      while (bytes > 0) {
+        int len = Math.min(bytes, scratch.length);
+        in.readFully(scratch, 0, len);
+        out.put(scratch, 0, len);
+        bytes -= len;
+      }
+    }
+  }
+
   /**
    * Close and/or relese all resources maintained by this stripe input buffer.
    * @throws IOException
    */
   public void close() throws IOException {
+    // input stream is owned by the caller and is not closed
     this.data = null;
+    this.in = null;
+    this.buffer = null;
+    this.scratch = null;
     this.offset = 0;
   }
 
   @Override
   public String toString() {
     return "StripeInput[id=" + id + ", offset=" + offset +
-      ", closed=" + (data == null) + "]";
+      ", closed=" + (data == null && in == null && buffer == null) + "]";
   }
 }
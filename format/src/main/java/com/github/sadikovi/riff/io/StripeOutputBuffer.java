@@ -34,12 +34,30 @@ public class StripeOutputBuffer {
   private final short id;
   // total data in stripe
   private final OutputBuffer data;
+  // optional buffer pool that backing array of data is acquired from
+  private final BufferPool pool;
 
   public StripeOutputBuffer(short id) {
     // id should always be non-negative
     if (id < 0) throw new IllegalArgumentException("Negative stripe id: " + id);
     this.id = id;
     this.data = new OutputBuffer();
+    this.pool = null;
+  }
+
+  /**
+   * Create stripe buffer with backing array acquired from pool, array is returned into pool when
+   * buffer is closed, therefore content is not available after `close()` call.
+   * @param id stripe id
+   * @param pool buffer pool
+   * @param initialSize expected size of the stripe in bytes, e.g. size of previous stripe
+   */
+  public StripeOutputBuffer(short id, BufferPool pool, int initialSize) {
+    if (id < 0) throw new IllegalArgumentException("Negative stripe id: " + id);
+    if (pool == null) throw new IllegalArgumentException("Null buffer pool");
+    this.id = id;
+    this.data = new OutputBuffer(pool.acquire(initialSize));
+    this.pool = pool;
   }
 
   /**
@@ -85,6 +103,9 @@ public class StripeOutputBuffer {
   public void close() throws IOException {
     // output buffer close is no-op operation
     data.close();
+    if (pool != null) {
+      pool.release(data.detach());
+    }
   }
 
   /**
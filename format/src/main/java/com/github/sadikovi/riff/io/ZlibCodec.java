@@ -93,6 +93,12 @@ public class ZlibCodec implements CompressionCodec {
     in.position(in.limit());
   }
 
+  @Override
+  public boolean supportsDirectBuffers() {
+    // inflater only accepts byte arrays
+    return false;
+  }
+
   @Override
   public void reset() {
     deflater.reset();
@@ -22,7 +22,7 @@
 
 package com.github.sadikovi.riff.row;
 
-import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import org.apache.spark.sql.catalyst.InternalRow;
@@ -36,27 +36,66 @@ import org.apache.spark.sql.types.NullType;
 import org.apache.spark.sql.types.ShortType;
 import org.apache.spark.sql.types.StringType;
 import org.apache.spark.sql.types.TimestampType;
+import org.apache.spark.unsafe.Platform;
 import org.apache.spark.unsafe.types.UTF8String;
 
 /**
  * Implementation of [[GenericInternalRow]] that provides index fields access as well as data fields
  * access. Has a restriction of only Long.SIZE fields to maintain. Assumes that order of fields
  * written is index fields -> data fields.
+ *
+ * Index and data regions are views (base object, offset, length) over byte arrays, values are read
+ * with `Platform` accessors. Regions can reference shared buffer, e.g. decompressed chunk of
+ * instream, in which case row is only valid until buffer is modified; `copy()` should be used to
+ * retain row.
+ *
+ * Data region can be set lazily with loader, which is invoked on the first access to data field,
+ * see `setLazyDataRegion()`, so rows that are only accessed for index fields do not read data
+ * region at all.
+ *
+ * If data fields are split into column groups, data region contains region of each group, and
+ * offsets of data fields are relative to the start of their group region, see `setDataGroups()`.
  */
 public final class IndexedRow extends GenericInternalRow {
   public static final byte MAGIC1 = 67;
   public static final byte MAGIC2 = 73;
 
-  // relative (! not absolute) fixed part byte offsets for index region and data region
-  private final int[] offsets;
+  // values are written in big endian byte order, platform reads values in native order
+  private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+  // relative (! not absolute) fixed part byte offsets for index region and data region, array
+  // can be shared between rows and must not be modified
+  private int[] offsets;
   // bit set of indexed fields, 1 if field at ordinal is indexed, 0 otherwise
   private final long indexed;
   // null bit set, 1 if field is null, 0 otherwise
   private long nulls;
-  // byte buffer for index region
-  private ByteBuffer indexBuffer;
-  // byte buffer for data region
-  private ByteBuffer dataBuffer;
+  // base object, platform offset and length of index region, base is null if region is not set
+  private Object indexBase;
+  private long indexOffset;
+  private int indexLength;
+  // base object, platform offset and length of data region, base is null if region is not set
+  private Object dataBase;
+  private long dataOffset;
+  private int dataLength;
+  // loader of data region, null if data region is set or does not exist
+  private DataRegionLoader loader;
+  // column group for each ordinal, array can be shared between rows and must not be modified,
+  // null if data fields are not grouped
+  private int[] fieldGroups;
+  // start of each group region relative to data region, -1 if group is not set
+  private int[] groupOffsets;
+
+  /**
+   * Loader of data region for lazily read rows, see `setLazyDataRegion()`.
+   */
+  public interface DataRegionLoader {
+    /**
+     * Set data region of provided row, called at most once per row.
+     * @param row row to set data region for
+     */
+    void loadDataRegion(IndexedRow row);
+  }
 
   public IndexedRow(long indexed, long nulls, int[] offsets) {
     if (offsets.length > Long.SIZE) {
@@ -66,24 +105,142 @@ public final class IndexedRow extends GenericInternalRow {
     this.offsets = offsets;
     this.indexed = indexed;
     this.nulls = nulls;
-    this.indexBuffer = null;
-    this.dataBuffer = null;
+    this.indexBase = null;
+    this.dataBase = null;
+    this.loader = null;
+  }
+
+  /**
+   * Reset row to new null bit set and offsets, so instance can be reused for the next row.
+   * Regions are unset and should be set again.
+   * @param nulls null bit set
+   * @param offsets relative offsets for fields, must have the same number of fields
+   */
+  public void reset(long nulls, int[] offsets) {
+    if (offsets.length != this.offsets.length) {
+      throw new IllegalArgumentException("Expected " + this.offsets.length + " fields, found " +
+        offsets.length);
+    }
+    this.offsets = offsets;
+    this.nulls = nulls;
+    this.indexBase = null;
+    this.dataBase = null;
+    this.loader = null;
   }
 
   /**
-   * Set index region as array of bytes, array should already be a copy - wrapped byte buffer is
-   * created on top of this array.
+   * Set index region as array of bytes, array should already be a copy - region references this
+   * array directly.
    */
   public void setIndexRegion(byte[] bytes) {
-    this.indexBuffer = ByteBuffer.wrap(bytes);
+    setIndexRegion(bytes, 0, bytes.length);
   }
 
   /**
-   * Set data region as array of bytes, array should already be a copy - wrapped byte buffer is
-   * created, similar to index region.
+   * Set index region as a slice of byte array, array is not copied.
+   * @param bytes array that contains region
+   * @param offset start of region in array
+   * @param length number of bytes in region
+   */
+  public void setIndexRegion(byte[] bytes, int offset, int length) {
+    checkSlice(bytes, offset, length);
+    this.indexBase = bytes;
+    this.indexOffset = Platform.BYTE_ARRAY_OFFSET + offset;
+    this.indexLength = length;
+  }
+
+  /**
+   * Set data region as array of bytes, array should already be a copy - region references this
+   * array directly, similar to index region.
    */
   public void setDataRegion(byte[] bytes) {
-    this.dataBuffer = ByteBuffer.wrap(bytes);
+    setDataRegion(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Set data region as a slice of byte array, array is not copied.
+   * @param bytes array that contains region
+   * @param offset start of region in array
+   * @param length number of bytes in region
+   */
+  public void setDataRegion(byte[] bytes, int offset, int length) {
+    checkSlice(bytes, offset, length);
+    this.loader = null;
+    this.dataBase = bytes;
+    this.dataOffset = Platform.BYTE_ARRAY_OFFSET + offset;
+    this.dataLength = length;
+  }
+
+  /**
+   * Set data region lazily, loader is invoked to set data region on the first access to data
+   * field or when row is copied. Loader is discarded when row is reset or data region is set.
+   * @param loader loader of data region
+   */
+  public void setLazyDataRegion(DataRegionLoader loader) {
+    if (loader == null) {
+      throw new IllegalArgumentException("Null loader for data region");
+    }
+    this.dataBase = null;
+    this.loader = loader;
+  }
+
+  /**
+   * Load data region if it is set lazily, no-op otherwise.
+   */
+  public void loadDataRegion() {
+    if (this.loader != null) {
+      DataRegionLoader current = this.loader;
+      this.loader = null;
+      current.loadDataRegion(this);
+    }
+  }
+
+  /**
+   * Set column groups of data region. Offsets of data fields are resolved relative to the start of
+   * the region of their group.
+   * @param fieldGroups group for each ordinal, only values of data fields are used; array is not
+   *   copied and must not be modified
+   * @param groupOffsets start of each group region relative to data region, array is owned by
+   *   this row
+   */
+  public void setDataGroups(int[] fieldGroups, int[] groupOffsets) {
+    if (fieldGroups.length != this.offsets.length) {
+      throw new IllegalArgumentException("Expected " + this.offsets.length + " fields, found " +
+        fieldGroups.length);
+    }
+    this.fieldGroups = fieldGroups;
+    this.groupOffsets = groupOffsets;
+  }
+
+  /** Platform offset of the region that contains data field, data region must be loaded */
+  private long dataRegionOffset(int ordinal) {
+    if (this.fieldGroups == null) return this.dataOffset;
+    return this.dataOffset + this.groupOffsets[this.fieldGroups[ordinal]];
+  }
+
+  /** Validate slice of byte array, since values are read without bound checks */
+  private static void checkSlice(byte[] bytes, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IllegalArgumentException("Invalid region [" + offset + ", " + length +
+        "] for array of " + bytes.length + " bytes");
+    }
+  }
+
+  /**
+   * Copy index region into new array, so row no longer references shared buffer. This should be
+   * called before buffer that backs index region is modified. No-op if region is not set.
+   */
+  public void copyIndexRegion() {
+    if (hasIndexRegion()) {
+      setIndexRegion(regionBytes(this.indexBase, this.indexOffset, this.indexLength));
+    }
+  }
+
+  /** Copy region into new array */
+  private static byte[] regionBytes(Object base, long offset, int length) {
+    byte[] arr = new byte[length];
+    Platform.copyMemory(base, offset, arr, Platform.BYTE_ARRAY_OFFSET, length);
+    return arr;
   }
 
   /**
@@ -105,7 +262,7 @@ public final class IndexedRow extends GenericInternalRow {
    * @return true if region is set, false otherwise
    */
   public boolean hasIndexRegion() {
-    return this.indexBuffer != null;
+    return this.indexBase != null;
   }
 
   /**
@@ -113,7 +270,15 @@ public final class IndexedRow extends GenericInternalRow {
    * @return true if region is set, false otherwise
    */
   public boolean hasDataRegion() {
-    return this.dataBuffer != null;
+    return this.dataBase != null;
+  }
+
+  /**
+   * Whether or not data region of this row is set lazily and has not been loaded yet.
+   * @return true if data region is pending, false otherwise
+   */
+  public boolean hasLazyDataRegion() {
+    return this.loader != null;
   }
 
   @Override
@@ -123,20 +288,20 @@ public final class IndexedRow extends GenericInternalRow {
 
   @Override
   public IndexedRow copy() {
+    loadDataRegion();
     int[] copyOffsets = new int[this.offsets.length];
     System.arraycopy(this.offsets, 0, copyOffsets, 0, this.offsets.length);
     IndexedRow row = new IndexedRow(this.indexed, this.nulls, copyOffsets);
+    if (this.fieldGroups != null) {
+      row.setDataGroups(this.fieldGroups,
+        Arrays.copyOf(this.groupOffsets, this.groupOffsets.length));
+    }
+    // regions can reference shared buffer, always copy bytes
     if (hasIndexRegion()) {
-      // copy bytes manually, array() method returns reference to wrapped byte array
-      byte[] arr = new byte[this.indexBuffer.capacity()];
-      System.arraycopy(this.indexBuffer.array(), 0, arr, 0, arr.length);
-      row.setIndexRegion(arr);
+      row.setIndexRegion(regionBytes(this.indexBase, this.indexOffset, this.indexLength));
     }
     if (hasDataRegion()) {
-      // copy bytes manually, array() method returns reference to wrapped byte array
-      byte[] arr = new byte[this.dataBuffer.capacity()];
-      System.arraycopy(this.dataBuffer.array(), 0, arr, 0, arr.length);
-      row.setDataRegion(arr);
+      row.setDataRegion(regionBytes(this.dataBase, this.dataOffset, this.dataLength));
     }
     return row;
   }
@@ -179,72 +344,73 @@ public final class IndexedRow extends GenericInternalRow {
 
   @Override
   public int getInt(int ordinal) {
+    int value;
     if (isIndexed(ordinal)) {
-      return this.indexBuffer.getInt(this.offsets[ordinal]);
+      value = Platform.getInt(this.indexBase, this.indexOffset + this.offsets[ordinal]);
     } else {
-      return this.dataBuffer.getInt(this.offsets[ordinal]);
+      loadDataRegion();
+      value = Platform.getInt(this.dataBase, dataRegionOffset(ordinal) + this.offsets[ordinal]);
     }
+    return BIG_ENDIAN ? value : Integer.reverseBytes(value);
   }
 
   @Override
   public long getLong(int ordinal) {
+    long value;
     if (isIndexed(ordinal)) {
-      return this.indexBuffer.getLong(this.offsets[ordinal]);
+      value = Platform.getLong(this.indexBase, this.indexOffset + this.offsets[ordinal]);
     } else {
-      return this.dataBuffer.getLong(this.offsets[ordinal]);
+      loadDataRegion();
+      value = Platform.getLong(this.dataBase, dataRegionOffset(ordinal) + this.offsets[ordinal]);
     }
+    return BIG_ENDIAN ? value : Long.reverseBytes(value);
   }
 
-  /** Extract UTF8String from byte buffer */
-  private UTF8String getUTF8String(int ordinal, ByteBuffer buf) {
+  /** Extract UTF8String from region, string references region bytes without copy */
+  private UTF8String getUTF8String(int ordinal, Object base, long regionOffset) {
     // parse metadata, this should be in sync with converters: [offset + length]
-    long metadata = buf.getLong(this.offsets[ordinal]);
+    long metadata = Platform.getLong(base, regionOffset + this.offsets[ordinal]);
+    if (!BIG_ENDIAN) metadata = Long.reverseBytes(metadata);
     int offset = (int) (metadata >>> 32);
     int length = (int) (metadata & Integer.MAX_VALUE);
-    byte[] bytes = new byte[length];
-    int oldPos = buf.position();
-    // need to reset buffer position, offset in get method is applied to buffer as well, so we
-    // use 0 as array offset and shift position to offset
-    buf.position(offset);
-    buf.get(bytes, 0, length);
-    buf.position(oldPos);
-    return UTF8String.fromBytes(bytes);
+    return UTF8String.fromAddress(base, regionOffset + offset, length);
   }
 
   @Override
   public UTF8String getUTF8String(int ordinal) {
     if (isIndexed(ordinal)) {
-      return getUTF8String(ordinal, this.indexBuffer);
+      return getUTF8String(ordinal, this.indexBase, this.indexOffset);
     } else {
-      return getUTF8String(ordinal, this.dataBuffer);
+      loadDataRegion();
+      return getUTF8String(ordinal, this.dataBase, dataRegionOffset(ordinal));
     }
   }
 
   @Override
   public boolean getBoolean(int ordinal) {
     // boolean value `true` is encoded as byte 1, `false` as byte 0
-    if (isIndexed(ordinal)) {
-      return this.indexBuffer.get(this.offsets[ordinal]) == 1;
-    } else {
-      return this.dataBuffer.get(this.offsets[ordinal]) == 1;
-    }
+    return getByte(ordinal) == 1;
   }
 
   @Override
   public short getShort(int ordinal) {
+    short value;
     if (isIndexed(ordinal)) {
-      return this.indexBuffer.getShort(this.offsets[ordinal]);
+      value = Platform.getShort(this.indexBase, this.indexOffset + this.offsets[ordinal]);
     } else {
-      return this.dataBuffer.getShort(this.offsets[ordinal]);
+      loadDataRegion();
+      value = Platform.getShort(this.dataBase, dataRegionOffset(ordinal) + this.offsets[ordinal]);
     }
+    return BIG_ENDIAN ? value : Short.reverseBytes(value);
   }
 
   @Override
   public byte getByte(int ordinal) {
     if (isIndexed(ordinal)) {
-      return this.indexBuffer.get(this.offsets[ordinal]);
+      return Platform.getByte(this.indexBase, this.indexOffset + this.offsets[ordinal]);
     } else {
-      return this.dataBuffer.get(this.offsets[ordinal]);
+      loadDataRegion();
+      return Platform.getByte(this.dataBase, dataRegionOffset(ordinal) + this.offsets[ordinal]);
     }
   }
 
@@ -280,13 +446,17 @@ public final class IndexedRow extends GenericInternalRow {
     sb.append("nulls=" + anyNull() + ", ");
     sb.append("fields=" + numFields() + ", ");
     if (hasIndexRegion()) {
-      sb.append("index_region=" + Arrays.toString(this.indexBuffer.array()));
+      sb.append("index_region=" +
+        Arrays.toString(regionBytes(this.indexBase, this.indexOffset, this.indexLength)));
     } else {
       sb.append("index_region=null");
     }
     sb.append(", ");
     if (hasDataRegion()) {
-      sb.append("data_region=" + Arrays.toString(this.dataBuffer.array()));
+      sb.append("data_region=" +
+        Arrays.toString(regionBytes(this.dataBase, this.dataOffset, this.dataLength)));
+    } else if (hasLazyDataRegion()) {
+      sb.append("data_region=lazy");
     } else {
       sb.append("data_region=null");
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.row;
+
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.unsafe.types.UTF8String;
+
+/**
+ * [[ProjectedRow]] is a view of subset of fields of another row, field at ordinal `i` is field at
+ * ordinal `ordinals[i]` of underlying row. Values are not copied or boxed, typed getters delegate
+ * to underlying row, so view can be reused for all rows of a scan by resetting underlying row.
+ * View is only valid while underlying row is valid, use `copy()` to retain it.
+ */
+public class ProjectedRow extends GenericInternalRow {
+  // ordinals of fields in underlying row
+  private final int[] ordinals;
+  // underlying row, can be null until set
+  private InternalRow row;
+
+  /**
+   * Create view for provided ordinals of underlying row.
+   * @param ordinals ordinals of underlying row, array is not copied
+   */
+  public ProjectedRow(int[] ordinals) {
+    if (ordinals == null) throw new IllegalArgumentException("Null ordinals");
+    this.ordinals = ordinals;
+    this.row = null;
+  }
+
+  /**
+   * Set underlying row.
+   * @param row row to project
+   * @return this instance
+   */
+  public ProjectedRow setRow(InternalRow row) {
+    this.row = row;
+    return this;
+  }
+
+  @Override
+  public int numFields() {
+    return ordinals.length;
+  }
+
+  @Override
+  public ProjectedRow copy() {
+    return new ProjectedRow(ordinals).setRow(row.copy());
+  }
+
+  @Override
+  public boolean anyNull() {
+    for (int i = 0; i < ordinals.length; i++) {
+      if (row.isNullAt(ordinals[i])) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isNullAt(int ordinal) {
+    return row.isNullAt(ordinals[ordinal]);
+  }
+
+  @Override
+  public boolean getBoolean(int ordinal) {
+    return row.getBoolean(ordinals[ordinal]);
+  }
+
+  @Override
+  public byte getByte(int ordinal) {
+    return row.getByte(ordinals[ordinal]);
+  }
+
+  @Override
+  public short getShort(int ordinal) {
+    return row.getShort(ordinals[ordinal]);
+  }
+
+  @Override
+  public int getInt(int ordinal) {
+    return row.getInt(ordinals[ordinal]);
+  }
+
+  @Override
+  public long getLong(int ordinal) {
+    return row.getLong(ordinals[ordinal]);
+  }
+
+  @Override
+  public UTF8String getUTF8String(int ordinal) {
+    return row.getUTF8String(ordinals[ordinal]);
+  }
+
+  @Override
+  public Object get(int ordinal, DataType dataType) {
+    return row.get(ordinals[ordinal], dataType);
+  }
+
+  @Override
+  public String toString() {
+    return "ProjectedRow[" + row + "]";
+  }
+}
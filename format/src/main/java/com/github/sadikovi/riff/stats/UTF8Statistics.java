@@ -32,8 +32,14 @@ import com.github.sadikovi.riff.io.OutputBuffer;
 
 /**
  * UTF8String values statistics.
+ * Long min and max values are truncated when written, so serialized statistics remain small:
+ * min is replaced with its prefix, and max is replaced with its prefix with last character
+ * incremented, both values remain valid bounds.
  */
 class UTF8Statistics extends Statistics {
+  // maximum number of bytes of serialized min/max value
+  static final int MAX_VALUE_BYTES = 64;
+
   protected UTF8String min = null;
   protected UTF8String max = null;
 
@@ -55,6 +61,52 @@ class UTF8Statistics extends Statistics {
     return UTF8String.fromBytes(bytes);
   }
 
+  /**
+   * Return length of the longest prefix of UTF-8 bytes that does not exceed maximum value length
+   * and does not split multi-byte character.
+   */
+  private static int prefixLength(byte[] bytes) {
+    int len = MAX_VALUE_BYTES;
+    // continuation bytes have 10xxxxxx form
+    while (len > 0 && (bytes[len] & 0xc0) == 0x80) {
+      len--;
+    }
+    return len;
+  }
+
+  /**
+   * Truncate min value, prefix is always less than or equal to the value.
+   * @param bytes UTF-8 bytes
+   * @return truncated bytes or original bytes if value is short
+   */
+  static byte[] truncateMin(byte[] bytes) {
+    if (bytes.length <= MAX_VALUE_BYTES) return bytes;
+    byte[] res = new byte[prefixLength(bytes)];
+    System.arraycopy(bytes, 0, res, 0, res.length);
+    return res;
+  }
+
+  /**
+   * Truncate max value, last ASCII character of prefix is incremented, so result is greater than
+   * the value. If prefix does not contain ASCII character that can be incremented, value is
+   * returned as is.
+   * @param bytes UTF-8 bytes
+   * @return truncated bytes or original bytes
+   */
+  static byte[] truncateMax(byte[] bytes) {
+    if (bytes.length <= MAX_VALUE_BYTES) return bytes;
+    for (int i = prefixLength(bytes) - 1; i >= 0; i--) {
+      // ASCII characters are single bytes, increment keeps valid UTF-8
+      if (bytes[i] >= 0 && bytes[i] < 0x7f) {
+        byte[] res = new byte[i + 1];
+        System.arraycopy(bytes, 0, res, 0, res.length);
+        res[i]++;
+        return res;
+      }
+    }
+    return bytes;
+  }
+
   @Override
   protected void updateNonNullValue(InternalRow row, int ordinal) {
     UTF8String value = row.getUTF8String(ordinal);
@@ -70,11 +122,11 @@ class UTF8Statistics extends Statistics {
     // min and max are either both set or none
     if (min != null) {
       // write min value
-      byte[] bytes = min.getBytes();
+      byte[] bytes = truncateMin(min.getBytes());
       buf.writeInt(bytes.length);
       buf.write(bytes);
       // write max value
-      bytes = max.getBytes();
+      bytes = truncateMax(max.getBytes());
       buf.writeInt(bytes.length);
       buf.write(bytes);
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.tree.rule;
+
+import java.util.BitSet;
+
+import com.github.sadikovi.riff.tree.BoundReference;
+import com.github.sadikovi.riff.tree.Rule;
+import com.github.sadikovi.riff.tree.Tree;
+
+import com.github.sadikovi.riff.tree.node.EqualTo;
+import com.github.sadikovi.riff.tree.node.GreaterThan;
+import com.github.sadikovi.riff.tree.node.LessThan;
+import com.github.sadikovi.riff.tree.node.GreaterThanOrEqual;
+import com.github.sadikovi.riff.tree.node.LessThanOrEqual;
+import com.github.sadikovi.riff.tree.node.In;
+import com.github.sadikovi.riff.tree.node.IsNull;
+import com.github.sadikovi.riff.tree.node.Not;
+import com.github.sadikovi.riff.tree.node.And;
+import com.github.sadikovi.riff.tree.node.Or;
+import com.github.sadikovi.riff.tree.node.Trivial;
+
+/**
+ * Class is used to collect ordinals of fields referenced in tree, e.g. to decode statistics and
+ * column filters only for those fields. Returns copy of the tree, ordinals are available after
+ * transform with `ordinals()` method. Tree should be analyzed at this point.
+ */
+public class FieldReferences implements Rule {
+  private final BitSet ordinals;
+
+  public FieldReferences() {
+    this.ordinals = new BitSet();
+  }
+
+  /** Record ordinal of bound reference and return copy */
+  private Tree updateRef(BoundReference ref) {
+    ordinals.set(ref.ordinal());
+    return ref.copy();
+  }
+
+  /**
+   * Return sorted ordinals of referenced fields collected so far.
+   * @return array of ordinals, empty if tree does not reference any fields
+   */
+  public int[] ordinals() {
+    int[] arr = new int[ordinals.cardinality()];
+    int i = 0;
+    for (int ord = ordinals.nextSetBit(0); ord >= 0; ord = ordinals.nextSetBit(ord + 1)) {
+      arr[i++] = ord;
+    }
+    return arr;
+  }
+
+  @Override
+  public Tree update(EqualTo node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(GreaterThan node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(LessThan node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(GreaterThanOrEqual node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(LessThanOrEqual node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(In node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(IsNull node) {
+    return updateRef(node);
+  }
+
+  @Override
+  public Tree update(And node) {
+    return new And(node.left().transform(this), node.right().transform(this));
+  }
+
+  @Override
+  public Tree update(Or node) {
+    return new Or(node.left().transform(this), node.right().transform(this));
+  }
+
+  @Override
+  public Tree update(Not node) {
+    return new Not(node.child().transform(this));
+  }
+
+  @Override
+  public Tree update(Trivial node) {
+    return node.copy();
+  }
+}
@@ -23,13 +23,16 @@
 package com.github.sadikovi.riff
 
 import java.io.ByteArrayInputStream
+import java.util.concurrent.atomic.AtomicInteger
 
-import org.apache.hadoop.fs.FSDataInputStream
+import org.apache.hadoop.fs.{FSDataInputStream, FSInputStream}
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.types._
 import org.apache.spark.unsafe.types.UTF8String
 
-import com.github.sadikovi.riff.io.{OutStream, StripeOutputBuffer}
+import com.github.sadikovi.riff.io.{BufferPool, ChunkIndex, CompressionCodec, OutStream}
+import com.github.sadikovi.riff.io.StripeOutputBuffer
+import com.github.sadikovi.riff.io.ZlibCodec
 import com.github.sadikovi.riff.tree.FilterApi._
 import com.github.sadikovi.testutil.implicits._
 import com.github.sadikovi.testutil.UnitTestSuite
@@ -143,7 +146,7 @@ class BufferSuite extends UnitTestSuite {
       val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, null)
       var seq = Seq[InternalRow]()
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       seq.length should be (batch.length)
     }
@@ -159,12 +162,40 @@ class BufferSuite extends UnitTestSuite {
       val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, null)
       var seq = Seq[InternalRow]()
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       seq.length should be (0)
     }
   }
 
+  test("select stripes for limit") {
+    def stripe(id: Int, numRows: Int): StripeInformation =
+      new StripeInformation(id.toShort, id * 10L, 10, null, null, numRows, 0, null)
+    val stripes = Array(stripe(0, 4), stripe(1, 0), stripe(2, 4), stripe(3, 2))
+    Buffers.limitStripes(stripes, 1L) should be (Array(stripes(0)))
+    Buffers.limitStripes(stripes, 4L) should be (Array(stripes(0)))
+    Buffers.limitStripes(stripes, 5L) should be (stripes.take(3))
+    Buffers.limitStripes(stripes, 10L) should be (stripes)
+    Buffers.limitStripes(stripes, Long.MaxValue) should be (stripes)
+    // number of rows is unknown
+    val unknown = Array(stripe(0, 4), stripe(1, -1), stripe(2, 4))
+    Buffers.limitStripes(unknown, 2L) should be (Array(unknown(0)))
+    Buffers.limitStripes(unknown, 5L) should be (unknown)
+  }
+
+  test("fail to select row buffer with negative limit") {
+    withTempDir { dir =>
+      touch(dir / "file")
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val err = intercept[IllegalArgumentException] {
+        Buffers.prepareRowBuffer(in, Array.empty, td, null, 16, null, new ReadOptions(),
+          IndexedRowReader.ALL_FIELDS, -1L)
+      }
+      err.getMessage should be ("Negative limit: -1")
+      in.close()
+    }
+  }
+
   test("select predicate scan buffer") {
     withTempDir { dir =>
       val writer = new IndexedRowWriter(td)
@@ -185,7 +216,7 @@ class BufferSuite extends UnitTestSuite {
       val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state)
       var seq = Seq[InternalRow]()
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       seq.length should be (2)
     }
@@ -211,7 +242,7 @@ class BufferSuite extends UnitTestSuite {
       val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state)
       var seq = Seq[InternalRow]()
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       seq.length should be (0)
     }
@@ -228,9 +259,333 @@ class BufferSuite extends UnitTestSuite {
       val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state)
       var seq = Seq[InternalRow]()
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       seq.length should be (0)
     }
   }
+
+  /** Write batch into two stripes of the file, returns stripe information */
+  private def writeStripes(path: String, codec: CompressionCodec): Array[StripeInformation] = {
+    val writer = new IndexedRowWriter(td)
+    val outStream = create(path)
+    var offset = 0L
+    val stripes = for (id <- 0 until 2) yield {
+      val stripe = new StripeOutputBuffer(id.toShort)
+      val out = new OutStream(16, codec, stripe)
+      for (row <- batch) {
+        writer.writeRow(row, out)
+      }
+      out.flush()
+      outStream.write(stripe.array)
+      val info = new StripeInformation(stripe, offset)
+      offset += stripe.length
+      info
+    }
+    outStream.close()
+    stripes.toArray
+  }
+
+  test("select direct scan buffer with read-ahead") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, null,
+        new ReadOptions().setPrefetch(1, false))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (batch.length * 2)
+      seq.map(_.getInt(td.position("col1"))) should be ((batch ++ batch).map(_.getInt(0)))
+    }
+  }
+
+  test("select predicate scan buffer with read-ahead and decompression") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(or(eqt("col1", 1), eqt("col3", 4L)), td)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, new ZlibCodec(), 16, state,
+        new ReadOptions().setPrefetch(2, true))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (4)
+    }
+  }
+
+  test("select direct scan buffer with decompression into pooled arrays") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val pool = new BufferPool(1 << 20)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, new ZlibCodec(), 16, null,
+        new ReadOptions().setPrefetch(1, true).setBufferPool(pool))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.map(_.getInt(td.position("col1"))) should be ((batch ++ batch).map(_.getInt(0)))
+      // compressed and decompressed arrays are returned into pool
+      assert(pool.pooledBytes > 0)
+    }
+  }
+
+  test("fail to set negative read-ahead") {
+    val err = intercept[IllegalArgumentException] {
+      new ReadOptions().setPrefetch(-1, false)
+    }
+    err.getMessage should be ("Invalid number of prefetch stripes: -1")
+  }
+
+  test("select direct scan buffer with coalesced reads") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, new ZlibCodec(), 16, null,
+        new ReadOptions().setCoalesce(0L, 1024L))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (batch.length * 2)
+      seq.map(_.getInt(td.position("col1"))) should be ((batch ++ batch).map(_.getInt(0)))
+    }
+  }
+
+  test("select direct scan buffer with coalesced reads and buffer pool") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val pool = new BufferPool(1024 * 1024L)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, new ZlibCodec(), 16, null,
+        new ReadOptions().setCoalesce(0L, 1024L).setBufferPool(pool))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (batch.length * 2)
+      // instream buffers and range array are returned into pool
+      pool.pooledBytes should be (3 * 1024)
+    }
+  }
+
+  test("select predicate scan buffer with coalesced reads and read-ahead") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(or(eqt("col1", 1), eqt("col3", 4L)), td)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state,
+        new ReadOptions().setPrefetch(1, false).setCoalesce(0L, 1024L))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (4)
+    }
+  }
+
+  test("select parallel scan buffer") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, new ZlibCodec(), 16, null,
+        new ReadOptions().setParallel(2, 1024L))
+      rowbuf.isInstanceOf[Buffers.ParallelScanRowBuffer] should be (true)
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (batch.length * 2)
+      seq.map(_.getInt(td.position("col1"))) should be ((batch ++ batch).map(_.getInt(0)))
+    }
+  }
+
+  test("select parallel scan buffer with predicate state") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(or(eqt("col1", 1), eqt("col3", 4L)), td)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state,
+        new ReadOptions().setParallel(4, 1024L))
+      rowbuf.isInstanceOf[Buffers.ParallelScanRowBuffer] should be (true)
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.map(_.getInt(td.position("col1"))) should be (Seq(1, 4, 1, 4))
+    }
+  }
+
+  test("select parallel scan buffer with byte limit smaller than stripe") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val pool = new BufferPool(1024 * 1024L)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, null,
+        new ReadOptions().setParallel(2, 1L).setBufferPool(pool))
+      var seq = Seq[InternalRow]()
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.length should be (batch.length * 2)
+      seq.map(_.getInt(td.position("col1"))) should be ((batch ++ batch).map(_.getInt(0)))
+    }
+  }
+
+  test("close parallel scan buffer while stripes are decoded") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", new ZlibCodec())
+      val bytes = new Array[Byte](stripes.map(_.length).sum)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      in.readFully(0L, bytes)
+      in.close()
+      val slow = new SlowInputStream(bytes, 200L)
+      val rowbuf = Buffers.prepareRowBuffer(new FSDataInputStream(slow), stripes, td,
+        new ZlibCodec(), 16, null, new ReadOptions().setParallel(2, 1024L * 1024L))
+      rowbuf.isInstanceOf[Buffers.ParallelScanRowBuffer] should be (true)
+      // both stripes are being read at this point
+      Thread.sleep(50L)
+      rowbuf.close()
+      slow.isClosed should be (true)
+      slow.readsAfterClose should be (0)
+    }
+  }
+
+  test("select empty scan for trivial negative predicate state with parallel decoding") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(and(FALSE, eqt("col1", 1)), td)
+      val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state,
+        new ReadOptions().setParallel(2, 1024L))
+      rowbuf.isInstanceOf[Buffers.EmptyRowBuffer] should be (true)
+      rowbuf.close()
+    }
+  }
+
+  test("estimate decoded bytes of stripe") {
+    // uncompressed stripe without chunk index
+    val plain = new StripeInformation(1.toShort, 0L, 100, null)
+    StripeDecoder.decodedBytes(plain, 16) should be (200L)
+    // compressed stripe, last chunk starts at uncompressed offset 64
+    val index = new ChunkIndex(Array(0, 20, 40), Array(0L, 32L, 64L))
+    val compressed = new StripeInformation(1.toShort, 0L, 60, null, null, 10, 0, null, -1, null,
+      index)
+    StripeDecoder.decodedBytes(compressed, 32) should be (60L + 64L + 32L)
+    // column streams, only the first column has chunk index
+    val columnar = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null,
+      null, -1, null, Array(40, 70), Array(index, null))
+    StripeDecoder.decodedBytes(columnar, 32) should be (100L + 40L + (64L + 32L) + 30L)
+  }
+
+  test("fail to set invalid parallel decoding") {
+    var err = intercept[IllegalArgumentException] {
+      new ReadOptions().setParallel(-1, 1024L)
+    }
+    err.getMessage should be ("Invalid number of parallel stripes: -1")
+
+    err = intercept[IllegalArgumentException] {
+      new ReadOptions().setParallel(2, 0L)
+    }
+    err.getMessage should be ("Invalid parallel max bytes: 0")
+  }
+
+  test("select index-only predicate scan buffer") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val state = new PredicateState(eqt("col2", "xyz"), td)
+      for (options <- Seq(new ReadOptions(), new ReadOptions().setParallel(2, 1024L))) {
+        val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+        val rowbuf = Buffers.prepareRowBuffer(in, stripes, td, null, 16, state, options, true)
+        var seq = Seq[InternalRow]()
+        while (rowbuf.hasNext) {
+          seq = seq :+ rowbuf.next.copy()
+        }
+        rowbuf.close()
+        seq.map(_.getString(td.position("col2"))) should be (Seq("xyz", "xyz", "xyz", "xyz"))
+        seq.forall(_.isNullAt(td.position("col1"))) should be (true)
+        seq.forall(_.isNullAt(td.position("col3"))) should be (true)
+      }
+    }
+  }
+
+  test("fail to select index-only scan buffer for predicate on data fields") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(or(eqt("col1", 1), eqt("col2", "xyz")), td)
+      val err = intercept[IllegalArgumentException] {
+        Buffers.prepareRowBuffer(in, stripes, td, null, 16, state, new ReadOptions(), true)
+      }
+      assert(err.getMessage.contains("Index-only scan requires predicate state"))
+      in.close()
+    }
+  }
+
+  test("fail to select scan buffer for predicate on fields that are not required") {
+    withTempDir { dir =>
+      val stripes = writeStripes(dir / "file", null)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val state = new PredicateState(or(eqt("col1", 1), eqt("col2", "xyz")), td)
+      val required = (1L << td.position("col2")) | (1L << td.position("col3"))
+      val err = intercept[IllegalArgumentException] {
+        Buffers.prepareRowBuffer(in, stripes, td, null, 16, state, new ReadOptions(), required)
+      }
+      assert(err.getMessage.contains("Scan requires predicate state that only references " +
+        "required fields"))
+      in.close()
+    }
+  }
+}
+
+/**
+ * Input stream over byte array with slow positional reads, records reads that finish after stream
+ * is closed.
+ */
+class SlowInputStream(bytes: Array[Byte], delayMillis: Long) extends FSInputStream {
+  private val afterClose = new AtomicInteger(0)
+  @volatile private var closed = false
+  private var pos = 0L
+
+  def isClosed: Boolean = closed
+
+  def readsAfterClose: Int = afterClose.get
+
+  override def seek(newPos: Long): Unit = pos = newPos
+
+  override def getPos(): Long = pos
+
+  override def seekToNewSource(targetPos: Long): Boolean = false
+
+  override def read(): Int = {
+    if (pos >= bytes.length) return -1
+    val value = bytes(pos.toInt) & 0xff
+    pos += 1
+    value
+  }
+
+  override def read(position: Long, buffer: Array[Byte], offset: Int, length: Int): Int = {
+    Thread.sleep(delayMillis)
+    if (closed) afterClose.incrementAndGet()
+    val len = math.min(length.toLong, bytes.length - position).toInt
+    if (len <= 0) return -1
+    System.arraycopy(bytes, position.toInt, buffer, offset, len)
+    len
+  }
+
+  override def close(): Unit = {
+    closed = true
+  }
 }
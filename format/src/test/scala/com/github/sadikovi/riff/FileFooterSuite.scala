@@ -27,6 +27,7 @@ import java.nio.ByteBuffer
 
 import org.apache.hadoop.fs.FSDataInputStream
 
+import com.github.sadikovi.riff.io.ChunkIndex
 import com.github.sadikovi.riff.io.OutputBuffer
 import com.github.sadikovi.riff.stats.Statistics
 import com.github.sadikovi.testutil.UnitTestSuite
@@ -112,4 +113,262 @@ class FileFooterSuite extends UnitTestSuite {
       footer2.getStripeInformation should be (footer1.getStripeInformation)
     }
   }
+
+  test("write/read file footer from tail region") {
+    withTempDir { dir =>
+      val stripe = new StripeInformation(1.toByte, 123L, 100, null)
+      val footer1 = new FileFooter(Array(stats(1, 10, false)), 156378, Array(stripe))
+
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val len = fs.getFileStatus(dir / "footer").getLen
+      // region contains entire footer
+      val tail = FileRegion.read(in, 0, len.toInt)
+      tail.contains(0, len.toInt) should be (true)
+      tail.contains(1, len.toInt) should be (false)
+      val footer2 = FileFooter.readFrom(in, len, tail)
+      // region contains only part of the footer, remaining bytes are read from stream
+      val footer3 = FileFooter.readFrom(in, len, FileRegion.read(in, len - 4, 4))
+      in.close()
+
+      footer2.getNumRecords should be (footer1.getNumRecords)
+      footer2.getStripeInformation should be (footer1.getStripeInformation)
+      footer3.getNumRecords should be (footer1.getNumRecords)
+      footer3.getStripeInformation should be (footer1.getStripeInformation)
+    }
+  }
+
+  test("write/read file footer with directory, decode statistics and filters lazily") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100,
+          Array(stats(1, 10, false), stats("a", "z", true)), Array(filter(1), filter("a"))),
+        new StripeInformation(1.toShort, 100L, 100, null, Array(filter(2), filter("b"))),
+        new StripeInformation(2.toShort, 200L, 100,
+          Array(stats(3, 30, true), stats("c", "d", false)), null))
+      val footer1 = new FileFooter(Array(stats(1, 30, true), stats("a", "z", true)), 300, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+
+      val res = footer2.getStripeInformation
+      res.map(_.hasStatistics) should be (Array(true, false, true))
+      res.map(_.hasColumnFilters) should be (Array(true, true, false))
+      // only requested columns are decoded
+      res(0).getStatistics(Array(1)) should be (Array(null, stats("a", "z", true)))
+      res(2).getStatistics(Array(1)) should be (Array(null, stats("c", "d", false)))
+      res(1).getColumnFilters(Array(0)) should be (Array(filter(2), null))
+      res(0).getColumnFilters(Array(1)) should be (Array(null, filter("a")))
+      // decode all columns
+      res should be (stripes)
+    }
+  }
+
+  test("fail to decode statistics for invalid column") {
+    withTempDir { dir =>
+      val stripe = new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)))
+      val out = fs.create(dir / "footer")
+      new FileFooter(Array(stats(1, 10, false)), 1, Array(stripe)).writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      val err = intercept[IllegalArgumentException] {
+        footer.getStripeInformation()(0).getStatistics(Array(1))
+      }
+      err.getMessage should be ("Invalid column ordinal 1 for 1 columns")
+    }
+  }
+
+  test("write/read file footer with compressed directory") {
+    withTempDir { dir =>
+      val stripes = (0 until 200).map { i =>
+        new StripeInformation(i.toShort, i * 100L, 100, Array(stats(i, i + 10, false)),
+          Array(filter(i)))
+      }.toArray
+      val footer1 = new FileFooter(Array(stats(0, 210, false)), 200, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val uncompressed = new OutputBuffer()
+      FooterDirectory.writeTo(stripes, uncompressed)
+      val len = fs.getFileStatus(dir / "footer").getLen
+      assert(len < uncompressed.bytesWritten)
+
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, len)
+      in.close()
+      // in-memory size accounts uncompressed directory and grows as statistics are decoded
+      val size = footer2.memorySize
+      assert(size > uncompressed.bytesWritten)
+      footer2.getStripeInformation should be (stripes)
+      assert(footer2.memorySize > size)
+    }
+  }
+
+  test("fail to write directory for stripes with different number of columns") {
+    val stripes = Array(
+      new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false))),
+      new StripeInformation(1.toShort, 100L, 100, Array(stats(1, 10, false), stats(1, 2, false))))
+    val err = intercept[IllegalArgumentException] {
+      FooterDirectory.writeTo(stripes, new OutputBuffer())
+    }
+    assert(err.getMessage.contains("Expected 1 columns"))
+  }
+
+  test("read file footer without directory") {
+    withTempDir { dir =>
+      val stripe = new StripeInformation(1.toShort, 123L, 100, Array(stats(1, 10, false)))
+      val buf = new OutputBuffer()
+      buf.writeLong(12)
+      buf.writeInt(1)
+      stats(1, 10, false).writeExternal(buf)
+      buf.writeInt(1)
+      stripe.writeExternal(buf)
+      buf.align()
+      buf.writeLong((Riff.MAGIC.toLong << 32) + buf.bytesWritten())
+      val out = fs.create(dir / "footer")
+      buf.writeExternal(out)
+      out.close()
+
+      val in = fs.open(dir / "footer")
+      val footer = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      footer.getNumRecords should be (12)
+      footer.getFileStatistics should be (Array(stats(1, 10, false)))
+      footer.getStripeInformation should be (Array(stripe))
+    }
+  }
+
+  test("write/read file footer with row counts and row index") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)), null, 5, 2,
+          Array(0L, 20L, 40L)),
+        new StripeInformation(1.toShort, 100L, 100, null, null, 3, 0, null),
+        new StripeInformation(2.toShort, 200L, 100, null, null, 0, 2, Array.empty[Long]))
+      val footer1 = new FileFooter(Array(stats(1, 10, false)), 8, stripes)
+      footer1.stripeFirstRows should be (Array(0L, 5L, 8L))
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      footer2.getStripeInformation should be (stripes)
+      footer2.getStripeInformation.map(_.numRows) should be (Array(5, 3, 0))
+      footer2.stripeFirstRows should be (Array(0L, 5L, 8L))
+      // stripes without row count
+      new FileFooter(Array.empty, 1, Array(new StripeInformation(0.toShort, 0L, 1, null)))
+        .stripeFirstRows should be (null)
+    }
+  }
+
+  test("write/read file footer with sorted stripes") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)), null, 5, 2,
+          Array(0L, 20L, 40L), 0, Array(stats(1, 2, false), stats(4, 8, false),
+            stats(10, 10, false))),
+        new StripeInformation(1.toShort, 100L, 100, Array(stats(3, 4, true)), null, 2, 2,
+          Array(0L), 0, Array(stats(3, 4, true))),
+        new StripeInformation(2.toShort, 200L, 100, Array(stats(5, 6, false)), null, 2, 2,
+          Array(0L)))
+      val footer1 = new FileFooter(Array(stats(1, 10, true)), 9, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      footer2.getStripeInformation should be (stripes)
+      footer2.getStripeInformation.map(_.isSorted) should be (Array(true, true, false))
+      footer2.getStripeInformation()(0).getKeyStatistics should be (
+        stripes(0).getKeyStatistics)
+      // statistics are still decoded lazily after variable size stripe headers
+      footer2.getStripeInformation.map(_.getStatistics.toSeq) should be (
+        stripes.map(_.getStatistics.toSeq))
+    }
+  }
+
+  test("write/read file footer with chunk index") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)), null, 5, 2,
+          Array(0L, 20L, 40L), -1, null, new ChunkIndex(Array(0, 40), Array(0L, 64L))),
+        new StripeInformation(1.toShort, 100L, 100, Array(stats(3, 4, true)), null, 2, 0,
+          null, -1, null, new ChunkIndex()),
+        new StripeInformation(2.toShort, 200L, 100, Array(stats(5, 6, false))))
+      val footer1 = new FileFooter(Array(stats(1, 10, true)), 7, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      footer2.getStripeInformation should be (stripes)
+      footer2.getStripeInformation()(0).getChunkIndex.numChunks should be (2)
+      footer2.getStripeInformation()(1).getChunkIndex.numChunks should be (0)
+      footer2.getStripeInformation()(2).getChunkIndex should be (null)
+    }
+  }
+
+  test("write/read file footer with separate index and data streams") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)), null, 5, 2,
+          Array(0L, 20L, 40L), -1, null, new ChunkIndex(Array(0, 40), Array(0L, 64L)), 60,
+          new ChunkIndex(Array(0), Array(0L))),
+        new StripeInformation(1.toShort, 100L, 100, Array(stats(3, 4, true)), null, 2, 0,
+          null, -1, null, null, 30, null),
+        new StripeInformation(2.toShort, 200L, 100, Array(stats(5, 6, false))))
+      val footer1 = new FileFooter(Array(stats(1, 10, true)), 7, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      footer2.getStripeInformation should be (stripes)
+      footer2.getStripeInformation.map(_.hasSplitStreams) should be (Array(true, true, false))
+      footer2.getStripeInformation.map(_.dataOffset) should be (Array(60, 30, -1))
+      footer2.getStripeInformation()(0).getDataChunkIndex.numChunks should be (1)
+      footer2.getStripeInformation()(1).getDataChunkIndex should be (null)
+      footer2.getStripeInformation()(2).getDataChunkIndex should be (null)
+    }
+  }
+
+  test("write/read file footer with column streams") {
+    withTempDir { dir =>
+      val stripes = Array(
+        new StripeInformation(0.toShort, 0L, 100, Array(stats(1, 10, false)), null, 5, 2,
+          Array(0L, 20L, 40L), -1, null, new ChunkIndex(Array(0, 40), Array(0L, 64L)), -1, null,
+          Array(50, 60, 80), Array(null, new ChunkIndex(Array(0), Array(0L)), null)),
+        new StripeInformation(1.toShort, 100L, 100, Array(stats(3, 4, true)), null, 2, 0,
+          null, -1, null, null, -1, null, Array(100), null),
+        new StripeInformation(2.toShort, 200L, 100, Array(stats(5, 6, false))))
+      val footer1 = new FileFooter(Array(stats(1, 10, true)), 7, stripes)
+      val out = fs.create(dir / "footer")
+      footer1.writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer2 = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+      val stripes2 = footer2.getStripeInformation
+      stripes2.map(_.hasColumnStreams) should be (Array(true, true, false))
+      stripes2.map(_.numColumnStreams) should be (Array(3, 1, 0))
+      stripes2.map(_.indexStreamLength) should be (Array(50, 100, 100))
+      stripes2(0).getColumnChunkIndex(0) should be (null)
+      stripes2(0).getColumnChunkIndex(1).numChunks should be (1)
+      // chunk indexes are read for each column stream
+      stripes2(1).getColumnChunkIndex(0) should be (null)
+      stripes2(0) should be (stripes(0))
+      stripes2(2) should be (stripes(2))
+    }
+  }
 }
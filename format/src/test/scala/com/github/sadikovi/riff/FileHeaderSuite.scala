@@ -115,4 +115,29 @@ class FileHeaderSuite extends UnitTestSuite {
       header2.getProperty("key3") should be ("")
     }
   }
+
+  test("write/read file header from head region") {
+    withTempDir { dir =>
+      val td = new TypeDescription(StructType(StructField("col", IntegerType) :: Nil))
+      val state = Array[Byte](1, 2, 3, 4, 5, 6, 7, 8)
+
+      val header1 = new FileHeader(state, td, null)
+      val out = fs.create(dir / "header")
+      header1.writeTo(out)
+      out.write(Array[Byte](1, 2, 3))
+      out.close()
+      val len = fs.getFileStatus(dir / "header").getLen
+      val in = fs.open(dir / "header")
+      val header2 = FileHeader.readFrom(in, FileRegion.read(in, 0, len.toInt))
+      // stream is positioned at the end of the header
+      in.getPos should be (len - 3)
+      // region is too small, header is read from stream
+      val header3 = FileHeader.readFrom(in, FileRegion.read(in, 0, 4))
+      in.getPos should be (len - 3)
+      in.close()
+
+      header2.getTypeDescription should be (header1.getTypeDescription)
+      header3.getTypeDescription should be (header1.getTypeDescription)
+    }
+  }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff
+
+import org.apache.hadoop.fs.{FileStatus, Path}
+import org.apache.spark.sql.types._
+
+import com.github.sadikovi.testutil.implicits._
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class FileInfoCacheSuite extends UnitTestSuite {
+  import RiffTestUtils._
+
+  private val header = new FileHeader(new Array[Byte](8),
+    new TypeDescription(StructType(StructField("col", IntegerType) :: Nil)), null)
+
+  private def status(path: String, length: Long, mtime: Long): FileStatus = {
+    new FileStatus(length, false, 1, 128L, mtime, new Path(path))
+  }
+
+  test("fail to create cache with negative max bytes") {
+    val err = intercept[IllegalArgumentException] {
+      new FileInfoCache(-1L)
+    }
+    err.getMessage should be ("Negative max bytes: -1")
+  }
+
+  test("look up entry by path, length and modification time") {
+    val cache = new FileInfoCache(1024L)
+    cache.put(status("/file", 100L, 1L), header, null, 10L, 100L)
+    cache.get(status("/file", 100L, 1L), false).header should be (header)
+    cache.get(status("/file", 100L, 1L), false).dataOffset should be (10L)
+    cache.get(status("/file", 100L, 2L), false) should be (null)
+    cache.get(status("/file", 101L, 1L), false) should be (null)
+    cache.get(status("/other", 100L, 1L), false) should be (null)
+    cache.hits should be (2)
+    cache.misses should be (3)
+    cache.size should be (1)
+    cache.sizeInBytes should be (100L)
+  }
+
+  test("miss entry without footer if footer is required") {
+    val cache = new FileInfoCache(1024L)
+    cache.put(status("/file", 100L, 1L), header, null, 10L, 100L)
+    cache.get(status("/file", 100L, 1L), true) should be (null)
+    val footer = new FileFooter(Array(), 0L, Array[StripeInformation]())
+    cache.put(status("/file", 100L, 1L), header, footer, 10L, 200L)
+    cache.get(status("/file", 100L, 1L), true).footer should be (footer)
+    cache.size should be (1)
+    cache.sizeInBytes should be (200L)
+  }
+
+  test("update entry size when footer statistics are decoded") {
+    withTempDir { dir =>
+      val stripes = (0 until 10).map { i =>
+        new StripeInformation(i.toShort, i * 100L, 100, Array(stats(i, i + 10, false)))
+      }.toArray
+      val out = fs.create(dir / "footer")
+      new FileFooter(Array(stats(0, 20, false)), 10, stripes).writeTo(out)
+      out.close()
+      val in = fs.open(dir / "footer")
+      val footer = FileFooter.readFrom(in, fs.getFileStatus(dir / "footer").getLen)
+      in.close()
+
+      val cache = new FileInfoCache(1024L * 1024L)
+      cache.put(status("/file", 100L, 1L), header, footer, 10L, 10L + footer.memorySize)
+      val size = cache.sizeInBytes
+      footer.getStripeInformation.foreach(_.getStatistics(Array(0)))
+      cache.sizeInBytes should be (size)
+      // lookup accounts decoded statistics
+      cache.get(status("/file", 100L, 1L), true) should not be (null)
+      cache.sizeInBytes should be (10L + footer.memorySize)
+      assert(cache.sizeInBytes > size)
+    }
+  }
+
+  test("resolve file status of cached entry by path") {
+    val cache = new FileInfoCache(200L)
+    cache.status(new Path("/file1")) should be (null)
+    cache.put(status("/file1", 100L, 1L), header, null, 10L, 100L)
+    cache.put(status("/file1", 120L, 2L), header, null, 10L, 100L)
+    // the most recently added entry is returned
+    val res = cache.status(new Path("/file1"))
+    res.getLen should be (120L)
+    res.getModificationTime should be (2L)
+    cache.get(res, false) should not be (null)
+    // evicted entry is not returned
+    cache.put(status("/file2", 100L, 1L), header, null, 10L, 100L)
+    cache.put(status("/file3", 100L, 1L), header, null, 10L, 100L)
+    cache.status(new Path("/file1")) should be (null)
+    cache.status(new Path("/file3")).getLen should be (100L)
+    cache.clear()
+    cache.status(new Path("/file3")) should be (null)
+  }
+
+  test("evict least recently used entries") {
+    val cache = new FileInfoCache(300L)
+    cache.put(status("/file1", 100L, 1L), header, null, 10L, 100L)
+    cache.put(status("/file2", 100L, 1L), header, null, 10L, 100L)
+    cache.put(status("/file3", 100L, 1L), header, null, 10L, 100L)
+    // access first file, so second file is least recently used
+    cache.get(status("/file1", 100L, 1L), false) should not be (null)
+    cache.put(status("/file4", 100L, 1L), header, null, 10L, 100L)
+    cache.get(status("/file2", 100L, 1L), false) should be (null)
+    cache.get(status("/file1", 100L, 1L), false) should not be (null)
+    cache.evictions should be (1)
+    cache.sizeInBytes should be (300L)
+
+    // entry larger than cache is not added
+    cache.put(status("/file5", 100L, 1L), header, null, 10L, 400L)
+    cache.get(status("/file5", 100L, 1L), false) should be (null)
+    cache.size should be (3)
+  }
+
+  test("evict entries when max bytes is reduced and disable cache") {
+    val cache = new FileInfoCache(300L)
+    cache.put(status("/file1", 100L, 1L), header, null, 10L, 100L)
+    cache.put(status("/file2", 100L, 1L), header, null, 10L, 100L)
+    cache.setMaxBytes(100L)
+    cache.size should be (1)
+    cache.evictions should be (1)
+    cache.setMaxBytes(0L)
+    cache.size should be (0)
+    cache.get(status("/file2", 100L, 1L), false) should be (null)
+    cache.toString should be ("FileInfoCache[max_bytes=0, size_in_bytes=0, entries=0, " +
+      "hits=0, misses=0, evictions=2]")
+  }
+}
@@ -31,6 +31,7 @@ import org.apache.spark.sql.types._
 import org.apache.spark.unsafe.types.UTF8String
 
 import com.github.sadikovi.riff.tree.FilterApi._
+import com.github.sadikovi.riff.tree.Tree
 import com.github.sadikovi.testutil.implicits._
 import com.github.sadikovi.testutil.UnitTestSuite
 
@@ -200,4 +201,518 @@ class FileReaderSuite extends UnitTestSuite {
       assert(err.getMessage.contains("File footer is not set"))
     }
   }
+
+  test("read file with known length and speculative reads") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 1)
+      val writer = Riff.writer(conf, dir / "path", td)
+      writer.prepareWrite()
+      writer.write(InternalRow(1, UTF8String.fromString("a"), 1L))
+      writer.write(InternalRow(2, UTF8String.fromString("b"), 2L))
+      writer.finishWrite()
+      val len = fs.getFileStatus(dir / "path").getLen
+
+      // small speculative read, entire file and disabled speculative reads
+      for (size <- Seq(16, Int.MaxValue, 0)) {
+        conf.setInt(Riff.Options.SPECULATIVE_READ_SIZE, size)
+        val reader = Riff.reader(fs, conf, dir / "path", len)
+        reader.getFileStatus.getLen should be (len)
+        val rowbuf = reader.prepareRead()
+        var seq: Seq[Int] = Nil
+        while (rowbuf.hasNext) {
+          seq = seq :+ rowbuf.next.getInt(0)
+        }
+        rowbuf.close()
+        seq should be (Seq(1, 2))
+        reader.getFileFooter.getNumRecords should be (2)
+      }
+    }
+  }
+
+  test("fail to select negative speculative read size") {
+    val conf = new Configuration()
+    Riff.Options.speculativeReadSize(conf) should be (Riff.Options.SPECULATIVE_READ_SIZE_DEFAULT)
+    conf.setInt(Riff.Options.SPECULATIVE_READ_SIZE, -1)
+    val err = intercept[IllegalArgumentException] {
+      Riff.Options.speculativeReadSize(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative speculative read size"))
+  }
+
+  test("read file header and footer from shared cache") {
+    withTempDir { dir =>
+      val writer = Riff.writer(dir / "path", td)
+      writer.prepareWrite()
+      writer.write(InternalRow(1, UTF8String.fromString("a"), 1L))
+      writer.finishWrite()
+
+      val cache = FileInfoCache.shared()
+      val hits = cache.hits
+      val reader1 = Riff.reader(dir / "path")
+      reader1.readFileInfo(true)
+      // reader for the same file returns cached header and footer
+      val reader2 = Riff.reader(dir / "path")
+      val rowbuf = reader2.prepareRead()
+      // cache is shared with other suites, only check that counter is incremented
+      assert(cache.hits > hits)
+      (reader2.getFileHeader eq reader1.getFileHeader) should be (true)
+      (reader2.getFileFooter eq reader1.getFileFooter) should be (true)
+      rowbuf.hasNext should be (true)
+      rowbuf.next.getInt(0) should be (1)
+      rowbuf.hasNext should be (false)
+      rowbuf.close()
+    }
+  }
+
+  test("resolve file length of cached reader from shared cache") {
+    withTempDir { dir =>
+      val writer = Riff.writer(dir / "path", td)
+      writer.prepareWrite()
+      writer.write(InternalRow(1, UTF8String.fromString("a"), 1L))
+      writer.finishWrite()
+
+      val status = fs.getFileStatus(dir / "path")
+      val reader1 = Riff.cachedReader(new Configuration(), dir / "path")
+      reader1.readFileInfo(true)
+      // file status is resolved from cache, header and footer are shared
+      FileInfoCache.shared().status(status.getPath).getLen should be (status.getLen)
+      val reader2 = Riff.cachedReader(new Configuration(), dir / "path")
+      val rowbuf = reader2.prepareRead()
+      (reader2.getFileFooter eq reader1.getFileFooter) should be (true)
+      rowbuf.hasNext should be (true)
+      rowbuf.next.getInt(0) should be (1)
+      rowbuf.hasNext should be (false)
+      rowbuf.close()
+    }
+  }
+
+  test("do not open cached file that is skipped because of statistics") {
+    withTempDir { dir =>
+      val writer = Riff.writer(dir / "path", td)
+      writer.prepareWrite()
+      writer.write(InternalRow(1, UTF8String.fromString("a"), 1L))
+      writer.finishWrite()
+
+      val length = fs.getFileStatus(dir / "path").getLen
+      Riff.reader(new Configuration(), dir / "path", length).readFileInfo(true)
+      fs.delete(dir / "path", false)
+      // footer is cached, file is pruned without opening stream
+      val rowbuf = Riff.reader(new Configuration(), dir / "path", length)
+        .prepareRead(eqt("col2", "b"))
+      rowbuf.hasNext should be (false)
+      rowbuf.close()
+      intercept[IOException] {
+        Riff.reader(new Configuration(), dir / "path", length).prepareRead(eqt("col2", "a"))
+      }
+    }
+  }
+
+  test("select stripes of split") {
+    val stripes = Array(
+      new StripeInformation(1.toByte, 0L, 100, null),
+      new StripeInformation(2.toByte, 100L, 100, null),
+      new StripeInformation(3.toByte, 200L, 100, null))
+    FileReader.splitStripes(stripes, 10L, 0L, Long.MaxValue) should be (stripes)
+    FileReader.splitStripes(stripes, 10L, 0L, 10L) should be (Array.empty[StripeInformation])
+    FileReader.splitStripes(stripes, 10L, 0L, 11L) should be (Array(stripes(0)))
+    FileReader.splitStripes(stripes, 10L, 11L, 100L) should be (Array(stripes(1)))
+    FileReader.splitStripes(stripes, 10L, 50L, 500L) should be (Array(stripes(1), stripes(2)))
+    FileReader.splitStripes(stripes, 10L, 300L, 100L) should be (Array.empty[StripeInformation])
+    // returned array is a copy
+    assert(!FileReader.splitStripes(stripes, 10L, 0L, Long.MaxValue).eq(stripes))
+  }
+
+  test("fail to prepare read for invalid split") {
+    withTempDir { dir =>
+      touch(dir / "path")
+      val reader = Riff.reader(dir / "path")
+      var err = intercept[IllegalArgumentException] {
+        reader.prepareRead(null, -1L, 10L)
+      }
+      err.getMessage should be ("Invalid split [-1, 10]")
+      err = intercept[IllegalArgumentException] {
+        reader.prepareRead(null, 0L, -1L)
+      }
+      err.getMessage should be ("Invalid split [0, -1]")
+    }
+  }
+
+  test("fail to prepare read with negative limit") {
+    withTempDir { dir =>
+      touch(dir / "path")
+      val err = intercept[IllegalArgumentException] {
+        Riff.reader(dir / "path").prepareRead(null, -1L)
+      }
+      err.getMessage should be ("Negative limit: -1")
+    }
+  }
+
+  test("read file with limit") {
+    for (prefetch <- Seq(0, 2); parallel <- Seq(0, 2)) {
+      withTempDir { dir =>
+        val conf = new Configuration()
+        conf.setInt(Riff.Options.STRIPE_ROWS, 4)
+        conf.setInt(Riff.Options.PREFETCH_STRIPES, prefetch)
+        conf.setInt(Riff.Options.PARALLEL_STRIPES, parallel)
+        val writer = Riff.writer(conf, dir / "path", td)
+        writer.prepareWrite()
+        for (i <- 0 until 10) {
+          writer.write(InternalRow(i, UTF8String.fromString(s"v$i"), i.toLong))
+        }
+        writer.finishWrite()
+
+        def collect(rowbuf: RowBuffer): Seq[Int] = {
+          var seq: Seq[Int] = Nil
+          while (rowbuf.hasNext) {
+            seq = seq :+ rowbuf.next.getInt(0)
+          }
+          // limit is reached, buffer does not return more rows
+          rowbuf.hasNext should be (false)
+          rowbuf.close()
+          seq
+        }
+
+        withClue(s"prefetch=$prefetch, parallel=$parallel: ") {
+          for (limit <- Seq(0L, 1L, 4L, 5L, 10L, 100L, Long.MaxValue)) {
+            collect(Riff.reader(conf, dir / "path").prepareRead(null, limit)) should be (
+              (0 until 10).take(math.min(limit, 10L).toInt))
+          }
+          collect(Riff.reader(conf, dir / "path").prepareRead(ge("col1", 3), 2L)) should be (
+            Seq(3, 4))
+          collect(Riff.reader(conf, dir / "path").prepareRead(ge("col1", 7), 5L)) should be (
+            Seq(7, 8, 9))
+          collect(Riff.reader(conf, dir / "path").prepareRead(eqt("col2", "v5"), 1L)) should be (
+            Seq(5))
+          collect(Riff.reader(conf, dir / "path").prepareRead(eqt("col1", 5), 0L)) should be (Nil)
+        }
+      }
+    }
+  }
+
+  test("read file in splits, each stripe is read once") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val writer = Riff.writer(conf, dir / "path", td)
+      writer.prepareWrite()
+      for (i <- 0 until 11) {
+        writer.write(InternalRow(i, UTF8String.fromString(s"v$i"), i.toLong))
+      }
+      writer.finishWrite()
+      val len = fs.getFileStatus(dir / "path").getLen
+
+      for (splitSize <- Seq(1L, 7L, 64L, len)) {
+        var seq: Seq[Int] = Nil
+        for (start <- 0L until len by splitSize) {
+          val rowbuf = Riff.reader(conf, dir / "path")
+            .prepareRead(null, start, math.min(splitSize, len - start))
+          while (rowbuf.hasNext) {
+            seq = seq :+ rowbuf.next.getInt(0)
+          }
+          rowbuf.close()
+        }
+        seq should be (0 until 11)
+      }
+    }
+  }
+
+  test("read file with shared reader from several threads") {
+    for (mmap <- Seq(false, true)) {
+      withTempDir { dir =>
+        val conf = new Configuration()
+        conf.setInt(Riff.Options.STRIPE_ROWS, 3)
+        conf.setBoolean(Riff.Options.MMAP_ENABLED, mmap)
+        val writer = Riff.writer(conf, dir / "path", td)
+        writer.prepareWrite()
+        for (i <- 0 until 20) {
+          writer.write(InternalRow(i, UTF8String.fromString(s"v${i % 4}"), i.toLong))
+        }
+        writer.finishWrite()
+
+        val reader = Riff.sharedReader(conf, dir / "path")
+        reader.getFileFooter.getNumRecords should be (20)
+        val results = new Array[Seq[Int]](8)
+        val threads = for (t <- 0 until 8) yield {
+          new Thread() {
+            override def run(): Unit = {
+              val filter = if (t % 2 == 0) null else eqt("col2", s"v${t % 4}")
+              val rowbuf = reader.prepareRead(filter)
+              var seq: Seq[Int] = Nil
+              while (rowbuf.hasNext) {
+                seq = seq :+ rowbuf.next.getInt(td.position("col1"))
+              }
+              rowbuf.close()
+              results(t) = seq
+            }
+          }
+        }
+        threads.foreach(_.start())
+        threads.foreach(_.join())
+        for (t <- 0 until 8) {
+          if (t % 2 == 0) {
+            results(t) should be (0 until 20)
+          } else {
+            results(t) should be ((0 until 20).filter(_ % 4 == t % 4))
+          }
+        }
+        reader.close()
+        reader.isClosed should be (true)
+        val err = intercept[IOException] {
+          reader.prepareRead()
+        }
+        err.getMessage should be ("Reader is closed")
+      }
+    }
+  }
+
+  test("fail to reuse file reader after sharing") {
+    withTempDir { dir =>
+      val writer = Riff.writer(new Configuration(), dir / "path", td)
+      writer.prepareWrite()
+      writer.write(InternalRow(1, UTF8String.fromString("v1"), 1L))
+      writer.finishWrite()
+      val reader = Riff.reader(new Configuration(), dir / "path")
+      val shared = reader.share()
+      val err = intercept[IOException] {
+        reader.prepareRead()
+      }
+      err.getMessage should be ("Reader reuse")
+      shared.close()
+    }
+  }
+
+  test("read only index fields when projection and filter use index fields") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val writer = Riff.writer(conf, dir / "path", td)
+      writer.prepareWrite()
+      for (i <- 0 until 5) {
+        writer.write(InternalRow(i, UTF8String.fromString(s"v$i"), i.toLong))
+      }
+      writer.finishWrite()
+
+      def read(filter: Tree, fields: Array[String]): Seq[(String, Any, Any)] = {
+        val rowbuf = Riff.reader(conf, dir / "path").prepareRead(filter, 0L, Long.MaxValue, fields)
+        var seq: Seq[(String, Any, Any)] = Nil
+        while (rowbuf.hasNext) {
+          val row = rowbuf.next
+          seq = seq :+ ((
+            row.getUTF8String(td.position("col2")).toString,
+            row.get(td.position("col1"), IntegerType),
+            row.get(td.position("col3"), LongType)))
+        }
+        rowbuf.close()
+        seq
+      }
+
+      // data fields are not read for index-only scan
+      read(null, Array("col2")) should be (
+        (0 until 5).map { i => (s"v$i", null, null) })
+      read(ge("col2", "v3"), Array("col2")) should be (Seq(("v3", null, null), ("v4", null, null)))
+      read(null, Array.empty[String]).length should be (5)
+      // data field in projection or filter requires full scan
+      read(null, Array("col2", "col1")) should be (
+        (0 until 5).map { i => (s"v$i", i, i.toLong) })
+      read(eqt("col1", 2), Array("col2")) should be (Seq(("v2", 2, 2L)))
+      read(null, null) should be ((0 until 5).map { i => (s"v$i", i, i.toLong) })
+    }
+  }
+
+  test("read only required column groups") {
+    val groupTd = new TypeDescription(schema, Array("col2"), Array(Array("col1"), Array("col3")))
+    for (split <- Seq(false, true); parallel <- Seq(0, 2)) {
+      withTempDir { dir =>
+        val conf = new Configuration()
+        conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+        conf.setBoolean(Riff.Options.STRIPE_SPLIT_STREAMS, split)
+        conf.setInt(Riff.Options.PARALLEL_STRIPES, parallel)
+        val writer = Riff.writer(conf, dir / "path", groupTd)
+        writer.prepareWrite()
+        for (i <- 0 until 5) {
+          writer.write(InternalRow(i, UTF8String.fromString(s"v$i"), i.toLong))
+        }
+        writer.finishWrite()
+
+        def read(filter: Tree, fields: Array[String]): Seq[(String, Any, Any)] = {
+          val reader = Riff.reader(conf, dir / "path")
+          val rowbuf = reader.prepareRead(filter, 0L, Long.MaxValue, fields)
+          var seq: Seq[(String, Any, Any)] = Nil
+          while (rowbuf.hasNext) {
+            val row = rowbuf.next
+            seq = seq :+ ((
+              row.getUTF8String(groupTd.position("col2")).toString,
+              row.get(groupTd.position("col1"), IntegerType),
+              row.get(groupTd.position("col3"), LongType)))
+          }
+          rowbuf.close()
+          seq
+        }
+
+        withClue(s"split=$split, parallel=$parallel: ") {
+          // only groups of required fields and fields referenced by filter are read
+          read(null, Array("col2", "col1")) should be (
+            (0 until 5).map { i => (s"v$i", i, null) })
+          read(null, Array("col3")) should be (
+            (0 until 5).map { i => (s"v$i", null, i.toLong) })
+          read(eqt("col3", 2L), Array("col2")) should be (Seq(("v2", null, 2L)))
+          read(ge("col2", "v3"), Array("col2")) should be (
+            Seq(("v3", null, null), ("v4", null, null)))
+          read(null, null) should be ((0 until 5).map { i => (s"v$i", i, i.toLong) })
+        }
+      }
+    }
+  }
+
+  test("read range of rows with row index") {
+    for (codec <- Seq("none", "deflate"); interval <- Seq(0, 1, 3, 100)) {
+      withTempDir { dir =>
+        val conf = new Configuration()
+        conf.set(Riff.Options.COMPRESSION_CODEC, codec)
+        conf.setInt(Riff.Options.STRIPE_ROWS, 10)
+        conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, interval)
+        // small buffer size, so skip crosses several chunks
+        conf.setInt(Riff.Options.BUFFER_SIZE, 4096)
+        val writer = Riff.writer(conf, dir / "path", td)
+        writer.prepareWrite()
+        for (i <- 0 until 25) {
+          writer.write(InternalRow(i, UTF8String.fromString(s"v$i" * 200), i.toLong))
+        }
+        writer.finishWrite()
+
+        def collect(rowbuf: RowBuffer): Seq[Int] = {
+          var seq: Seq[Int] = Nil
+          while (rowbuf.hasNext) {
+            seq = seq :+ rowbuf.next.getInt(0)
+          }
+          rowbuf.close()
+          seq
+        }
+
+        for (from <- Seq(0, 1, 3, 9, 10, 11, 19, 24); count <- Seq(0, 1, 4, 12, 100)) {
+          val rows = collect(Riff.reader(conf, dir / "path").readRows(from, count))
+          rows should be (from until math.min(from + count, 25))
+        }
+        collect(Riff.reader(conf, dir / "path").seekToRow(17)) should be (17 until 25)
+        collect(Riff.reader(conf, dir / "path").seekToRow(25)) should be (Nil)
+        collect(Riff.reader(conf, dir / "path").readRows(100, 10)) should be (Nil)
+
+        val reader = Riff.reader(conf, dir / "path")
+        reader.readFileInfo(true)
+        reader.getFileFooter.getStripeInformation.map(_.numRows) should be (Array(10, 10, 5))
+        reader.getFileFooter.getStripeInformation.map(_.hasRowIndex) should be (
+          Array.fill(3)(interval > 0))
+      }
+    }
+  }
+
+  test("fail to read invalid range of rows") {
+    withTempDir { dir =>
+      touch(dir / "path")
+      val reader = Riff.reader(dir / "path")
+      var err = intercept[IllegalArgumentException] {
+        reader.readRows(-1L, 10)
+      }
+      err.getMessage should be ("Invalid row range [-1, 10]")
+      err = intercept[IllegalArgumentException] {
+        reader.readRows(0L, -1)
+      }
+      err.getMessage should be ("Invalid row range [0, -1]")
+    }
+  }
+
+  test("fail to select negative row index interval") {
+    val conf = new Configuration()
+    Riff.Options.rowIndexInterval(conf) should be (Riff.Options.ROW_INDEX_INTERVAL_DEFAULT)
+    conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, -1)
+    val err = intercept[IllegalArgumentException] {
+      Riff.Options.rowIndexInterval(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative row index interval"))
+  }
+
+  test("write/read sorted stripes, skip row index entries with key statistics") {
+    val sortedTd = new TypeDescription(schema, Array("col1"))
+    for (codec <- Seq("none", "deflate"); interval <- Seq(1, 2, 3)) {
+      withTempDir { dir =>
+        val conf = new Configuration()
+        conf.set(Riff.Options.COMPRESSION_CODEC, codec)
+        conf.setInt(Riff.Options.STRIPE_ROWS, 10)
+        conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, interval)
+        conf.setBoolean(Riff.Options.STRIPE_SORTED, true)
+        val writer = Riff.writer(conf, dir / "path", sortedTd)
+        writer.prepareWrite()
+        // rows are written in descending order, value 0 is written as null
+        for (i <- 29 to 0 by -1) {
+          val value = if (i == 0) null else i
+          writer.write(InternalRow(value, UTF8String.fromString(s"v$i"), i.toLong))
+        }
+        writer.finishWrite()
+
+        def collect(rowbuf: RowBuffer): Seq[Any] = {
+          var seq: Seq[Any] = Nil
+          while (rowbuf.hasNext) {
+            val row = rowbuf.next
+            seq = seq :+ (if (row.isNullAt(0)) null else row.getInt(0))
+          }
+          rowbuf.close()
+          seq
+        }
+
+        val reader = Riff.reader(conf, dir / "path")
+        collect(reader.prepareRead()) should be ((20 to 29) ++ (10 to 19) ++ (null +: (1 to 9)))
+        val stripes = reader.getFileFooter.getStripeInformation
+        stripes.map(_.isSorted) should be (Array(true, true, true))
+        stripes.map(_.sortOrdinal) should be (Array(0, 0, 0))
+        stripes(0).getKeyStatistics.length should be ((10 + interval - 1) / interval)
+        stripes(0).getKeyStatistics()(0) should be (stats(20, 20 + interval - 1, false))
+
+        collect(Riff.reader(conf, dir / "path").prepareRead(eqt("col1", 23))) should be (Seq(23))
+        collect(Riff.reader(conf, dir / "path").prepareRead(ge("col1", 26))) should be (26 to 29)
+        collect(Riff.reader(conf, dir / "path").prepareRead(in("col1", 5, 14, 28))) should be (
+          Seq(28, 14, 5))
+        collect(Riff.reader(conf, dir / "path").prepareRead(
+          and(lt("col1", 13), eqt("col2", "v12")))) should be (Seq(12))
+        collect(Riff.reader(conf, dir / "path").prepareRead(nvl("col1"))) should be (Seq(null))
+        collect(Riff.reader(conf, dir / "path").prepareRead(gt("col1", 100))) should be (Nil)
+      }
+    }
+  }
+
+  test("write sorted stripes without index fields") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 10)
+      conf.setBoolean(Riff.Options.STRIPE_SORTED, true)
+      val writer = Riff.writer(conf, dir / "path", new TypeDescription(schema))
+      writer.prepareWrite()
+      for (i <- 9 to 0 by -1) {
+        writer.write(InternalRow(i, UTF8String.fromString(s"v$i"), i.toLong))
+      }
+      writer.finishWrite()
+      val reader = Riff.reader(conf, dir / "path")
+      val rowbuf = reader.prepareRead()
+      var seq: Seq[Int] = Nil
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.getInt(0)
+      }
+      rowbuf.close()
+      // rows are written in original order
+      seq should be (9 to 0 by -1)
+      reader.getFileFooter.getStripeInformation.map(_.isSorted) should be (Array(false))
+    }
+  }
+
+  test("select sorted stripes") {
+    val conf = new Configuration()
+    Riff.Options.stripeSorted(conf) should be (Riff.Options.STRIPE_SORTED_DEFAULT)
+    conf.setBoolean(Riff.Options.STRIPE_SORTED, true)
+    Riff.Options.stripeSorted(conf) should be (true)
+    conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, 0)
+    val err = intercept[IllegalArgumentException] {
+      Riff.Options.stripeSorted(conf)
+    }
+    assert(err.getMessage.contains("Sorted stripes require row index"))
+  }
 }
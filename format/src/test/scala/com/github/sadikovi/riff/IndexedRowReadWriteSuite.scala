@@ -116,6 +116,42 @@ class IndexedRowReadWriteSuite extends UnitTestSuite {
     ind.get(2, IntegerType) should be (24)
   }
 
+  test("write/read, index-only reader skips data region") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", LongType) ::
+      StructField("col4", StringType) :: Nil)
+    val rows = Seq(
+      InternalRow(24, UTF8String.fromString("abcd"), 123L, UTF8String.fromString("xyz")),
+      InternalRow(25, UTF8String.fromString("efgh"), 456L, null))
+
+    val td = new TypeDescription(schema, Array("col3", "col2"))
+    val writer = new IndexedRowWriter(td)
+    val reader = new IndexedRowReader(td, false, true)
+    reader.isIndexOnly() should be (true)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, null, stripe)
+    rows.foreach { row => writer.writeRow(row, out) }
+    out.flush()
+    val in = new InStream(64, null, new StripeInputBuffer(1.toByte, stripe.array()))
+
+    val ind1 = reader.readRow(in).asInstanceOf[IndexedRow]
+    ind1.hasDataRegion() should be (false)
+    ind1.getLong(0) should be (123L)
+    ind1.getString(1) should be ("abcd")
+    ind1.isNullAt(2) should be (true)
+    ind1.isNullAt(3) should be (true)
+
+    // data region of the first row is skipped, so second row is read from correct offset
+    val ind2 = reader.readRow(in).asInstanceOf[IndexedRow]
+    ind2.getLong(0) should be (456L)
+    ind2.getString(1) should be ("efgh")
+    ind2.isNullAt(2) should be (true)
+    ind2.isNullAt(3) should be (true)
+    in.available() should be (0)
+  }
+
   test("write/read, data fields only") {
     val schema = StructType(
       StructField("col1", IntegerType) ::
@@ -200,7 +236,8 @@ class IndexedRowReadWriteSuite extends UnitTestSuite {
     val in = new InStream(64, null, new StripeInputBuffer(1.toByte, stripe.array()))
     var ind = Seq[IndexedRow]()
     while (in.available() != 0) {
-      ind = ind :+ reader.readRow(in).asInstanceOf[IndexedRow]
+      // row references instream buffer, copy is required to retain it
+      ind = ind :+ reader.readRow(in).asInstanceOf[IndexedRow].copy()
     }
 
     ind.length should be (batch.length)
@@ -226,6 +263,275 @@ class IndexedRowReadWriteSuite extends UnitTestSuite {
       "data_region=[0, 0, 0, 5, 0, 0, 0, 0, 0, 0, 0, 5]]")
   }
 
+  test("write/read with separate index and data streams") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", StringType) :: Nil)
+    val batch = (0 until 20).map { i =>
+      InternalRow(i, UTF8String.fromString(if (i == 19) "xyz" else "abc"),
+        UTF8String.fromString("a" * 200 + i))
+    }
+
+    class CountingCodec extends ZlibCodec {
+      var decompressed = 0
+      override def decompress(in: java.nio.ByteBuffer, out: java.nio.ByteBuffer): Unit = {
+        decompressed += 1
+        super.decompress(in, out)
+      }
+    }
+
+    val td = new TypeDescription(schema, Array("col2"))
+    val writer = new IndexedRowWriter(td)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val dataStripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, new ZlibCodec(), stripe)
+    val dataOut = new OutStream(64, new ZlibCodec(), dataStripe)
+    for (row <- batch) {
+      writer.writeRow(row, out, dataOut)
+    }
+    out.flush()
+    dataOut.flush()
+
+    def streams(codec: CompressionCodec): (InStream, InStream) = {
+      val in = new InStream(64, new ZlibCodec(), new StripeInputBuffer(1.toByte, stripe.array()))
+      val data = new InStream(64, codec, new StripeInputBuffer(1.toByte, dataStripe.array()))
+      data.setChunkIndex(dataOut.chunkIndex())
+      (in, data)
+    }
+
+    // read all rows
+    val (in, data) = streams(new ZlibCodec())
+    val reader = new IndexedRowReader(td)
+    for (i <- 0 until 20) {
+      val row = reader.readRow(in, data)
+      row.getInt(td.position("col1")) should be (i)
+      row.getUTF8String(td.position("col3")) should be (UTF8String.fromString("a" * 200 + i))
+    }
+    in.available() should be (0)
+    data.available() should be (0)
+
+    // data stream is only read for rows that pass index filter
+    val codec = new CountingCodec()
+    val state = new PredicateState(eqt("col2", "xyz"), td)
+    val (in2, data2) = streams(codec)
+    var rows = Seq[InternalRow]()
+    while (in2.available() != 0) {
+      val row = reader.readRow(in2, data2, state)
+      if (row != null) rows = rows :+ row.copy()
+    }
+    rows.map(_.getInt(td.position("col1"))) should be (Seq(19))
+    rows.map(_.getString(td.position("col3"))) should be (Seq("a" * 200 + 19))
+    assert(dataOut.chunkIndex().numChunks > 20)
+    assert(codec.decompressed < 10)
+
+    // data stream is not read in index-only mode
+    val (in3, data3) = streams(new ZlibCodec())
+    val indexReader = new IndexedRowReader(td, true, true)
+    while (in3.available() != 0) {
+      indexReader.readRow(in3, data3).isNullAt(td.position("col3")) should be (true)
+    }
+    data3.position() should be (0)
+  }
+
+  test("write/read with lazy data region of separate streams") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", StringType) :: Nil)
+    val batch = (0 until 20).map { i =>
+      InternalRow(i, UTF8String.fromString(if (i % 10 == 9) "xyz" else "abc"),
+        UTF8String.fromString("a" * 200 + i))
+    }
+
+    val td = new TypeDescription(schema, Array("col2"))
+    val writer = new IndexedRowWriter(td)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val dataStripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, new ZlibCodec(), stripe)
+    val dataOut = new OutStream(64, new ZlibCodec(), dataStripe)
+    for (row <- batch) {
+      writer.writeRow(row, out, dataOut)
+    }
+    out.flush()
+    dataOut.flush()
+
+    def streams(): (InStream, InStream) = {
+      val in = new InStream(64, new ZlibCodec(), new StripeInputBuffer(1.toByte, stripe.array()))
+      val data = new InStream(64, new ZlibCodec(),
+        new StripeInputBuffer(1.toByte, dataStripe.array()))
+      data.setChunkIndex(dataOut.chunkIndex())
+      (in, data)
+    }
+
+    // data region is read only when data field is accessed
+    val (in, data) = streams()
+    val reader = new IndexedRowReader(td, true, false, true)
+    reader.isLazyData() should be (true)
+    for (i <- 0 until 20) {
+      val row = reader.readRow(in, data).asInstanceOf[IndexedRow]
+      row.hasLazyDataRegion() should be (true)
+      row.getUTF8String(td.position("col2")).toString should be (batch(i).getString(1))
+      if (i < 15) data.position() should be (0)
+      if (i == 15) {
+        row.getInt(td.position("col1")) should be (i)
+        row.getString(td.position("col3")) should be ("a" * 200 + i)
+        row.hasLazyDataRegion() should be (false)
+        assert(data.position() > 0)
+      }
+    }
+    in.available() should be (0)
+    data.available() should be (0)
+
+    // rows are copied with data region, data stream is skipped for rejected rows
+    val (in2, data2) = streams()
+    val state = new PredicateState(eqt("col2", "xyz"), td)
+    var rows = Seq[InternalRow]()
+    while (in2.available() != 0) {
+      val row = reader.readRow(in2, data2, state)
+      if (row != null) rows = rows :+ row.copy()
+    }
+    rows.map(_.getInt(td.position("col1"))) should be (Seq(9, 19))
+    rows.map(_.getString(td.position("col3"))) should be (Seq("a" * 200 + 9, "a" * 200 + 19))
+
+    // data region of the last row can be read explicitly, e.g. before stream is released
+    val (in3, data3) = streams()
+    reader.readRow(in3, data3)
+    val row = reader.readRow(in3, data3).asInstanceOf[IndexedRow]
+    reader.loadDataRegion()
+    row.hasLazyDataRegion() should be (false)
+    row.getString(td.position("col3")) should be ("a" * 200 + 1)
+
+    // lazy mode requires row reuse
+    val err = intercept[IllegalArgumentException] {
+      new IndexedRowReader(td, false, false, true)
+    }
+    err.getMessage should be ("Lazy data region requires row reuse")
+    // index-only mode does not set lazy data region
+    new IndexedRowReader(td, true, true, true).isLazyData() should be (false)
+  }
+
+  test("write/read with column groups") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", LongType) ::
+      StructField("col4", StringType) ::
+      StructField("col5", IntegerType) ::
+      StructField("col6", StringType) :: Nil)
+    val batch = (0 until 20).map { i =>
+      InternalRow(i, UTF8String.fromString("a" * (i * 3) + i),
+        if (i % 3 == 0) null else i.toLong, UTF8String.fromString("b" * i), i * 10,
+        if (i % 4 == 0) null else UTF8String.fromString("c"))
+    }
+
+    val td = new TypeDescription(schema, Array("col1"), Array(Array("col2", "col3"),
+      Array("col5", "col4")))
+    td.numGroups() should be (3)
+    val writer = new IndexedRowWriter(td)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, new ZlibCodec(), stripe)
+    for (row <- batch) {
+      writer.writeRow(row, out)
+    }
+    out.flush()
+
+    def check(row: InternalRow, i: Int, groups: Set[Int]): Unit = {
+      row.getInt(td.position("col1")) should be (i)
+      if (groups(0)) {
+        row.getString(td.position("col2")) should be ("a" * (i * 3) + i)
+        row.isNullAt(td.position("col3")) should be (i % 3 == 0)
+        if (i % 3 != 0) row.getLong(td.position("col3")) should be (i.toLong)
+      } else {
+        row.isNullAt(td.position("col2")) should be (true)
+        row.isNullAt(td.position("col3")) should be (true)
+      }
+      if (groups(1)) {
+        row.getString(td.position("col4")) should be ("b" * i)
+        row.getInt(td.position("col5")) should be (i * 10)
+      } else {
+        row.isNullAt(td.position("col4")) should be (true)
+        row.isNullAt(td.position("col5")) should be (true)
+      }
+      if (groups(2)) {
+        row.isNullAt(td.position("col6")) should be (i % 4 == 0)
+        if (i % 4 != 0) row.getString(td.position("col6")) should be ("c")
+      } else {
+        row.isNullAt(td.position("col6")) should be (true)
+      }
+    }
+
+    def stream(): InStream = {
+      new InStream(64, new ZlibCodec(), new StripeInputBuffer(1.toByte, stripe.array()))
+    }
+
+    // read all fields, rows are either referenced in buffer or copied
+    val in = stream()
+    val reader = new IndexedRowReader(td)
+    for (i <- 0 until 20) {
+      check(reader.readRow(in), i, Set(0, 1, 2))
+    }
+    in.available() should be (0)
+
+    // read only second group, regions of other groups are skipped
+    val required = (1L << td.position("col4")) | (1L << td.position("col1"))
+    for (reuse <- Seq(true, false)) {
+      val in2 = stream()
+      val groupReader = new IndexedRowReader(td, reuse, required, false)
+      groupReader.isIndexOnly() should be (false)
+      for (i <- 0 until 20) {
+        val row = groupReader.readRow(in2)
+        check(row, i, Set(1))
+        check(row.copy(), i, Set(1))
+      }
+      in2.available() should be (0)
+    }
+
+    // read only index fields
+    val in3 = stream()
+    val indexReader = new IndexedRowReader(td, true, 1L << td.position("col1"), false)
+    indexReader.isIndexOnly() should be (true)
+    for (i <- 0 until 20) {
+      check(indexReader.readRow(in3), i, Set.empty)
+    }
+  }
+
+  test("write/read with column groups and separate index and data streams") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", StringType) :: Nil)
+    val batch = (0 until 20).map { i =>
+      InternalRow(i, UTF8String.fromString("a" * 100 + i), UTF8String.fromString("b" * i))
+    }
+
+    val td = new TypeDescription(schema, Array("col1"), Array(Array("col3")))
+    val writer = new IndexedRowWriter(td)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val dataStripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, new ZlibCodec(), stripe)
+    val dataOut = new OutStream(64, new ZlibCodec(), dataStripe)
+    for (row <- batch) {
+      writer.writeRow(row, out, dataOut)
+    }
+    out.flush()
+    dataOut.flush()
+
+    for (lazyData <- Seq(true, false)) {
+      val in = new InStream(64, new ZlibCodec(), new StripeInputBuffer(1.toByte, stripe.array()))
+      val data = new InStream(64, new ZlibCodec(),
+        new StripeInputBuffer(1.toByte, dataStripe.array()))
+      val required = (1L << td.position("col1")) | (1L << td.position("col3"))
+      val reader = new IndexedRowReader(td, true, required, lazyData)
+      for (i <- 0 until 20) {
+        val row = reader.readRow(in, data)
+        row.getInt(td.position("col1")) should be (i)
+        row.isNullAt(td.position("col2")) should be (true)
+        row.getString(td.position("col3")) should be ("b" * i)
+      }
+    }
+  }
+
   // read rows for provided filter
   // col2 - indexed field
   // col1 and col3 - data fields
@@ -256,7 +562,8 @@ class IndexedRowReadWriteSuite extends UnitTestSuite {
     val in = new InStream(64, null, new StripeInputBuffer(1.toByte, stripe.array()))
     var ind = Seq[IndexedRow]()
     while (in.available() != 0) {
-      ind = ind :+ reader.readRow(in, state).asInstanceOf[IndexedRow]
+      val row = reader.readRow(in, state).asInstanceOf[IndexedRow]
+      ind = ind :+ (if (row == null) null else row.copy())
     }
     (td, ind)
   }
@@ -426,4 +733,70 @@ class IndexedRowReadWriteSuite extends UnitTestSuite {
     ind.getByte(1) should be (-67)
     assert(ind.get(1, ByteType) === -67)
   }
+
+  test("write/read, rows cross chunk boundary") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", LongType) :: Nil)
+    val batch = (0 until 20).map { i =>
+      InternalRow(i, UTF8String.fromString(s"value-$i"), i.toLong) }
+
+    val td = new TypeDescription(schema, Array("col2"))
+    val writer = new IndexedRowWriter(td)
+    val reader = new IndexedRowReader(td)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    // small buffer size so regions are either referenced or copied
+    val out = new OutStream(16, new ZlibCodec(), stripe)
+    for (row <- batch) {
+      writer.writeRow(row, out)
+    }
+    out.flush()
+
+    val in = new InStream(16, new ZlibCodec(), new StripeInputBuffer(1.toByte, stripe.array()))
+    for (i <- 0 until 20) {
+      val ind = reader.readRow(in)
+      ind.getInt(0) should be (i)
+      ind.getUTF8String(1) should be (UTF8String.fromString(s"value-$i"))
+      ind.getLong(2) should be (i.toLong)
+    }
+    in.available() should be (0)
+  }
+
+  test("write/read, reuse row and cache offsets") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", LongType) :: Nil)
+    val batch = Seq(
+      InternalRow(1, UTF8String.fromString("abc"), 1L),
+      InternalRow(2, null, 2L),
+      InternalRow(3, UTF8String.fromString("def"), null),
+      InternalRow(4, null, 4L),
+      InternalRow(5, UTF8String.fromString("xyz"), 5L))
+
+    val td = new TypeDescription(schema, Array("col2"))
+    val writer = new IndexedRowWriter(td)
+    val reader = new IndexedRowReader(td, true)
+    val stripe = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, null, stripe)
+    for (row <- batch) {
+      writer.writeRow(row, out)
+    }
+    out.flush()
+
+    val in = new InStream(64, null, new StripeInputBuffer(1.toByte, stripe.array()))
+    val first = reader.readRow(in)
+    first.getInt(td.position("col1")) should be (1)
+    first.getUTF8String(td.position("col2")) should be (UTF8String.fromString("abc"))
+    for (i <- 2 to 5) {
+      val row = reader.readRow(in)
+      // the same instance is returned for each row
+      assert(row eq first)
+      row.getInt(td.position("col1")) should be (i)
+      row.isNullAt(td.position("col2")) should be (i % 2 == 0)
+      row.isNullAt(td.position("col3")) should be (i == 3)
+    }
+    in.available() should be (0)
+  }
 }
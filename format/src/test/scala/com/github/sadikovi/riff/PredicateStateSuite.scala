@@ -195,4 +195,20 @@ class PredicateStateSuite extends UnitTestSuite {
     state.indexTree() should be (TRUE)
     state.tree() should be (p)
   }
+
+  test("referenced fields of active tree") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", StringType) ::
+      StructField("col3", LongType) :: Nil)
+    val td = new TypeDescription(schema, Array("col1"))
+    var state = new PredicateState(or(eqt("col1", 12), gt("col1", 47)), td)
+    state.referencedFields should be (Array(0))
+
+    state = new PredicateState(and(not(nvl("col3")), or(gt("col1", 47), eqt("col2", "a"))), td)
+    state.referencedFields should be (Array(0, 1, 2))
+
+    state = new PredicateState(TRUE, td)
+    state.referencedFields should be (Array.empty[Int])
+  }
 }
@@ -126,6 +126,84 @@ class RiffSuite extends UnitTestSuite {
     Riff.Options.columnFilterEnabled(conf) should be (true)
   }
 
+  test("select number of prefetch stripes") {
+    var conf = new Configuration()
+    Riff.Options.prefetchStripes(conf) should be (Riff.Options.PREFETCH_STRIPES_DEFAULT)
+
+    conf = new Configuration()
+    conf.setInt(Riff.Options.PREFETCH_STRIPES, 4)
+    Riff.Options.prefetchStripes(conf) should be (4)
+
+    val err = intercept[IllegalArgumentException] {
+      conf = new Configuration()
+      conf.setInt(Riff.Options.PREFETCH_STRIPES, -1)
+      Riff.Options.prefetchStripes(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative number of prefetch stripes"))
+  }
+
+  test("select prefetch decompress") {
+    val conf = new Configuration()
+    Riff.Options.prefetchDecompress(conf) should be (Riff.Options.PREFETCH_DECOMPRESS_DEFAULT)
+
+    conf.setBoolean(Riff.Options.PREFETCH_DECOMPRESS, true)
+    Riff.Options.prefetchDecompress(conf) should be (true)
+  }
+
+  test("select number of parallel stripes") {
+    var conf = new Configuration()
+    Riff.Options.parallelStripes(conf) should be (Riff.Options.PARALLEL_STRIPES_DEFAULT)
+
+    conf = new Configuration()
+    conf.setInt(Riff.Options.PARALLEL_STRIPES, 4)
+    Riff.Options.parallelStripes(conf) should be (4)
+
+    val err = intercept[IllegalArgumentException] {
+      conf = new Configuration()
+      conf.setInt(Riff.Options.PARALLEL_STRIPES, -1)
+      Riff.Options.parallelStripes(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative number of parallel stripes"))
+  }
+
+  test("select parallel max bytes") {
+    var conf = new Configuration()
+    Riff.Options.parallelMaxBytes(conf) should be (Riff.Options.PARALLEL_MAX_BYTES_DEFAULT)
+
+    conf = new Configuration()
+    conf.setLong(Riff.Options.PARALLEL_MAX_BYTES, 1024L)
+    Riff.Options.parallelMaxBytes(conf) should be (1024L)
+
+    val err = intercept[IllegalArgumentException] {
+      conf = new Configuration()
+      conf.setLong(Riff.Options.PARALLEL_MAX_BYTES, 0L)
+      Riff.Options.parallelMaxBytes(conf)
+    }
+    assert(err.getMessage.contains("Expected positive parallel max bytes"))
+  }
+
+  test("select coalesce gap") {
+    val conf = new Configuration()
+    Riff.Options.coalesceGap(conf) should be (Riff.Options.COALESCE_GAP_DEFAULT)
+
+    conf.setLong(Riff.Options.COALESCE_GAP, 1024L)
+    Riff.Options.coalesceGap(conf) should be (1024L)
+  }
+
+  test("select coalesce max size") {
+    val conf = new Configuration()
+    Riff.Options.coalesceMaxSize(conf) should be (Riff.Options.COALESCE_MAX_SIZE_DEFAULT)
+
+    conf.setLong(Riff.Options.COALESCE_MAX_SIZE, 1024L)
+    Riff.Options.coalesceMaxSize(conf) should be (1024L)
+
+    val err = intercept[IllegalArgumentException] {
+      conf.setLong(Riff.Options.COALESCE_MAX_SIZE, 0L)
+      Riff.Options.coalesceMaxSize(conf)
+    }
+    assert(err.getMessage.contains("Expected positive coalesce max size"))
+  }
+
   test("set conf should include previously set options") {
     withTempDir { dir =>
       val td = new TypeDescription(StructType(StructField("a", IntegerType) :: Nil))
@@ -245,7 +323,7 @@ class RiffSuite extends UnitTestSuite {
     val rowbuf = reader.prepareRead(filter)
     var seq: Seq[InternalRow] = Nil
     while (rowbuf.hasNext) {
-      seq = seq :+ rowbuf.next
+      seq = seq :+ rowbuf.next.copy()
     }
     rowbuf.close()
     seq
@@ -534,7 +612,7 @@ class RiffSuite extends UnitTestSuite {
 
       var seq: Seq[InternalRow] = Nil
       while (rowbuf.hasNext) {
-        seq = seq :+ rowbuf.next
+        seq = seq :+ rowbuf.next.copy()
       }
       rowbuf.close()
 
@@ -649,4 +727,412 @@ class RiffSuite extends UnitTestSuite {
       rowbuf.hasNext should be (false)
     }
   }
+
+  test("write/read with memory-mapped file, filter scan") {
+    withTempDir { dir =>
+      val conf = new Configuration(false)
+      conf.set(Riff.Options.COMPRESSION_CODEC, "gzip")
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val td = new TypeDescription(schema, Array("col2"))
+      val writer = Riff.writer(conf, dir / "file", td)
+      writer.prepareWrite()
+      for (row <- batch) {
+        writer.write(row)
+      }
+      writer.finishWrite()
+
+      conf.setBoolean(Riff.Options.MMAP_ENABLED, true)
+      val reader = Riff.reader(conf, dir / "file")
+      reader.readOptions().mmapEnabled() should be (true)
+      val rowbuf = reader.prepareRead(or(eqt("col2", "xyz"), eqt("col1", 1)))
+      var seq: Seq[InternalRow] = Nil
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.map(_.getInt(td.position("col1"))) should be (Seq(1, 4, 5))
+    }
+  }
+
+  test("select buffer pool max bytes") {
+    val conf = new Configuration()
+    Riff.Options.bufferPoolMaxBytes(conf) should be (Riff.Options.BUFFER_POOL_MAX_BYTES_DEFAULT)
+
+    conf.setLong(Riff.Options.BUFFER_POOL_MAX_BYTES, 0L)
+    Riff.Options.bufferPoolMaxBytes(conf) should be (0L)
+
+    val err = intercept[IllegalArgumentException] {
+      conf.setLong(Riff.Options.BUFFER_POOL_MAX_BYTES, -1L)
+      Riff.Options.bufferPoolMaxBytes(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative buffer pool size"))
+  }
+
+  test("configure shared resources only with options that are set") {
+    val pool = BufferPool.shared()
+    val cache = FileInfoCache.shared()
+    val (poolBytes, cacheBytes) = (pool.maxBytes, cache.maxBytes)
+    try {
+      val conf = new Configuration()
+      conf.setLong(Riff.Options.BUFFER_POOL_MAX_BYTES, 0L)
+      conf.setLong(Riff.Options.FILE_INFO_CACHE_MAX_BYTES, 0L)
+      // readers and writers do not resize shared resources
+      new ReadOptions(conf)
+      pool.maxBytes should be (poolBytes)
+      cache.maxBytes should be (cacheBytes)
+      // options that are not set are not applied
+      Riff.configureSharedResources(new Configuration())
+      pool.maxBytes should be (poolBytes)
+      cache.maxBytes should be (cacheBytes)
+      conf.setLong(Riff.Options.BUFFER_POOL_MAX_BYTES, 1024L)
+      conf.setLong(Riff.Options.FILE_INFO_CACHE_MAX_BYTES, 2048L)
+      Riff.configureSharedResources(conf)
+      pool.maxBytes should be (1024L)
+      cache.maxBytes should be (2048L)
+    } finally {
+      pool.setMaxBytes(poolBytes)
+      cache.setMaxBytes(cacheBytes)
+    }
+  }
+
+  test("select memory-mapping of local files") {
+    val conf = new Configuration()
+    Riff.Options.mmapEnabled(conf) should be (Riff.Options.MMAP_ENABLED_DEFAULT)
+
+    conf.setBoolean(Riff.Options.MMAP_ENABLED, true)
+    Riff.Options.mmapEnabled(conf) should be (true)
+  }
+
+  test("select direct buffers") {
+    val conf = new Configuration()
+    Riff.Options.directBuffers(conf) should be (Riff.Options.DIRECT_BUFFERS_DEFAULT)
+
+    conf.setBoolean(Riff.Options.DIRECT_BUFFERS, true)
+    Riff.Options.directBuffers(conf) should be (true)
+  }
+
+  test("write/read with direct buffers, filter scan") {
+    withTempDir { dir =>
+      val conf = new Configuration(false)
+      conf.set(Riff.Options.COMPRESSION_CODEC, "snappy")
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val td = new TypeDescription(schema, Array("col2"))
+      val writer = Riff.writer(conf, dir / "file", td)
+      writer.prepareWrite()
+      for (row <- batch) {
+        writer.write(row)
+      }
+      writer.finishWrite()
+
+      conf.setBoolean(Riff.Options.DIRECT_BUFFERS, true)
+      val reader = Riff.reader(conf, dir / "file")
+      reader.readOptions().directBuffers() should be (true)
+      val rowbuf = reader.prepareRead(or(eqt("col2", "xyz"), eqt("col1", 1)))
+      var seq: Seq[InternalRow] = Nil
+      while (rowbuf.hasNext) {
+        seq = seq :+ rowbuf.next.copy()
+      }
+      rowbuf.close()
+      seq.map(_.getInt(td.position("col1"))) should be (Seq(1, 4, 5))
+    }
+  }
+
+  test("select separate index and data streams") {
+    val conf = new Configuration()
+    Riff.Options.stripeSplitStreams(conf) should be (Riff.Options.STRIPE_SPLIT_STREAMS_DEFAULT)
+
+    conf.setBoolean(Riff.Options.STRIPE_SPLIT_STREAMS, true)
+    Riff.Options.stripeSplitStreams(conf) should be (true)
+  }
+
+  test("select columnar stripe layout") {
+    val conf = new Configuration()
+    Riff.Options.stripeColumnar(conf) should be (Riff.Options.STRIPE_COLUMNAR_DEFAULT)
+
+    conf.setBoolean(Riff.Options.STRIPE_COLUMNAR, true)
+    Riff.Options.stripeColumnar(conf) should be (true)
+  }
+
+  test("select lazy data region") {
+    val conf = new Configuration()
+    Riff.Options.lazyData(conf) should be (Riff.Options.LAZY_DATA_DEFAULT)
+    new ReadOptions(conf).lazyData() should be (Riff.Options.LAZY_DATA_DEFAULT)
+
+    conf.setBoolean(Riff.Options.LAZY_DATA, true)
+    Riff.Options.lazyData(conf) should be (true)
+    new ReadOptions(conf).lazyData() should be (true)
+  }
+
+  test("write/read with separate index and data streams") {
+    val readConfs: Seq[(String, Any)] = Seq(
+      "none" -> null,
+      Riff.Options.MMAP_ENABLED -> true,
+      Riff.Options.PREFETCH_STRIPES -> 2,
+      Riff.Options.COALESCE_GAP -> 1024,
+      Riff.Options.PARALLEL_STRIPES -> 2,
+      Riff.Options.DIRECT_BUFFERS -> true,
+      Riff.Options.LAZY_DATA -> true)
+    for (codec <- Seq("none", "gzip", "snappy")) {
+      withTempDir { dir =>
+        val conf = new Configuration(false)
+        conf.set(Riff.Options.COMPRESSION_CODEC, codec)
+        conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+        conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, 1)
+        conf.setBoolean(Riff.Options.STRIPE_SPLIT_STREAMS, true)
+        val td = new TypeDescription(schema, Array("col2"))
+        val writer = Riff.writer(conf, dir / "file", td)
+        writer.prepareWrite()
+        for (row <- batch) {
+          writer.write(row)
+        }
+        writer.finishWrite()
+
+        val reader = Riff.reader(conf, dir / "file")
+        reader.readFileInfo(true)
+        reader.getFileFooter.getStripeInformation.map(_.hasSplitStreams) should be (
+          Array(true, true, true))
+
+        for ((key, value) <- readConfs) {
+          val readConf = new Configuration(conf)
+          if (value != null) readConf.set(key, value.toString)
+          def collect(rowbuf: RowBuffer): Seq[(Int, Long)] = {
+            var seq: Seq[(Int, Long)] = Nil
+            while (rowbuf.hasNext) {
+              val row = rowbuf.next
+              seq = seq :+ ((row.getInt(td.position("col1")), row.getLong(td.position("col3"))))
+            }
+            rowbuf.close()
+            seq
+          }
+          val values = batch.map { row => (row.getInt(0), row.getLong(2)) }
+          withClue(s"codec=$codec, $key=$value: ") {
+            collect(Riff.reader(readConf, dir / "file").prepareRead()) should be (values)
+            collect(Riff.reader(readConf, dir / "file").prepareRead(eqt("col2", "xyz"))) should be (
+              Seq((4, 4L), (5, 5L)))
+            collect(Riff.reader(readConf, dir / "file").prepareRead(
+              or(eqt("col2", "xyz"), eqt("col1", 1)))) should be (Seq((1, 1L), (4, 4L), (5, 5L)))
+            collect(Riff.reader(readConf, dir / "file").readRows(1L, 3)) should be (
+              values.slice(1, 4))
+          }
+        }
+      }
+    }
+  }
+
+  test("write/read with columnar stripes") {
+    val readConfs: Seq[(String, Any)] = Seq(
+      "none" -> null,
+      Riff.Options.MMAP_ENABLED -> true,
+      Riff.Options.PREFETCH_STRIPES -> 2,
+      Riff.Options.COALESCE_GAP -> 1024,
+      Riff.Options.PARALLEL_STRIPES -> 2,
+      Riff.Options.DIRECT_BUFFERS -> true)
+    val groups: Seq[Array[Array[String]]] = Seq(null, Array(Array("col3", "col1")))
+    for (codec <- Seq("none", "gzip", "snappy"); columnGroups <- groups) {
+      withTempDir { dir =>
+        val conf = new Configuration(false)
+        conf.set(Riff.Options.COMPRESSION_CODEC, codec)
+        conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+        conf.setInt(Riff.Options.ROW_INDEX_INTERVAL, 1)
+        conf.setBoolean(Riff.Options.STRIPE_COLUMNAR, true)
+        // columnar layout takes precedence over split streams
+        conf.setBoolean(Riff.Options.STRIPE_SPLIT_STREAMS, true)
+        val td = new TypeDescription(schema, Array("col2"), columnGroups)
+        val writer = Riff.writer(conf, dir / "file", td)
+        writer.prepareWrite()
+        for (row <- batch) {
+          writer.write(row)
+        }
+        writer.write(InternalRow(null, UTF8String.fromString("nul"), null))
+        writer.finishWrite()
+
+        val reader = Riff.reader(conf, dir / "file")
+        reader.readFileInfo(true)
+        val stripes = reader.getFileFooter.getStripeInformation
+        stripes.map(_.hasColumnStreams) should be (Array(true, true, true))
+        stripes.map(_.hasSplitStreams) should be (Array(false, false, false))
+        stripes.map(_.numColumnStreams).distinct should be (
+          Array(if (columnGroups == null) 2 else 1))
+
+        for ((key, value) <- readConfs) {
+          val readConf = new Configuration(conf)
+          if (value != null) readConf.set(key, value.toString)
+          def collect(rowbuf: RowBuffer): Seq[(String, Any, Any)] = {
+            var seq: Seq[(String, Any, Any)] = Nil
+            while (rowbuf.hasNext) {
+              val row = rowbuf.next
+              seq = seq :+ ((
+                row.getUTF8String(td.position("col2")).toString,
+                row.get(td.position("col1"), IntegerType),
+                row.get(td.position("col3"), LongType)))
+            }
+            rowbuf.close()
+            seq
+          }
+          def read(filter: Tree, fields: Array[String]): Seq[(String, Any, Any)] = {
+            collect(Riff.reader(readConf, dir / "file").prepareRead(filter, 0L, Long.MaxValue,
+              fields))
+          }
+          val values = batch.map { row => (row.getUTF8String(1).toString, row.getInt(0),
+            row.getLong(2)) } :+ (("nul", null, null))
+          withClue(s"codec=$codec, groups=${columnGroups != null}, $key=$value: ") {
+            read(null, null) should be (values)
+            read(eqt("col2", "xyz"), null) should be (Seq(("xyz", 4, 4L), ("xyz", 5, 5L)))
+            read(or(eqt("col2", "xyz"), eqt("col1", 1)), null) should be (
+              Seq(("abc", 1, 1L), ("xyz", 4, 4L), ("xyz", 5, 5L)))
+            read(eqt("col3", 2L), Array("col2")) should be (
+              if (columnGroups == null) Seq(("def", null, 2L)) else Seq(("def", 2, 2L)))
+            // only columns of projection are read
+            read(null, Array("col2", "col1")) should be (values.map { case (col2, col1, col3) =>
+              (col2, col1, if (columnGroups == null) null else col3) })
+            read(null, Array("col2")) should be (values.map { value => (value._1, null, null) })
+            collect(Riff.reader(readConf, dir / "file").readRows(1L, 3)) should be (
+              values.slice(1, 4))
+          }
+        }
+      }
+    }
+  }
+
+  test("look up keys in directory of files") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val td = new TypeDescription(schema, Array("col2"))
+      for ((name, rows) <- Seq("part-0" -> batch.take(3), "part-1" -> batch.drop(3))) {
+        val writer = Riff.writer(conf, dir / "table" / name, td)
+        writer.prepareWrite()
+        for (row <- rows) {
+          writer.write(row)
+        }
+        writer.finishWrite()
+      }
+      // hidden files are ignored
+      touch(dir / "table" / "_SUCCESS")
+      touch(dir / "table" / ".part-0.crc")
+
+      // rows are returned with index fields first
+      def values(rows: java.util.List[InternalRow]): Seq[Int] = {
+        (0 until rows.size).map { i => rows.get(i).getInt(1) }
+      }
+
+      values(Riff.lookup(conf, dir / "table", "col2", "abc")) should be (Seq(1, 3))
+      values(Riff.lookup(conf, dir / "table", "col2", "xyz")) should be (Seq(4, 5))
+      values(Riff.lookup(conf, dir / "table", "col2", "none")) should be (Nil)
+      values(Riff.lookupAll(conf, dir / "table", "col2", "def", "xyz")) should be (Seq(2, 4, 5))
+      // table can be a single file
+      values(Riff.lookup(conf, dir / "table" / "part-1", "col2", "xyz")) should be (Seq(4, 5))
+      // rows are copies and can be retained
+      val rows = Riff.lookupAll(conf, dir / "table", "col2", "abc", "def", "xyz")
+      values(rows) should be (Seq(1, 2, 3, 4, 5))
+      rows.get(0).getUTF8String(0) should be (UTF8String.fromString("abc"))
+    }
+  }
+
+  test("reuse table lookup across calls") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val td = new TypeDescription(schema, Array("col2"))
+      def write(name: String, rows: Seq[InternalRow]): Unit = {
+        val writer = Riff.writer(conf, dir / "table" / name, td)
+        writer.prepareWrite()
+        for (row <- rows) {
+          writer.write(row)
+        }
+        writer.finishWrite()
+      }
+      write("part-0", batch.take(3))
+      write("part-1", batch.drop(3))
+      touch(dir / "table" / "_SUCCESS")
+
+      def values(rows: java.util.List[InternalRow]): Seq[Int] = {
+        (0 until rows.size).map { i => rows.get(i).getInt(1) }
+      }
+
+      val lookup = Riff.lookupTable(conf, dir / "table")
+      lookup.files.map(_.getPath.getName).toSeq should be (Seq("part-0", "part-1"))
+      values(lookup.lookup("col2", "abc")) should be (Seq(1, 3))
+      values(lookup.lookup("col2", "xyz")) should be (Seq(4, 5))
+      values(lookup.lookupAll("col2", "def", "xyz")) should be (Seq(2, 4, 5))
+      values(lookup.lookup("col2", "none")) should be (Nil)
+
+      // table is listed once, new files are only visible to new lookups
+      write("part-2", batch.take(1))
+      values(lookup.lookup("col2", "abc")) should be (Seq(1, 3))
+      values(Riff.lookup(conf, dir / "table", "col2", "abc")) should be (Seq(1, 3, 1))
+
+      // lookup can be created for provided list of files
+      val files = Array(fs.getFileStatus(dir / "table" / "part-1"))
+      values(new Lookup(fs, conf, files).lookup("col2", "xyz")) should be (Seq(4, 5))
+    }
+  }
+
+  test("read table with files opened in background") {
+    withTempDir { dir =>
+      val conf = new Configuration()
+      conf.setInt(Riff.Options.STRIPE_ROWS, 2)
+      val td = new TypeDescription(schema, Array("col2"))
+      for (i <- 0 until batch.length) {
+        val writer = Riff.writer(conf, dir / "table" / s"part-$i", td)
+        writer.prepareWrite()
+        writer.write(batch(i))
+        writer.finishWrite()
+      }
+      touch(dir / "table" / "_SUCCESS")
+
+      for (files <- Seq(0, 1, 2, 10)) {
+        conf.setInt(Riff.Options.PREFETCH_FILES, files)
+        var rowbuf = Riff.readTable(conf, dir / "table", null)
+        var seq: Seq[Int] = Nil
+        while (rowbuf.hasNext) {
+          seq = seq :+ rowbuf.next.getInt(1)
+        }
+        rowbuf.close()
+        seq should be (Seq(1, 2, 3, 4, 5))
+
+        rowbuf = Riff.readTable(conf, dir / "table", eqt("col2", "xyz"))
+        seq = Nil
+        while (rowbuf.hasNext) {
+          seq = seq :+ rowbuf.next.getInt(1)
+        }
+        rowbuf.close()
+        seq should be (Seq(4, 5))
+
+        // pipeline can be closed before all files are read
+        rowbuf = Riff.readTable(conf, dir / "table", null)
+        rowbuf.hasNext should be (true)
+        rowbuf.close()
+        rowbuf.hasNext should be (false)
+
+        val rows = Riff.lookup(conf, dir / "table", "col2", "abc")
+        (0 until rows.size).map { i => rows.get(i).getInt(1) } should be (Seq(1, 3))
+      }
+    }
+  }
+
+  test("select number of prefetch files") {
+    var conf = new Configuration()
+    Riff.Options.prefetchFiles(conf) should be (Riff.Options.PREFETCH_FILES_DEFAULT)
+
+    conf = new Configuration()
+    conf.setInt(Riff.Options.PREFETCH_FILES, 3)
+    Riff.Options.prefetchFiles(conf) should be (3)
+
+    val err = intercept[IllegalArgumentException] {
+      conf = new Configuration()
+      conf.setInt(Riff.Options.PREFETCH_FILES, -1)
+      Riff.Options.prefetchFiles(conf)
+    }
+    assert(err.getMessage.contains("Expected non-negative number of prefetch files"))
+  }
+
+  test("fail to look up without keys") {
+    withTempDir { dir =>
+      val err = intercept[IllegalArgumentException] {
+        Riff.lookupAll(new Configuration(), dir, "col2")
+      }
+      err.getMessage should be ("Expected at least one key to look up")
+    }
+  }
 }
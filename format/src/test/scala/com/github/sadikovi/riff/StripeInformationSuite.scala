@@ -34,6 +34,8 @@ import com.github.sadikovi.riff.stats.Statistics
 import com.github.sadikovi.testutil.UnitTestSuite
 
 class StripeInformationSuite extends UnitTestSuite {
+  import RiffTestUtils._
+
   test("init stripe information from stripe output buffer") {
     val buf = new StripeOutputBuffer(123.toByte)
     buf.write(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8), 0, 8)
@@ -225,4 +227,134 @@ class StripeInformationSuite extends UnitTestSuite {
       Array(ColumnFilter.sqlTypeToColumnFilter(IntegerType, 20)))
     assert(stripe1 == stripe2)
   }
+
+  test("stripe information with row index") {
+    val info = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, Array(0L, 40L, 80L))
+    info.numRows should be (10)
+    info.hasRowIndex should be (true)
+    info.rowIndexInterval should be (4)
+    info.getRowIndex should be (Array(0L, 40L, 80L))
+    for ((row, indexedRow, offset) <- Seq((0, 0, 0L), (3, 0, 0L), (4, 4, 40L), (9, 8, 80L))) {
+      info.indexedRow(row) should be (indexedRow)
+      info.indexedOffset(row) should be (offset)
+    }
+    info should be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 80L)))
+    info should not be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 81L)))
+    info should not be (new StripeInformation(1.toShort, 0L, 100, null))
+  }
+
+  test("stripe information without row index") {
+    val info = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, null)
+    info.numRows should be (10)
+    info.hasRowIndex should be (false)
+    info.rowIndexInterval should be (0)
+    info.indexedRow(7) should be (0)
+    info.indexedOffset(7) should be (0L)
+    new StripeInformation(1.toShort, 0L, 100, null).numRows should be (-1)
+  }
+
+  test("fail to create stripe information with invalid row index") {
+    var err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, Array(0L, 40L))
+    }
+    err.getMessage should be ("Invalid row index of 2 entries for 10 rows and interval 4")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, Array(0L))
+    }
+    err.getMessage should be ("Invalid row index of 1 entries for 10 rows and interval 0")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, -2, 0, null)
+    }
+    err.getMessage should be ("Invalid number of rows: -2")
+  }
+
+  test("stripe information with key statistics") {
+    val keyStats: Array[Statistics] = Array(stats(1, 4, false), stats(5, 8, false),
+      stats(9, 10, true))
+    val info = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, Array(0L, 40L, 80L),
+      2, keyStats)
+    info.isSorted should be (true)
+    info.sortOrdinal should be (2)
+    info.getKeyStatistics should be (keyStats)
+    info should be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 80L), 2, keyStats))
+    info should not be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 80L), 1, keyStats))
+    info should not be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 80L)))
+
+    val unsorted = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4,
+      Array(0L, 40L, 80L), 2, null)
+    unsorted.isSorted should be (false)
+    unsorted.sortOrdinal should be (-1)
+    unsorted.getKeyStatistics should be (null)
+  }
+
+  test("stripe information with column streams") {
+    val info = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null, null,
+      -1, null, Array(40, 40, 70), null)
+    info.hasColumnStreams should be (true)
+    info.hasSplitStreams should be (false)
+    info.numColumnStreams should be (3)
+    info.indexStreamLength should be (40)
+    (0 until 3).map(info.columnOffset) should be (Seq(40, 40, 70))
+    (0 until 3).map(info.columnLength) should be (Seq(0, 30, 30))
+    info.getColumnChunkIndex(1) should be (null)
+    info should be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null,
+      null, -1, null, Array(40, 40, 70), null))
+    info should not be (new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1,
+      null, null, -1, null, Array(40, 50, 70), null))
+
+    val single = new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null)
+    single.hasColumnStreams should be (false)
+    single.numColumnStreams should be (0)
+    single.indexStreamLength should be (100)
+    info should not be (single)
+  }
+
+  test("fail to create stripe information with invalid column streams") {
+    var err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null, null, -1, null,
+        Array(40, 30), null)
+    }
+    err.getMessage should be ("Invalid column offsets [40, 30] for stripe of 100 bytes")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null, null, -1, null,
+        Array(40, 101), null)
+    }
+    err.getMessage should be ("Invalid column offsets [40, 101] for stripe of 100 bytes")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null, null, 20, null,
+        Array(40), null)
+    }
+    err.getMessage should be ("Stripe cannot have both data stream at offset 20 and column streams")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 0, null, -1, null, null, -1, null,
+        Array(40), Array(null, null))
+    }
+    err.getMessage should be ("Expected 1 column chunk indexes, found 2")
+  }
+
+  test("fail to create stripe information with invalid key statistics") {
+    var err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, Array(0L, 40L, 80L), 0,
+        Array[Statistics](stats(1, 2, false)))
+    }
+    err.getMessage should be (
+      "Invalid key directory of 1 entries for sort ordinal 0 and row index of 3 entries")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 10, 4, null, 0,
+        Array[Statistics](stats(1, 2, false)))
+    }
+    err.getMessage should be (
+      "Invalid key directory of 1 entries for sort ordinal 0 and row index of 0 entries")
+    err = intercept[IllegalArgumentException] {
+      new StripeInformation(1.toShort, 0L, 100, null, null, 1, 4, Array(0L), -1,
+        Array[Statistics](stats(1, 2, false)))
+    }
+    err.getMessage should be (
+      "Invalid key directory of 1 entries for sort ordinal -1 and row index of 1 entries")
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff
+
+import java.nio.ByteBuffer
+
+import org.apache.hadoop.fs.FSDataInputStream
+
+import com.github.sadikovi.testutil.implicits._
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class StripeRangeSuite extends UnitTestSuite {
+  private def stripe(id: Int, offset: Long, length: Int): StripeInformation = {
+    new StripeInformation(id.toShort, offset, length, null)
+  }
+
+  test("fail to create range for empty stripes") {
+    val err = intercept[IllegalArgumentException] {
+      new StripeRange(Array[StripeInformation]())
+    }
+    err.getMessage should be ("Empty stripes for range")
+  }
+
+  test("plan ranges when coalescing is disabled") {
+    val stripes = Array(stripe(0, 0L, 10), stripe(1, 10L, 10), stripe(2, 20L, 10))
+    val ranges = StripeRange.plan(stripes, -1L, 1024L)
+    ranges.length should be (3)
+    ranges.map(_.offset) should be (Array(0L, 10L, 20L))
+    ranges.map(_.length) should be (Array(10, 10, 10))
+  }
+
+  test("plan ranges for adjacent stripes") {
+    val stripes = Array(stripe(0, 0L, 10), stripe(1, 10L, 10), stripe(2, 20L, 10))
+    val ranges = StripeRange.plan(stripes, 0L, 1024L)
+    ranges.length should be (1)
+    ranges(0).offset should be (0L)
+    ranges(0).length should be (30)
+    ranges(0).stripes should be (stripes)
+  }
+
+  test("plan ranges with gap between stripes") {
+    // stripe 1 is pruned, gap between stripe 0 and stripe 2 is 10 bytes
+    val stripes = Array(stripe(0, 0L, 10), stripe(2, 20L, 10), stripe(3, 50L, 10))
+    val ranges = StripeRange.plan(stripes, 10L, 1024L)
+    ranges.length should be (2)
+    ranges(0).stripes should be (Array(stripes(0), stripes(1)))
+    ranges(0).length should be (30)
+    ranges(1).stripes should be (Array(stripes(2)))
+    ranges(1).offset should be (50L)
+  }
+
+  test("plan ranges with maximum size") {
+    val stripes = Array(stripe(0, 0L, 10), stripe(1, 10L, 10), stripe(2, 20L, 10))
+    val ranges = StripeRange.plan(stripes, 0L, 20L)
+    ranges.length should be (2)
+    ranges(0).stripes should be (Array(stripes(0), stripes(1)))
+    ranges(1).stripes should be (Array(stripes(2)))
+  }
+
+  test("read range and slice stripes") {
+    withTempDir { dir =>
+      val out = create(dir / "file")
+      // first 2 bytes are stream offset, stripe 1 is pruned
+      out.write(Array[Byte](-1, -1, 1, 2, 3, 4, 5, 6, 7, 8, 9))
+      out.close()
+      val stripes = Array(stripe(0, 0L, 3), stripe(2, 6L, 3))
+      val ranges = StripeRange.plan(stripes, 8L, 1024L)
+      ranges.length should be (1)
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      try {
+        val buffers = ranges(0).read(in, 2L)
+        buffers.length should be (2)
+        buffers.map(_.id) should be (Array(0, 2))
+        buffers.map(_.length) should be (Array(3, 3))
+        val buf = ByteBuffer.allocate(3)
+        buffers(1).copy(buf)
+        buf.array() should be (Array[Byte](7, 8, 9))
+        // positional read does not modify stream position
+        in.getPos should be (0L)
+      } finally {
+        in.close()
+      }
+    }
+  }
+
+  test("toString method") {
+    val range = new StripeRange(Array(stripe(0, 0L, 10), stripe(1, 12L, 10)))
+    range.toString should be ("StripeRange[offset=0, length=22, stripes=2]")
+  }
+}
@@ -340,6 +340,106 @@ class TypeDescriptionSuite extends UnitTestSuite {
     td2.toString should be (td1.toString)
   }
 
+  test("init type description with column groups - check fields") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", LongType) ::
+      StructField("col3", IntegerType) ::
+      StructField("col4", StringType) ::
+      StructField("col5", StringType) :: Nil)
+    val td = new TypeDescription(schema, Array("col4"), Array(Array("col5", "col2"), Array("col1")))
+
+    td.numGroups() should be (3)
+    td.indexFields() should be (Array(
+      new TypeSpec(StructField("col4", StringType), true, 0, 3)
+    ))
+    td.dataFields() should be (Array(
+      new TypeSpec(StructField("col5", StringType), false, 1, 4, 0),
+      new TypeSpec(StructField("col2", LongType), false, 2, 1, 0),
+      new TypeSpec(StructField("col1", IntegerType), false, 3, 0, 1),
+      new TypeSpec(StructField("col3", IntegerType), false, 4, 2, 2)
+    ))
+    td.groupFields(0).map(_.field.name) should be (Array("col5", "col2"))
+    td.groupFields(1).map(_.field.name) should be (Array("col1"))
+    td.groupFields(2).map(_.field.name) should be (Array("col3"))
+
+    // all data fields are grouped
+    val td2 = new TypeDescription(schema, Array("col4"),
+      Array(Array("col1", "col2"), Array("col3", "col5")))
+    td2.numGroups() should be (2)
+    td2.groupFields(1).map(_.field.name) should be (Array("col3", "col5"))
+
+    // no groups
+    new TypeDescription(schema, Array("col4"), null).numGroups() should be (0)
+    new TypeDescription(schema, Array("col4"), Array.empty[Array[String]]).numGroups() should be (0)
+    new TypeDescription(schema, Array("col4")).dataFields().map(_.group) should be (
+      Array(-1, -1, -1, -1))
+  }
+
+  test("data columns of type description") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", LongType) ::
+      StructField("col3", StringType) :: Nil)
+    // each data field is a separate column without groups
+    val td1 = new TypeDescription(schema, Array("col3"))
+    td1.dataColumns().map(_.map(_.field.name).toSeq).toSeq should be (
+      Seq(Seq("col1"), Seq("col2")))
+    // columns are column groups
+    val td2 = new TypeDescription(schema, Array.empty[String], Array(Array("col3", "col1")))
+    td2.dataColumns().map(_.map(_.field.name).toSeq).toSeq should be (
+      Seq(Seq("col3", "col1"), Seq("col2")))
+    // no data fields
+    new TypeDescription(schema, Array("col1", "col2", "col3")).dataColumns().length should be (0)
+  }
+
+  test("init type description with column groups - invalid groups") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", LongType) ::
+      StructField("col3", StringType) :: Nil)
+    var err = intercept[IllegalArgumentException] {
+      new TypeDescription(schema, Array("col1"), Array(Array("col2"), Array.empty[String]))
+    }
+    err.getMessage should be ("Empty column group 1 in list [[col2], []]")
+
+    err = intercept[IllegalArgumentException] {
+      new TypeDescription(schema, Array("col1"), Array(Array("col2", "col1")))
+    }
+    err.getMessage should be ("Column 'col1' of group 0 is an index column or belongs to " +
+      "another group in list [[col2, col1]]")
+
+    err = intercept[IllegalArgumentException] {
+      new TypeDescription(schema, Array("col1"), Array(Array("col2"), Array("col3", "col2")))
+    }
+    assert(err.getMessage.contains("Column 'col2' of group 1"))
+
+    err = intercept[IllegalArgumentException] {
+      new TypeDescription(schema, Array("col1"), Array(Array("col4")))
+    }
+    assert(err.getMessage.contains("col4"))
+  }
+
+  test("write/read type description with column groups") {
+    val schema = StructType(
+      StructField("col1", IntegerType) ::
+      StructField("col2", LongType) ::
+      StructField("col3", IntegerType) ::
+      StructField("col4", StringType) ::
+      StructField("col5", StringType) :: Nil)
+    val td1 = new TypeDescription(schema, Array("col4"), Array(Array("col5", "col2")))
+    val out = new OutputBuffer()
+    td1.writeTo(out)
+
+    val in = new ByteArrayInputStream(out.array())
+    val td2 = TypeDescription.readFrom(in)
+    td2.equals(td1) should be (true)
+    td2.toString should be (td1.toString)
+    td2.numGroups() should be (2)
+    td2.groupFields(0) should be (td1.groupFields(0))
+    td2.groupFields(1) should be (td1.groupFields(1))
+  }
+
   test("convert to struct type") {
     val schema = StructType(
       StructField("col1", IntegerType) ::
@@ -76,6 +76,14 @@ class TypeSpecSuite extends UnitTestSuite {
     spec.equals(spec3) should be (false)
     val spec4 = new TypeSpec(field, true, pos, origPos + 1);
     spec.equals(spec4) should be (false)
+    val spec5 = new TypeSpec(field, true, pos, origPos, 0);
+    spec.equals(spec5) should be (false)
+  }
+
+  test("check toString with group") {
+    val spec = new TypeSpec(StructField("col", StringType), false, 2, 1, 0)
+    spec.group() should be (0)
+    spec.toString should be ("TypeSpec(col: string, indexed=false, position=2, origPos=1, group=0)")
   }
 
   test("hashCode") {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff.io
+
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class BufferPoolSuite extends UnitTestSuite {
+  test("fail to create pool with negative max bytes") {
+    val err = intercept[IllegalArgumentException] {
+      new BufferPool(-1L)
+    }
+    err.getMessage should be ("Negative max bytes: -1")
+  }
+
+  test("acquire array of size class") {
+    val pool = new BufferPool(1024 * 1024L)
+    pool.acquire(0).length should be (1024)
+    pool.acquire(16).length should be (1024)
+    pool.acquire(1024).length should be (1024)
+    pool.acquire(1025).length should be (2048)
+    pool.acquire(5000).length should be (8192)
+    pool.pooledBytes should be (0)
+  }
+
+  test("reuse released array") {
+    val pool = new BufferPool(1024 * 1024L)
+    val arr = pool.acquire(100)
+    pool.release(arr)
+    pool.pooledBytes should be (1024)
+    // array of the same size class is returned
+    (pool.acquire(900) eq arr) should be (true)
+    pool.pooledBytes should be (0)
+    // array of the different size class is allocated
+    pool.release(arr)
+    (pool.acquire(2000) eq arr) should be (false)
+  }
+
+  test("discard arrays that are not of size class") {
+    val pool = new BufferPool(1024 * 1024L)
+    pool.release(new Array[Byte](1000))
+    pool.release(new Array[Byte](16))
+    pool.release(null)
+    pool.pooledBytes should be (0)
+  }
+
+  test("discard arrays that exceed max bytes") {
+    val pool = new BufferPool(2048L)
+    pool.release(new Array[Byte](1024))
+    pool.release(new Array[Byte](1024))
+    pool.release(new Array[Byte](1024))
+    pool.pooledBytes should be (2048)
+    pool.release(new Array[Byte](4096))
+    pool.pooledBytes should be (2048)
+  }
+
+  test("evict arrays when max bytes is reduced") {
+    val pool = new BufferPool(8192L)
+    pool.release(new Array[Byte](1024))
+    pool.release(new Array[Byte](4096))
+    pool.pooledBytes should be (5120)
+    pool.setMaxBytes(2048L)
+    pool.maxBytes should be (2048L)
+    pool.pooledBytes should be (1024)
+    pool.setMaxBytes(0L)
+    pool.pooledBytes should be (0)
+    pool.release(new Array[Byte](1024))
+    pool.pooledBytes should be (0)
+  }
+
+  test("shared pool") {
+    (BufferPool.shared() eq BufferPool.shared()) should be (true)
+    val maxBytes = BufferPool.shared().maxBytes
+    try {
+      BufferPool.shared(1024L).maxBytes should be (1024L)
+    } finally {
+      BufferPool.shared(maxBytes)
+    }
+  }
+
+  test("toString method") {
+    val pool = new BufferPool(1024L)
+    pool.toString should be ("BufferPool[max_bytes=1024, pooled_bytes=0]")
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.github.sadikovi.riff.io
+
+import java.io.IOException
+import java.nio.ByteBuffer
+
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class ChunkIndexSuite extends UnitTestSuite {
+  test("add chunks to index") {
+    val index = new ChunkIndex()
+    index.numChunks should be (0)
+    index.chunkAt(0L) should be (-1)
+    for (i <- 0 until 20) {
+      index.add(i * 10, i * 100L)
+    }
+    index.numChunks should be (20)
+    index.offset(3) should be (30)
+    index.uncompressedOffset(3) should be (300L)
+    index.chunkAt(0L) should be (0)
+    index.chunkAt(99L) should be (0)
+    index.chunkAt(100L) should be (1)
+    index.chunkAt(1950L) should be (19)
+    index.chunkAt(Long.MaxValue) should be (19)
+  }
+
+  test("fail to add chunk out of order") {
+    val index = new ChunkIndex()
+    index.add(0, 0L)
+    var err = intercept[IllegalArgumentException] { index.add(0, 10L) }
+    err.getMessage should be ("Invalid chunk [0, 10] after 1 chunks")
+    err = intercept[IllegalArgumentException] { index.add(10, 0L) }
+    err.getMessage should be ("Invalid chunk [10, 0] after 1 chunks")
+    err = intercept[IllegalArgumentException] { new ChunkIndex(Array(1), Array.empty[Long]) }
+    assert(err.getMessage.contains("Invalid chunk offsets"))
+  }
+
+  test("fail to get chunk out of bounds") {
+    val index = new ChunkIndex(Array(0, 10), Array(0L, 100L))
+    intercept[IndexOutOfBoundsException] { index.offset(2) }
+    intercept[IndexOutOfBoundsException] { index.uncompressedOffset(-1) }
+  }
+
+  test("write/read chunk index") {
+    val index = new ChunkIndex()
+    for (i <- 0 until 10) {
+      index.add(i * 12, i * 64L)
+    }
+    val out = new OutputBuffer()
+    index.writeExternal(out)
+    val res = ChunkIndex.readExternal(ByteBuffer.wrap(out.array()))
+    res should be (index)
+    res.hashCode should be (index.hashCode)
+    res should not be (new ChunkIndex(Array(0), Array(0L)))
+  }
+
+  test("fail to read invalid chunk index") {
+    val out = new OutputBuffer()
+    out.writeInt(2)
+    out.writeInt(10)
+    out.writeLong(0L)
+    out.writeInt(5)
+    out.writeLong(10L)
+    val err = intercept[IOException] {
+      ChunkIndex.readExternal(ByteBuffer.wrap(out.array()))
+    }
+    err.getMessage should be ("Invalid chunk [5, 10] after 1 chunks")
+  }
+}
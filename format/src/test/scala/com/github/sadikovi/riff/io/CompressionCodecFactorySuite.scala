@@ -38,6 +38,7 @@ class CompressionCodecFactorySuite extends UnitTestSuite {
     val codec = new CompressionCodec() {
       override def compress(in: ByteBuffer, out: ByteBuffer, overflow: ByteBuffer): Boolean = false
       override def decompress(in: ByteBuffer, out: ByteBuffer): Unit = { }
+      override def supportsDirectBuffers(): Boolean = false
       override def reset(): Unit = { }
       override def close(): Unit = { }
     }
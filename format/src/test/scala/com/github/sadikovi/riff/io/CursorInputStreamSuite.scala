@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff.io
+
+import java.io.{EOFException, IOException}
+
+import org.apache.hadoop.fs.FSDataInputStream
+
+import com.github.sadikovi.testutil.implicits._
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class CursorInputStreamSuite extends UnitTestSuite {
+  test("read bytes sequentially with cursor") {
+    withTempDir { dir =>
+      val out = create(dir / "file")
+      out.write(Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      out.close()
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val cursor = new CursorInputStream(in, 7)
+      cursor.read() should be (1)
+      val bytes = new Array[Byte](5)
+      cursor.read(bytes, 0, 5) should be (5)
+      bytes should be (Array[Byte](2, 3, 4, 5, 6))
+      cursor.getPos should be (6)
+      cursor.available should be (1)
+      cursor.read(bytes, 0, 5) should be (1)
+      cursor.read() should be (-1)
+      // shared stream is not moved by cursor
+      in.getPos should be (0)
+      cursor.close()
+      in.close()
+    }
+  }
+
+  test("keep independent positions for cursors over the same stream") {
+    withTempDir { dir =>
+      val out = create(dir / "file")
+      out.write(Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      out.close()
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val cursor1 = new FSDataInputStream(new CursorInputStream(in, 7))
+      val cursor2 = new FSDataInputStream(new CursorInputStream(in, 7))
+      cursor1.seek(4)
+      cursor2.skip(1)
+      cursor1.read() should be (5)
+      cursor2.read() should be (2)
+      cursor1.getPos should be (5)
+      cursor2.getPos should be (2)
+      val bytes = new Array[Byte](3)
+      cursor2.readFully(4, bytes, 0, 3)
+      bytes should be (Array[Byte](5, 6, 7))
+      cursor2.getPos should be (2)
+      intercept[EOFException] {
+        cursor2.seek(8)
+      }
+      // closing cursor does not close shared stream
+      cursor1.close()
+      cursor2.read() should be (3)
+      cursor2.close()
+      in.read() should be (1)
+      in.close()
+    }
+  }
+
+  test("fail to read closed cursor") {
+    withTempDir { dir =>
+      touch(dir / "file")
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val cursor = new CursorInputStream(in, 0)
+      cursor.close()
+      cursor.toString should be ("CursorInputStream[length=0, position=0, closed=true]")
+      val err = intercept[IOException] {
+        cursor.read()
+      }
+      err.getMessage should be ("Cursor is closed")
+      in.close()
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff.io
+
+import java.io.{EOFException, File, IOException}
+import java.nio.ByteBuffer
+
+import org.apache.hadoop.fs.{FSDataInputStream, Path}
+
+import com.github.sadikovi.testutil.implicits._
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class MappedInputStreamSuite extends UnitTestSuite {
+  private def writeBytes(path: Path, bytes: Array[Byte]): File = {
+    val out = create(path)
+    out.write(bytes)
+    out.close()
+    new File(path.toUri.getPath)
+  }
+
+  test("read bytes sequentially") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      val in = MappedInputStream.open(file, 3)
+      in.length should be (7)
+      in.read() should be (1)
+      val bytes = new Array[Byte](5)
+      in.read(bytes, 0, 5) should be (5)
+      bytes should be (Array[Byte](2, 3, 4, 5, 6))
+      in.getPos should be (6)
+      in.available should be (1)
+      in.read(bytes, 0, 5) should be (1)
+      in.read() should be (-1)
+      in.close()
+    }
+  }
+
+  test("positional read across regions") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      val in = MappedInputStream.open(file, 3)
+      val bytes = new Array[Byte](4)
+      in.readFully(2, bytes, 0, 4)
+      bytes should be (Array[Byte](3, 4, 5, 6))
+      in.read(5, bytes, 0, 4) should be (2)
+      in.read(7, bytes, 0, 4) should be (-1)
+      in.getPos should be (0)
+      intercept[EOFException] {
+        in.readFully(5, bytes, 0, 4)
+      }
+      in.close()
+    }
+  }
+
+  test("read into byte buffer") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      val in = MappedInputStream.open(file, 3)
+      in.seek(1)
+      val buf = ByteBuffer.allocate(4)
+      in.read(buf) should be (4)
+      buf.array() should be (Array[Byte](2, 3, 4, 5))
+      in.getPos should be (5)
+      in.close()
+    }
+  }
+
+  test("seek and skip within file") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4))
+      val in = MappedInputStream.open(file)
+      in.seek(3)
+      in.read() should be (4)
+      in.seek(0)
+      in.skip(10) should be (4)
+      in.getPos should be (4)
+      intercept[EOFException] {
+        in.seek(5)
+      }
+      in.close()
+    }
+  }
+
+  test("slice range of mapping") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5, 6, 7))
+      val in = MappedInputStream.open(file, 4)
+      in.canSlice(1, 3) should be (true)
+      in.canSlice(3, 2) should be (false)
+      in.canSlice(6, 2) should be (false)
+      val slice = in.slice(4, 3)
+      slice.position should be (0)
+      slice.remaining should be (3)
+      slice.get(0) should be (5)
+      val err = intercept[IOException] {
+        in.slice(3, 2)
+      }
+      assert(err.getMessage.contains("Cannot slice range [3, 2]"))
+      in.close()
+    }
+  }
+
+  test("read buffer from mapped and regular stream") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5))
+      val mapped = new FSDataInputStream(MappedInputStream.open(file))
+      val buf1 = MappedInputStream.readBuffer(mapped, 1, 3)
+      buf1.isDirect should be (true)
+      buf1.get() should be (2)
+      mapped.close()
+
+      val in = open(dir / "file").asInstanceOf[FSDataInputStream]
+      val buf2 = MappedInputStream.readBuffer(in, 1, 3)
+      buf2.isDirect should be (false)
+      buf2.get() should be (2)
+      in.close()
+    }
+  }
+
+  test("duplicate stream with independent position") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3, 4, 5))
+      val in = MappedInputStream.open(file, 3)
+      in.seek(3)
+      val copy = in.duplicate()
+      copy.getPos should be (0)
+      copy.read() should be (1)
+      in.read() should be (4)
+      in.close()
+      // mapping is still available to duplicate
+      copy.read() should be (2)
+      copy.slice(3, 2) should be (ByteBuffer.wrap(Array[Byte](4, 5)))
+      copy.close()
+    }
+  }
+
+  test("fail to read closed stream") {
+    withTempDir { dir =>
+      val file = writeBytes(dir / "file", Array[Byte](1, 2, 3))
+      val in = MappedInputStream.open(file)
+      in.close()
+      in.toString should be ("MappedInputStream[length=3, position=0, closed=true]")
+      val err = intercept[IOException] {
+        in.read()
+      }
+      err.getMessage should be ("Stream is closed")
+    }
+  }
+}
@@ -41,6 +41,8 @@ class StreamSuite extends UnitTestSuite {
     out.writeInt(23)
     out.write(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8, 9, 10))
     out.flush()
+    // number of uncompressed bytes
+    out.bytesWritten() should be (46L)
 
     val in = new InStream(8, new ZlibCodec(), new StripeInputBuffer(1.toByte, buf.array()))
     in.readLong() should be (121L)
@@ -83,4 +85,146 @@ class StreamSuite extends UnitTestSuite {
     in.read() should be (10)
     in.available() should be (0)
   }
+
+  test("save compressed outstream and load instream with buffer pool") {
+    val pool = new BufferPool(1024 * 1024L)
+    val buf = new StripeOutputBuffer(1.toByte, pool, 16)
+    val out = new OutStream(8, new ZlibCodec(), buf, pool)
+    for (i <- 0 until 16) {
+      out.writeLong(i)
+    }
+    out.flush()
+    val bytes = buf.array()
+    out.close()
+    // outstream buffers and stripe array are returned into pool
+    pool.pooledBytes should be (4 * 1024)
+
+    val in = new InStream(8, new ZlibCodec(), new StripeInputBuffer(1.toByte, bytes), pool)
+    for (i <- 0 until 16) {
+      in.readLong() should be (i)
+    }
+    in.available() should be (0)
+    in.close()
+    pool.pooledBytes should be (4 * 1024)
+  }
+
+  test("load uncompressed instream with direct buffers and reset") {
+    val buf = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(8, null, buf)
+    for (i <- 0 until 4) {
+      out.writeLong(i)
+    }
+    out.flush()
+
+    val in = new InStream(8, null, new StripeInputBuffer(1.toByte, buf.array()), null, true)
+    for (i <- 0 until 4) {
+      in.readLong() should be (i)
+    }
+    in.available() should be (0)
+    // stream is reused for another stripe
+    in.reset(new StripeInputBuffer(2.toByte, buf.array()))
+    in.readLong() should be (0)
+    in.skip(16) should be (16)
+    in.readLong() should be (3)
+    in.available() should be (0)
+    in.close()
+  }
+
+  test("fail to create instream with direct buffers for unsupported codec") {
+    val err = intercept[IllegalArgumentException] {
+      new InStream(8, new ZlibCodec(), new StripeInputBuffer(1.toByte, Array[Byte]()), null, true)
+    }
+    assert(err.getMessage.contains("does not support direct buffers"))
+  }
+
+  test("build chunk index for compressed outstream") {
+    val buf = new StripeOutputBuffer(1.toByte)
+    val out = new OutStream(64, new ZlibCodec(), buf)
+    for (i <- 0 until 100) {
+      out.writeLong(i / 4)
+    }
+    out.flush()
+    val index = out.chunkIndex()
+    index.numChunks should be (13)
+    for (i <- 0 until index.numChunks) {
+      index.uncompressedOffset(i) should be (i * 64L)
+      // each chunk starts with header that contains chunk length
+      val header = java.nio.ByteBuffer.wrap(buf.array(), index.offset(i), 4).getInt & ~(1 << 31)
+      if (i + 1 < index.numChunks) {
+        index.offset(i + 1) should be (index.offset(i) + 4 + header)
+      } else {
+        buf.length() should be (index.offset(i) + 4 + header)
+      }
+    }
+    // uncompressed stream does not have chunks
+    new OutStream(64, null, new StripeOutputBuffer(1.toByte)).chunkIndex() should be (null)
+  }
+
+  test("skip compressed chunks with chunk index without decompression") {
+    for (incompressible <- Seq(false, true)) {
+      val buf = new StripeOutputBuffer(1.toByte)
+      val out = new OutStream(64, new ZlibCodec(), buf)
+      val rand = new scala.util.Random(42)
+      val values = (0 until 100).map { i => if (incompressible) rand.nextLong else i / 4L }
+      for (value <- values) {
+        out.writeLong(value)
+      }
+      out.flush()
+
+      class CountingCodec extends ZlibCodec {
+        var decompressed = 0
+        override def decompress(in: java.nio.ByteBuffer, out: java.nio.ByteBuffer): Unit = {
+          decompressed += 1
+          super.decompress(in, out)
+        }
+      }
+
+      for (useIndex <- Seq(false, true)) {
+        val codec = new CountingCodec()
+        val in = new InStream(64, codec, new StripeInputBuffer(1.toByte, buf.array()))
+        if (useIndex) in.setChunkIndex(out.chunkIndex())
+        in.readLong() should be (values(0))
+        in.skip(8 * 49) should be (8 * 49)
+        in.readLong() should be (values(50))
+        in.skip(8) should be (8)
+        in.readLong() should be (values(52))
+        in.skip(8 * 40) should be (8 * 40)
+        in.readLong() should be (values(93))
+        if (useIndex && !incompressible) {
+          // first chunk and chunks of read values are decompressed
+          codec.decompressed should be (3)
+        }
+        // skip beyond the end of the stream
+        in.skip(1000) should be (8 * 6)
+        in.available() should be (0)
+        in.close()
+      }
+    }
+  }
+
+  test("report position of uncompressed and compressed instream") {
+    for (codec <- Seq(null, new ZlibCodec())) {
+      val buf = new StripeOutputBuffer(1.toByte)
+      val out = new OutStream(64, codec, buf)
+      for (i <- 0 until 100) {
+        out.writeLong(i)
+      }
+      out.flush()
+      val in = new InStream(64, codec, new StripeInputBuffer(1.toByte, buf.array()))
+      if (codec != null) in.setChunkIndex(out.chunkIndex())
+      in.position() should be (0)
+      in.readLong() should be (0)
+      in.position() should be (8)
+      in.skip(8 * 20) should be (8 * 20)
+      in.position() should be (8 * 21)
+      in.readLong() should be (21)
+      in.position() should be (8 * 22)
+      in.skip(8 * 70) should be (8 * 70)
+      in.readLong() should be (92)
+      in.position() should be (8 * 93)
+      in.skip(1000) should be (8 * 7)
+      in.position() should be (800)
+      in.close()
+    }
+  }
 }
@@ -22,7 +22,7 @@
 
 package com.github.sadikovi.riff.io
 
-import java.io.IOException
+import java.io.{ByteArrayInputStream, DataInputStream, IOException}
 import java.nio.ByteBuffer
 
 import com.github.sadikovi.testutil.UnitTestSuite
@@ -92,4 +92,150 @@ class StripeInputBufferSuite extends UnitTestSuite {
     // should copy bytes partially, overwrites values already in the buffer
     out.array() should be (Array[Byte](6, 7, 8, 4, 5))
   }
+
+  test("init with null input stream") {
+    val err = intercept[IllegalArgumentException] {
+      new StripeInputBuffer(1.toByte, null.asInstanceOf[DataInputStream], 8)
+    }
+    err.getMessage should be ("Null input stream for stripe")
+  }
+
+  test("init streamed stripe with negative length") {
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3)))
+    val err = intercept[IllegalArgumentException] {
+      new StripeInputBuffer(1.toByte, in, -1)
+    }
+    err.getMessage should be ("Negative length: -1")
+  }
+
+  test("copy data into buffer from streamed stripe") {
+    // stream contains more bytes than stripe, buffer should not read beyond stripe length
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8, 9)))
+    val buf = new StripeInputBuffer(1.toByte, in, 8)
+    buf.isStreamed should be (true)
+    buf.length should be (8)
+    val out = ByteBuffer.allocate(5)
+    buf.copy(out)
+    buf.position() should be (5)
+    out.array() should be (Array[Byte](1, 2, 3, 4, 5))
+
+    out.clear()
+    buf.copy(out)
+    buf.position() should be (8)
+    out.remaining() should be (3)
+    out.array() should be (Array[Byte](6, 7, 8, 4, 5))
+    in.read() should be (9)
+  }
+
+  test("seek in streamed stripe") {
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8)))
+    val buf = new StripeInputBuffer(1.toByte, in, 8)
+    buf.seek(3)
+    buf.position() should be (3)
+    val out = ByteBuffer.allocate(2)
+    buf.copy(out)
+    out.array() should be (Array[Byte](4, 5))
+    val err = intercept[IOException] {
+      buf.seek(2)
+    }
+    assert(err.getMessage.contains("Cannot set position 2"))
+  }
+
+  test("close streamed stripe does not close input stream") {
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3, 4)))
+    val buf = new StripeInputBuffer(1.toByte, in, 2)
+    buf.toString should be ("StripeInput[id=1, offset=0, closed=false]")
+    buf.close()
+    buf.toString should be ("StripeInput[id=1, offset=0, closed=true]")
+    in.read() should be (1)
+  }
+
+  test("copy data into buffer from slice of data array") {
+    val buf = new StripeInputBuffer(1.toByte, Array[Byte](1, 2, 3, 4, 5, 6, 7, 8), 2, 4)
+    buf.length should be (4)
+    buf.seek(1)
+    val out = ByteBuffer.allocate(5)
+    buf.copy(out)
+    buf.position() should be (4)
+    out.remaining() should be (3)
+    out.array() should be (Array[Byte](4, 5, 6, 0, 0))
+  }
+
+  test("init with invalid slice of data array") {
+    val err = intercept[IllegalArgumentException] {
+      new StripeInputBuffer(1.toByte, Array[Byte](1, 2, 3, 4), 2, 3)
+    }
+    err.getMessage should be ("Invalid slice [2, 3] for data of 4 bytes")
+  }
+
+  test("copy data into buffer from byte buffer") {
+    val src = ByteBuffer.wrap(Array[Byte](1, 2, 3, 4, 5, 6, 7, 8))
+    src.position(2)
+    val buf = new StripeInputBuffer(1.toByte, src)
+    buf.length should be (6)
+    val out = ByteBuffer.allocate(4)
+    buf.copy(out)
+    out.array() should be (Array[Byte](3, 4, 5, 6))
+    out.clear()
+    buf.copy(out)
+    out.remaining() should be (2)
+    buf.position() should be (6)
+    // source buffer is not modified
+    src.position() should be (2)
+    buf.close()
+    buf.toString should be ("StripeInput[id=1, offset=0, closed=true]")
+  }
+
+  test("copy data into direct buffer from streamed stripe") {
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3, 4, 5, 6)))
+    val buf = new StripeInputBuffer(1.toByte, in, 5)
+    val out = ByteBuffer.allocateDirect(4)
+    buf.copy(out)
+    out.remaining() should be (4)
+    Seq(out.get, out.get, out.get, out.get) should be (Seq(1, 2, 3, 4))
+    out.clear()
+    buf.copy(out)
+    out.remaining() should be (1)
+    out.get should be (5)
+    in.read() should be (6)
+  }
+
+  test("slice data array and byte buffer") {
+    val array = new StripeInputBuffer(1.toByte, Array[Byte](1, 2, 3, 4, 5, 6, 7, 8), 1, 6)
+    val buffer = new StripeInputBuffer(1.toByte, ByteBuffer.wrap(Array[Byte](0, 2, 3, 4, 5, 6, 7)))
+    for (buf <- Seq(array, buffer)) {
+      val slice1 = buf.slice(0, 2)
+      val slice2 = buf.slice(2, 4)
+      slice1.length should be (2)
+      slice2.length should be (4)
+      val out = ByteBuffer.allocate(4)
+      slice2.copy(out)
+      out.array() should be (Array[Byte](4, 5, 6, 7))
+      out.clear()
+      slice1.copy(out)
+      out.remaining() should be (2)
+      Seq(out.get, out.get) should be (Seq(2, 3))
+      // slices keep separate cursors, stripe is not modified
+      buf.position() should be (0)
+      slice2.position() should be (4)
+    }
+  }
+
+  test("fail to slice streamed stripe or invalid range") {
+    val in = new DataInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3)))
+    var err: Exception = intercept[IllegalStateException] {
+      new StripeInputBuffer(1.toByte, in, 3).slice(0, 1)
+    }
+    assert(err.getMessage.contains("Cannot slice streamed"))
+    err = intercept[IllegalArgumentException] {
+      new StripeInputBuffer(1.toByte, Array[Byte](1, 2, 3)).slice(2, 2)
+    }
+    err.getMessage should be ("Invalid slice [2, 2] for stripe of 3 bytes")
+    val buf = new StripeInputBuffer(1.toByte, Array[Byte](1, 2, 3))
+    buf.close()
+    err = intercept[IllegalStateException] {
+      buf.slice(0, 1)
+    }
+    assert(err.getMessage.contains("Cannot slice closed"))
+  }
 }
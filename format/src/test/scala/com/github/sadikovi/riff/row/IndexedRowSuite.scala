@@ -147,4 +147,93 @@ class IndexedRowSuite extends UnitTestSuite {
     row.toString() should be (
       "[nulls=false, fields=8, index_region=null, data_region=null]")
   }
+
+  test("indexed row - set regions as slices of array") {
+    // integer values of 123 and 124 after 2 bytes of padding
+    val bytes = Array[Byte](9, 9, 0, 0, 0, 123, 0, 0, 0, 124)
+    val row = new IndexedRow(1L, 0L, Array(0, 0))
+    row.setIndexRegion(bytes, 2, 4)
+    row.setDataRegion(bytes, 6, 4)
+    row.getInt(0) should be (123)
+    row.getInt(1) should be (124)
+    row.toString should be (
+      "[nulls=false, fields=2, index_region=[0, 0, 0, 123], data_region=[0, 0, 0, 124]]")
+  }
+
+  test("indexed row - fail to set invalid slice") {
+    val row = new IndexedRow(1L, 0L, Array(0, 0))
+    val err = intercept[IllegalArgumentException] {
+      row.setIndexRegion(Array[Byte](1, 2, 3, 4), 2, 4)
+    }
+    err.getMessage should be ("Invalid region [2, 4] for array of 4 bytes")
+  }
+
+  test("indexed row - copy index region") {
+    val bytes = Array[Byte](0, 0, 0, 123)
+    val row = new IndexedRow(1L, 0L, Array(0))
+    row.setIndexRegion(bytes, 0, 4)
+    row.copyIndexRegion()
+    bytes(3) = 1
+    row.getInt(0) should be (123)
+  }
+
+  test("indexed row - reset row") {
+    val row = new IndexedRow(1L, 0L, Array(0, 0))
+    row.setIndexRegion(Array[Byte](0, 0, 0, 1))
+    row.setDataRegion(Array[Byte](0, 0, 0, 2))
+    row.reset(2L, Array(0, -1))
+    row.hasIndexRegion() should be (false)
+    row.hasDataRegion() should be (false)
+    row.isNullAt(1) should be (true)
+
+    val err = intercept[IllegalArgumentException] {
+      row.reset(0L, Array(0))
+    }
+    err.getMessage should be ("Expected 2 fields, found 1")
+  }
+
+  test("indexed row - lazy data region") {
+    var loads = 0
+    val loader = new IndexedRow.DataRegionLoader() {
+      override def loadDataRegion(row: IndexedRow): Unit = {
+        loads += 1
+        row.setDataRegion(Array[Byte](0, 0, 0, 2))
+      }
+    }
+    val row = new IndexedRow(1L, 0L, Array(0, 0))
+    row.setIndexRegion(Array[Byte](0, 0, 0, 1))
+    row.setLazyDataRegion(loader)
+    row.hasLazyDataRegion() should be (true)
+    row.hasDataRegion() should be (false)
+    row.toString should include ("data_region=lazy")
+
+    // index field does not load data region
+    row.getInt(0) should be (1)
+    loads should be (0)
+    row.getInt(1) should be (2)
+    row.getInt(1) should be (2)
+    loads should be (1)
+    row.hasLazyDataRegion() should be (false)
+    row.hasDataRegion() should be (true)
+
+    // copy loads data region
+    row.setLazyDataRegion(loader)
+    row.copy().getInt(1) should be (2)
+    loads should be (2)
+
+    // reset discards loader
+    row.setLazyDataRegion(loader)
+    row.reset(0L, Array(0, 0))
+    row.hasLazyDataRegion() should be (false)
+    row.loadDataRegion()
+    loads should be (2)
+  }
+
+  test("indexed row - null lazy data region loader") {
+    val row = new IndexedRow(1L, 0L, Array(0, 0))
+    val err = intercept[IllegalArgumentException] {
+      row.setLazyDataRegion(null)
+    }
+    err.getMessage should be ("Null loader for data region")
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff.row
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.types._
+import org.apache.spark.unsafe.types.UTF8String
+
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class ProjectedRowSuite extends UnitTestSuite {
+  test("fail to initialize with null ordinals") {
+    val err = intercept[IllegalArgumentException] {
+      new ProjectedRow(null)
+    }
+    err.getMessage should be ("Null ordinals")
+  }
+
+  test("project fields of underlying row") {
+    val row = new ProjectedRow(Array(2, 0))
+    row.numFields should be (2)
+    row.setRow(InternalRow(1, UTF8String.fromString("a"), 3L)) should be (row)
+    row.getLong(0) should be (3L)
+    row.getInt(1) should be (1)
+    row.get(0, LongType) should be (3L)
+    row.isNullAt(0) should be (false)
+    row.anyNull should be (false)
+
+    row.setRow(InternalRow(2, UTF8String.fromString("b"), null))
+    row.isNullAt(0) should be (true)
+    row.getInt(1) should be (2)
+    row.anyNull should be (true)
+  }
+
+  test("project string fields") {
+    val row = new ProjectedRow(Array(1)).setRow(InternalRow(1, UTF8String.fromString("a")))
+    row.getUTF8String(0) should be (UTF8String.fromString("a"))
+    row.get(0, StringType) should be (UTF8String.fromString("a"))
+  }
+
+  test("copy projected row") {
+    val underlying = new ProjectionRow(2)
+    underlying.update(0, 1)
+    underlying.update(1, 2)
+    val row = new ProjectedRow(Array(1, 0)).setRow(underlying)
+    val copy = row.copy()
+    underlying.update(1, 3)
+    row.getInt(0) should be (3)
+    copy.getInt(0) should be (2)
+    copy.getInt(1) should be (1)
+  }
+}
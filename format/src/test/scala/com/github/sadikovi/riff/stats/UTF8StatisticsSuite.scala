@@ -139,4 +139,40 @@ class UTF8StatisticsSuite extends UnitTestSuite {
     stats.update(InternalRow(UTF8String.fromString("aaa")), 0)
     stats.toString should be ("UTF8[hasNulls=true, min=aaa, max=zzz]")
   }
+
+  test("truncate long min/max values when writing") {
+    val min = "a" * 100
+    val max = "b" * 100
+    val stats = new UTF8Statistics()
+    stats.update(InternalRow(UTF8String.fromString(min)), 0)
+    stats.update(InternalRow(UTF8String.fromString(max)), 0)
+    val buf = new OutputBuffer()
+    stats.writeExternal(buf)
+    val res = Statistics.readExternal(ByteBuffer.wrap(buf.array()))
+    res.getUTF8String(Statistics.ORD_MIN) should be (
+      UTF8String.fromString("a" * UTF8Statistics.MAX_VALUE_BYTES))
+    res.getUTF8String(Statistics.ORD_MAX) should be (
+      UTF8String.fromString("b" * (UTF8Statistics.MAX_VALUE_BYTES - 1) + "c"))
+    // truncated values are still valid bounds
+    assert(res.getUTF8String(Statistics.ORD_MIN).compareTo(UTF8String.fromString(min)) <= 0)
+    assert(res.getUTF8String(Statistics.ORD_MAX).compareTo(UTF8String.fromString(max)) > 0)
+  }
+
+  test("truncate min value at character boundary") {
+    // each character is 3 bytes, prefix should not split character
+    val bytes = ("\u4e2d" * 30).getBytes("UTF-8")
+    val res = UTF8Statistics.truncateMin(bytes)
+    res.length should be (63)
+    new String(res, "UTF-8") should be ("\u4e2d" * 21)
+  }
+
+  test("truncate max value, keep value if no ASCII character can be incremented") {
+    val bytes = ("\u4e2d" * 30).getBytes("UTF-8")
+    UTF8Statistics.truncateMax(bytes) should be (bytes)
+    val str = "x" + "\u4e2d" * 30
+    new String(UTF8Statistics.truncateMax(str.getBytes("UTF-8")), "UTF-8") should be ("y")
+    val short = "abc".getBytes("UTF-8")
+    UTF8Statistics.truncateMax(short) should be (short)
+    UTF8Statistics.truncateMin(short) should be (short)
+  }
 }
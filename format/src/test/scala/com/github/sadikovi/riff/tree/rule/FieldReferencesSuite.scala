@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017 sadikovi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.github.sadikovi.riff.tree.rule
+
+import org.apache.spark.sql.types._
+
+import com.github.sadikovi.riff.TypeDescription
+import com.github.sadikovi.riff.tree.FilterApi._
+import com.github.sadikovi.testutil.UnitTestSuite
+
+class FieldReferencesSuite extends UnitTestSuite {
+  val schema = StructType(
+    StructField("col1", IntegerType) ::
+    StructField("col2", StringType) ::
+    StructField("col3", LongType) :: Nil)
+
+  test("collect no ordinals for trivial tree") {
+    val rule = new FieldReferences()
+    TRUE.transform(rule) should be (TRUE)
+    rule.ordinals should be (Array.empty[Int])
+  }
+
+  test("collect sorted distinct ordinals and return copy of tree") {
+    val td = new TypeDescription(schema)
+    val tree = and(
+      or(eqt("col3", 1L), not(nvl("col1"))),
+      or(ge("col1", 1), in("col3", 1L, 2L)))
+    tree.analyze(td)
+    val rule = new FieldReferences()
+    val res = tree.transform(rule)
+    res should be (tree)
+    assert(!res.eq(tree))
+    rule.ordinals should be (Array(0, 2))
+  }
+}
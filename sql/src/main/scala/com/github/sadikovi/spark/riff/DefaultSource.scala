@@ -22,6 +22,8 @@
 
 package com.github.sadikovi.spark.riff
 
+import java.util.concurrent.atomic.AtomicBoolean
+
 import scala.collection.JavaConverters._
 
 import org.apache.hadoop.conf.Configuration
@@ -42,7 +44,7 @@ import org.slf4j.LoggerFactory
 import com.github.sadikovi.hadoop.riff.RiffOutputCommitter
 import com.github.sadikovi.riff.{Riff, TypeDescription}
 import com.github.sadikovi.riff.Riff.Options
-import com.github.sadikovi.riff.row.ProjectionRow
+import com.github.sadikovi.riff.row.{ProjectedRow, ProjectionRow}
 
 /**
  * Spark SQL datasource for Riff file format.
@@ -79,7 +81,13 @@ class DefaultSource
       case None => Array.empty
     }
     log.info(s"Found optional index fields as ${indexFields.mkString("[", ", ", "]")}")
-    val typeDesc = new TypeDescription(dataSchema, indexFields)
+    // column groups of data fields, if not set, data fields are written as single region
+    val groups: Array[Array[String]] = options.get(GROUPS_OPTION) match {
+      case Some(value) => parseGroups(value)
+      case None => Array.empty
+    }
+    log.info(s"Found optional column groups as ${groups.map(_.mkString(",")).mkString("; ")}")
+    val typeDesc = new TypeDescription(dataSchema, indexFields, groups)
     log.info(s"Using type description $typeDesc to write output")
 
     // set job configuration based on provided Spark options, if not set - noop
@@ -93,6 +101,23 @@ class DefaultSource
     conf.set(Options.STRIPE_ROWS,
       sparkSession.conf.get(SQL_RIFF_STRIPE_ROWS, s"${Options.STRIPE_ROWS_DEFAULT}"))
 
+    // set row index interval within stripe
+    conf.set(Options.ROW_INDEX_INTERVAL,
+      sparkSession.conf.get(SQL_RIFF_ROW_INDEX_INTERVAL, s"${Options.ROW_INDEX_INTERVAL_DEFAULT}"))
+
+    // set sorted stripes
+    conf.set(Options.STRIPE_SORTED,
+      sparkSession.conf.get(SQL_RIFF_STRIPE_SORTED, s"${Options.STRIPE_SORTED_DEFAULT}"))
+
+    // set separate index and data streams of stripe
+    conf.set(Options.STRIPE_SPLIT_STREAMS,
+      sparkSession.conf.get(SQL_RIFF_STRIPE_SPLIT_STREAMS,
+        s"${Options.STRIPE_SPLIT_STREAMS_DEFAULT}"))
+
+    // set columnar layout of stripe
+    conf.set(Options.STRIPE_COLUMNAR,
+      sparkSession.conf.get(SQL_RIFF_STRIPE_COLUMNAR, s"${Options.STRIPE_COLUMNAR_DEFAULT}"))
+
     // set column filters
     conf.set(Options.COLUMN_FILTER_ENABLED,
       sparkSession.conf.get(SQL_RIFF_COLUMN_FILTER_ENABLED,
@@ -102,6 +127,12 @@ class DefaultSource
     conf.set(Options.BUFFER_SIZE,
       sparkSession.conf.get(SQL_RIFF_BUFFER_SIZE, s"${Options.BUFFER_SIZE_DEFAULT}"))
 
+    // set maximum size of buffer pool shared by writers in executor, only if it is set explicitly,
+    // see `configureSharedResources()`
+    sparkSession.conf.getOption(SQL_RIFF_BUFFER_POOL_MAX_BYTES).foreach { value =>
+      conf.set(Options.BUFFER_POOL_MAX_BYTES, value)
+    }
+
     val committerClass = classOf[RiffOutputCommitter]
     log.info(s"Using output committer for Riff: ${committerClass.getCanonicalName}")
     conf.setClass(SPARK_OUTPUT_COMMITTER_CLASS, committerClass, classOf[RiffOutputCommitter])
@@ -151,7 +182,7 @@ class DefaultSource
           }
           val headerFile = headerFileStatus.get.getPath
           val fs = headerFile.getFileSystem(hadoopConf)
-          val reader = Riff.reader(fs, hadoopConf, headerFile)
+          val reader = Riff.reader(fs, hadoopConf, headerFile, headerFileStatus.get.getLen)
           reader.readFileInfo(readFooter = false)
           typeDescription = reader.getFileHeader().getTypeDescription()
       }
@@ -163,8 +194,8 @@ class DefaultSource
       sparkSession: SparkSession,
       options: Map[String, String],
       path: Path): Boolean = {
-    // TODO: update file format to support split
-    false
+    // file is split on stripe boundaries, each split reads stripes that start within its range
+    true
   }
 
   override def buildReader(
@@ -202,6 +233,52 @@ class DefaultSource
     hadoopConf.set(Options.BUFFER_SIZE,
       sparkSession.conf.get(SQL_RIFF_BUFFER_SIZE, s"${Options.BUFFER_SIZE_DEFAULT}"))
 
+    // set stripe read-ahead for row buffers
+    hadoopConf.set(Options.PREFETCH_STRIPES,
+      sparkSession.conf.get(SQL_RIFF_PREFETCH_STRIPES, s"${Options.PREFETCH_STRIPES_DEFAULT}"))
+    hadoopConf.set(Options.PREFETCH_DECOMPRESS,
+      sparkSession.conf.get(SQL_RIFF_PREFETCH_DECOMPRESS,
+        s"${Options.PREFETCH_DECOMPRESS_DEFAULT}"))
+
+    // set parallel decoding of stripes for row buffers
+    hadoopConf.set(Options.PARALLEL_STRIPES,
+      sparkSession.conf.get(SQL_RIFF_PARALLEL_STRIPES, s"${Options.PARALLEL_STRIPES_DEFAULT}"))
+    hadoopConf.set(Options.PARALLEL_MAX_BYTES,
+      sparkSession.conf.get(SQL_RIFF_PARALLEL_MAX_BYTES,
+        s"${Options.PARALLEL_MAX_BYTES_DEFAULT}"))
+
+    // set coalescing of stripe reads for row buffers
+    hadoopConf.set(Options.COALESCE_GAP,
+      sparkSession.conf.get(SQL_RIFF_COALESCE_GAP, s"${Options.COALESCE_GAP_DEFAULT}"))
+    hadoopConf.set(Options.COALESCE_MAX_SIZE,
+      sparkSession.conf.get(SQL_RIFF_COALESCE_MAX_SIZE, s"${Options.COALESCE_MAX_SIZE_DEFAULT}"))
+
+    // set memory-mapping of local files
+    hadoopConf.set(Options.MMAP_ENABLED,
+      sparkSession.conf.get(SQL_RIFF_MMAP_ENABLED, s"${Options.MMAP_ENABLED_DEFAULT}"))
+    hadoopConf.set(Options.SPECULATIVE_READ_SIZE,
+      sparkSession.conf.get(SQL_RIFF_SPECULATIVE_READ_SIZE,
+        s"${Options.SPECULATIVE_READ_SIZE_DEFAULT}"))
+    hadoopConf.set(Options.DIRECT_BUFFERS,
+      sparkSession.conf.get(SQL_RIFF_DIRECT_BUFFERS, s"${Options.DIRECT_BUFFERS_DEFAULT}"))
+    hadoopConf.set(Options.LAZY_DATA,
+      sparkSession.conf.get(SQL_RIFF_LAZY_DATA, s"${Options.LAZY_DATA_DEFAULT}"))
+
+    // set maximum sizes of file info cache and buffer pool shared by readers in executor, only
+    // if they are set explicitly, see `configureSharedResources()`
+    sparkSession.conf.getOption(SQL_RIFF_FILE_INFO_CACHE_MAX_BYTES).foreach { value =>
+      hadoopConf.set(Options.FILE_INFO_CACHE_MAX_BYTES, value)
+    }
+    sparkSession.conf.getOption(SQL_RIFF_BUFFER_POOL_MAX_BYTES).foreach { value =>
+      hadoopConf.set(Options.BUFFER_POOL_MAX_BYTES, value)
+    }
+
+    // Spark splits file into chunks of at least min(maxPartitionBytes, openCostInBytes) bytes,
+    // so the first split that is shorter than that covers the whole file
+    val wholeFileBytes = math.min(
+      sparkSession.conf.get("spark.sql.files.maxPartitionBytes", "134217728").toLong,
+      sparkSession.conf.get("spark.sql.files.openCostInBytes", "4194304").toLong)
+
     val broadcastedHadoopConf =
       sparkSession.sparkContext.broadcast(new SerializableConfiguration(hadoopConf))
 
@@ -210,8 +287,17 @@ class DefaultSource
     (file: PartitionedFile) => {
       val path = new Path(file.filePath)
       val hadoopConf = broadcastedHadoopConf.value.value
-      val reader = Riff.reader(hadoopConf, path)
-      val iter = reader.prepareRead(predicate)
+      configureSharedResources(hadoopConf)
+      // partitioned file is a split, its length is the length of the file only if split covers
+      // the whole file; otherwise file length is resolved from cache of file info, if another
+      // split of the file has been read in executor, or from file status to locate footer
+      val reader = if (file.start == 0 && file.length < wholeFileBytes) {
+        Riff.reader(hadoopConf, path, file.length)
+      } else {
+        Riff.cachedReader(hadoopConf, path)
+      }
+      // projection fields let reader skip data regions when only index fields are requested
+      val iter = reader.prepareRead(predicate, file.start, file.length, projectionFields)
       Option(TaskContext.get()).foreach(_.addTaskCompletionListener(_ => iter.close()))
 
       // TODO: compare schema with inferred schema for table and merge if necessary
@@ -220,7 +306,9 @@ class DefaultSource
       if (metadataCountEnabled && projectionFields.isEmpty) {
         // only perform optimization if it is enabled
         // TODO: Move it into Riff format, once projection is fixed
-        var numRecords = reader.getFileFooter().getNumRecords()
+        // footer count is returned only by the first split of the file, so that records are
+        // counted once when file is read by several tasks
+        var numRecords = if (file.start == 0) reader.getFileFooter().getNumRecords() else 0L
 
         new Iterator[InternalRow] {
           override def hasNext: Boolean = {
@@ -233,9 +321,10 @@ class DefaultSource
           }
         }
       } else if (projectionFields.length < td.size()) {
-        // do projection if we have fewer fields to return
-        // TODO: this is inefficient, it would be better to apply projection directly on indexed row
+        // do projection if we have fewer fields to return, projected row is a view of indexed
+        // row and is reused for all records, values are not copied
         val ordinals = projectionFields.map { fieldName => td.position(fieldName) }
+        val proj = new ProjectedRow(ordinals)
 
         new Iterator[InternalRow]() {
           override def hasNext: Boolean = {
@@ -243,15 +332,7 @@ class DefaultSource
           }
 
           override def next: InternalRow = {
-            val row = iter.next()
-            val proj = new ProjectionRow(ordinals.length)
-            var i = 0
-            while (i < ordinals.length) {
-              val spec = td.atPosition(ordinals(i))
-              proj.update(i, row.get(spec.position(), spec.dataType()))
-              i += 1
-            }
-            proj
+            proj.setRow(iter.next())
           }
         }
       } else {
@@ -264,6 +345,9 @@ class DefaultSource
 object RiffFileFormat {
   // datasource option for fields to index; must be provided as comma-separated list of values
   val INDEX_FIELDS_OPTION = "index"
+  // datasource option for column groups of non-index fields; must be provided as
+  // semicolon-separated list of groups, each group is comma-separated list of values
+  val GROUPS_OPTION = "groups"
 
   // compression codec to use when writing riff files
   val SQL_RIFF_COMPRESSION_CODEC = "spark.sql.riff.compression.codec"
@@ -271,6 +355,14 @@ object RiffFileFormat {
   val SQL_RIFF_COMPRESSION_CODEC_DEFAULT = "deflate"
   // number of rows per stripe to write
   val SQL_RIFF_STRIPE_ROWS = "spark.sql.riff.stripe.rows"
+  // number of rows between entries of row index within stripe, 0 disables row index
+  val SQL_RIFF_ROW_INDEX_INTERVAL = "spark.sql.riff.stripe.row.index.interval"
+  // sort rows of each stripe by index fields
+  val SQL_RIFF_STRIPE_SORTED = "spark.sql.riff.stripe.sorted"
+  // write index regions and data regions of rows into separate streams of stripe
+  val SQL_RIFF_STRIPE_SPLIT_STREAMS = "spark.sql.riff.stripe.split.streams"
+  // write values of each data column into separate stream of stripe (PAX layout)
+  val SQL_RIFF_STRIPE_COLUMNAR = "spark.sql.riff.stripe.columnar"
   // enable column filters for index fields
   val SQL_RIFF_COLUMN_FILTER_ENABLED = "spark.sql.riff.column.filter.enabled"
   // set buffer size in bytes for instream/outstream
@@ -281,10 +373,51 @@ object RiffFileFormat {
   // enable/disable count using metadata, if enabled avoid reading file for number of records
   val SQL_RIFF_METADATA_COUNT = "spark.sql.riff.metadata.count.enabled"
   val SQL_RIFF_METADATA_COUNT_DEFAULT = "true"
+  // number of stripes to read ahead in background, 0 disables read-ahead
+  val SQL_RIFF_PREFETCH_STRIPES = "spark.sql.riff.read.prefetch.stripes"
+  // enable/disable decompression of stripes as part of read-ahead
+  val SQL_RIFF_PREFETCH_DECOMPRESS = "spark.sql.riff.read.prefetch.decompress"
+  // number of stripes to decode concurrently, 0 disables parallel decoding
+  val SQL_RIFF_PARALLEL_STRIPES = "spark.sql.riff.read.parallel.stripes"
+  // maximum number of stripe bytes decoded concurrently
+  val SQL_RIFF_PARALLEL_MAX_BYTES = "spark.sql.riff.read.parallel.max.bytes"
+  // maximum gap in bytes between stripes to read with single request, negative disables merge
+  val SQL_RIFF_COALESCE_GAP = "spark.sql.riff.read.coalesce.gap"
+  // maximum size in bytes of coalesced read
+  val SQL_RIFF_COALESCE_MAX_SIZE = "spark.sql.riff.read.coalesce.max.size"
+  // enable/disable memory-mapping of files on local file system
+  val SQL_RIFF_MMAP_ENABLED = "spark.sql.riff.read.mmap.enabled"
+  // number of bytes to read speculatively at each end of the file when opening it
+  val SQL_RIFF_SPECULATIVE_READ_SIZE = "spark.sql.riff.read.speculative.size"
+  // maximum number of bytes kept in cache of file headers and footers in JVM
+  val SQL_RIFF_FILE_INFO_CACHE_MAX_BYTES = "spark.sql.riff.read.file.info.cache.max.bytes"
+  // enable/disable direct buffers for reading stripes
+  val SQL_RIFF_DIRECT_BUFFERS = "spark.sql.riff.read.direct.buffers"
+  // enable/disable lazy read of data region of rows
+  val SQL_RIFF_LAZY_DATA = "spark.sql.riff.read.lazy.data"
+  // maximum number of bytes kept in buffer pool shared by readers and writers in JVM
+  val SQL_RIFF_BUFFER_POOL_MAX_BYTES = "spark.sql.riff.buffer.pool.max.bytes"
 
   // internal Spark SQL option for output committer
   val SPARK_OUTPUT_COMMITTER_CLASS = "spark.sql.sources.outputCommitterClass"
 
+  // whether or not shared resources have been configured in this JVM
+  private val sharedResourcesConfigured = new AtomicBoolean(false)
+
+  /**
+   * Apply sizes of buffer pool and file info cache shared by readers and writers in executor,
+   * see `Riff.configureSharedResources()`. Sizes are applied once per JVM by the first task that
+   * sets them, so concurrent tasks do not resize shared resources.
+   * @param conf configuration with Riff options
+   */
+  def configureSharedResources(conf: Configuration): Unit = {
+    if ((conf.get(Options.BUFFER_POOL_MAX_BYTES) != null ||
+        conf.get(Options.FILE_INFO_CACHE_MAX_BYTES) != null) &&
+        sharedResourcesConfigured.compareAndSet(false, true)) {
+      Riff.configureSharedResources(conf)
+    }
+  }
+
   /**
    * Parse index fields string into list of indexed columns.
    * @param fields comma-separated list of field names that exist in data schema
@@ -298,4 +431,18 @@ object RiffFileFormat {
       fields.split(',').map(_.trim).filter(_.nonEmpty)
     }
   }
+
+  /**
+   * Parse column groups string into list of groups, e.g. "col1,col2;col3" results in groups
+   * [col1, col2] and [col3]. Empty groups are removed.
+   * @param groups semicolon-separated list of groups of comma-separated field names
+   * @return array of column groups
+   */
+  def parseGroups(groups: String): Array[Array[String]] = {
+    if (groups == null || groups.length == 0) {
+      Array.empty
+    } else {
+      groups.split(';').map(parseIndexFields).filter(_.nonEmpty)
+    }
+  }
 }
@@ -34,6 +34,7 @@ import org.apache.spark.sql.types.StructType
 
 import com.github.sadikovi.riff.{Riff, TypeDescription}
 import com.github.sadikovi.riff.io.CompressionCodecFactory
+import com.github.sadikovi.spark.riff.RiffFileFormat
 
 import org.slf4j.LoggerFactory
 
@@ -99,6 +100,7 @@ class RiffOutputWriter(
     new Path(path)
   }
   // prepare riff writer, all options should be set through hadoop configuration
+  RiffFileFormat.configureSharedResources(configuration)
   val writer = Riff.writer(configuration, filepath, typeDesc)
   writer.prepareWrite()
 
@@ -51,6 +51,17 @@ class RiffSQLSuite extends UnitTestSuite with SparkLocal {
     RiffFileFormat.parseIndexFields("col1, , col3") should be (Array("col1", "col3"))
   }
 
+  test("parse column groups for option") {
+    RiffFileFormat.parseGroups(null) should be (Array.empty)
+    RiffFileFormat.parseGroups("") should be (Array.empty)
+    RiffFileFormat.parseGroups(";") should be (Array.empty)
+    RiffFileFormat.parseGroups(" ; , ;") should be (Array.empty)
+    RiffFileFormat.parseGroups("col1,col2;col3") should be (
+      Array(Array("col1", "col2"), Array("col3")))
+    RiffFileFormat.parseGroups(" col1 ; ; col2, col3 ") should be (
+      Array(Array("col1"), Array("col2", "col3")))
+  }
+
   test("write/read riff non-partitioned table") {
     val implicits = spark.implicits
     withTempDir { dir =>
@@ -287,6 +298,30 @@ class RiffSQLSuite extends UnitTestSuite with SparkLocal {
     }
   }
 
+  test("read file in several splits") {
+    withSQLConf(
+        RiffFileFormat.SQL_RIFF_STRIPE_ROWS -> "100",
+        "spark.sql.files.maxPartitionBytes" -> "4096",
+        "spark.sql.files.openCostInBytes" -> "0") {
+      withTempDir { dir =>
+        val df = spark.range(5000).select(
+          col("id").as("col1"),
+          col("id").cast("string").as("col2"))
+        df.coalesce(1).write.option("index", "col1").riff(dir.toString / "table")
+        val res = spark.read.riff(dir.toString / "table")
+        assert(res.rdd.getNumPartitions > 1)
+        checkAnswer(res, df)
+        checkAnswer(res.filter("col1 > 4500"), df.filter("col1 > 4500"))
+        withSQLConf(RiffFileFormat.SQL_RIFF_METADATA_COUNT -> "true") {
+          res.count should be (5000)
+        }
+        withSQLConf(RiffFileFormat.SQL_RIFF_METADATA_COUNT -> "false") {
+          res.count should be (5000)
+        }
+      }
+    }
+  }
+
   //////////////////////////////////////////////////////////////
   // == Write/read tests for different datatypes
   //////////////////////////////////////////////////////////////